@@ -1,8 +1,11 @@
 package com.owiseman.embedding.config;
 
+import com.owiseman.embedding.grpc.CommandStreamService;
 import com.owiseman.embedding.grpc.PluginServiceImpl;
+import com.owiseman.embedding.grpc.ServerTimingInterceptor;
 import io.grpc.Server;
 import io.grpc.ServerBuilder;
+import io.grpc.ServerInterceptors;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -26,13 +29,19 @@ public class GrpcServerConfig {
 
     private final PluginProperties properties;
     private final PluginServiceImpl pluginService;
-    
+    private final CommandStreamService commandStreamService;
+    private final ServerTimingInterceptor serverTimingInterceptor;
+
     private Server server;
 
     @Autowired
-    public GrpcServerConfig(PluginProperties properties, PluginServiceImpl pluginService) {
+    public GrpcServerConfig(PluginProperties properties, PluginServiceImpl pluginService,
+                            CommandStreamService commandStreamService,
+                            ServerTimingInterceptor serverTimingInterceptor) {
         this.properties = properties;
         this.pluginService = pluginService;
+        this.commandStreamService = commandStreamService;
+        this.serverTimingInterceptor = serverTimingInterceptor;
     }
 
     /**
@@ -44,7 +53,8 @@ public class GrpcServerConfig {
         logger.info("启动gRPC服务器，端口: {}", port);
         
         server = ServerBuilder.forPort(port)
-                .addService(pluginService)
+                .addService(ServerInterceptors.intercept(pluginService, serverTimingInterceptor)) // 尾部元数据返回分阶段耗时
+                .addService(commandStreamService) // 双向命令流，一元ExecuteCommand作为后备
                 .maxInboundMessageSize(10 * 1024 * 1024) // 10MB
                 .build()
                 .start();
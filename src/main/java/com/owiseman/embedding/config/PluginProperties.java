@@ -17,7 +17,85 @@ public class PluginProperties {
     private String serverHost = "localhost";
     private int serverPort = 19090;
     private int pluginPort = 8081;
+    private String instanceId = ""; // 实例ID，为空时为注册地址:插件端口，多副本部署时每个副本唯一且重启后不变
+    private String advertisedHost = ""; // 注册到主服务器的本机地址，为空时使用本机IP
+    private long heartbeatIntervalMs = 60000; // 心跳间隔（毫秒）
+    private long registryCallTimeoutMs = 10000; // 注册、心跳等调用的截止时间（毫秒）
+    private long registryBackoffInitialMs = 1000; // 注册失败后首次重试的等待时间（毫秒），之后按指数增长
+    private long registryBackoffMaxMs = 60000; // 注册重试的最长等待时间（毫秒）
+    private long registryKeepAliveSeconds = 60; // 与主服务器之间通道的keepalive间隔（秒）
+    private int streamMaxInFlight = 64; // 双向命令流上每个连接可同时在途的命令数（流控额度）
+    private long streamHeartbeatMs = 5000; // 命令流心跳帧的发送间隔（毫秒）
     private String modelType = "LaBSE";
+    private String modelName = ""; // 从本地模型目录按名称选择模型，为空时使用plugin.modelPath
+    private String modelCatalogPath = "models/catalog.json"; // 本地模型清单，不存在时按文件布局在其所在目录查找模型
+    private int modelCatalogScanThreads = 4; // 启动时并行检查模型目录的线程数
+    private boolean verifyModelChecksum = true; // 加载后在后台校验模型的SHA-256（清单中填写了sha256时）
+    private boolean offline = true; // DJL离线模式，启动和加载模型时不访问网络
+    private String engine = "auto"; // 推理引擎：auto/PyTorch/TensorFlow/OnnxRuntime
+    private String precision = "fp32"; // 模型精度：fp32/int8
+    private String int8ModelPath; // INT8量化模型路径，为空时在FP32模型旁查找
+    private boolean offHeapBuffers = false; // 批量结果是否使用池化的堆外缓冲区
+    private int offHeapPoolSize = 16; // 每种容量最多缓存的缓冲区数量
+    private long nativeMemoryCapMb = 0; // 推理本地内存上限（MB），0表示不限制
+    private long nativeMemoryWaitMs = 1000; // 达到上限时新批次的最长等待时间（毫秒）
+    private int intraOpThreads = 0; // PyTorch intra-op线程数，0表示引擎默认
+    private int interOpThreads = 0; // PyTorch inter-op线程数，0表示引擎默认
+    private int ompThreads = 0; // 期望的OMP_NUM_THREADS，0表示不检查
+    private int mklThreads = 0; // 期望的MKL_NUM_THREADS，0表示不检查
+    private int predictorWorkers = 1; // 同时进行前向计算的预测器数量
+    private boolean autoTuneThreads = false; // 启动时自动扫描线程组合
+    private int inferenceWorkers = 1; // 推理工作者数，每个工作者独立加载一份模型
+    private boolean pinWorkers = false; // 按NUMA节点把推理工作者绑定到各自的CPU集合（仅Linux，需要taskset）
+    private String workerCpuSets; // 手动指定各工作者的CPU集合，以分号分隔，如"0-15;16-31"
+    private int schedulerQueueCapacity = 1024; // 推理调度队列容量
+    private int maxBatchSize = 32; // 调度器合并的最大批次
+    private long maxBatchWaitMs = 2; // 调度器凑批的最长等待时间（毫秒）
+    private int commandThreads = 4; // 异步执行非单条向量化命令的线程数
+    private int commandQueueCapacity = 256; // 异步命令的排队上限，队列满时拒绝
+    private boolean adaptiveBatching = false; // 按到达率和实测批次执行时间自动调整批次上限和等待窗口（以上两项作为上限）
+    private long latencySloP99Ms = 100; // 自适应批处理的p99延迟目标（毫秒）
+    private long adaptiveIntervalMs = 1000; // 自适应批处理的调整间隔（毫秒）
+    private boolean dedupeBatches = true; // 批量请求在预处理后去重，重复文本只推理一次
+    private boolean coalesceRequests = true; // 相同文本的并发单条请求合并为一次推理
+    private int similarityMaxTexts = 4096; // 相似度请求中查询和候选文本总数上限，0表示不限
+    private int clusteringThreads = 0; // 聚类ForkJoin池的并行度，0表示CPU核数
+    private int clusteringMaxRows = 1000000; // 聚类命令最多处理的向量数
+    private int clusteringPairwiseMaxRows = 20000; // 未指定k、只做近重复分组（全部两两比较）时最多处理的向量数
+    private int documentChunkMinChars = 128; // 文档增量向量化：内容定义分块的最小字符数
+    private int documentChunkAvgChars = 384; // 内容定义分块的期望平均字符数
+    private int documentChunkMaxChars = 512; // 内容定义分块的最大字符数，应保证一个块不超过模型的最大序列长度
+    private int documentCacheMaxChunks = 100000; // 缓存的块向量总数上限，超出时按LRU淘汰整篇文档
+    private int documentMaxChars = 1000000; // 单篇文档的最大字符数，0表示不限
+    private boolean serverTiming = true; // 响应中附带分阶段耗时（HTTP Server-Timing头、gRPC尾部元数据）
+    private long slowRequestThresholdMs = 500; // 端到端耗时超过该值的请求记入慢请求环形缓冲区，0表示不记录
+    private int slowRequestBufferSize = 256; // 慢请求环形缓冲区保留的条数
+    private double requestLogSampleRate = 0.01; // 成功请求写结构化请求日志的采样率（0~1），失败请求总是记录
+    private String profileDir = "profiles"; // profile命令写出JFR录制文件的目录
+    private int profileMaxSizeMb = 256; // 单次JFR录制保留的最大数据量（MB），超出时丢弃最早的数据
+    private boolean normalizeNfkc = false; // 预处理时做Unicode NFKC规范化
+    private boolean stripControlChars = true; // 预处理时去除控制字符和零宽字符
+    private int maxInputTokens = 510; // 预处理截断的token数上限（不含[CLS]/[SEP]），0表示不截断
+    private String tokenizerPath = "models/LaBSE/tokenizer.json"; // HuggingFace分词器文件，不存在时按字符编码
+    private int tokenizerCacheSize = 10000; // 分词结果LRU缓存的文本数，0表示不缓存
+    private String torchScriptAttentionMask = "auto"; // TorchScript模型的forward是否接收attention_mask作为第二个输入：auto/true/false，auto时加载后试探
+    private int bulkBatchSize = 64; // 批量文件向量化每批文本数
+    private int bulkQueueCapacity = 8; // 批量流水线各阶段之间的队列容量（批）
+    private String commandFileDir = "data"; // embedFile、cluster命令读写文件的目录，参数中的路径相对于该目录且不能越出
+    private String jobCheckpointDir = "jobs"; // 批量任务检查点目录
+    private int maxConcurrentJobs = 1; // 同时运行的批量任务数
+    private long jobCheckpointIntervalMs = 5000; // 批量任务提交检查点的间隔（毫秒）
+    private int jobHistoryLimit = 100; // 保留的已结束任务记录数
+    private String ingestDir = ""; // 目录监听导入的监听目录，为空时不启用
+    private String ingestOutputDir = ""; // 导入输出的向量文件目录，为空时写在输入文件旁
+    private String ingestExtensions = "txt,jsonl,csv"; // 目录监听导入处理的文件扩展名
+    private String ingestField = "text"; // 导入JSONL/CSV文件时的文本字段名或列名
+    private long ingestSettleMs = 2000; // 文件最后一次变化后等待多久再导入（毫秒）
+    private int ingestMaxInFlight = 1; // 同时处理的导入文件数
+    private int ingestBatchSize = 16; // 导入任务每批文本数
+    private int ingestPriority = -10; // 导入任务在批量任务队列中的优先级
+    private long ingestRetryBackoffMs = 60000; // 导入失败的文件首次重试前的等待时间（毫秒），连续失败时翻倍
+    private long backgroundBackoffMs = 20; // 后台任务在在线请求排队或推理时的重试间隔（毫秒）
 
     public String getName() {
         return name;
@@ -74,4 +152,627 @@ public class PluginProperties {
     public void setModelType(String modelType) {
         this.modelType = modelType;
     }
+
+    public String getEngine() {
+        return engine;
+    }
+
+    public void setEngine(String engine) {
+        this.engine = engine;
+    }
+
+    public String getPrecision() {
+        return precision;
+    }
+
+    public void setPrecision(String precision) {
+        this.precision = precision;
+    }
+
+    public String getInt8ModelPath() {
+        return int8ModelPath;
+    }
+
+    public void setInt8ModelPath(String int8ModelPath) {
+        this.int8ModelPath = int8ModelPath;
+    }
+
+    public boolean isOffHeapBuffers() {
+        return offHeapBuffers;
+    }
+
+    public void setOffHeapBuffers(boolean offHeapBuffers) {
+        this.offHeapBuffers = offHeapBuffers;
+    }
+
+    public int getOffHeapPoolSize() {
+        return offHeapPoolSize;
+    }
+
+    public void setOffHeapPoolSize(int offHeapPoolSize) {
+        this.offHeapPoolSize = offHeapPoolSize;
+    }
+
+    public long getNativeMemoryCapMb() {
+        return nativeMemoryCapMb;
+    }
+
+    public void setNativeMemoryCapMb(long nativeMemoryCapMb) {
+        this.nativeMemoryCapMb = nativeMemoryCapMb;
+    }
+
+    public long getNativeMemoryWaitMs() {
+        return nativeMemoryWaitMs;
+    }
+
+    public void setNativeMemoryWaitMs(long nativeMemoryWaitMs) {
+        this.nativeMemoryWaitMs = nativeMemoryWaitMs;
+    }
+
+    public int getIntraOpThreads() {
+        return intraOpThreads;
+    }
+
+    public void setIntraOpThreads(int intraOpThreads) {
+        this.intraOpThreads = intraOpThreads;
+    }
+
+    public int getInterOpThreads() {
+        return interOpThreads;
+    }
+
+    public void setInterOpThreads(int interOpThreads) {
+        this.interOpThreads = interOpThreads;
+    }
+
+    public int getOmpThreads() {
+        return ompThreads;
+    }
+
+    public void setOmpThreads(int ompThreads) {
+        this.ompThreads = ompThreads;
+    }
+
+    public int getMklThreads() {
+        return mklThreads;
+    }
+
+    public void setMklThreads(int mklThreads) {
+        this.mklThreads = mklThreads;
+    }
+
+    public int getPredictorWorkers() {
+        return predictorWorkers;
+    }
+
+    public void setPredictorWorkers(int predictorWorkers) {
+        this.predictorWorkers = predictorWorkers;
+    }
+
+    public boolean isAutoTuneThreads() {
+        return autoTuneThreads;
+    }
+
+    public void setAutoTuneThreads(boolean autoTuneThreads) {
+        this.autoTuneThreads = autoTuneThreads;
+    }
+
+    public int getSchedulerQueueCapacity() {
+        return schedulerQueueCapacity;
+    }
+
+    public void setSchedulerQueueCapacity(int schedulerQueueCapacity) {
+        this.schedulerQueueCapacity = schedulerQueueCapacity;
+    }
+
+    public int getCommandThreads() {
+        return commandThreads;
+    }
+
+    public void setCommandThreads(int commandThreads) {
+        this.commandThreads = commandThreads;
+    }
+
+    public int getCommandQueueCapacity() {
+        return commandQueueCapacity;
+    }
+
+    public void setCommandQueueCapacity(int commandQueueCapacity) {
+        this.commandQueueCapacity = commandQueueCapacity;
+    }
+
+    public int getMaxBatchSize() {
+        return maxBatchSize;
+    }
+
+    public void setMaxBatchSize(int maxBatchSize) {
+        this.maxBatchSize = maxBatchSize;
+    }
+
+    public long getMaxBatchWaitMs() {
+        return maxBatchWaitMs;
+    }
+
+    public void setMaxBatchWaitMs(long maxBatchWaitMs) {
+        this.maxBatchWaitMs = maxBatchWaitMs;
+    }
+
+    public int getBulkBatchSize() {
+        return bulkBatchSize;
+    }
+
+    public void setBulkBatchSize(int bulkBatchSize) {
+        this.bulkBatchSize = bulkBatchSize;
+    }
+
+    public int getBulkQueueCapacity() {
+        return bulkQueueCapacity;
+    }
+
+    public void setBulkQueueCapacity(int bulkQueueCapacity) {
+        this.bulkQueueCapacity = bulkQueueCapacity;
+    }
+
+    public String getJobCheckpointDir() {
+        return jobCheckpointDir;
+    }
+
+    public void setJobCheckpointDir(String jobCheckpointDir) {
+        this.jobCheckpointDir = jobCheckpointDir;
+    }
+
+    public String getCommandFileDir() {
+        return commandFileDir;
+    }
+
+    public void setCommandFileDir(String commandFileDir) {
+        this.commandFileDir = commandFileDir;
+    }
+
+    public int getMaxConcurrentJobs() {
+        return maxConcurrentJobs;
+    }
+
+    public void setMaxConcurrentJobs(int maxConcurrentJobs) {
+        this.maxConcurrentJobs = maxConcurrentJobs;
+    }
+
+    public long getJobCheckpointIntervalMs() {
+        return jobCheckpointIntervalMs;
+    }
+
+    public void setJobCheckpointIntervalMs(long jobCheckpointIntervalMs) {
+        this.jobCheckpointIntervalMs = jobCheckpointIntervalMs;
+    }
+
+    public int getJobHistoryLimit() {
+        return jobHistoryLimit;
+    }
+
+    public void setJobHistoryLimit(int jobHistoryLimit) {
+        this.jobHistoryLimit = jobHistoryLimit;
+    }
+
+    public boolean isDedupeBatches() {
+        return dedupeBatches;
+    }
+
+    public void setDedupeBatches(boolean dedupeBatches) {
+        this.dedupeBatches = dedupeBatches;
+    }
+
+    public boolean isNormalizeNfkc() {
+        return normalizeNfkc;
+    }
+
+    public void setNormalizeNfkc(boolean normalizeNfkc) {
+        this.normalizeNfkc = normalizeNfkc;
+    }
+
+    public boolean isStripControlChars() {
+        return stripControlChars;
+    }
+
+    public void setStripControlChars(boolean stripControlChars) {
+        this.stripControlChars = stripControlChars;
+    }
+
+    public int getMaxInputTokens() {
+        return maxInputTokens;
+    }
+
+    public void setMaxInputTokens(int maxInputTokens) {
+        this.maxInputTokens = maxInputTokens;
+    }
+
+    public String getTokenizerPath() {
+        return tokenizerPath;
+    }
+
+    public void setTokenizerPath(String tokenizerPath) {
+        this.tokenizerPath = tokenizerPath;
+    }
+
+    public int getTokenizerCacheSize() {
+        return tokenizerCacheSize;
+    }
+
+    public void setTokenizerCacheSize(int tokenizerCacheSize) {
+        this.tokenizerCacheSize = tokenizerCacheSize;
+    }
+
+    public String getTorchScriptAttentionMask() {
+        return torchScriptAttentionMask;
+    }
+
+    public void setTorchScriptAttentionMask(String torchScriptAttentionMask) {
+        this.torchScriptAttentionMask = torchScriptAttentionMask;
+    }
+
+    public boolean isCoalesceRequests() {
+        return coalesceRequests;
+    }
+
+    public void setCoalesceRequests(boolean coalesceRequests) {
+        this.coalesceRequests = coalesceRequests;
+    }
+
+    public int getInferenceWorkers() {
+        return inferenceWorkers;
+    }
+
+    public void setInferenceWorkers(int inferenceWorkers) {
+        this.inferenceWorkers = inferenceWorkers;
+    }
+
+    public boolean isPinWorkers() {
+        return pinWorkers;
+    }
+
+    public void setPinWorkers(boolean pinWorkers) {
+        this.pinWorkers = pinWorkers;
+    }
+
+    public String getWorkerCpuSets() {
+        return workerCpuSets;
+    }
+
+    public void setWorkerCpuSets(String workerCpuSets) {
+        this.workerCpuSets = workerCpuSets;
+    }
+
+    public String getInstanceId() {
+        return instanceId;
+    }
+
+    public void setInstanceId(String instanceId) {
+        this.instanceId = instanceId;
+    }
+
+    public String getAdvertisedHost() {
+        return advertisedHost;
+    }
+
+    public void setAdvertisedHost(String advertisedHost) {
+        this.advertisedHost = advertisedHost;
+    }
+
+    public long getHeartbeatIntervalMs() {
+        return heartbeatIntervalMs;
+    }
+
+    public void setHeartbeatIntervalMs(long heartbeatIntervalMs) {
+        this.heartbeatIntervalMs = heartbeatIntervalMs;
+    }
+
+    public long getRegistryCallTimeoutMs() {
+        return registryCallTimeoutMs;
+    }
+
+    public void setRegistryCallTimeoutMs(long registryCallTimeoutMs) {
+        this.registryCallTimeoutMs = registryCallTimeoutMs;
+    }
+
+    public long getRegistryBackoffInitialMs() {
+        return registryBackoffInitialMs;
+    }
+
+    public void setRegistryBackoffInitialMs(long registryBackoffInitialMs) {
+        this.registryBackoffInitialMs = registryBackoffInitialMs;
+    }
+
+    public long getRegistryBackoffMaxMs() {
+        return registryBackoffMaxMs;
+    }
+
+    public void setRegistryBackoffMaxMs(long registryBackoffMaxMs) {
+        this.registryBackoffMaxMs = registryBackoffMaxMs;
+    }
+
+    public long getRegistryKeepAliveSeconds() {
+        return registryKeepAliveSeconds;
+    }
+
+    public void setRegistryKeepAliveSeconds(long registryKeepAliveSeconds) {
+        this.registryKeepAliveSeconds = registryKeepAliveSeconds;
+    }
+
+    public int getStreamMaxInFlight() {
+        return streamMaxInFlight;
+    }
+
+    public void setStreamMaxInFlight(int streamMaxInFlight) {
+        this.streamMaxInFlight = streamMaxInFlight;
+    }
+
+    public long getStreamHeartbeatMs() {
+        return streamHeartbeatMs;
+    }
+
+    public void setStreamHeartbeatMs(long streamHeartbeatMs) {
+        this.streamHeartbeatMs = streamHeartbeatMs;
+    }
+
+    public int getSimilarityMaxTexts() {
+        return similarityMaxTexts;
+    }
+
+    public void setSimilarityMaxTexts(int similarityMaxTexts) {
+        this.similarityMaxTexts = similarityMaxTexts;
+    }
+
+    public int getClusteringThreads() {
+        return clusteringThreads;
+    }
+
+    public void setClusteringThreads(int clusteringThreads) {
+        this.clusteringThreads = clusteringThreads;
+    }
+
+    public int getClusteringMaxRows() {
+        return clusteringMaxRows;
+    }
+
+    public void setClusteringMaxRows(int clusteringMaxRows) {
+        this.clusteringMaxRows = clusteringMaxRows;
+    }
+
+    public int getClusteringPairwiseMaxRows() {
+        return clusteringPairwiseMaxRows;
+    }
+
+    public void setClusteringPairwiseMaxRows(int clusteringPairwiseMaxRows) {
+        this.clusteringPairwiseMaxRows = clusteringPairwiseMaxRows;
+    }
+
+    public boolean isServerTiming() {
+        return serverTiming;
+    }
+
+    public void setServerTiming(boolean serverTiming) {
+        this.serverTiming = serverTiming;
+    }
+
+    public long getSlowRequestThresholdMs() {
+        return slowRequestThresholdMs;
+    }
+
+    public void setSlowRequestThresholdMs(long slowRequestThresholdMs) {
+        this.slowRequestThresholdMs = slowRequestThresholdMs;
+    }
+
+    public int getSlowRequestBufferSize() {
+        return slowRequestBufferSize;
+    }
+
+    public void setSlowRequestBufferSize(int slowRequestBufferSize) {
+        this.slowRequestBufferSize = slowRequestBufferSize;
+    }
+
+    public double getRequestLogSampleRate() {
+        return requestLogSampleRate;
+    }
+
+    public void setRequestLogSampleRate(double requestLogSampleRate) {
+        this.requestLogSampleRate = requestLogSampleRate;
+    }
+
+    public String getProfileDir() {
+        return profileDir;
+    }
+
+    public void setProfileDir(String profileDir) {
+        this.profileDir = profileDir;
+    }
+
+    public int getProfileMaxSizeMb() {
+        return profileMaxSizeMb;
+    }
+
+    public void setProfileMaxSizeMb(int profileMaxSizeMb) {
+        this.profileMaxSizeMb = profileMaxSizeMb;
+    }
+
+    public boolean isAdaptiveBatching() {
+        return adaptiveBatching;
+    }
+
+    public void setAdaptiveBatching(boolean adaptiveBatching) {
+        this.adaptiveBatching = adaptiveBatching;
+    }
+
+    public long getLatencySloP99Ms() {
+        return latencySloP99Ms;
+    }
+
+    public void setLatencySloP99Ms(long latencySloP99Ms) {
+        this.latencySloP99Ms = latencySloP99Ms;
+    }
+
+    public long getAdaptiveIntervalMs() {
+        return adaptiveIntervalMs;
+    }
+
+    public void setAdaptiveIntervalMs(long adaptiveIntervalMs) {
+        this.adaptiveIntervalMs = adaptiveIntervalMs;
+    }
+
+    public String getModelName() {
+        return modelName;
+    }
+
+    public void setModelName(String modelName) {
+        this.modelName = modelName;
+    }
+
+    public String getModelCatalogPath() {
+        return modelCatalogPath;
+    }
+
+    public void setModelCatalogPath(String modelCatalogPath) {
+        this.modelCatalogPath = modelCatalogPath;
+    }
+
+    public int getModelCatalogScanThreads() {
+        return modelCatalogScanThreads;
+    }
+
+    public void setModelCatalogScanThreads(int modelCatalogScanThreads) {
+        this.modelCatalogScanThreads = modelCatalogScanThreads;
+    }
+
+    public boolean isVerifyModelChecksum() {
+        return verifyModelChecksum;
+    }
+
+    public void setVerifyModelChecksum(boolean verifyModelChecksum) {
+        this.verifyModelChecksum = verifyModelChecksum;
+    }
+
+    public boolean isOffline() {
+        return offline;
+    }
+
+    public void setOffline(boolean offline) {
+        this.offline = offline;
+    }
+
+    public int getDocumentChunkMinChars() {
+        return documentChunkMinChars;
+    }
+
+    public void setDocumentChunkMinChars(int documentChunkMinChars) {
+        this.documentChunkMinChars = documentChunkMinChars;
+    }
+
+    public int getDocumentChunkAvgChars() {
+        return documentChunkAvgChars;
+    }
+
+    public void setDocumentChunkAvgChars(int documentChunkAvgChars) {
+        this.documentChunkAvgChars = documentChunkAvgChars;
+    }
+
+    public int getDocumentChunkMaxChars() {
+        return documentChunkMaxChars;
+    }
+
+    public void setDocumentChunkMaxChars(int documentChunkMaxChars) {
+        this.documentChunkMaxChars = documentChunkMaxChars;
+    }
+
+    public int getDocumentCacheMaxChunks() {
+        return documentCacheMaxChunks;
+    }
+
+    public void setDocumentCacheMaxChunks(int documentCacheMaxChunks) {
+        this.documentCacheMaxChunks = documentCacheMaxChunks;
+    }
+
+    public int getDocumentMaxChars() {
+        return documentMaxChars;
+    }
+
+    public void setDocumentMaxChars(int documentMaxChars) {
+        this.documentMaxChars = documentMaxChars;
+    }
+    public String getIngestDir() {
+        return ingestDir;
+    }
+
+    public void setIngestDir(String ingestDir) {
+        this.ingestDir = ingestDir;
+    }
+
+    public String getIngestOutputDir() {
+        return ingestOutputDir;
+    }
+
+    public void setIngestOutputDir(String ingestOutputDir) {
+        this.ingestOutputDir = ingestOutputDir;
+    }
+
+    public String getIngestExtensions() {
+        return ingestExtensions;
+    }
+
+    public void setIngestExtensions(String ingestExtensions) {
+        this.ingestExtensions = ingestExtensions;
+    }
+
+    public String getIngestField() {
+        return ingestField;
+    }
+
+    public void setIngestField(String ingestField) {
+        this.ingestField = ingestField;
+    }
+
+    public long getIngestSettleMs() {
+        return ingestSettleMs;
+    }
+
+    public void setIngestSettleMs(long ingestSettleMs) {
+        this.ingestSettleMs = ingestSettleMs;
+    }
+
+    public int getIngestMaxInFlight() {
+        return ingestMaxInFlight;
+    }
+
+    public void setIngestMaxInFlight(int ingestMaxInFlight) {
+        this.ingestMaxInFlight = ingestMaxInFlight;
+    }
+
+    public int getIngestBatchSize() {
+        return ingestBatchSize;
+    }
+
+    public void setIngestBatchSize(int ingestBatchSize) {
+        this.ingestBatchSize = ingestBatchSize;
+    }
+
+    public int getIngestPriority() {
+        return ingestPriority;
+    }
+
+    public void setIngestPriority(int ingestPriority) {
+        this.ingestPriority = ingestPriority;
+    }
+
+    public long getIngestRetryBackoffMs() {
+        return ingestRetryBackoffMs;
+    }
+
+    public void setIngestRetryBackoffMs(long ingestRetryBackoffMs) {
+        this.ingestRetryBackoffMs = ingestRetryBackoffMs;
+    }
+
+    public long getBackgroundBackoffMs() {
+        return backgroundBackoffMs;
+    }
+
+    public void setBackgroundBackoffMs(long backgroundBackoffMs) {
+        this.backgroundBackoffMs = backgroundBackoffMs;
+    }
 }
\ No newline at end of file
@@ -1,16 +1,30 @@
 package com.owiseman.embedding.controller;
 
+import com.owiseman.embedding.config.PluginProperties;
+import com.owiseman.embedding.service.DocumentEmbeddingService;
+import com.owiseman.embedding.service.EmbeddingBatch;
 import com.owiseman.embedding.service.EmbeddingModelService;
+import com.owiseman.embedding.service.NativeMemoryLimitException;
+import com.owiseman.embedding.service.RequestLogger;
+import com.owiseman.embedding.service.RequestTiming;
+import com.owiseman.embedding.service.SimilarityService;
+import com.owiseman.embedding.service.SlowRequestLog;
+import com.owiseman.embedding.util.JsonStrings;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -24,10 +38,22 @@ public class EmbeddingController {
     private static final Logger logger = LoggerFactory.getLogger(EmbeddingController.class);
 
     private final EmbeddingModelService embeddingService;
+    private final SimilarityService similarityService;
+    private final DocumentEmbeddingService documentService;
+    private final PluginProperties properties;
+    private final SlowRequestLog slowRequests;
+    private final RequestLogger requestLogger;
 
     @Autowired
-    public EmbeddingController(EmbeddingModelService embeddingService) {
+    public EmbeddingController(EmbeddingModelService embeddingService, SimilarityService similarityService,
+                               DocumentEmbeddingService documentService, PluginProperties properties,
+                               SlowRequestLog slowRequests, RequestLogger requestLogger) {
         this.embeddingService = embeddingService;
+        this.similarityService = similarityService;
+        this.documentService = documentService;
+        this.properties = properties;
+        this.slowRequests = slowRequests;
+        this.requestLogger = requestLogger;
     }
 
     /**
@@ -38,32 +64,285 @@ public class EmbeddingController {
     @PostMapping
     public ResponseEntity<Map<String, Object>> getEmbedding(@RequestBody Map<String, String> request) {
         String text = request.get("text");
-        
+        RequestTiming timing = new RequestTiming(text == null ? 0 : text.length());
+
         if (text == null || text.trim().isEmpty()) {
             logger.warn("接收到空文本请求");
+            recordFailure("rest", text, timing);
             Map<String, Object> errorResponse = new HashMap<>();
             errorResponse.put("error", "文本不能为空");
             return ResponseEntity.badRequest().body(errorResponse);
         }
         
         try {
-            logger.info("处理嵌入向量请求，文本长度: {}", text.length());
+            logger.debug("处理嵌入向量请求，文本长度: {}", text.length());
             
             // 获取嵌入向量
-            float[] embedding = embeddingService.getEmbedding(text);
+            float[] embedding = embeddingService.getEmbedding(text, timing);
             
-            // 构建响应
+            // 构建响应（由Jackson在返回后序列化，不计入serialize阶段）
             Map<String, Object> response = new HashMap<>();
             response.put("embedding", embedding);
             response.put("dimensions", embedding.length);
             
-            return ResponseEntity.ok(response);
+            return withServerTiming(ResponseEntity.ok(), "rest", text, timing).body(response);
+        } catch (NativeMemoryLimitException e) {
+            logger.warn("本地内存达到上限，拒绝请求: {}", e.getMessage());
+            recordFailure("rest", text, timing);
+
+            Map<String, Object> errorResponse = new HashMap<>();
+            errorResponse.put("error", e.getMessage());
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(errorResponse);
         } catch (Exception e) {
             logger.error("生成嵌入向量时发生错误: {}", e.getMessage(), e);
-            
+            recordFailure("rest", text, timing);
+
             Map<String, Object> errorResponse = new HashMap<>();
             errorResponse.put("error", "处理请求失败: " + e.getMessage());
             return ResponseEntity.internalServerError().body(errorResponse);
         }
     }
+
+    /**
+     * 批量获取文本的嵌入向量
+     * @param request 包含texts数组的请求体
+     * @return 包含全部嵌入向量的JSON响应
+     */
+    @PostMapping("/batch")
+    public ResponseEntity<String> getEmbeddings(@RequestBody Map<String, List<String>> request) {
+        List<String> texts = request.get("texts");
+
+        if (texts == null || texts.isEmpty()) {
+            logger.warn("接收到空的批量请求");
+            recordFailure("rest-batch", null, new RequestTiming());
+            return ResponseEntity.badRequest()
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .body("{\"error\": \"texts不能为空\"}");
+        }
+
+        RequestTiming timing = new RequestTiming(
+                texts.stream().mapToInt(text -> text == null ? 0 : text.length()).sum());
+        try (EmbeddingBatch batch = embeddingService.getEmbeddingBatch(texts)) {
+            logger.debug("处理批量嵌入向量请求，文本数量: {}", texts.size());
+            timing.recordBatch(batch);
+
+            // 直接从批量缓冲区序列化，响应写出后缓冲区即归还
+            timing.markSerializeStart();
+            String json = batch.toJson();
+            return withServerTiming(ResponseEntity.ok(), "rest-batch", null, timing)
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .body(json);
+        } catch (NativeMemoryLimitException e) {
+            logger.warn("本地内存达到上限，拒绝批量请求: {}", e.getMessage());
+            recordFailure("rest-batch", null, timing);
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .body(errorJson(e.getMessage()));
+        } catch (IllegalArgumentException e) {
+            recordFailure("rest-batch", null, timing);
+            return ResponseEntity.badRequest()
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .body(errorJson(e.getMessage()));
+        } catch (Exception e) {
+            logger.error("生成批量嵌入向量时发生错误: {}", e.getMessage(), e);
+            recordFailure("rest-batch", null, timing);
+            return ResponseEntity.internalServerError()
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .body("{\"error\": \"处理请求失败\"}");
+        }
+    }
+
+    /**
+     * 计算查询与候选文本之间的相似度
+     * @param request 包含queries（或单条query）、candidates和可选topK的请求体
+     * @return 分数矩阵或每个查询的top-k候选
+     */
+    @PostMapping("/similarity")
+    public ResponseEntity<String> getSimilarity(@RequestBody SimilarityRequest request) {
+        List<String> queries = request.getQuery() != null ? List.of(request.getQuery()) : request.getQueries();
+        RequestTiming timing = new RequestTiming(totalLength(queries) + totalLength(request.getCandidates()));
+
+        try {
+            logger.debug("处理相似度请求，查询数量: {}, 候选数量: {}",
+                    queries == null ? 0 : queries.size(),
+                    request.getCandidates() == null ? 0 : request.getCandidates().size());
+            String json = similarityService.similarity(queries, request.getCandidates(), request.getTopK());
+            return withServerTiming(ResponseEntity.ok(), "rest-similarity", null, timing)
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .body(json);
+        } catch (NativeMemoryLimitException e) {
+            logger.warn("本地内存达到上限，拒绝相似度请求: {}", e.getMessage());
+            recordFailure("rest-similarity", null, timing);
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .body(errorJson(e.getMessage()));
+        } catch (IllegalArgumentException e) {
+            recordFailure("rest-similarity", null, timing);
+            return ResponseEntity.badRequest()
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .body(errorJson(e.getMessage()));
+        } catch (Exception e) {
+            logger.error("计算相似度时发生错误: {}", e.getMessage(), e);
+            recordFailure("rest-similarity", null, timing);
+            return ResponseEntity.internalServerError()
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .body("{\"error\": \"处理请求失败\"}");
+        }
+    }
+
+    /**
+     * 新建或更新文档并返回文档向量，只对与上一版本相比内容变化的块做推理
+     * @param request 包含id、text和可选includeChunks的请求体
+     * @return 文档向量和复用、推理的块数
+     */
+    @PostMapping("/document")
+    public ResponseEntity<String> embedDocument(@RequestBody DocumentRequest request) {
+        RequestTiming timing = new RequestTiming(request.getText() == null ? 0 : request.getText().length());
+        try {
+            DocumentEmbeddingService.Result result = documentService.embed(request.getId(), request.getText());
+            logger.debug("文档{}向量化完成，复用{}块，推理{}块", result.getId(), result.getReused(), result.getEmbedded());
+            timing.markSerializeStart();
+            String json = result.toJson(request.isIncludeChunks());
+            return withServerTiming(ResponseEntity.ok(), "rest-document", null, timing)
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .body(json);
+        } catch (NativeMemoryLimitException e) {
+            logger.warn("本地内存达到上限，拒绝文档请求: {}", e.getMessage());
+            recordFailure("rest-document", null, timing);
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .body(errorJson(e.getMessage()));
+        } catch (IllegalArgumentException e) {
+            recordFailure("rest-document", null, timing);
+            return ResponseEntity.badRequest()
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .body(errorJson(e.getMessage()));
+        } catch (Exception e) {
+            logger.error("文档向量化时发生错误: {}", e.getMessage(), e);
+            recordFailure("rest-document", null, timing);
+            return ResponseEntity.internalServerError()
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .body("{\"error\": \"处理请求失败\"}");
+        }
+    }
+
+    /**
+     * 删除文档的块向量缓存
+     * @param id 文档ID
+     */
+    @DeleteMapping("/document/{id}")
+    public ResponseEntity<Void> deleteDocument(@PathVariable("id") String id) {
+        return documentService.remove(id) ? ResponseEntity.noContent().build() : ResponseEntity.notFound().build();
+    }
+
+    private static int totalLength(List<String> texts) {
+        int length = 0;
+        if (texts != null) {
+            for (String text : texts) {
+                length += text == null ? 0 : text.length();
+            }
+        }
+        return length;
+    }
+
+    private static String errorJson(String message) {
+        return "{\"error\": \"" + JsonStrings.escape(message) + "\"}";
+    }
+
+    /**
+     * 结束计时并附加Server-Timing响应头，超过阈值的请求记入慢请求缓冲区，按采样率写结构化请求日志
+     */
+    private ResponseEntity.BodyBuilder withServerTiming(ResponseEntity.BodyBuilder builder, String kind, String text,
+                                                        RequestTiming timing) {
+        timing.finish();
+        slowRequests.record(kind, timing);
+        requestLogger.log(kind, text, timing, true);
+        if (properties.isServerTiming()) {
+            builder.header("Server-Timing", timing.toServerTiming());
+        }
+        return builder;
+    }
+
+    /**
+     * 结束计时并把失败的请求以WARN级别写入结构化请求日志
+     */
+    private void recordFailure(String kind, String text, RequestTiming timing) {
+        timing.finish();
+        requestLogger.log(kind, text, timing, false);
+    }
+
+    /**
+     * 相似度请求体
+     */
+    public static class SimilarityRequest {
+        private String query;
+        private List<String> queries;
+        private List<String> candidates;
+        private int topK;
+
+        public String getQuery() {
+            return query;
+        }
+
+        public void setQuery(String query) {
+            this.query = query;
+        }
+
+        public List<String> getQueries() {
+            return queries;
+        }
+
+        public void setQueries(List<String> queries) {
+            this.queries = queries;
+        }
+
+        public List<String> getCandidates() {
+            return candidates;
+        }
+
+        public void setCandidates(List<String> candidates) {
+            this.candidates = candidates;
+        }
+
+        public int getTopK() {
+            return topK;
+        }
+
+        public void setTopK(int topK) {
+            this.topK = topK;
+        }
+    }
+
+    /**
+     * 文档向量化请求体
+     */
+    public static class DocumentRequest {
+        private String id;
+        private String text;
+        private boolean includeChunks;
+
+        public String getId() {
+            return id;
+        }
+
+        public void setId(String id) {
+            this.id = id;
+        }
+
+        public String getText() {
+            return text;
+        }
+
+        public void setText(String text) {
+            this.text = text;
+        }
+
+        public boolean isIncludeChunks() {
+            return includeChunks;
+        }
+
+        public void setIncludeChunks(boolean includeChunks) {
+            this.includeChunks = includeChunks;
+        }
+    }
 }
\ No newline at end of file
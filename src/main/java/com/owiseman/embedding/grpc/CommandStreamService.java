@@ -0,0 +1,333 @@
+package com.owiseman.embedding.grpc;
+
+import com.owiseman.dataapi.plugins.sdk.CommandResult;
+import com.owiseman.dataapi.proto.CommandRequest;
+import com.owiseman.embedding.config.PluginProperties;
+import com.owiseman.embedding.plugin.EmbeddingPlugin;
+import com.owiseman.embedding.service.PluginRegistrationService;
+import com.owiseman.embedding.service.RequestTiming;
+import io.grpc.BindableService;
+import io.grpc.MethodDescriptor;
+import io.grpc.ServerServiceDefinition;
+import io.grpc.protobuf.ProtoUtils;
+import io.grpc.stub.ServerCallStreamObserver;
+import io.grpc.stub.ServerCalls;
+import io.grpc.stub.StreamObserver;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 主应用与插件之间的常驻双向命令流
+ * 每个主应用连接一条长连接流，多条命令以关联ID复用同一条流，响应按完成顺序返回，没有队头阻塞。
+ * 流控采用额度：插件在建流时授予主应用可同时在途的命令数，每个结果帧归还一个额度；
+ * 传输层同样只在额度内向主应用请求新帧。出站帧先进入会话队列，只在传输层可写（isReady）时发出，
+ * 主应用读得慢时结果在队列中等待，队列长度受额度限制。流上周期性发送携带容量信息的心跳帧。
+ * SDK的proto没有流式接口，这里手工定义服务，两个方向都复用CommandRequest作为帧：
+ * command为命令名或以下划线开头的控制帧类型，parameters为帧字段。一元ExecuteCommand仍作为后备保留
+ */
+@Service
+public class CommandStreamService implements BindableService {
+
+    private static final Logger logger = LoggerFactory.getLogger(CommandStreamService.class);
+
+    public static final String SERVICE_NAME = "dataapi.PluginCommandStream";
+
+    // 帧类型
+    static final String FRAME_CREDIT = "_credit";
+    static final String FRAME_RESULT = "_result";
+    static final String FRAME_HEARTBEAT = "_heartbeat";
+    static final String FRAME_CANCEL = "_cancel";
+
+    // 帧字段
+    static final String FIELD_ID = "id";
+    static final String FIELD_CREDIT = "credit";
+    static final String FIELD_TIMEOUT_MS = "timeoutMs";
+    static final String FIELD_SERVER_TIMING = "serverTiming";
+
+    public static final MethodDescriptor<CommandRequest, CommandRequest> CONNECT_METHOD =
+            MethodDescriptor.<CommandRequest, CommandRequest>newBuilder()
+                    .setType(MethodDescriptor.MethodType.BIDI_STREAMING)
+                    .setFullMethodName(MethodDescriptor.generateFullMethodName(SERVICE_NAME, "Connect"))
+                    .setRequestMarshaller(ProtoUtils.marshaller(CommandRequest.getDefaultInstance()))
+                    .setResponseMarshaller(ProtoUtils.marshaller(CommandRequest.getDefaultInstance()))
+                    .build();
+
+    private final EmbeddingPlugin embeddingPlugin;
+    private final PluginRegistrationService registrationService;
+    private final PluginProperties properties;
+
+    private final Set<Session> sessions = ConcurrentHashMap.newKeySet();
+    private ScheduledExecutorService heartbeatExecutor;
+
+    @Autowired
+    public CommandStreamService(EmbeddingPlugin embeddingPlugin, PluginRegistrationService registrationService,
+                                PluginProperties properties) {
+        this.embeddingPlugin = embeddingPlugin;
+        this.registrationService = registrationService;
+        this.properties = properties;
+    }
+
+    @PostConstruct
+    public void start() {
+        heartbeatExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "command-stream-heartbeat");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long interval = Math.max(100, properties.getStreamHeartbeatMs());
+        heartbeatExecutor.scheduleWithFixedDelay(this::sendHeartbeats, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public ServerServiceDefinition bindService() {
+        return ServerServiceDefinition.builder(SERVICE_NAME)
+                .addMethod(CONNECT_METHOD, ServerCalls.asyncBidiStreamingCall(this::connect))
+                .build();
+    }
+
+    private StreamObserver<CommandRequest> connect(StreamObserver<CommandRequest> responseObserver) {
+        ServerCallStreamObserver<CommandRequest> serverObserver =
+                (ServerCallStreamObserver<CommandRequest>) responseObserver;
+        // 手动请求入站帧，传输层不会读入超过额度的命令
+        serverObserver.disableAutoRequest();
+
+        Session session = new Session(serverObserver, Math.max(1, properties.getStreamMaxInFlight()));
+        sessions.add(session);
+        // 传输层重新可写时发出积压的帧
+        serverObserver.setOnReadyHandler(session::drain);
+        serverObserver.setOnCancelHandler(() -> {
+            logger.info("命令流已断开，放弃{}条在途命令", session.pending.size());
+            session.close();
+        });
+
+        session.send(frame(FRAME_CREDIT).putParameters(FIELD_CREDIT, String.valueOf(session.maxInFlight)));
+        serverObserver.request(session.maxInFlight);
+        logger.info("命令流已建立，额度: {}", session.maxInFlight);
+        return session;
+    }
+
+    /**
+     * 向所有打开的流发送心跳帧，携带与注册心跳相同的容量信息
+     */
+    private void sendHeartbeats() {
+        if (sessions.isEmpty()) {
+            return;
+        }
+        try {
+            String statusInfo = registrationService.buildStatusInfo();
+            for (Session session : sessions) {
+                session.sendHeartbeat(frame(FRAME_HEARTBEAT)
+                        .putParameters("statusInfo", statusInfo)
+                        .putParameters("inFlight", String.valueOf(session.inFlight.get())));
+            }
+        } catch (RuntimeException e) {
+            logger.error("发送流心跳时发生错误: {}", e.getMessage(), e);
+        }
+    }
+
+    private static CommandRequest.Builder frame(String type) {
+        return CommandRequest.newBuilder().setCommand(type);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (heartbeatExecutor != null) {
+            heartbeatExecutor.shutdownNow();
+        }
+        for (Session session : sessions) {
+            session.close();
+        }
+    }
+
+    /**
+     * 一条命令流：入站帧的处理和出站帧的串行发送
+     * 出站队列、在途命令表和流的结束状态都在会话锁内修改，结果帧入队与移出在途命令是一步完成的
+     */
+    private class Session implements StreamObserver<CommandRequest> {
+        final ServerCallStreamObserver<CommandRequest> observer;
+        final int maxInFlight;
+        final AtomicInteger inFlight = new AtomicInteger();
+        final Map<String, CompletableFuture<CommandResult>> pending = new ConcurrentHashMap<>();
+        private final ArrayDeque<CommandRequest> outbound = new ArrayDeque<>(); // 等待传输层可写的出站帧
+        volatile boolean halfClosed;
+        volatile boolean closed;
+
+        Session(ServerCallStreamObserver<CommandRequest> observer, int maxInFlight) {
+            this.observer = observer;
+            this.maxInFlight = maxInFlight;
+        }
+
+        @Override
+        public void onNext(CommandRequest request) {
+            String type = request.getCommand();
+            if (FRAME_CANCEL.equals(type)) {
+                CompletableFuture<CommandResult> future = pending.get(request.getParametersOrDefault(FIELD_ID, ""));
+                if (future != null) {
+                    future.cancel(true);
+                }
+                observer.request(1);
+                return;
+            }
+            if (FRAME_HEARTBEAT.equals(type)) {
+                send(frame(FRAME_HEARTBEAT).putParameters("statusInfo", registrationService.buildStatusInfo()));
+                observer.request(1);
+                return;
+            }
+            execute(request);
+        }
+
+        private void execute(CommandRequest request) {
+            String id = request.getParametersOrDefault(FIELD_ID, "");
+            if (id.isEmpty()) {
+                // 没有关联ID的命令无法返回结果
+                logger.warn("命令流收到缺少关联ID的命令: {}", request.getCommand());
+                observer.request(1);
+                return;
+            }
+            if (inFlight.incrementAndGet() > maxInFlight || pending.containsKey(id)) {
+                // 主应用超出额度或重复使用关联ID：直接拒绝，并归还这一帧占用的额度
+                inFlight.decrementAndGet();
+                sendResult(id, CommandResult.error(pending.containsKey(id)
+                        ? "关联ID重复: " + id : "超出命令流额度: " + maxInFlight));
+                observer.request(1);
+                return;
+            }
+
+            Map<String, String> params = new HashMap<>(request.getParametersMap());
+            params.remove(FIELD_ID);
+            String timeout = params.remove(FIELD_TIMEOUT_MS);
+            long deadlineNanos = 0;
+            if (timeout != null) {
+                try {
+                    deadlineNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(Math.max(1, Long.parseLong(timeout)));
+                } catch (NumberFormatException e) {
+                    logger.warn("命令{}的timeoutMs无效: {}", id, timeout);
+                }
+            }
+
+            RequestTiming timing = new RequestTiming();
+            CompletableFuture<CommandResult> future =
+                    embeddingPlugin.executeCommandAsync(request.getCommand(), params, deadlineNanos, timing);
+            pending.put(id, future);
+            future.whenComplete((result, error) -> {
+                // 结果帧先入队再移出在途命令，主应用在此期间半关闭时流不会在结果发出前结束
+                synchronized (this) {
+                    if (error != null) {
+                        sendResult(id, CommandResult.error(future.isCancelled() ? "命令已取消" : "执行命令时发生错误: "
+                                + (error.getCause() != null ? error.getCause().getMessage() : error.getMessage())));
+                    } else {
+                        sendResult(id, result, timing);
+                    }
+                    pending.remove(id);
+                    inFlight.decrementAndGet();
+                    if (!closed) {
+                        observer.request(1);
+                    }
+                    completeIfDrained();
+                }
+            });
+        }
+
+        private void sendResult(String id, CommandResult result) {
+            sendResult(id, result, null);
+        }
+
+        private void sendResult(String id, CommandResult result, RequestTiming timing) {
+            CommandRequest.Builder frame = frame(FRAME_RESULT)
+                    .putParameters(FIELD_ID, id)
+                    .putParameters("success", String.valueOf(result.isSuccess()))
+                    .putParameters(FIELD_CREDIT, "1");
+            if (result.getResult() != null) {
+                frame.putParameters("result", result.getResult());
+            }
+            if (result.getErrorMessage() != null) {
+                frame.putParameters("error", result.getErrorMessage());
+            }
+            if (timing != null && properties.isServerTiming()) {
+                frame.putParameters(FIELD_SERVER_TIMING, timing.toServerTiming());
+            }
+            send(frame);
+        }
+
+        /**
+         * 出站帧入队并尽量发出（StreamObserver不是线程安全的，发送在会话锁内串行进行）
+         */
+        synchronized void send(CommandRequest.Builder frame) {
+            if (closed) {
+                return;
+            }
+            outbound.add(frame.build());
+            drain();
+        }
+
+        /**
+         * 心跳帧只在没有积压时发送，主应用读得慢时不再向队列追加
+         */
+        synchronized void sendHeartbeat(CommandRequest.Builder frame) {
+            if (outbound.isEmpty()) {
+                send(frame);
+            }
+        }
+
+        /**
+         * 在传输层可写时依次发出队列中的帧，队列排空后检查半关闭的流能否结束
+         */
+        synchronized void drain() {
+            while (!closed && !outbound.isEmpty() && observer.isReady()) {
+                try {
+                    observer.onNext(outbound.poll());
+                } catch (RuntimeException e) {
+                    logger.debug("发送命令流帧失败: {}", e.getMessage());
+                }
+            }
+            completeIfDrained();
+        }
+
+        @Override
+        public void onError(Throwable t) {
+            logger.info("命令流出错: {}", t.getMessage());
+            close();
+        }
+
+        @Override
+        public void onCompleted() {
+            // 主应用不再发送新命令，等在途命令全部返回后结束流
+            halfClosed = true;
+            completeIfDrained();
+        }
+
+        private synchronized void completeIfDrained() {
+            if (halfClosed && !closed && pending.isEmpty() && outbound.isEmpty()) {
+                closed = true;
+                sessions.remove(this);
+                observer.onCompleted();
+            }
+        }
+
+        void close() {
+            synchronized (this) {
+                closed = true;
+                outbound.clear();
+            }
+            sessions.remove(this);
+            for (CompletableFuture<CommandResult> future : pending.values()) {
+                future.cancel(true);
+            }
+        }
+    }
+}
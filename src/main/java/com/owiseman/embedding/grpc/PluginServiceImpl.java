@@ -3,6 +3,9 @@ package com.owiseman.embedding.grpc;
 import com.owiseman.dataapi.proto.*;
 import com.owiseman.dataapi.plugins.sdk.CommandResult;
 import com.owiseman.embedding.plugin.EmbeddingPlugin;
+import io.grpc.Context;
+import io.grpc.Deadline;
+import io.grpc.stub.ServerCallStreamObserver;
 import io.grpc.stub.StreamObserver;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -11,6 +14,8 @@ import org.springframework.stereotype.Service;
 
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
 
 /**
  * 插件服务gRPC实现
@@ -32,41 +37,70 @@ public class PluginServiceImpl extends PluginServiceGrpc.PluginServiceImplBase {
 
     @Override
     public void executeCommand(CommandRequest request, StreamObserver<CommandResponse> responseObserver) {
-        logger.info("收到命令执行请求: {}", request.getCommand());
+        logger.debug("收到命令执行请求: {}", request.getCommand());
         
+        ServerCallStreamObserver<CommandResponse> serverObserver =
+                (ServerCallStreamObserver<CommandResponse>) responseObserver;
+
         try {
             // 转换参数
             Map<String, String> params = new HashMap<>(request.getParametersMap());
-            
-            // 执行命令
-            CommandResult result = embeddingPlugin.executeCommand(request.getCommand(), params);
-            
-            // 构建响应
-            CommandResponse response = CommandResponse.newBuilder()
-                    .setSuccess(result.isSuccess())
-                    .setResult(result.getResult() != null ? result.getResult() : "")
-                    .setErrorMessage(result.getErrorMessage() != null ? result.getErrorMessage() : "")
-                    .build();
-            
-            // 发送响应
-            responseObserver.onNext(response);
-            responseObserver.onCompleted();
-            
-            logger.info("命令执行完成: {}, 成功: {}", request.getCommand(), result.isSuccess());
+
+            // 将gRPC截止时间转换为排队截止时间
+            Deadline deadline = Context.current().getDeadline();
+            long deadlineNanos = deadline == null ? 0
+                    : System.nanoTime() + Math.max(1, deadline.timeRemaining(TimeUnit.NANOSECONDS));
+
+            // 异步执行命令，传输线程立即返回
+            CompletableFuture<CommandResult> future = embeddingPlugin.executeCommandAsync(
+                    request.getCommand(), params, deadlineNanos, ServerTimingInterceptor.currentTiming());
+
+            // 客户端断开或超时后放弃仍在排队的工作
+            serverObserver.setOnCancelHandler(() -> {
+                logger.debug("客户端已取消命令: {}", request.getCommand());
+                future.cancel(true);
+            });
+
+            future.whenComplete((result, error) -> {
+                if (serverObserver.isCancelled()) {
+                    return;
+                }
+                if (error != null) {
+                    sendCommandError(serverObserver, error);
+                    return;
+                }
+
+                // 构建响应
+                CommandResponse response = CommandResponse.newBuilder()
+                        .setSuccess(result.isSuccess())
+                        .setResult(result.getResult() != null ? result.getResult() : "")
+                        .setErrorMessage(result.getErrorMessage() != null ? result.getErrorMessage() : "")
+                        .build();
+
+                // 发送响应
+                serverObserver.onNext(response);
+                serverObserver.onCompleted();
+
+                logger.debug("命令执行完成: {}, 成功: {}", request.getCommand(), result.isSuccess());
+            });
         } catch (Exception e) {
-            logger.error("执行命令时发生错误: {}", e.getMessage(), e);
-            
-            // 发送错误响应
-            CommandResponse errorResponse = CommandResponse.newBuilder()
-                    .setSuccess(false)
-                    .setErrorMessage("执行命令时发生错误: " + e.getMessage())
-                    .build();
-            
-            responseObserver.onNext(errorResponse);
-            responseObserver.onCompleted();
+            sendCommandError(serverObserver, e);
         }
     }
 
+    private void sendCommandError(StreamObserver<CommandResponse> responseObserver, Throwable e) {
+        logger.error("执行命令时发生错误: {}", e.getMessage(), e);
+
+        // 发送错误响应
+        CommandResponse errorResponse = CommandResponse.newBuilder()
+                .setSuccess(false)
+                .setErrorMessage("执行命令时发生错误: " + e.getMessage())
+                .build();
+
+        responseObserver.onNext(errorResponse);
+        responseObserver.onCompleted();
+    }
+
     @Override
     public void heartbeat(HeartbeatRequest request, StreamObserver<HeartbeatResponse> responseObserver) {
         logger.debug("收到心跳请求");
@@ -84,7 +118,7 @@ public class PluginServiceImpl extends PluginServiceGrpc.PluginServiceImplBase {
 
     @Override
     public void getStatus(StatusRequest request, StreamObserver<StatusResponse> responseObserver) {
-        logger.info("收到状态请求: {}", request.getPluginId());
+        logger.debug("收到状态请求: {}", request.getPluginId());
         
         try {
             // 获取插件信息
@@ -104,7 +138,7 @@ public class PluginServiceImpl extends PluginServiceGrpc.PluginServiceImplBase {
             responseObserver.onNext(response);
             responseObserver.onCompleted();
             
-            logger.info("状态请求处理完成");
+            logger.debug("状态请求处理完成");
         } catch (Exception e) {
             logger.error("处理状态请求时发生错误: {}", e.getMessage(), e);
             
@@ -0,0 +1,61 @@
+package com.owiseman.embedding.grpc;
+
+import com.owiseman.embedding.config.PluginProperties;
+import com.owiseman.embedding.service.RequestTiming;
+import io.grpc.Context;
+import io.grpc.Contexts;
+import io.grpc.ForwardingServerCall;
+import io.grpc.Metadata;
+import io.grpc.ServerCall;
+import io.grpc.ServerCallHandler;
+import io.grpc.ServerInterceptor;
+import io.grpc.Status;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+/**
+ * gRPC分阶段计时拦截器
+ * 每个调用开始时创建一条请求计时放入Context，服务实现从中取出并沿调用链填写；
+ * 调用关闭时把各阶段耗时以server-timing尾部元数据返回，格式与HTTP的Server-Timing头相同
+ */
+@Component
+public class ServerTimingInterceptor implements ServerInterceptor {
+
+    public static final Metadata.Key<String> SERVER_TIMING_KEY =
+            Metadata.Key.of("server-timing", Metadata.ASCII_STRING_MARSHALLER);
+
+    private static final Context.Key<RequestTiming> TIMING_KEY = Context.key("request-timing");
+
+    private final PluginProperties properties;
+
+    @Autowired
+    public ServerTimingInterceptor(PluginProperties properties) {
+        this.properties = properties;
+    }
+
+    /**
+     * 当前调用的请求计时，不在拦截的调用中时返回新建的计时
+     */
+    public static RequestTiming currentTiming() {
+        RequestTiming timing = TIMING_KEY.get();
+        return timing != null ? timing : new RequestTiming();
+    }
+
+    @Override
+    public <ReqT, RespT> ServerCall.Listener<ReqT> interceptCall(ServerCall<ReqT, RespT> call, Metadata headers,
+                                                                 ServerCallHandler<ReqT, RespT> next) {
+        RequestTiming timing = new RequestTiming();
+        ServerCall<ReqT, RespT> timedCall = call;
+        if (properties.isServerTiming()) {
+            timedCall = new ForwardingServerCall.SimpleForwardingServerCall<ReqT, RespT>(call) {
+                @Override
+                public void close(Status status, Metadata trailers) {
+                    trailers.put(SERVER_TIMING_KEY, timing.toServerTiming());
+                    super.close(status, trailers);
+                }
+            };
+        }
+        Context context = Context.current().withValue(TIMING_KEY, timing);
+        return Contexts.interceptCall(context, timedCall, headers, next);
+    }
+}
@@ -0,0 +1,346 @@
+package com.owiseman.embedding.pipeline;
+
+import com.owiseman.embedding.service.EmbeddingBatch;
+import com.owiseman.embedding.service.EmbeddingModelService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+/**
+ * 批量向量化流水线
+ * 读取 -> 预处理 -> 批量推理 -> 写入四个阶段各占一个线程，阶段之间用有界队列连接，
+ * 慢阶段会自然地反压上游，内存占用只与队列容量和批次大小有关，与文件大小无关。
+ * 写入阶段定期落盘并提交检查点，从检查点恢复时读取阶段跳过已提交的记录，写入阶段在输出文件末尾追加。
+ * 后台任务在每批推理前经过节流，在线请求排队时暂停，队列反压随之传递到读取阶段
+ */
+public class BulkEmbeddingPipeline {
+
+    private static final Logger logger = LoggerFactory.getLogger(BulkEmbeddingPipeline.class);
+
+    // 各队列的结束标记，按引用比较
+    private static final List<String> END_OF_TEXTS = new ArrayList<>();
+    private static final VectorChunk END_OF_VECTORS = new VectorChunk(null, null);
+
+    private final EmbeddingModelService embeddingService;
+    private final JobCheckpoint checkpoint;
+    private final BulkJobProgress progress;
+    private final Path input;
+    private final Path output;
+    private final int batchSize;
+    private final long checkpointIntervalMs;
+    private final Consumer<JobCheckpoint> committer;
+    private final Throttle throttle;
+
+    private final BlockingQueue<List<String>> rawQueue;
+    private final BlockingQueue<List<String>> textQueue;
+    private final BlockingQueue<VectorChunk> vectorQueue;
+    private final AtomicReference<Throwable> failure = new AtomicReference<>();
+    private final List<Thread> stages = new CopyOnWriteArrayList<>();
+    private volatile boolean cancelled;
+
+    /**
+     * @param embeddingService 向量化服务
+     * @param checkpoint 任务参数及已提交的行数
+     * @param progress 进度计数
+     * @param queueCapacity 阶段之间的队列容量（批）
+     * @param checkpointIntervalMs 提交检查点的最小间隔
+     * @param committer 输出落盘后调用，负责持久化检查点
+     */
+    public BulkEmbeddingPipeline(EmbeddingModelService embeddingService, JobCheckpoint checkpoint,
+                                 BulkJobProgress progress, int queueCapacity, long checkpointIntervalMs,
+                                 Consumer<JobCheckpoint> committer) {
+        this(embeddingService, checkpoint, progress, queueCapacity, checkpointIntervalMs, committer, null);
+    }
+
+    /**
+     * @param throttle 每批推理前调用，为null时不节流
+     */
+    public BulkEmbeddingPipeline(EmbeddingModelService embeddingService, JobCheckpoint checkpoint,
+                                 BulkJobProgress progress, int queueCapacity, long checkpointIntervalMs,
+                                 Consumer<JobCheckpoint> committer, Throttle throttle) {
+        this.embeddingService = embeddingService;
+        this.checkpoint = checkpoint;
+        this.progress = progress;
+        this.input = Paths.get(checkpoint.getInput());
+        this.output = Paths.get(checkpoint.getOutput());
+        this.batchSize = checkpoint.getBatchSize();
+        this.checkpointIntervalMs = checkpointIntervalMs;
+        this.committer = committer;
+        this.throttle = throttle;
+        this.rawQueue = new ArrayBlockingQueue<>(queueCapacity);
+        this.textQueue = new ArrayBlockingQueue<>(queueCapacity);
+        this.vectorQueue = new ArrayBlockingQueue<>(queueCapacity);
+    }
+
+    /**
+     * 在当前线程中运行整条流水线，直到全部写入、失败或被取消
+     */
+    public void run() throws Exception {
+        long offset = checkpoint.getCommittedRows();
+        progress.start(offset);
+        if (offset > 0) {
+            logger.info("批量向量化任务{}从第{}条继续: {} -> {}", progress.getId(), offset, input, output);
+        } else {
+            logger.info("批量向量化任务{}开始: {} -> {}", progress.getId(), input, output);
+        }
+
+        startStage("reader", this::readStage);
+        startStage("preprocess", this::preprocessStage);
+        startStage("inference", this::inferenceStage);
+        startStage("writer", this::writeStage);
+        if (cancelled) {
+            // 阶段线程启动前已被取消
+            stages.forEach(Thread::interrupt);
+        }
+
+        for (Thread stage : stages) {
+            stage.join();
+        }
+
+        Throwable error = failure.get();
+        if (cancelled) {
+            progress.finish(BulkJobProgress.State.CANCELLED, null);
+            logger.info("批量向量化任务{}已取消，已写入{}条", progress.getId(), progress.getWritten());
+        } else if (error != null) {
+            progress.finish(BulkJobProgress.State.FAILED, error.getMessage());
+            throw error instanceof Exception ? (Exception) error : new RuntimeException(error);
+        } else {
+            progress.finish(BulkJobProgress.State.COMPLETED, null);
+            logger.info("批量向量化任务{}完成，共写入{}条，吞吐{}条/秒", progress.getId(),
+                    progress.getWritten(), Math.round(progress.getThroughput()));
+        }
+    }
+
+    /**
+     * 取消流水线，已写入的数据保留
+     */
+    public void cancel() {
+        cancelled = true;
+        stages.forEach(Thread::interrupt);
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    private void startStage(String name, Stage body) {
+        Thread thread = new Thread(() -> {
+            try {
+                body.run();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (Throwable e) {
+                if (failure.compareAndSet(null, e)) {
+                    logger.error("批量向量化任务{}的{}阶段失败: {}", progress.getId(), name, e.getMessage(), e);
+                    stages.forEach(Thread::interrupt);
+                }
+            }
+        }, "bulk-" + progress.getId() + "-" + name);
+        thread.setDaemon(true);
+        stages.add(thread);
+        thread.start();
+    }
+
+    private void readStage() throws Exception {
+        TextRecordReader.Format format = TextRecordReader.Format.detect(input, checkpoint.getFormat());
+        boolean finished = false;
+        try (TextRecordReader reader = new TextRecordReader(input, format, checkpoint.getField())) {
+            reader.skip(checkpoint.getCommittedRows());
+            List<String> chunk = new ArrayList<>(batchSize);
+            String text;
+            while ((text = reader.next()) != null) {
+                chunk.add(text);
+                if (chunk.size() == batchSize) {
+                    rawQueue.put(chunk);
+                    progress.addRead(chunk.size());
+                    chunk = new ArrayList<>(batchSize);
+                }
+            }
+            if (!chunk.isEmpty()) {
+                rawQueue.put(chunk);
+                progress.addRead(chunk.size());
+            }
+            rawQueue.put(END_OF_TEXTS);
+            finished = true;
+        } finally {
+            if (!finished) {
+                putQuietly(rawQueue, END_OF_TEXTS);
+            }
+        }
+    }
+
+    private void preprocessStage() throws Exception {
+        boolean finished = false;
+        try {
+            List<String> chunk;
+            while ((chunk = rawQueue.take()) != END_OF_TEXTS) {
+                List<String> normalized = new ArrayList<>(chunk.size());
+                for (String text : chunk) {
+                    normalized.add(text == null ? "" : embeddingService.preprocessText(text));
+                }
+                textQueue.put(normalized);
+            }
+            textQueue.put(END_OF_TEXTS);
+            finished = true;
+        } finally {
+            if (!finished) {
+                putQuietly(textQueue, END_OF_TEXTS);
+            }
+        }
+    }
+
+    private void inferenceStage() throws Exception {
+        boolean finished = false;
+        try {
+            List<String> chunk;
+            while ((chunk = textQueue.take()) != END_OF_TEXTS) {
+                // 空文本不进入模型，写入阶段以零向量占位，保证输出行号与输入一致
+                int[] rowMap = new int[chunk.size()];
+                List<String> texts = new ArrayList<>(chunk.size());
+                for (int i = 0; i < chunk.size(); i++) {
+                    String text = chunk.get(i);
+                    if (text.isEmpty()) {
+                        rowMap[i] = -1;
+                    } else {
+                        rowMap[i] = texts.size();
+                        texts.add(text);
+                    }
+                }
+
+                if (throttle != null && !texts.isEmpty()) {
+                    long waitStart = System.nanoTime();
+                    throttle.acquire();
+                    progress.addThrottled(System.nanoTime() - waitStart);
+                }
+                EmbeddingBatch batch = texts.isEmpty() ? null : checkpoint.isBackground()
+                        ? embeddingService.getBackgroundEmbeddingBatch(texts)
+                        : embeddingService.getPreprocessedEmbeddingBatch(texts);
+                progress.addEmbedded(texts.size());
+                progress.addEmpty(chunk.size() - texts.size());
+                try {
+                    vectorQueue.put(new VectorChunk(batch, rowMap));
+                } catch (InterruptedException e) {
+                    if (batch != null) {
+                        batch.close();
+                    }
+                    throw e;
+                }
+            }
+            vectorQueue.put(END_OF_VECTORS);
+            finished = true;
+        } finally {
+            if (!finished) {
+                putQuietly(vectorQueue, END_OF_VECTORS);
+            }
+        }
+    }
+
+    private void writeStage() throws Exception {
+        VectorFileWriter writer = null;
+        long pendingZeros = 0;
+        long lastCommit = System.currentTimeMillis();
+        if (checkpoint.getCommittedRows() > 0 && checkpoint.getDimension() > 0) {
+            // 截掉上次未提交的尾部数据后追加
+            writer = new VectorFileWriter(output, checkpoint.getDimension(), checkpoint.getCommittedRows());
+        }
+        try {
+            VectorChunk chunk;
+            while ((chunk = vectorQueue.take()) != END_OF_VECTORS) {
+                try (EmbeddingBatch batch = chunk.batch) {
+                    if (writer == null && batch != null) {
+                        writer = new VectorFileWriter(output, batch.getDimension(), 0);
+                        for (long i = 0; i < pendingZeros; i++) {
+                            writer.writeZeros();
+                        }
+                        progress.addWritten(pendingZeros);
+                    }
+                    if (writer == null) {
+                        // 尚不知道向量维度，先记下需要补的零向量
+                        pendingZeros += chunk.rowMap.length;
+                        continue;
+                    }
+                    for (int row : chunk.rowMap) {
+                        if (row < 0) {
+                            writer.writeZeros();
+                        } else {
+                            writer.write(batch.vector(row));
+                        }
+                    }
+                    progress.addWritten(chunk.rowMap.length);
+                }
+                if (System.currentTimeMillis() - lastCommit >= checkpointIntervalMs) {
+                    commit(writer);
+                    lastCommit = System.currentTimeMillis();
+                }
+            }
+            if (writer == null && pendingZeros > 0) {
+                throw new IOException("输入文件中没有可向量化的文本");
+            }
+            if (writer != null) {
+                commit(writer);
+            }
+        } finally {
+            // 被中断时释放队列中尚未写出的批次
+            VectorChunk remaining;
+            while ((remaining = vectorQueue.poll()) != null) {
+                if (remaining.batch != null) {
+                    remaining.batch.close();
+                }
+            }
+            if (writer != null) {
+                writer.close();
+            }
+        }
+    }
+
+    /**
+     * 输出落盘后再提交检查点，保证检查点记录的行数不超过文件中实际存在的行数
+     */
+    private void commit(VectorFileWriter writer) throws IOException {
+        writer.flush();
+        checkpoint.commit(writer.getRows(), writer.getDimension());
+        progress.setCommitted(writer.getRows());
+        committer.accept(checkpoint);
+    }
+
+    /**
+     * 失败或取消时发送结束标记。正常结束时下游一定还在消费，结束标记用阻塞的put发送，不能丢；
+     * 失败或取消时所有阶段都会被中断，下游可能已经退出，结束标记放不进去时直接放弃
+     */
+    private static <T> void putQuietly(BlockingQueue<T> queue, T marker) {
+        queue.offer(marker);
+    }
+
+    /**
+     * 推理节流，阻塞到可以执行下一批为止
+     */
+    @FunctionalInterface
+    public interface Throttle {
+        void acquire() throws InterruptedException;
+    }
+
+    @FunctionalInterface
+    private interface Stage {
+        void run() throws Exception;
+    }
+
+    private static class VectorChunk {
+        final EmbeddingBatch batch;
+        final int[] rowMap;
+
+        VectorChunk(EmbeddingBatch batch, int[] rowMap) {
+            this.batch = batch;
+            this.rowMap = rowMap;
+        }
+    }
+}
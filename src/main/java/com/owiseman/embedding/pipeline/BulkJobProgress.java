@@ -0,0 +1,145 @@
+package com.owiseman.embedding.pipeline;
+
+import com.owiseman.embedding.util.JsonStrings;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 批量向量化任务进度
+ * 各流水线阶段并发更新计数，status命令读取后输出
+ */
+public class BulkJobProgress {
+
+    public enum State {
+        QUEUED, RUNNING, COMPLETED, FAILED, CANCELLED
+    }
+
+    private final String id;
+    private final String input;
+    private final String output;
+    private final int priority;
+    private final AtomicLong read = new AtomicLong();
+    private final AtomicLong embedded = new AtomicLong();
+    private final AtomicLong written = new AtomicLong();
+    private final AtomicLong empty = new AtomicLong();
+    private final AtomicLong committed = new AtomicLong();
+    private final AtomicLong throttledNanos = new AtomicLong();
+    private volatile long resumedFrom;
+    private volatile State state = State.QUEUED;
+    private volatile long startTime;
+    private volatile long endTime;
+    private volatile String error;
+
+    public BulkJobProgress(String id, String input, String output, int priority) {
+        this.id = id;
+        this.input = input;
+        this.output = output;
+        this.priority = priority;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public State getState() {
+        return state;
+    }
+
+    public boolean isFinished() {
+        return state == State.COMPLETED || state == State.FAILED || state == State.CANCELLED;
+    }
+
+    public int getPriority() {
+        return priority;
+    }
+
+    /**
+     * 开始运行
+     * @param offset 从检查点恢复时已提交的行数，这部分不计入本次吞吐
+     */
+    public void start(long offset) {
+        this.resumedFrom = offset;
+        this.read.set(offset);
+        this.embedded.set(offset);
+        this.written.set(offset);
+        this.committed.set(offset);
+        this.startTime = System.currentTimeMillis();
+        this.state = State.RUNNING;
+    }
+
+    public void finish(State finalState, String errorMessage) {
+        this.endTime = System.currentTimeMillis();
+        this.error = errorMessage;
+        this.state = finalState;
+    }
+
+    public void addRead(long count) {
+        read.addAndGet(count);
+    }
+
+    public void addEmbedded(long count) {
+        embedded.addAndGet(count);
+    }
+
+    public void addWritten(long count) {
+        written.addAndGet(count);
+    }
+
+    public void addEmpty(long count) {
+        empty.addAndGet(count);
+    }
+
+    /**
+     * 记录为在线请求让路而等待的时间
+     */
+    public void addThrottled(long nanos) {
+        throttledNanos.addAndGet(nanos);
+    }
+
+    public void setCommitted(long rows) {
+        committed.set(rows);
+    }
+
+    public String getError() {
+        return error;
+    }
+
+    public long getWritten() {
+        return written.get();
+    }
+
+    /**
+     * 写入吞吐（条/秒）
+     */
+    public double getThroughput() {
+        if (startTime == 0) {
+            return 0;
+        }
+        long end = endTime > 0 ? endTime : System.currentTimeMillis();
+        long elapsed = Math.max(1, end - startTime);
+        return (written.get() - resumedFrom) * 1000.0 / elapsed;
+    }
+
+    public String toJson() {
+        StringBuilder json = new StringBuilder();
+        json.append("{");
+        json.append("\"id\": \"").append(JsonStrings.escape(id)).append("\", ");
+        json.append("\"state\": \"").append(state).append("\", ");
+        json.append("\"priority\": ").append(priority).append(", ");
+        json.append("\"input\": \"").append(JsonStrings.escape(input)).append("\", ");
+        json.append("\"output\": \"").append(JsonStrings.escape(output)).append("\", ");
+        json.append("\"read\": ").append(read.get()).append(", ");
+        json.append("\"embedded\": ").append(embedded.get()).append(", ");
+        json.append("\"written\": ").append(written.get()).append(", ");
+        json.append("\"empty\": ").append(empty.get()).append(", ");
+        json.append("\"committed\": ").append(committed.get()).append(", ");
+        json.append("\"resumedFrom\": ").append(resumedFrom).append(", ");
+        json.append("\"throttledMs\": ").append(throttledNanos.get() / 1_000_000).append(", ");
+        json.append("\"throughput\": ").append(Math.round(getThroughput() * 10) / 10.0);
+        if (error != null) {
+            json.append(", \"error\": \"").append(JsonStrings.escape(error)).append("\"");
+        }
+        json.append("}");
+        return json.toString();
+    }
+}
@@ -0,0 +1,176 @@
+package com.owiseman.embedding.pipeline;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Properties;
+
+/**
+ * 批量任务检查点
+ * 保存任务参数和已提交（已落盘）的输出行数，插件重启后据此从断点继续。
+ * 以properties文件存放，先写临时文件再原子替换，避免写到一半时崩溃留下损坏的检查点
+ */
+public class JobCheckpoint {
+
+    private String id;
+    private String input;
+    private String output;
+    private String format;
+    private String field;
+    private int batchSize;
+    private int priority;
+    private long sequence;
+    private boolean background; // 后台任务，在线请求排队时让出推理资源
+    private BulkJobProgress.State state = BulkJobProgress.State.QUEUED;
+    private long committedRows;
+    private int dimension;
+    private String error;
+
+    public JobCheckpoint() {
+    }
+
+    public JobCheckpoint(String id, String input, String output, String format, String field,
+                         int batchSize, int priority, long sequence) {
+        this.id = id;
+        this.input = input;
+        this.output = output;
+        this.format = format;
+        this.field = field;
+        this.batchSize = batchSize;
+        this.priority = priority;
+        this.sequence = sequence;
+    }
+
+    /**
+     * 从检查点文件读取
+     */
+    public static JobCheckpoint load(Path file) throws IOException {
+        Properties props = new Properties();
+        try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            props.load(reader);
+        }
+        JobCheckpoint checkpoint = new JobCheckpoint();
+        checkpoint.id = props.getProperty("id");
+        checkpoint.input = props.getProperty("input");
+        checkpoint.output = props.getProperty("output");
+        checkpoint.format = props.getProperty("format");
+        checkpoint.field = props.getProperty("field");
+        checkpoint.batchSize = Integer.parseInt(props.getProperty("batchSize", "0"));
+        checkpoint.priority = Integer.parseInt(props.getProperty("priority", "0"));
+        checkpoint.sequence = Long.parseLong(props.getProperty("sequence", "0"));
+        checkpoint.background = Boolean.parseBoolean(props.getProperty("background", "false"));
+        checkpoint.state = BulkJobProgress.State.valueOf(props.getProperty("state", "QUEUED"));
+        checkpoint.committedRows = Long.parseLong(props.getProperty("committedRows", "0"));
+        checkpoint.dimension = Integer.parseInt(props.getProperty("dimension", "0"));
+        checkpoint.error = props.getProperty("error");
+        if (checkpoint.id == null || checkpoint.input == null || checkpoint.output == null) {
+            throw new IOException("检查点文件不完整: " + file);
+        }
+        return checkpoint;
+    }
+
+    /**
+     * 写入检查点文件
+     */
+    public synchronized void save(Path file) throws IOException {
+        Properties props = new Properties();
+        props.setProperty("id", id);
+        props.setProperty("input", input);
+        props.setProperty("output", output);
+        if (format != null) {
+            props.setProperty("format", format);
+        }
+        if (field != null) {
+            props.setProperty("field", field);
+        }
+        props.setProperty("batchSize", String.valueOf(batchSize));
+        props.setProperty("priority", String.valueOf(priority));
+        props.setProperty("sequence", String.valueOf(sequence));
+        props.setProperty("background", String.valueOf(background));
+        props.setProperty("state", state.name());
+        props.setProperty("committedRows", String.valueOf(committedRows));
+        props.setProperty("dimension", String.valueOf(dimension));
+        if (error != null) {
+            props.setProperty("error", error);
+        }
+
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (Writer writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+            props.store(writer, null);
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * 记录已落盘的行数和向量维度
+     */
+    public synchronized void commit(long rows, int dimension) {
+        this.committedRows = rows;
+        this.dimension = dimension;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public String getInput() {
+        return input;
+    }
+
+    public String getOutput() {
+        return output;
+    }
+
+    public String getFormat() {
+        return format;
+    }
+
+    public String getField() {
+        return field;
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    public int getPriority() {
+        return priority;
+    }
+
+    public long getSequence() {
+        return sequence;
+    }
+
+    public boolean isBackground() {
+        return background;
+    }
+
+    public void setBackground(boolean background) {
+        this.background = background;
+    }
+
+    public synchronized BulkJobProgress.State getState() {
+        return state;
+    }
+
+    public synchronized void setState(BulkJobProgress.State state, String error) {
+        this.state = state;
+        this.error = error;
+    }
+
+    public synchronized long getCommittedRows() {
+        return committedRows;
+    }
+
+    public synchronized int getDimension() {
+        return dimension;
+    }
+
+    public synchronized String getError() {
+        return error;
+    }
+}
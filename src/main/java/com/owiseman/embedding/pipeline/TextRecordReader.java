@@ -0,0 +1,165 @@
+package com.owiseman.embedding.pipeline;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * 流式文本记录读取器
+ * 逐行读取JSONL、CSV或纯文本文件中的文本列，不把整个文件载入内存
+ */
+public class TextRecordReader implements Closeable {
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    public enum Format {
+        JSONL, CSV, TEXT;
+
+        /**
+         * 根据扩展名识别输入格式
+         */
+        public static Format detect(Path path, String configured) {
+            if (configured != null && !configured.isBlank()) {
+                return valueOf(configured.trim().toUpperCase(Locale.ROOT));
+            }
+            String fileName = path.getFileName().toString().toLowerCase(Locale.ROOT);
+            if (fileName.endsWith(".jsonl") || fileName.endsWith(".ndjson")) {
+                return JSONL;
+            }
+            if (fileName.endsWith(".csv") || fileName.endsWith(".tsv")) {
+                return CSV;
+            }
+            if (fileName.endsWith(".parquet")) {
+                throw new IllegalArgumentException("暂不支持Parquet输入，请先导出为JSONL或CSV");
+            }
+            return TEXT;
+        }
+    }
+
+    private final BufferedReader reader;
+    private final Format format;
+    private final String field;
+    private final char delimiter;
+    private int columnIndex = -1;
+    private long lineNumber;
+
+    /**
+     * @param path 输入文件
+     * @param format 输入格式
+     * @param field JSONL的字段名或CSV的列名（CSV也可以是从0开始的列序号），默认text
+     */
+    public TextRecordReader(Path path, Format format, String field) throws IOException {
+        this.reader = Files.newBufferedReader(path, StandardCharsets.UTF_8);
+        this.format = format;
+        this.field = field == null || field.isBlank() ? "text" : field;
+        this.delimiter = path.getFileName().toString().toLowerCase(Locale.ROOT).endsWith(".tsv") ? '\t' : ',';
+        if (format == Format.CSV) {
+            readCsvHeader();
+        }
+    }
+
+    /**
+     * 读取下一条记录的文本
+     * @return 文本内容（字段缺失时为空字符串），文件结束时返回null
+     */
+    public String next() throws IOException {
+        String line = reader.readLine();
+        if (line == null) {
+            return null;
+        }
+        lineNumber++;
+
+        switch (format) {
+            case JSONL:
+                if (line.isBlank()) {
+                    return "";
+                }
+                JsonNode node = OBJECT_MAPPER.readTree(line).get(field);
+                return node == null || node.isNull() ? "" : node.asText();
+            case CSV:
+                List<String> columns = parseCsvLine(line);
+                return columnIndex < columns.size() ? columns.get(columnIndex) : "";
+            default:
+                return line;
+        }
+    }
+
+    /**
+     * 跳过若干条记录，用于从断点继续
+     */
+    public void skip(long records) throws IOException {
+        for (long i = 0; i < records; i++) {
+            if (reader.readLine() == null) {
+                return;
+            }
+            lineNumber++;
+        }
+    }
+
+    public long getLineNumber() {
+        return lineNumber;
+    }
+
+    private void readCsvHeader() throws IOException {
+        if (field.chars().allMatch(Character::isDigit)) {
+            columnIndex = Integer.parseInt(field);
+            return;
+        }
+        String header = reader.readLine();
+        if (header == null) {
+            throw new IOException("CSV文件为空");
+        }
+        List<String> columns = parseCsvLine(header);
+        columnIndex = columns.indexOf(field);
+        if (columnIndex < 0) {
+            throw new IOException("CSV文件中不存在列: " + field);
+        }
+    }
+
+    /**
+     * 解析一行CSV，支持双引号包裹和转义的双引号（不支持跨行字段）
+     */
+    private List<String> parseCsvLine(String line) {
+        List<String> columns = new ArrayList<>();
+        StringBuilder current = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"') {
+                    if (i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                        current.append('"');
+                        i++;
+                    } else {
+                        quoted = false;
+                    }
+                } else {
+                    current.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == delimiter) {
+                columns.add(current.toString());
+                current.setLength(0);
+            } else {
+                current.append(c);
+            }
+        }
+        columns.add(current.toString());
+        return columns;
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+}
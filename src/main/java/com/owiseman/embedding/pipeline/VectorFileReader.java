@@ -0,0 +1,156 @@
+package com.owiseman.embedding.pipeline;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 二进制向量文件读取器
+ * 读取{@link VectorFileWriter}产生的.fvecs和.npy文件（小端float32），整个文件读入一个按行连续存放的float数组
+ */
+public final class VectorFileReader {
+
+    private static final Pattern NPY_SHAPE = Pattern.compile("'shape':\\s*\\((\\d+),\\s*(\\d+)\\s*,?\\)");
+
+    private VectorFileReader() {
+    }
+
+    /**
+     * 按行连续存放的向量矩阵
+     */
+    public static class Matrix {
+        private final float[] data;
+        private final int rows;
+        private final int dimension;
+
+        public Matrix(float[] data, int rows, int dimension) {
+            this.data = data;
+            this.rows = rows;
+            this.dimension = dimension;
+        }
+
+        public float[] getData() {
+            return data;
+        }
+
+        public int getRows() {
+            return rows;
+        }
+
+        public int getDimension() {
+            return dimension;
+        }
+    }
+
+    /**
+     * 读取整个向量文件
+     * @param path .fvecs或.npy文件
+     * @param maxRows 最多读取的行数，超出时抛出IllegalArgumentException
+     */
+    public static Matrix read(Path path, int maxRows) throws IOException {
+        VectorFileWriter.Format format = VectorFileWriter.Format.detect(path);
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            return format == VectorFileWriter.Format.NPY ? readNpy(channel, path, maxRows)
+                    : readFvecs(channel, path, maxRows);
+        }
+    }
+
+    private static Matrix readFvecs(FileChannel channel, Path path, int maxRows) throws IOException {
+        long size = channel.size();
+        if (size == 0) {
+            throw new IOException("向量文件为空: " + path);
+        }
+        ByteBuffer dimensionBuffer = ByteBuffer.allocate(Integer.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        readFully(channel, dimensionBuffer, 0);
+        int dimension = dimensionBuffer.getInt(0);
+        long rowBytes = Integer.BYTES + (long) dimension * Float.BYTES;
+        if (dimension <= 0 || size % rowBytes != 0) {
+            throw new IOException("不是有效的fvecs文件: " + path);
+        }
+        int rows = checkRows(size / rowBytes, dimension, maxRows);
+
+        float[] data = new float[rows * dimension];
+        ByteBuffer buffer = ByteBuffer.allocateDirect((int) rowBytes * 256).order(ByteOrder.LITTLE_ENDIAN);
+        long position = 0;
+        int row = 0;
+        while (row < rows) {
+            buffer.clear();
+            int batchRows = Math.min(256, rows - row);
+            buffer.limit((int) rowBytes * batchRows);
+            readFully(channel, buffer, position);
+            position += rowBytes * batchRows;
+            buffer.flip();
+            for (int i = 0; i < batchRows; i++, row++) {
+                if (buffer.getInt() != dimension) {
+                    throw new IOException("fvecs文件第" + row + "行维度不一致: " + path);
+                }
+                buffer.asFloatBuffer().get(data, row * dimension, dimension);
+                buffer.position(buffer.position() + dimension * Float.BYTES);
+            }
+        }
+        return new Matrix(data, rows, dimension);
+    }
+
+    private static Matrix readNpy(FileChannel channel, Path path, int maxRows) throws IOException {
+        ByteBuffer preamble = ByteBuffer.allocate(12).order(ByteOrder.LITTLE_ENDIAN);
+        readFully(channel, preamble, 0);
+        if (preamble.get(0) != (byte) 0x93 || preamble.get(1) != 'N') {
+            throw new IOException("不是有效的npy文件: " + path);
+        }
+        int major = preamble.get(6);
+        int headerLength = major == 1 ? Short.toUnsignedInt(preamble.getShort(8)) : preamble.getInt(8);
+        int headerStart = major == 1 ? 10 : 12;
+
+        ByteBuffer headerBuffer = ByteBuffer.allocate(headerLength);
+        readFully(channel, headerBuffer, headerStart);
+        String header = new String(headerBuffer.array(), StandardCharsets.US_ASCII);
+        if (!header.contains("'<f4'") || header.contains("'fortran_order': True")) {
+            throw new IOException("只支持C顺序的小端float32 npy文件: " + path);
+        }
+        Matcher matcher = NPY_SHAPE.matcher(header);
+        if (!matcher.find()) {
+            throw new IOException("只支持二维npy文件: " + path);
+        }
+        int dimension = Integer.parseInt(matcher.group(2));
+        int rows = checkRows(Long.parseLong(matcher.group(1)), dimension, maxRows);
+
+        float[] data = new float[rows * dimension];
+        ByteBuffer buffer = ByteBuffer.allocateDirect(1 << 20).order(ByteOrder.LITTLE_ENDIAN);
+        long position = headerStart + headerLength;
+        int offset = 0;
+        while (offset < data.length) {
+            buffer.clear();
+            buffer.limit(Math.min(buffer.capacity(), (data.length - offset) * Float.BYTES));
+            readFully(channel, buffer, position);
+            position += buffer.limit();
+            buffer.flip();
+            int count = buffer.remaining() / Float.BYTES;
+            buffer.asFloatBuffer().get(data, offset, count);
+            offset += count;
+        }
+        return new Matrix(data, rows, dimension);
+    }
+
+    private static int checkRows(long rows, int dimension, int maxRows) {
+        if (rows > maxRows || rows * dimension > Integer.MAX_VALUE - 8) {
+            throw new IllegalArgumentException("向量文件行数" + rows + "超过上限" + maxRows);
+        }
+        return (int) rows;
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position);
+            if (read < 0) {
+                throw new IOException("向量文件被截断");
+            }
+            position += read;
+        }
+    }
+}
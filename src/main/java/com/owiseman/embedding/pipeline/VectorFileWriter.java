@@ -0,0 +1,180 @@
+package com.owiseman.embedding.pipeline;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Locale;
+
+/**
+ * 二进制向量文件写入器
+ * 支持.fvecs（每条向量前写int32维度）和.npy（float32二维数组，行数在关闭时回填到文件头）两种格式，
+ * 均为小端序，可以在已有文件末尾追加以支持断点续写
+ */
+public class VectorFileWriter implements Closeable {
+
+    // npy文件头固定长度，足够容纳任意行数的shape描述，追加写入时无需移动数据
+    private static final int NPY_HEADER_LENGTH = 128;
+    private static final byte[] NPY_MAGIC = {(byte) 0x93, 'N', 'U', 'M', 'P', 'Y', 1, 0};
+
+    public enum Format {
+        FVECS, NPY;
+
+        public static Format detect(Path path) {
+            String fileName = path.getFileName().toString().toLowerCase(Locale.ROOT);
+            if (fileName.endsWith(".npy")) {
+                return NPY;
+            }
+            if (fileName.endsWith(".fvecs")) {
+                return FVECS;
+            }
+            throw new IllegalArgumentException("输出文件必须是.fvecs或.npy: " + path);
+        }
+    }
+
+    private final Path path;
+    private final Format format;
+    private final FileChannel channel;
+    private final ByteBuffer buffer;
+    private final int dimension;
+    private long rows;
+
+    /**
+     * @param path 输出文件
+     * @param dimension 向量维度
+     * @param existingRows 已写入的行数，大于0时在文件末尾追加，否则覆盖
+     */
+    public VectorFileWriter(Path path, int dimension, long existingRows) throws IOException {
+        this.path = path;
+        this.format = Format.detect(path);
+        this.dimension = dimension;
+        this.rows = existingRows;
+
+        Path parent = path.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        if (existingRows > 0) {
+            this.channel = FileChannel.open(path, StandardOpenOption.WRITE);
+            long expectedSize = dataOffset() + existingRows * rowBytes();
+            if (this.channel.size() < expectedSize) {
+                this.channel.close();
+                throw new IOException("输出文件短于已提交的" + existingRows + "行，无法续写: " + path);
+            }
+            this.channel.truncate(expectedSize);
+            this.channel.position(this.channel.size());
+        } else {
+            this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING);
+            if (format == Format.NPY) {
+                // 文件头按位置写入，不移动通道位置，数据从文件头之后开始
+                writeNpyHeader();
+                this.channel.position(NPY_HEADER_LENGTH);
+            }
+        }
+        this.buffer = ByteBuffer.allocateDirect(rowBytes() * 64).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    /**
+     * 写入一条向量
+     * @param vector 向量视图，读取时不改变其位置
+     */
+    public void write(FloatBuffer vector) throws IOException {
+        ensureRoom();
+        if (format == Format.FVECS) {
+            buffer.putInt(dimension);
+        }
+        for (int i = 0; i < dimension; i++) {
+            buffer.putFloat(vector.get(vector.position() + i));
+        }
+        rows++;
+    }
+
+    /**
+     * 写入一条全零向量，用于空文本占位以保持行号与输入对齐
+     */
+    public void writeZeros() throws IOException {
+        ensureRoom();
+        if (format == Format.FVECS) {
+            buffer.putInt(dimension);
+        }
+        for (int i = 0; i < dimension; i++) {
+            buffer.putFloat(0f);
+        }
+        rows++;
+    }
+
+    /**
+     * 将缓冲数据刷到磁盘并落盘，返回后已写入的行可作为断点
+     */
+    public void flush() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+        if (format == Format.NPY) {
+            writeNpyHeader();
+        }
+        channel.force(false);
+    }
+
+    public long getRows() {
+        return rows;
+    }
+
+    public int getDimension() {
+        return dimension;
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    private void ensureRoom() throws IOException {
+        if (buffer.remaining() < rowBytes()) {
+            flush();
+        }
+    }
+
+    private int rowBytes() {
+        return (format == Format.FVECS ? Integer.BYTES : 0) + dimension * Float.BYTES;
+    }
+
+    private int dataOffset() {
+        return format == Format.NPY ? NPY_HEADER_LENGTH : 0;
+    }
+
+    private void writeNpyHeader() throws IOException {
+        String dict = String.format(Locale.ROOT,
+                "{'descr': '<f4', 'fortran_order': False, 'shape': (%d, %d), }", rows, dimension);
+        int padding = NPY_HEADER_LENGTH - NPY_MAGIC.length - 2 - dict.length() - 1;
+        StringBuilder header = new StringBuilder(dict);
+        for (int i = 0; i < padding; i++) {
+            header.append(' ');
+        }
+        header.append('\n');
+
+        ByteBuffer headerBuffer = ByteBuffer.allocate(NPY_HEADER_LENGTH).order(ByteOrder.LITTLE_ENDIAN);
+        headerBuffer.put(NPY_MAGIC);
+        headerBuffer.putShort((short) (NPY_HEADER_LENGTH - NPY_MAGIC.length - 2));
+        headerBuffer.put(header.toString().getBytes(StandardCharsets.US_ASCII));
+        headerBuffer.flip();
+        channel.write(headerBuffer, 0);
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            flush();
+        } finally {
+            channel.close();
+        }
+    }
+}
@@ -1,19 +1,54 @@
 package com.owiseman.embedding.plugin;
 
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.owiseman.dataapi.plugins.sdk.CommandResult;
 import com.owiseman.dataapi.plugins.sdk.PluginConfig;
 import com.owiseman.dataapi.plugins.sdk.PluginInfo;
 import com.owiseman.dataapi.plugins.sdk.PluginSDK;
+import com.owiseman.embedding.config.PluginProperties;
+import com.owiseman.embedding.pipeline.BulkJobProgress;
+import com.owiseman.embedding.service.BulkEmbeddingService;
+import com.owiseman.embedding.service.ClusteringService;
+import com.owiseman.embedding.service.DirectoryIngestionService;
+import com.owiseman.embedding.service.DocumentEmbeddingService;
+import com.owiseman.embedding.service.EmbeddingBatch;
 import com.owiseman.embedding.service.EmbeddingModelService;
+import com.owiseman.embedding.service.InferenceScheduler;
+import com.owiseman.embedding.service.ModelCatalog;
+import com.owiseman.embedding.service.NativeMemoryTracker;
+import com.owiseman.embedding.service.ProfilingService;
+import com.owiseman.embedding.service.RequestCoalescer;
+import com.owiseman.embedding.service.RequestLogger;
+import com.owiseman.embedding.service.RequestTiming;
+import com.owiseman.embedding.service.SimilarityService;
+import com.owiseman.embedding.service.SlowRequestLog;
+import com.owiseman.embedding.util.JsonStrings;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
 import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.Arrays;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * 嵌入向量插件实现
@@ -25,17 +60,75 @@ public class EmbeddingPlugin implements PluginSDK {
     private static final Logger logger = LoggerFactory.getLogger(EmbeddingPlugin.class);
     private static final String PLUGIN_TYPE = "embedding";
     private static final String COMMAND_GET_EMBEDDING = "getEmbedding";
+    private static final String COMMAND_GET_EMBEDDINGS = "getEmbeddings";
     private static final String COMMAND_STATUS = "status";
+    private static final String COMMAND_EMBED_FILE = "embedFile";
+    private static final String COMMAND_JOB_STATUS = "jobStatus";
+    private static final String COMMAND_JOB_CANCEL = "jobCancel";
+    private static final String COMMAND_SIMILARITY = "similarity";
+    private static final String COMMAND_CLUSTER = "cluster";
+    private static final String COMMAND_SLOW_REQUESTS = "slowRequests";
+    private static final String COMMAND_PROFILE = "profile";
+    private static final String COMMAND_MODELS = "models";
+    private static final String COMMAND_EMBED_DOCUMENT = "embedDocument";
+    private static final String COMMAND_DELETE_DOCUMENT = "deleteDocument";
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
     
     private final EmbeddingModelService embeddingService;
+    private final NativeMemoryTracker memoryTracker;
+    private final InferenceScheduler scheduler;
+    private final BulkEmbeddingService bulkService;
+    private final RequestCoalescer coalescer;
+    private final SimilarityService similarityService;
+    private final ClusteringService clusteringService;
+    private final SlowRequestLog slowRequests;
+    private final RequestLogger requestLogger;
+    private final ProfilingService profilingService;
+    private final ModelCatalog modelCatalog;
+    private final DocumentEmbeddingService documentService;
+    private final DirectoryIngestionService ingestionService;
+    private final ExecutorService commandExecutor;
+    private final Path commandFileDir; // 文件类命令允许访问的目录
     private PluginInfo pluginInfo;
     private PluginConfig pluginConfig;
     private AtomicBoolean running = new AtomicBoolean(false);
     private long startTime;
 
     @Autowired
-    public EmbeddingPlugin(EmbeddingModelService embeddingService) {
+    public EmbeddingPlugin(EmbeddingModelService embeddingService, NativeMemoryTracker memoryTracker,
+                           InferenceScheduler scheduler, BulkEmbeddingService bulkService,
+                           RequestCoalescer coalescer,
+                           SimilarityService similarityService, ClusteringService clusteringService,
+                           SlowRequestLog slowRequests, RequestLogger requestLogger,
+                           ProfilingService profilingService, ModelCatalog modelCatalog,
+                           DocumentEmbeddingService documentService,
+                           DirectoryIngestionService ingestionService, PluginProperties properties) {
         this.embeddingService = embeddingService;
+        this.memoryTracker = memoryTracker;
+        this.scheduler = scheduler;
+        this.bulkService = bulkService;
+        this.coalescer = coalescer;
+        this.similarityService = similarityService;
+        this.clusteringService = clusteringService;
+        this.slowRequests = slowRequests;
+        this.requestLogger = requestLogger;
+        this.profilingService = profilingService;
+        this.modelCatalog = modelCatalog;
+        this.documentService = documentService;
+        this.ingestionService = ingestionService;
+        this.commandFileDir = Paths.get(properties.getCommandFileDir()).toAbsolutePath().normalize();
+        // 非单条向量化的命令在有界线程池中执行，不占用调用方线程，积压超过上限时直接拒绝
+        AtomicInteger threadCount = new AtomicInteger();
+        int commandThreads = Math.max(1, properties.getCommandThreads());
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(commandThreads, commandThreads,
+                60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(Math.max(1, properties.getCommandQueueCapacity())),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "plugin-command-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        executor.allowCoreThreadTimeOut(true);
+        this.commandExecutor = executor;
         this.pluginInfo = new PluginInfo();
         this.pluginInfo.setStatus("初始化中");
     }
@@ -50,7 +143,18 @@ public class EmbeddingPlugin implements PluginSDK {
         
         // 添加支持的命令
         this.pluginInfo.addSupportedCommand(COMMAND_GET_EMBEDDING);
+        this.pluginInfo.addSupportedCommand(COMMAND_GET_EMBEDDINGS);
         this.pluginInfo.addSupportedCommand(COMMAND_STATUS);
+        this.pluginInfo.addSupportedCommand(COMMAND_EMBED_FILE);
+        this.pluginInfo.addSupportedCommand(COMMAND_JOB_STATUS);
+        this.pluginInfo.addSupportedCommand(COMMAND_JOB_CANCEL);
+        this.pluginInfo.addSupportedCommand(COMMAND_SIMILARITY);
+        this.pluginInfo.addSupportedCommand(COMMAND_CLUSTER);
+        this.pluginInfo.addSupportedCommand(COMMAND_SLOW_REQUESTS);
+        this.pluginInfo.addSupportedCommand(COMMAND_PROFILE);
+        this.pluginInfo.addSupportedCommand(COMMAND_MODELS);
+        this.pluginInfo.addSupportedCommand(COMMAND_EMBED_DOCUMENT);
+        this.pluginInfo.addSupportedCommand(COMMAND_DELETE_DOCUMENT);
     }
 
     @Override
@@ -121,26 +225,168 @@ public class EmbeddingPlugin implements PluginSDK {
 
     @Override
     public CommandResult executeCommand(String command, Map<String, String> params) {
+        return executeCommand(command, params, new RequestTiming());
+    }
+
+    /**
+     * 执行命令并记录耗时，超过阈值的请求记入慢请求缓冲区，按采样率写结构化请求日志
+     * @param timing 请求计时，命令结束时调用finish()
+     */
+    public CommandResult executeCommand(String command, Map<String, String> params, RequestTiming timing) {
+        return executeCommand(command, params, timing, 0);
+    }
+
+    /**
+     * 执行命令，耗时可能很长的命令（如聚类）在超过截止时间后中止
+     * @param deadlineNanos 以System.nanoTime()计的截止时间，0表示不限
+     */
+    private CommandResult executeCommand(String command, Map<String, String> params, RequestTiming timing,
+                                         long deadlineNanos) {
         if (!running.get() && !COMMAND_STATUS.equals(command)) {
             return CommandResult.error("插件未运行");
         }
         
-        logger.info("执行命令: {}, 参数: {}", command, params);
-        
+        // 参数中可能包含完整的输入文本，只在DEBUG级别输出参数名
+        logger.debug("执行命令: {}, 参数: {}", command, params.keySet());
+
+        CommandResult result;
         try {
-            switch (command) {
-                case COMMAND_GET_EMBEDDING:
-                    return handleGetEmbeddingCommand(params);
-                case COMMAND_STATUS:
-                    return handleStatusCommand();
-                default:
-                    logger.warn("不支持的命令: {}", command);
-                    return CommandResult.error("不支持的命令: " + command);
-            }
+            result = dispatch(command, params, timing, deadlineNanos);
         } catch (Exception e) {
             logger.error("执行命令失败: {}", e.getMessage(), e);
-            return CommandResult.error("执行命令失败: " + e.getMessage());
+            result = CommandResult.error("执行命令失败: " + e.getMessage());
+        }
+        timing.finish();
+        recordRequest(command, params, timing, result.isSuccess());
+        return result;
+    }
+
+    private CommandResult dispatch(String command, Map<String, String> params, RequestTiming timing,
+                                   long deadlineNanos) throws Exception {
+        switch (command) {
+            case COMMAND_GET_EMBEDDING:
+                return handleGetEmbeddingCommand(params, timing);
+            case COMMAND_GET_EMBEDDINGS:
+                return handleGetEmbeddingsCommand(params, timing);
+            case COMMAND_STATUS:
+                return handleStatusCommand();
+            case COMMAND_EMBED_FILE:
+                return handleEmbedFileCommand(params);
+            case COMMAND_JOB_STATUS:
+                return handleJobStatusCommand(params);
+            case COMMAND_JOB_CANCEL:
+                return handleJobCancelCommand(params);
+            case COMMAND_SIMILARITY:
+                return handleSimilarityCommand(params);
+            case COMMAND_CLUSTER:
+                return handleClusterCommand(params, deadlineNanos);
+            case COMMAND_SLOW_REQUESTS:
+                return handleSlowRequestsCommand(params);
+            case COMMAND_PROFILE:
+                return handleProfileCommand(params);
+            case COMMAND_MODELS:
+                return handleModelsCommand(params);
+            case COMMAND_EMBED_DOCUMENT:
+                return handleEmbedDocumentCommand(params);
+            case COMMAND_DELETE_DOCUMENT:
+                return handleDeleteDocumentCommand(params);
+            default:
+                logger.warn("不支持的命令: {}", command);
+                return CommandResult.error("不支持的命令: " + command);
+        }
+    }
+
+    /**
+     * 请求结束时记入慢请求缓冲区和结构化请求日志
+     */
+    private void recordRequest(String command, Map<String, String> params, RequestTiming timing, boolean success) {
+        slowRequests.record(command, timing);
+        requestLogger.log(command, params.get("text"), timing, success);
+    }
+
+    /**
+     * 异步执行命令
+     * 单条向量化交给推理调度器，其余命令在命令线程池中执行，调用方线程立即返回
+     * @param command 命令名
+     * @param params 命令参数
+     * @param deadlineNanos 以System.nanoTime()计的截止时间，0表示不限
+     * @return 命令结果；取消该Future会同时放弃仍在排队的推理请求
+     */
+    public CompletableFuture<CommandResult> executeCommandAsync(String command, Map<String, String> params,
+                                                                long deadlineNanos) {
+        return executeCommandAsync(command, params, deadlineNanos, new RequestTiming());
+    }
+
+    /**
+     * 异步执行命令，并在请求经过各阶段时填写计时
+     * @param timing 请求计时，结果就绪时已调用finish()，可直接用于输出Server-Timing
+     */
+    public CompletableFuture<CommandResult> executeCommandAsync(String command, Map<String, String> params,
+                                                                long deadlineNanos, RequestTiming timing) {
+        if (!COMMAND_GET_EMBEDDING.equals(command) || !running.get()) {
+            try {
+                // 调用方在出队前取消时，CompletableFuture不会再执行该任务
+                return CompletableFuture.supplyAsync(() -> {
+                    timing.markDequeued();
+                    if (deadlineNanos != 0 && System.nanoTime() - deadlineNanos >= 0) {
+                        timing.finish();
+                        recordRequest(command, params, timing, false);
+                        return CommandResult.error("请求排队超时: 命令在队列中等待超过截止时间");
+                    }
+                    return executeCommand(command, params, timing, deadlineNanos);
+                }, commandExecutor);
+            } catch (RejectedExecutionException e) {
+                return CompletableFuture.completedFuture(CommandResult.error(
+                        commandExecutor.isShutdown() ? "插件正在关闭" : "命令队列已满，请稍后重试"));
+            }
+        }
+
+        logger.debug("执行命令: {}, 参数: {}", command, params.keySet());
+
+        String text = params.get("text");
+        if (text == null || text.trim().isEmpty()) {
+            return CompletableFuture.completedFuture(CommandResult.error("参数'text'不能为空"));
+        }
+
+        timing.setTextLength(text.length());
+        CompletableFuture<float[]> inference;
+        try {
+            inference = scheduler.submit(text, deadlineNanos, timing);
+        } catch (RejectedExecutionException e) {
+            return CompletableFuture.completedFuture(CommandResult.error(e.getMessage()));
+        }
+
+        CompletableFuture<CommandResult> result = inference.handle((embedding, error) -> {
+            CommandResult commandResult = toCommandResult(embedding, error, timing);
+            timing.finish();
+            recordRequest(command, params, timing, commandResult.isSuccess());
+            return commandResult;
+        });
+        // 调用方取消时同步取消排队中的推理请求
+        result.whenComplete((value, error) -> {
+            if (result.isCancelled()) {
+                inference.cancel(true);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * 将单条推理结果转换为命令结果，序列化耗时计入计时
+     */
+    private static CommandResult toCommandResult(float[] embedding, Throwable error, RequestTiming timing) {
+        if (error == null) {
+            timing.markSerializeStart();
+            return CommandResult.success(toEmbeddingJson(embedding));
+        }
+        Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+        if (cause instanceof TimeoutException) {
+            // 等待合并推理结果超时时，orTimeout产生的异常不带消息
+            return CommandResult.error("请求排队超时: "
+                    + (cause.getMessage() != null ? cause.getMessage() : "等待推理结果超过截止时间"));
         }
+        logger.error("生成嵌入向量失败: {}", cause.getMessage(), cause);
+        return CommandResult.error("生成嵌入向量失败: " + cause.getMessage());
     }
 
     /**
@@ -148,7 +394,7 @@ public class EmbeddingPlugin implements PluginSDK {
      * @param params 命令参数
      * @return 命令执行结果
      */
-    private CommandResult handleGetEmbeddingCommand(Map<String, String> params) {
+    private CommandResult handleGetEmbeddingCommand(Map<String, String> params, RequestTiming timing) {
         String text = params.get("text");
         
         if (text == null || text.trim().isEmpty()) {
@@ -157,31 +403,264 @@ public class EmbeddingPlugin implements PluginSDK {
         
         try {
             // 获取嵌入向量
-            float[] embedding = embeddingService.getEmbedding(text);
+            timing.setTextLength(text.length());
+            float[] embedding = embeddingService.getEmbedding(text, timing);
             
-            // 将向量转换为JSON字符串
-            StringBuilder jsonBuilder = new StringBuilder();
-            jsonBuilder.append("{\"");
-            jsonBuilder.append("embedding\": [");
-            
-            for (int i = 0; i < embedding.length; i++) {
-                jsonBuilder.append(embedding[i]);
-                if (i < embedding.length - 1) {
-                    jsonBuilder.append(", ");
-                }
-            }
-            
-            jsonBuilder.append("], \"");
-            jsonBuilder.append("dimensions\": ").append(embedding.length);
-            jsonBuilder.append("}");
-            
-            return CommandResult.success(jsonBuilder.toString());
+            timing.markSerializeStart();
+            return CommandResult.success(toEmbeddingJson(embedding));
         } catch (Exception e) {
             logger.error("生成嵌入向量失败: {}", e.getMessage(), e);
             return CommandResult.error("生成嵌入向量失败: " + e.getMessage());
         }
     }
 
+    /**
+     * 将向量转换为JSON字符串
+     */
+    private static String toEmbeddingJson(float[] embedding) {
+        StringBuilder jsonBuilder = new StringBuilder();
+        jsonBuilder.append("{\"");
+        jsonBuilder.append("embedding\": [");
+
+        for (int i = 0; i < embedding.length; i++) {
+            jsonBuilder.append(embedding[i]);
+            if (i < embedding.length - 1) {
+                jsonBuilder.append(", ");
+            }
+        }
+
+        jsonBuilder.append("], \"");
+        jsonBuilder.append("dimensions\": ").append(embedding.length);
+        jsonBuilder.append("}");
+        return jsonBuilder.toString();
+    }
+
+    /**
+     * 处理批量获取嵌入向量的命令
+     * 参数texts为JSON字符串数组，结果直接从批量缓冲区序列化
+     * @param params 命令参数
+     * @return 命令执行结果
+     */
+    private CommandResult handleGetEmbeddingsCommand(Map<String, String> params, RequestTiming timing) {
+        String textsJson = params.get("texts");
+
+        if (textsJson == null || textsJson.trim().isEmpty()) {
+            return CommandResult.error("参数'texts'不能为空");
+        }
+
+        List<String> texts;
+        try {
+            texts = OBJECT_MAPPER.readValue(textsJson, new TypeReference<List<String>>() {});
+        } catch (Exception e) {
+            return CommandResult.error("参数'texts'必须是JSON字符串数组: " + e.getMessage());
+        }
+
+        int textLength = 0;
+        for (String text : texts) {
+            textLength += text == null ? 0 : text.length();
+        }
+        timing.setTextLength(textLength);
+        try (EmbeddingBatch batch = embeddingService.getEmbeddingBatch(texts)) {
+            timing.recordBatch(batch);
+            timing.markSerializeStart();
+            return CommandResult.success(batch.toJson());
+        } catch (Exception e) {
+            logger.error("生成批量嵌入向量失败: {}", e.getMessage(), e);
+            return CommandResult.error("生成批量嵌入向量失败: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 处理相似度命令
+     * 参数queries（JSON字符串数组）或query（单条文本）为查询，candidates为JSON字符串数组，
+     * topK大于0时只返回每个查询分数最高的候选下标，否则返回完整的分数矩阵
+     * @param params 命令参数
+     * @return 命令执行结果
+     */
+    private CommandResult handleSimilarityCommand(Map<String, String> params) {
+        List<String> queries;
+        List<String> candidates;
+        try {
+            String query = params.get("query");
+            queries = query != null
+                    ? List.of(query)
+                    : OBJECT_MAPPER.readValue(params.getOrDefault("queries", "[]"), new TypeReference<List<String>>() {});
+            candidates = OBJECT_MAPPER.readValue(params.getOrDefault("candidates", "[]"),
+                    new TypeReference<List<String>>() {});
+        } catch (Exception e) {
+            return CommandResult.error("参数'queries'和'candidates'必须是JSON字符串数组: " + e.getMessage());
+        }
+
+        try {
+            int topK = Integer.parseInt(params.getOrDefault("topK", "0"));
+            return CommandResult.success(similarityService.similarity(queries, candidates, topK));
+        } catch (NumberFormatException e) {
+            return CommandResult.error("参数格式错误: " + e.getMessage());
+        } catch (IllegalArgumentException e) {
+            return CommandResult.error(e.getMessage());
+        } catch (Exception e) {
+            logger.error("计算相似度失败: {}", e.getMessage(), e);
+            return CommandResult.error("计算相似度失败: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 处理文档增量向量化命令
+     * 参数id为文档ID，text为文档全文；只对与上一版本相比内容变化的块做推理，
+     * includeChunks为true时返回各块的结束位置
+     * @param params 命令参数
+     * @return 命令执行结果，包含文档向量和复用、推理的块数
+     */
+    private CommandResult handleEmbedDocumentCommand(Map<String, String> params) {
+        try {
+            DocumentEmbeddingService.Result result = documentService.embed(params.get("id"), params.get("text"));
+            return CommandResult.success(result.toJson(Boolean.parseBoolean(params.get("includeChunks"))));
+        } catch (IllegalArgumentException e) {
+            return CommandResult.error(e.getMessage());
+        } catch (Exception e) {
+            logger.error("文档向量化失败: {}", e.getMessage(), e);
+            return CommandResult.error("文档向量化失败: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 删除文档的块向量缓存
+     * @param params 命令参数，id为文档ID
+     * @return 命令执行结果
+     */
+    private CommandResult handleDeleteDocumentCommand(Map<String, String> params) {
+        String id = params.get("id");
+        if (id == null || id.isBlank()) {
+            return CommandResult.error("参数'id'不能为空");
+        }
+        return CommandResult.success("{\"id\": \"" + JsonStrings.escape(id) + "\", \"deleted\": " + documentService.remove(id) + "}");
+    }
+
+    /**
+     * 处理聚类命令
+     * 参数texts（JSON字符串数组）或input（.fvecs/.npy向量文件）为数据，k为簇数，
+     * duplicateThreshold大于0时按余弦相似度分组近重复，超过命令截止时间时中止
+     * @param params 命令参数
+     * @param deadlineNanos 以System.nanoTime()计的截止时间，0表示不限
+     * @return 命令执行结果
+     */
+    private CommandResult handleClusterCommand(Map<String, String> params, long deadlineNanos) {
+        ClusteringService.Request request = new ClusteringService.Request();
+        try {
+            String textsJson = params.get("texts");
+            if (textsJson != null && !textsJson.trim().isEmpty()) {
+                request.setTexts(OBJECT_MAPPER.readValue(textsJson, new TypeReference<List<String>>() {}));
+            }
+        } catch (Exception e) {
+            return CommandResult.error("参数'texts'必须是JSON字符串数组: " + e.getMessage());
+        }
+
+        try {
+            String input = params.get("input");
+            if (input != null && !input.isBlank()) {
+                request.setInput(resolveCommandFile("input", input).toString());
+            }
+            request.setK(Integer.parseInt(params.getOrDefault("k", "0")));
+            request.setMaxIterations(Integer.parseInt(params.getOrDefault("maxIterations", "50")));
+            request.setAlgorithm(params.getOrDefault("algorithm", ClusteringService.ALGORITHM_KMEANS));
+            request.setMiniBatchSize(Integer.parseInt(params.getOrDefault("miniBatchSize", "1024")));
+            request.setSeed(Long.parseLong(params.getOrDefault("seed", "42")));
+            request.setDuplicateThreshold(Float.parseFloat(params.getOrDefault("duplicateThreshold", "0")));
+            request.setIncludeCentroids(Boolean.parseBoolean(params.getOrDefault("includeCentroids", "true")));
+            request.setDeadlineNanos(deadlineNanos);
+            return CommandResult.success(clusteringService.cluster(request));
+        } catch (NumberFormatException e) {
+            return CommandResult.error("参数格式错误: " + e.getMessage());
+        } catch (CancellationException e) {
+            logger.warn("聚类中止: {}", e.getMessage());
+            return CommandResult.error(e.getMessage());
+        } catch (IllegalArgumentException e) {
+            return CommandResult.error(e.getMessage());
+        } catch (Exception e) {
+            logger.error("聚类失败: {}", e.getMessage(), e);
+            return CommandResult.error("聚类失败: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 导出慢请求缓冲区
+     * 参数clear为true时导出后清空
+     * @param params 命令参数
+     * @return 命令执行结果
+     */
+    private CommandResult handleSlowRequestsCommand(Map<String, String> params) {
+        String json = slowRequests.toJson();
+        if (Boolean.parseBoolean(params.get("clear"))) {
+            slowRequests.clear();
+        }
+        return CommandResult.success(json);
+    }
+
+    /**
+     * 处理JFR录制命令
+     * 参数action为start、stop或status（默认）；start时settings为JFR预置配置名（默认profile），
+     * durationSeconds大于0时到时自动停止并写出文件
+     * @param params 命令参数
+     * @return 命令执行结果
+     */
+    private CommandResult handleProfileCommand(Map<String, String> params) {
+        String action = params.getOrDefault("action", "status");
+        try {
+            switch (action) {
+                case "start":
+                    return CommandResult.success(profilingService.start(params.getOrDefault("settings", "profile"),
+                            Long.parseLong(params.getOrDefault("durationSeconds", "0"))));
+                case "stop":
+                    return CommandResult.success(profilingService.stop());
+                case "status":
+                    return CommandResult.success(profilingService.status());
+                default:
+                    return CommandResult.error("参数'action'必须是start、stop或status");
+            }
+        } catch (NumberFormatException e) {
+            return CommandResult.error("参数'durationSeconds'必须是整数");
+        } catch (IllegalStateException e) {
+            return CommandResult.error(e.getMessage());
+        } catch (Exception e) {
+            logger.error("JFR录制命令失败: {}", e.getMessage(), e);
+            return CommandResult.error("JFR录制命令失败: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 处理本地模型目录命令
+     * 参数action为list（默认）、scan（重新扫描）或verify（计算name指定模型的SHA-256并与清单比对，完成后返回）
+     * @param params 命令参数
+     * @return 命令执行结果
+     */
+    private CommandResult handleModelsCommand(Map<String, String> params) {
+        String action = params.getOrDefault("action", "list");
+        try {
+            switch (action) {
+                case "list":
+                    return CommandResult.success(modelCatalog.toJson());
+                case "scan":
+                    modelCatalog.scan();
+                    return CommandResult.success(modelCatalog.toJson());
+                case "verify":
+                    String name = params.get("name");
+                    ModelCatalog.Entry entry = name == null ? null : modelCatalog.find(name);
+                    if (entry == null) {
+                        return CommandResult.error("本地模型目录中没有模型: " + name);
+                    }
+                    String checksum = modelCatalog.verify(entry).get();
+                    String sha256 = entry.getActualSha256() == null ? "null" : "\"" + entry.getActualSha256() + "\"";
+                    return CommandResult.success("{\"name\": \"" + JsonStrings.escape(entry.getName())
+                            + "\", \"checksum\": \"" + JsonStrings.escape(checksum) + "\", \"sha256\": " + sha256 + "}");
+                default:
+                    return CommandResult.error("参数'action'必须是list、scan或verify");
+            }
+        } catch (Exception e) {
+            logger.error("模型目录命令失败: {}", e.getMessage(), e);
+            return CommandResult.error("模型目录命令失败: " + e.getMessage());
+        }
+    }
+
     /**
      * 处理状态查询命令
      * @return 命令执行结果
@@ -192,13 +671,119 @@ public class EmbeddingPlugin implements PluginSDK {
         status.append("\"status\": \"").append(pluginInfo.getStatus()).append("\", ");
         status.append("\"running\": ").append(running.get()).append(", ");
         status.append("\"uptime\": ").append(getUptime()).append(", ");
-        status.append("\"name\": \"").append(pluginInfo.getName()).append("\", ");
-        status.append("\"version\": \"").append(pluginInfo.getVersion()).append("\"");
+        status.append("\"name\": \"").append(JsonStrings.escape(pluginInfo.getName())).append("\", ");
+        status.append("\"version\": \"").append(JsonStrings.escape(pluginInfo.getVersion())).append("\", ");
+        status.append("\"threading\": ").append(embeddingService.getThreadingJson()).append(", ");
+        status.append("\"models\": ").append(modelCatalog.toJson()).append(", ");
+        status.append("\"scheduler\": ").append(scheduler.toJson()).append(", ");
+        status.append("\"dedupe\": ").append(embeddingService.getDedupeJson()).append(", ");
+        status.append("\"coalescing\": ").append(coalescer.toJson()).append(", ");
+        status.append("\"documents\": ").append(documentService.toJson()).append(", ");
+        status.append("\"tokenizer\": ").append(embeddingService.getTokenizerJson()).append(", ");
+        status.append("\"nativeMemory\": ").append(memoryTracker.toJson()).append(", ");
+        status.append("\"jobs\": ").append(bulkService.toJson()).append(", ");
+        status.append("\"ingest\": ").append(ingestionService.toJson());
         status.append("}");
         
         return CommandResult.success(status.toString());
     }
 
+    /**
+     * 处理批量文件向量化命令
+     * 参数input为输入文件（JSONL、CSV或纯文本），output为输出文件（.fvecs或.npy），
+     * 可选format、field（默认text）、batchSize和priority（默认0，大的先执行）；
+     * 任务在后台执行，进度通过jobStatus命令查询
+     * @param params 命令参数
+     * @return 命令执行结果，包含任务ID
+     */
+    private CommandResult handleEmbedFileCommand(Map<String, String> params) {
+        String input = params.get("input");
+        String output = params.get("output");
+        if (input == null || input.trim().isEmpty() || output == null || output.trim().isEmpty()) {
+            return CommandResult.error("参数'input'和'output'不能为空");
+        }
+
+        try {
+            int batchSize = Integer.parseInt(params.getOrDefault("batchSize", "0"));
+            int priority = Integer.parseInt(params.getOrDefault("priority", "0"));
+            String jobId = bulkService.submit(resolveCommandFile("input", input).toString(),
+                    resolveCommandFile("output", output).toString(), params.get("format"), params.get("field"),
+                    batchSize, priority);
+            return CommandResult.success("{\"jobId\": \"" + JsonStrings.escape(jobId) + "\"}");
+        } catch (NumberFormatException e) {
+            return CommandResult.error("参数格式错误: " + e.getMessage());
+        } catch (IllegalArgumentException e) {
+            return CommandResult.error(e.getMessage());
+        } catch (Exception e) {
+            logger.error("提交批量向量化任务失败: {}", e.getMessage(), e);
+            return CommandResult.error("提交批量向量化任务失败: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 把命令参数中的文件路径解析到plugin.commandFileDir下
+     * 远程调用方只能读写该目录内的文件：越出目录的相对路径、目录外的绝对路径，
+     * 以及经符号链接指向目录外的路径都被拒绝
+     * @param name 参数名，用于错误信息
+     * @param value 参数值
+     */
+    private Path resolveCommandFile(String name, String value) throws IOException {
+        return resolveCommandFile(commandFileDir, name, value);
+    }
+
+    static Path resolveCommandFile(Path commandFileDir, String name, String value) throws IOException {
+        Path path = commandFileDir.resolve(value.trim()).normalize();
+        if (!path.startsWith(commandFileDir)) {
+            throw new IllegalArgumentException("参数'" + name + "'必须位于目录" + commandFileDir + "内");
+        }
+        if (!Files.isDirectory(commandFileDir)) {
+            throw new IllegalArgumentException("文件目录" + commandFileDir + "不存在");
+        }
+        // 已存在的最近一级路径按真实路径再检查一次，防止目录内的符号链接指向外部
+        Path existing = path;
+        while (!Files.exists(existing)) {
+            existing = existing.getParent();
+        }
+        if (!existing.toRealPath().startsWith(commandFileDir.toRealPath())) {
+            throw new IllegalArgumentException("参数'" + name + "'必须位于目录" + commandFileDir + "内");
+        }
+        return path;
+    }
+
+    /**
+     * 处理任务状态查询命令
+     * 指定jobId时返回该任务的进度，否则返回全部任务
+     * @param params 命令参数
+     * @return 命令执行结果
+     */
+    private CommandResult handleJobStatusCommand(Map<String, String> params) {
+        String jobId = params.get("jobId");
+        if (jobId == null || jobId.trim().isEmpty()) {
+            return CommandResult.success(bulkService.toJson());
+        }
+        BulkJobProgress progress = bulkService.getJob(jobId);
+        if (progress == null) {
+            return CommandResult.error("任务不存在: " + jobId);
+        }
+        return CommandResult.success(progress.toJson());
+    }
+
+    /**
+     * 处理任务取消命令
+     * @param params 命令参数，jobId为任务ID
+     * @return 命令执行结果
+     */
+    private CommandResult handleJobCancelCommand(Map<String, String> params) {
+        String jobId = params.get("jobId");
+        if (jobId == null || jobId.trim().isEmpty()) {
+            return CommandResult.error("参数'jobId'不能为空");
+        }
+        if (!bulkService.cancel(jobId)) {
+            return CommandResult.error("任务不存在或已结束: " + jobId);
+        }
+        return CommandResult.success("{\"jobId\": \"" + JsonStrings.escape(jobId) + "\", \"cancelled\": true}");
+    }
+
     @Override
     public String handleMessage(String message) {
         // 简单的消息处理，可以根据需要扩展
@@ -206,6 +791,11 @@ public class EmbeddingPlugin implements PluginSDK {
         return "消息已接收";
     }
     
+    @PreDestroy
+    public void shutdown() {
+        commandExecutor.shutdownNow();
+    }
+
     /**
      * 检查插件是否正在运行
      */
@@ -0,0 +1,243 @@
+package com.owiseman.embedding.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntSupplier;
+
+/**
+ * 自适应批处理控制器
+ * 按固定间隔，根据观测到的请求到达率、队列积压和各批次大小下实测的批次执行时间，重新选择最大批次数和等待窗口：
+ * 取能跟上需求（到达率加上在一个延迟目标内消化积压所需的速率）的最小批次——低峰时逐条执行、不等待，
+ * 高峰时增大批次换取吞吐。跟不上时排队延迟会无限增长，因此吞吐优先于单批延迟：
+ * 能跟上的批次中优先选预测延迟（两倍执行时间，可能排在前一批之后）在预算内的，剩余预算用作凑批的等待窗口。
+ * 实测p99超过目标时收紧预算，远低于目标时逐步放宽，以修正模型误差。
+ * 没有样本的批次大小按相邻样本线性外推（偏保守），每次最多把批次上限翻倍，逐步探索更大的批次
+ */
+class AdaptiveBatchController {
+
+    private static final Logger logger = LoggerFactory.getLogger(AdaptiveBatchController.class);
+
+    private static final double FORWARD_ALPHA = 0.2; // 执行时间的指数滑动平均系数
+    private static final double RATE_ALPHA = 0.5; // 到达率的指数滑动平均系数
+    private static final double THROUGHPUT_HEADROOM = 1.1; // 处理能力至少比到达率高10%才视为跟得上
+    private static final double MIN_BUDGET_SCALE = 0.3;
+
+    private final int maxBatchSizeCeiling;
+    private final long maxWaitCeilingNanos;
+    private final long sloNanos;
+    private final long intervalNanos;
+    private final int servers; // 并行执行批次的调度线程总数
+    private final LatencyWindow latency;
+    private final IntSupplier queueDepth;
+
+    private final double[] executionNanos; // 下标为批次大小，0表示尚无样本
+    private final LongAdder arrivals = new LongAdder();
+    private final AtomicBoolean adjusting = new AtomicBoolean();
+
+    private volatile int batchLimit;
+    private volatile long waitNanos;
+    private volatile long lastAdjustNanos = System.nanoTime();
+
+    // 以下字段只在adjust()中写入，状态查询时允许读到上一轮的值
+    private long lastArrivals;
+    private volatile double arrivalRate; // 每秒，所有调度线程合计
+    private volatile int backlog;
+    private volatile double budgetScale = 1.0;
+    private volatile double observedP99Millis;
+    private volatile long adjustments;
+    private volatile String reason = "尚无批次样本，使用配置的上限";
+
+    /**
+     * @param maxBatchSize 批次上限，控制器只会在此范围内调整
+     * @param maxWaitMs 等待窗口上限（毫秒）
+     * @param sloP99Ms p99延迟目标（毫秒）
+     * @param intervalMs 调整间隔（毫秒）
+     * @param servers 并行执行批次的调度线程总数
+     * @param latency 端到端延迟窗口，用于反馈修正
+     * @param queueDepth 当前排队的请求数
+     */
+    AdaptiveBatchController(int maxBatchSize, long maxWaitMs, long sloP99Ms, long intervalMs, int servers,
+                            LatencyWindow latency, IntSupplier queueDepth) {
+        this.maxBatchSizeCeiling = Math.max(1, maxBatchSize);
+        this.maxWaitCeilingNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, maxWaitMs));
+        this.sloNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(1, sloP99Ms));
+        this.intervalNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(10, intervalMs));
+        this.servers = Math.max(1, servers);
+        this.latency = latency;
+        this.queueDepth = queueDepth;
+        this.executionNanos = new double[maxBatchSizeCeiling + 1];
+        this.batchLimit = maxBatchSizeCeiling;
+        this.waitNanos = maxWaitCeilingNanos;
+    }
+
+    int getBatchLimit() {
+        return batchLimit;
+    }
+
+    long getWaitNanos() {
+        return waitNanos;
+    }
+
+    /**
+     * 请求入队时调用
+     */
+    void onArrival() {
+        arrivals.increment();
+    }
+
+    /**
+     * 批次执行完成时调用，到达调整间隔时由当前线程完成一次调整
+     */
+    void onBatch(int size, long nanos) {
+        if (size <= 0 || size > maxBatchSizeCeiling) {
+            return;
+        }
+        synchronized (executionNanos) {
+            double previous = executionNanos[size];
+            executionNanos[size] = previous == 0 ? nanos : previous + FORWARD_ALPHA * (nanos - previous);
+        }
+        long now = System.nanoTime();
+        if (now - lastAdjustNanos >= intervalNanos && adjusting.compareAndSet(false, true)) {
+            try {
+                adjust(now);
+            } finally {
+                adjusting.set(false);
+            }
+        }
+    }
+
+    private void adjust(long now) {
+        double elapsedSeconds = (now - lastAdjustNanos) / 1e9;
+        long total = arrivals.sum();
+        double rate = (total - lastArrivals) / elapsedSeconds;
+        lastArrivals = total;
+        lastAdjustNanos = now;
+        arrivalRate = adjustments == 0 ? rate : arrivalRate + RATE_ALPHA * (rate - arrivalRate);
+
+        // 反馈：实测p99超标时收紧预算，明显低于目标时逐步放宽
+        observedP99Millis = latency.percentileMillis(99);
+        double observedNanos = observedP99Millis * 1e6;
+        if (observedNanos > sloNanos) {
+            budgetScale = Math.max(MIN_BUDGET_SCALE, budgetScale * 0.85);
+        } else if (observedNanos < sloNanos * 0.8) {
+            budgetScale = Math.min(1.0, budgetScale * 1.05);
+        }
+        double budget = sloNanos * budgetScale;
+        backlog = queueDepth.getAsInt();
+        double demand = (arrivalRate + backlog * 1e9 / sloNanos) / servers;
+        double perServerRate = arrivalRate / servers;
+
+        int upper = Math.min(maxBatchSizeCeiling, Math.max(1, batchLimit * 2));
+        int chosen = -1;
+        int smallestKeepingUp = -1;
+        for (int size = 1; size <= upper && chosen < 0; size++) {
+            double execution = estimateExecutionNanos(size);
+            if (execution < 0) {
+                return;
+            }
+            if (size * 1e9 / execution < demand * THROUGHPUT_HEADROOM) {
+                continue;
+            }
+            if (smallestKeepingUp < 0) {
+                smallestKeepingUp = size;
+            }
+            if (2 * execution <= budget) {
+                chosen = size;
+            }
+        }
+
+        String decision;
+        if (chosen > 0) {
+            decision = "能跟上需求且在延迟预算内的最小批次";
+        } else if (smallestKeepingUp > 0) {
+            chosen = smallestKeepingUp;
+            decision = "延迟预算内的批次跟不上需求，取能跟上的最小批次";
+        } else {
+            chosen = upper;
+            decision = "当前探索范围内的批次都跟不上需求，增大批次";
+        }
+        double execution = estimateExecutionNanos(chosen);
+        double fill = chosen == 1 ? 0 : perServerRate <= 0 ? Double.MAX_VALUE : (chosen - 1) / perServerRate * 1e9;
+        long chosenWait = (long) Math.max(0, Math.min(Math.min(fill, budget - 2 * execution), maxWaitCeilingNanos));
+
+        if (chosen != batchLimit) {
+            logger.debug("自适应批处理: 批次上限 {} -> {}, 等待{}μs, 到达率{}/s, p99 {}ms, 原因: {}",
+                    batchLimit, chosen, chosenWait / 1000, String.format(Locale.ROOT, "%.1f", arrivalRate),
+                    String.format(Locale.ROOT, "%.2f", observedP99Millis), decision);
+        }
+        batchLimit = chosen;
+        waitNanos = chosenWait;
+        reason = decision;
+        adjustments++;
+    }
+
+    /**
+     * 估算指定批次大小的执行时间
+     * 有样本时直接使用；介于两个有样本的大小之间时线性插值；只有更小的样本时按批次大小等比外推，
+     * 只有更大的样本时取该样本的值
+     * @return 纳秒，完全没有样本时返回-1
+     */
+    double estimateExecutionNanos(int size) {
+        synchronized (executionNanos) {
+            if (executionNanos[size] > 0) {
+                return executionNanos[size];
+            }
+            int lower = size - 1;
+            while (lower > 0 && executionNanos[lower] == 0) {
+                lower--;
+            }
+            int upper = size + 1;
+            while (upper <= maxBatchSizeCeiling && executionNanos[upper] == 0) {
+                upper++;
+            }
+            boolean hasUpper = upper <= maxBatchSizeCeiling;
+            if (lower > 0 && hasUpper) {
+                return executionNanos[lower]
+                        + (executionNanos[upper] - executionNanos[lower]) * (size - lower) / (upper - lower);
+            }
+            if (lower > 0) {
+                return executionNanos[lower] * size / lower;
+            }
+            return hasUpper ? executionNanos[upper] : -1;
+        }
+    }
+
+    /**
+     * 以JSON形式输出控制器的当前决策和依据
+     */
+    String toJson() {
+        StringBuilder json = new StringBuilder(256);
+        json.append("{");
+        json.append("\"sloP99Ms\": ").append(TimeUnit.NANOSECONDS.toMillis(sloNanos)).append(", ");
+        json.append("\"maxBatchSize\": ").append(batchLimit).append(", ");
+        json.append("\"maxWaitMs\": ").append(String.format(Locale.ROOT, "%.3f", waitNanos / 1e6)).append(", ");
+        json.append("\"arrivalRate\": ").append(String.format(Locale.ROOT, "%.1f", arrivalRate)).append(", ");
+        json.append("\"backlog\": ").append(backlog).append(", ");
+        json.append("\"observedP99Ms\": ").append(String.format(Locale.ROOT, "%.2f", observedP99Millis)).append(", ");
+        json.append("\"budgetScale\": ").append(String.format(Locale.ROOT, "%.3f", budgetScale)).append(", ");
+        json.append("\"adjustments\": ").append(adjustments).append(", ");
+        json.append("\"reason\": \"").append(reason).append("\", ");
+        json.append("\"executionMs\": {");
+        boolean first = true;
+        synchronized (executionNanos) {
+            for (int size = 1; size <= maxBatchSizeCeiling; size++) {
+                if (executionNanos[size] > 0) {
+                    if (!first) {
+                        json.append(", ");
+                    }
+                    first = false;
+                    json.append('"').append(size).append("\": ")
+                            .append(String.format(Locale.ROOT, "%.3f", executionNanos[size] / 1e6));
+                }
+            }
+        }
+        json.append("}");
+        json.append("}");
+        return json.toString();
+    }
+}
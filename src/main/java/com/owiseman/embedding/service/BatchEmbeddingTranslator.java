@@ -0,0 +1,115 @@
+package com.owiseman.embedding.service;
+
+import ai.djl.ndarray.NDArray;
+import ai.djl.ndarray.NDList;
+import ai.djl.ndarray.NDManager;
+import ai.djl.ndarray.types.DataType;
+import ai.djl.translate.NoBatchifyTranslator;
+import ai.djl.translate.TranslatorContext;
+
+import java.nio.ByteBuffer;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 批量文本嵌入转换器
+ * 一次前向计算处理整批文本，输出直接拷贝到池化缓冲区中，不为每条结果创建float数组
+ */
+public class BatchEmbeddingTranslator implements NoBatchifyTranslator<List<String>, EmbeddingBatch> {
+
+    private final VectorBufferPool bufferPool;
+    private final ModelBackend backend;
+    private final TextTokenizer tokenizer;
+    private final String modelId; // JFR事件中的模型ID
+    private final boolean torchScriptMask; // TorchScript模型是否同时接收attention_mask
+
+    public BatchEmbeddingTranslator(VectorBufferPool bufferPool, ModelBackend backend) {
+        this(bufferPool, backend, TextTokenizer.charCodes(), "", false);
+    }
+
+    public BatchEmbeddingTranslator(VectorBufferPool bufferPool, ModelBackend backend, TextTokenizer tokenizer,
+                                    String modelId, boolean torchScriptMask) {
+        this.bufferPool = bufferPool;
+        this.backend = backend;
+        this.tokenizer = tokenizer;
+        this.modelId = modelId;
+        this.torchScriptMask = torchScriptMask;
+    }
+
+    @Override
+    public NDList processInput(TranslatorContext ctx, List<String> inputs) {
+        // 整批一次分词，未命中缓存的文本由原生分词器并行处理，按批内最长序列补齐
+        StageClock clock = StageClock.current();
+        InferenceEvents.Tokenize tokenizeEvent = new InferenceEvents.Tokenize();
+        tokenizeEvent.begin();
+        clock.tokenizeStart = System.nanoTime();
+        TextTokenizer.Batch tokens = tokenizer.encode(inputs);
+        clock.tokenCounts = tokens.getLengths();
+        clock.tokenizeEnd = System.nanoTime();
+        clock.forwardEvent = InferenceEvents.afterTokenize(tokenizeEvent, modelId, tokens);
+        return encode(ctx.getNDManager(), tokens, backend, torchScriptMask);
+    }
+
+    /**
+     * 按后端要求组织模型输入
+     * TorchScript按位置接收索引张量，导出时带attention_mask参数的模型随后接收掩码；
+     * TensorFlow/ONNX导出的BERT按名称接收input_ids、attention_mask和token_type_ids
+     * @param torchScriptMask TorchScript模型是否接收attention_mask，不接收时调用方需保证批内不含补齐
+     */
+    static NDList encode(NDManager manager, TextTokenizer.Batch tokens, ModelBackend backend,
+                         boolean torchScriptMask) {
+        NDArray inputIds = manager.create(tokens.getIds());
+        if (!backend.usesNamedInputs()) {
+            if (torchScriptMask) {
+                return new NDList(inputIds, manager.create(tokens.getAttentionMask()));
+            }
+            return new NDList(inputIds);
+        }
+
+        inputIds.setName("input_ids");
+        NDArray mask = manager.create(tokens.getAttentionMask());
+        mask.setName("attention_mask");
+        NDArray tokenTypes = manager.create(tokens.getTypeIds());
+        tokenTypes.setName("token_type_ids");
+        return new NDList(inputIds, mask, tokenTypes);
+    }
+
+    @Override
+    public EmbeddingBatch processOutput(TranslatorContext ctx, NDList list) {
+        StageClock clock = StageClock.current();
+        clock.forwardEnd = System.nanoTime();
+        InferenceEvents.afterForward(clock.forwardEvent);
+        clock.forwardEvent = null;
+        // 输出及其派生张量挂到本批次的子管理器上，拷贝完成后立即显式释放
+        NDManager batchManager = ctx.getNDManager().newSubManager();
+        List<NDArray> held = Collections.emptyList();
+        try {
+            list.attach(batchManager);
+            NDArray embedding = list.get(0);
+
+            // 输出为[batch, seq, hidden]时取每行第一个向量（CLS token的表示）
+            if (embedding.getShape().dimension() > 2) {
+                embedding = embedding.get(":, 0, :");
+            }
+            if (embedding.getDataType() != DataType.FLOAT32) {
+                embedding = embedding.toType(DataType.FLOAT32, false);
+            }
+
+            int size = (int) embedding.getShape().get(0);
+            int dimension = (int) embedding.getShape().get(1);
+
+            // 上报本批次子管理器实际持有的本地张量
+            held = NativeMemoryTracker.record(batchManager);
+
+            // 唯一的一次拷贝：本地张量 -> 池化缓冲区
+            ByteBuffer buffer = bufferPool.acquire(size * dimension * Float.BYTES);
+            buffer.put(embedding.toByteBuffer());
+            buffer.flip();
+
+            return new EmbeddingBatch(bufferPool, buffer, size, dimension);
+        } finally {
+            batchManager.close();
+            NativeMemoryTracker.checkReleased(held);
+        }
+    }
+}
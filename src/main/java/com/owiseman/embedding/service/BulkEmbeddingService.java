@@ -0,0 +1,362 @@
+package com.owiseman.embedding.service;
+
+import com.owiseman.embedding.config.PluginProperties;
+import com.owiseman.embedding.pipeline.BulkEmbeddingPipeline;
+import com.owiseman.embedding.pipeline.BulkJobProgress;
+import com.owiseman.embedding.pipeline.JobCheckpoint;
+import com.owiseman.embedding.pipeline.TextRecordReader;
+import com.owiseman.embedding.pipeline.VectorFileWriter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 批量向量化任务管理
+ * 提交后立即返回任务ID，任务按优先级排队（数值大的先执行，同优先级先提交先执行），
+ * 同时运行的任务数受plugin.maxConcurrentJobs限制。
+ * 每个任务的参数和已落盘的行数保存在检查点目录中，插件重启后未完成的任务从断点继续。
+ * 后台任务（如目录监听导入）只在推理调度队列为空、且没有在线文本正在推理时执行下一批，不与在线请求争抢预测器
+ */
+@Service
+public class BulkEmbeddingService {
+
+    private static final Logger logger = LoggerFactory.getLogger(BulkEmbeddingService.class);
+    private static final String CHECKPOINT_SUFFIX = ".properties";
+
+    private final EmbeddingModelService embeddingService;
+    private final InferenceScheduler scheduler;
+    private final PluginProperties properties;
+    private final Map<String, Job> jobs = new ConcurrentHashMap<>();
+    private final PriorityBlockingQueue<Job> pending = new PriorityBlockingQueue<>(16,
+            Comparator.comparingInt((Job job) -> -job.checkpoint.getPriority())
+                    .thenComparingLong(job -> job.checkpoint.getSequence()));
+    private final AtomicLong sequence = new AtomicLong();
+    private final List<Thread> runners = new ArrayList<>();
+    private Path checkpointDir;
+    private volatile boolean shuttingDown;
+
+    @Autowired
+    public BulkEmbeddingService(EmbeddingModelService embeddingService, InferenceScheduler scheduler,
+                                PluginProperties properties) {
+        this.embeddingService = embeddingService;
+        this.scheduler = scheduler;
+        this.properties = properties;
+    }
+
+    @PostConstruct
+    public void start() throws IOException {
+        checkpointDir = Paths.get(properties.getJobCheckpointDir());
+        Files.createDirectories(checkpointDir);
+        recoverJobs();
+
+        int concurrency = Math.max(1, properties.getMaxConcurrentJobs());
+        for (int i = 0; i < concurrency; i++) {
+            Thread runner = new Thread(this::runLoop, "bulk-job-runner-" + i);
+            runner.setDaemon(true);
+            runner.start();
+            runners.add(runner);
+        }
+        logger.info("批量任务管理已启动，检查点目录: {}, 并发任务数: {}", checkpointDir.toAbsolutePath(), concurrency);
+    }
+
+    /**
+     * 提交一个批量向量化任务
+     * @param input 输入文件（JSONL、CSV或纯文本）
+     * @param output 输出文件（.fvecs或.npy）
+     * @param format 输入格式，为空时按扩展名识别
+     * @param field 文本字段名或列名
+     * @param batchSize 每批文本数，不大于0时使用配置值
+     * @param priority 优先级，数值大的先执行
+     * @return 任务ID
+     */
+    public String submit(String input, String output, String format, String field, int batchSize, int priority)
+            throws IOException {
+        return submit(input, output, format, field, batchSize, priority, false, 0, 0);
+    }
+
+    /**
+     * 提交一个批量向量化任务，可作为后台任务或在已有输出之后续写
+     * @param background 为true时只在在线请求不排队时推理
+     * @param resumeRows 输出文件中已有的行数，大于0时跳过输入中对应的记录并在输出末尾追加
+     * @param dimension 已有输出的向量维度，resumeRows大于0时必须指定
+     * @return 任务ID
+     */
+    public String submit(String input, String output, String format, String field, int batchSize, int priority,
+                         boolean background, long resumeRows, int dimension) throws IOException {
+        Path inputPath = Paths.get(input);
+        if (!Files.isRegularFile(inputPath)) {
+            throw new IllegalArgumentException("输入文件不存在: " + input);
+        }
+        TextRecordReader.Format.detect(inputPath, format);
+        VectorFileWriter.Format.detect(Paths.get(output));
+
+        String id = UUID.randomUUID().toString().substring(0, 8);
+        JobCheckpoint checkpoint = new JobCheckpoint(id, input, output, format, field,
+                batchSize > 0 ? batchSize : properties.getBulkBatchSize(), priority, sequence.incrementAndGet());
+        checkpoint.setBackground(background);
+        if (resumeRows > 0) {
+            checkpoint.commit(resumeRows, dimension);
+        }
+        Job job = new Job(checkpoint);
+        save(checkpoint);
+        jobs.put(id, job);
+        pending.add(job);
+        logger.info("已提交批量向量化任务{}，优先级: {}", id, priority);
+        return id;
+    }
+
+    /**
+     * 取消任务，排队中的任务直接移出队列，运行中的任务在当前批次后停止，已落盘的输出保留
+     * @return 任务不存在或已结束时返回false
+     */
+    public boolean cancel(String id) {
+        Job job = jobs.get(id);
+        if (job == null) {
+            return false;
+        }
+        synchronized (job) {
+            if (job.progress.isFinished()) {
+                return false;
+            }
+            job.cancelRequested = true;
+            if (pending.remove(job)) {
+                job.progress.finish(BulkJobProgress.State.CANCELLED, null);
+                job.checkpoint.setState(BulkJobProgress.State.CANCELLED, null);
+                save(job.checkpoint);
+            } else if (job.pipeline != null) {
+                job.pipeline.cancel();
+            }
+        }
+        logger.info("已取消批量向量化任务{}", id);
+        return true;
+    }
+
+    public BulkJobProgress getJob(String id) {
+        Job job = jobs.get(id);
+        return job == null ? null : job.progress;
+    }
+
+    /**
+     * 获取任务的检查点，包含已提交的行数和向量维度
+     * @return 任务不存在时为null
+     */
+    public JobCheckpoint getCheckpoint(String id) {
+        Job job = jobs.get(id);
+        return job == null ? null : job.checkpoint;
+    }
+
+    /**
+     * 以JSON形式输出任务计数和全部任务的进度
+     */
+    public String toJson() {
+        List<Job> snapshot = new ArrayList<>(jobs.values());
+        snapshot.sort(Comparator.comparingLong(job -> job.checkpoint.getSequence()));
+
+        int[] counts = new int[BulkJobProgress.State.values().length];
+        StringBuilder list = new StringBuilder();
+        for (Job job : snapshot) {
+            counts[job.progress.getState().ordinal()]++;
+            if (list.length() > 0) {
+                list.append(", ");
+            }
+            list.append(job.progress.toJson());
+        }
+
+        StringBuilder json = new StringBuilder();
+        json.append("{");
+        for (BulkJobProgress.State state : BulkJobProgress.State.values()) {
+            json.append("\"").append(state.name().toLowerCase(Locale.ROOT)).append("\": ")
+                    .append(counts[state.ordinal()]).append(", ");
+        }
+        json.append("\"jobs\": [").append(list).append("]");
+        json.append("}");
+        return json.toString();
+    }
+
+    private void runLoop() {
+        while (!shuttingDown) {
+            Job job;
+            try {
+                job = pending.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            runJob(job);
+        }
+    }
+
+    private void runJob(Job job) {
+        JobCheckpoint checkpoint = job.checkpoint;
+        BulkEmbeddingPipeline pipeline = new BulkEmbeddingPipeline(embeddingService, checkpoint, job.progress,
+                Math.max(1, properties.getBulkQueueCapacity()), properties.getJobCheckpointIntervalMs(), this::save,
+                checkpoint.isBackground() ? this::awaitOnlineIdle : null);
+        synchronized (job) {
+            if (job.cancelRequested) {
+                job.progress.finish(BulkJobProgress.State.CANCELLED, null);
+                checkpoint.setState(BulkJobProgress.State.CANCELLED, null);
+                save(checkpoint);
+                return;
+            }
+            job.pipeline = pipeline;
+        }
+        checkpoint.setState(BulkJobProgress.State.RUNNING, null);
+        save(checkpoint);
+
+        try {
+            pipeline.run();
+        } catch (Exception e) {
+            logger.error("批量向量化任务{}失败: {}", checkpoint.getId(), e.getMessage(), e);
+        }
+
+        if (shuttingDown && !job.cancelRequested) {
+            // 因插件停止而中断，保留为排队状态，重启后从最后一个检查点继续
+            checkpoint.setState(BulkJobProgress.State.QUEUED, null);
+        } else {
+            checkpoint.setState(job.progress.getState(), job.progress.getError());
+        }
+        save(checkpoint);
+        pruneHistory();
+    }
+
+    /**
+     * 后台任务的节流：推理调度队列中有请求等待，或调度器批次、REST、相似度、聚类、文档、前台批量任务等
+     * 在线路径有文本正在推理时暂停，每隔plugin.backgroundBackoffMs重新检查；
+     * 一个后台批次执行期间到达的在线请求最多等待这一批完成
+     */
+    void awaitOnlineIdle() throws InterruptedException {
+        long backoffMs = Math.max(1, properties.getBackgroundBackoffMs());
+        while (scheduler.getQueueDepth() > 0 || embeddingService.getOnlineActiveTexts() > 0) {
+            Thread.sleep(backoffMs);
+        }
+    }
+
+    /**
+     * 读取检查点目录，恢复未完成的任务并保留已结束任务的记录
+     */
+    private void recoverJobs() throws IOException {
+        List<JobCheckpoint> checkpoints = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(checkpointDir, "*" + CHECKPOINT_SUFFIX)) {
+            for (Path file : files) {
+                try {
+                    checkpoints.add(JobCheckpoint.load(file));
+                } catch (Exception e) {
+                    logger.warn("忽略无法读取的检查点文件{}: {}", file, e.getMessage());
+                }
+            }
+        }
+        checkpoints.sort(Comparator.comparingLong(JobCheckpoint::getSequence));
+
+        int resumed = 0;
+        for (JobCheckpoint checkpoint : checkpoints) {
+            sequence.accumulateAndGet(checkpoint.getSequence(), Math::max);
+            Job job = new Job(checkpoint);
+            jobs.put(checkpoint.getId(), job);
+
+            BulkJobProgress.State state = checkpoint.getState();
+            if (state == BulkJobProgress.State.QUEUED || state == BulkJobProgress.State.RUNNING) {
+                pending.add(job);
+                resumed++;
+            } else {
+                job.progress.start(checkpoint.getCommittedRows());
+                job.progress.finish(state, checkpoint.getError());
+            }
+        }
+        if (resumed > 0) {
+            logger.info("从检查点恢复了{}个未完成的批量向量化任务", resumed);
+        }
+        pruneHistory();
+    }
+
+    /**
+     * 已结束的任务只保留最近的plugin.jobHistoryLimit个
+     */
+    private void pruneHistory() {
+        List<Job> finished = new ArrayList<>();
+        for (Job job : jobs.values()) {
+            if (job.progress.isFinished()) {
+                finished.add(job);
+            }
+        }
+        int excess = finished.size() - Math.max(0, properties.getJobHistoryLimit());
+        if (excess <= 0) {
+            return;
+        }
+        finished.sort(Comparator.comparingLong(job -> job.checkpoint.getSequence()));
+        for (int i = 0; i < excess; i++) {
+            String id = finished.get(i).checkpoint.getId();
+            jobs.remove(id);
+            try {
+                Files.deleteIfExists(checkpointFile(id));
+            } catch (IOException e) {
+                logger.warn("删除检查点文件失败: {}", e.getMessage());
+            }
+        }
+    }
+
+    private void save(JobCheckpoint checkpoint) {
+        try {
+            checkpoint.save(checkpointFile(checkpoint.getId()));
+        } catch (IOException e) {
+            // 检查点写入失败不影响任务本身，只是重启后会从更早的位置继续
+            logger.warn("保存任务{}的检查点失败: {}", checkpoint.getId(), e.getMessage());
+        }
+    }
+
+    private Path checkpointFile(String id) {
+        return checkpointDir.resolve(id + CHECKPOINT_SUFFIX);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        shuttingDown = true;
+        for (Job job : jobs.values()) {
+            BulkEmbeddingPipeline pipeline = job.pipeline;
+            if (pipeline != null && !job.progress.isFinished()) {
+                pipeline.cancel();
+            }
+        }
+        for (Thread runner : runners) {
+            runner.interrupt();
+        }
+        for (Thread runner : runners) {
+            try {
+                runner.join(5000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private static class Job {
+        final JobCheckpoint checkpoint;
+        final BulkJobProgress progress;
+        volatile BulkEmbeddingPipeline pipeline;
+        volatile boolean cancelRequested;
+
+        Job(JobCheckpoint checkpoint) {
+            this.checkpoint = checkpoint;
+            this.progress = new BulkJobProgress(checkpoint.getId(), checkpoint.getInput(),
+                    checkpoint.getOutput(), checkpoint.getPriority());
+        }
+    }
+}
@@ -0,0 +1,294 @@
+package com.owiseman.embedding.service;
+
+import com.owiseman.embedding.config.PluginProperties;
+import com.owiseman.embedding.pipeline.VectorFileReader;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * 聚类服务
+ * 对一批文本（先向量化）或已有的向量文件做k-means聚类和近重复分组，在插件内完成，无需导出向量。
+ * 计算在独立的ForkJoin池上进行，不占用推理线程和公共池
+ */
+@Service
+public class ClusteringService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ClusteringService.class);
+
+    public static final String ALGORITHM_KMEANS = "kmeans";
+    public static final String ALGORITHM_MINI_BATCH = "minibatch";
+
+    private final EmbeddingModelService embeddingService;
+    private final PluginProperties properties;
+    private ForkJoinPool pool;
+
+    @Autowired
+    public ClusteringService(EmbeddingModelService embeddingService, PluginProperties properties) {
+        this.embeddingService = embeddingService;
+        this.properties = properties;
+    }
+
+    @PostConstruct
+    public void start() {
+        int threads = properties.getClusteringThreads() > 0
+                ? properties.getClusteringThreads() : Runtime.getRuntime().availableProcessors();
+        pool = new ForkJoinPool(threads);
+        logger.info("聚类线程池已创建，并行度: {}", threads);
+    }
+
+    /**
+     * 聚类参数
+     */
+    public static class Request {
+        private List<String> texts;
+        private String input;
+        private int k;
+        private int maxIterations = 50;
+        private String algorithm = ALGORITHM_KMEANS;
+        private int miniBatchSize = 1024;
+        private long seed = 42;
+        private float duplicateThreshold;
+        private boolean includeCentroids = true;
+        private long deadlineNanos; // 以System.nanoTime()计的截止时间，0表示不限
+
+        public List<String> getTexts() {
+            return texts;
+        }
+
+        public void setTexts(List<String> texts) {
+            this.texts = texts;
+        }
+
+        public String getInput() {
+            return input;
+        }
+
+        public void setInput(String input) {
+            this.input = input;
+        }
+
+        public int getK() {
+            return k;
+        }
+
+        public void setK(int k) {
+            this.k = k;
+        }
+
+        public int getMaxIterations() {
+            return maxIterations;
+        }
+
+        public void setMaxIterations(int maxIterations) {
+            this.maxIterations = maxIterations;
+        }
+
+        public String getAlgorithm() {
+            return algorithm;
+        }
+
+        public void setAlgorithm(String algorithm) {
+            this.algorithm = algorithm;
+        }
+
+        public int getMiniBatchSize() {
+            return miniBatchSize;
+        }
+
+        public void setMiniBatchSize(int miniBatchSize) {
+            this.miniBatchSize = miniBatchSize;
+        }
+
+        public long getSeed() {
+            return seed;
+        }
+
+        public void setSeed(long seed) {
+            this.seed = seed;
+        }
+
+        public float getDuplicateThreshold() {
+            return duplicateThreshold;
+        }
+
+        public void setDuplicateThreshold(float duplicateThreshold) {
+            this.duplicateThreshold = duplicateThreshold;
+        }
+
+        public boolean isIncludeCentroids() {
+            return includeCentroids;
+        }
+
+        public void setIncludeCentroids(boolean includeCentroids) {
+            this.includeCentroids = includeCentroids;
+        }
+
+        public long getDeadlineNanos() {
+            return deadlineNanos;
+        }
+
+        public void setDeadlineNanos(long deadlineNanos) {
+            this.deadlineNanos = deadlineNanos;
+        }
+    }
+
+    /**
+     * 执行聚类
+     * @return JSON结果
+     * @throws CancellationException 近重复分组超过请求的截止时间
+     */
+    public String cluster(Request request) throws Exception {
+        if (request.getK() <= 0 && request.getDuplicateThreshold() <= 0) {
+            throw new IllegalArgumentException("k和duplicateThreshold至少需要指定一个");
+        }
+        String algorithm = request.getAlgorithm();
+        if (!ALGORITHM_KMEANS.equals(algorithm) && !ALGORITHM_MINI_BATCH.equals(algorithm)) {
+            throw new IllegalArgumentException("不支持的聚类算法: " + request.getAlgorithm());
+        }
+
+        long start = System.nanoTime();
+        VectorFileReader.Matrix matrix = loadVectors(request);
+        long loaded = System.nanoTime();
+        int n = matrix.getRows();
+        int d = matrix.getDimension();
+        float[] data = matrix.getData();
+
+        VectorClustering.Result result = null;
+        if (request.getK() > 0) {
+            result = ALGORITHM_MINI_BATCH.equals(algorithm)
+                    ? VectorClustering.miniBatchKMeans(data, n, d, request.getK(), request.getMaxIterations(),
+                    request.getMiniBatchSize(), request.getSeed(), pool)
+                    : VectorClustering.kMeans(data, n, d, request.getK(), request.getMaxIterations(),
+                    request.getSeed(), pool);
+        }
+        if (request.getDuplicateThreshold() > 0 && VectorClustering.expired(request.getDeadlineNanos())) {
+            throw new CancellationException("聚类超过截止时间，已中止");
+        }
+        List<int[]> groups = request.getDuplicateThreshold() > 0
+                ? VectorClustering.nearDuplicateGroups(data, n, d, request.getDuplicateThreshold(),
+                result == null ? null : result.getAssignments(), request.getDeadlineNanos(), pool)
+                : List.of();
+        long finished = System.nanoTime();
+
+        logger.info("聚类完成，{}条向量，k={}，近重复组{}个，加载{}ms，计算{}ms",
+                n, result == null ? 0 : result.getK(), groups.size(),
+                (loaded - start) / 1_000_000, (finished - loaded) / 1_000_000);
+        return toJson(request, n, d, result, groups, (loaded - start) / 1_000_000, (finished - loaded) / 1_000_000);
+    }
+
+    /**
+     * 读取向量文件，或将文本按批向量化后拼成一个连续矩阵
+     * 未指定k时近重复分组需全部两两比较，计算量随行数平方增长，行数上限取clusteringPairwiseMaxRows
+     */
+    private VectorFileReader.Matrix loadVectors(Request request) throws Exception {
+        int maxRows = request.getK() > 0 ? properties.getClusteringMaxRows()
+                : Math.min(properties.getClusteringMaxRows(), properties.getClusteringPairwiseMaxRows());
+        if (request.getInput() != null && !request.getInput().isBlank()) {
+            return VectorFileReader.read(Paths.get(request.getInput()), maxRows);
+        }
+        List<String> texts = request.getTexts();
+        if (texts == null || texts.isEmpty()) {
+            throw new IllegalArgumentException("texts和input至少需要指定一个");
+        }
+        if (texts.size() > maxRows) {
+            throw new IllegalArgumentException("文本数量" + texts.size() + "超过上限" + maxRows);
+        }
+
+        int batchSize = Math.max(1, properties.getBulkBatchSize());
+        float[] data = null;
+        int dimension = 0;
+        for (int from = 0; from < texts.size(); from += batchSize) {
+            int to = Math.min(texts.size(), from + batchSize);
+            try (EmbeddingBatch batch = embeddingService.getEmbeddingBatch(texts.subList(from, to))) {
+                if (data == null) {
+                    dimension = batch.getDimension();
+                    data = new float[texts.size() * dimension];
+                }
+                float[] rows = batch.toMatrix(0, batch.size());
+                System.arraycopy(rows, 0, data, from * dimension, rows.length);
+            }
+        }
+        return new VectorFileReader.Matrix(data, texts.size(), dimension);
+    }
+
+    private static String toJson(Request request, int n, int d, VectorClustering.Result result, List<int[]> groups,
+                                 long loadMs, long computeMs) {
+        StringBuilder json = new StringBuilder(n * 4 + (result == null ? 0 : result.getK() * d * 12) + 256);
+        json.append("{");
+        json.append("\"count\": ").append(n).append(", ");
+        json.append("\"dimension\": ").append(d).append(", ");
+        if (result != null) {
+            int[] sizes = new int[result.getK()];
+            for (int assignment : result.getAssignments()) {
+                sizes[assignment]++;
+            }
+            json.append("\"algorithm\": \"").append(request.getAlgorithm()).append("\", ");
+            json.append("\"k\": ").append(result.getK()).append(", ");
+            json.append("\"iterations\": ").append(result.getIterations()).append(", ");
+            json.append("\"inertia\": ").append(String.format(Locale.ROOT, "%.4f", result.getInertia())).append(", ");
+            json.append("\"clusterSizes\": ");
+            appendInts(json, sizes, sizes.length);
+            json.append(", \"assignments\": ");
+            appendInts(json, result.getAssignments(), n);
+            if (request.isIncludeCentroids()) {
+                json.append(", \"centroids\": [");
+                float[] centroids = result.getCentroids();
+                for (int c = 0; c < result.getK(); c++) {
+                    if (c > 0) {
+                        json.append(", ");
+                    }
+                    json.append('[');
+                    for (int j = 0; j < d; j++) {
+                        if (j > 0) {
+                            json.append(", ");
+                        }
+                        json.append(centroids[c * d + j]);
+                    }
+                    json.append(']');
+                }
+                json.append("]");
+            }
+            json.append(", ");
+        }
+        json.append("\"duplicateGroups\": [");
+        for (int g = 0; g < groups.size(); g++) {
+            if (g > 0) {
+                json.append(", ");
+            }
+            appendInts(json, groups.get(g), groups.get(g).length);
+        }
+        json.append("], ");
+        json.append("\"loadMs\": ").append(loadMs).append(", ");
+        json.append("\"computeMs\": ").append(computeMs);
+        json.append("}");
+        return json.toString();
+    }
+
+    private static void appendInts(StringBuilder json, int[] values, int length) {
+        json.append('[');
+        for (int i = 0; i < length; i++) {
+            if (i > 0) {
+                json.append(", ");
+            }
+            json.append(values[i]);
+        }
+        json.append(']');
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (pool != null) {
+            pool.shutdownNow();
+        }
+    }
+}
@@ -18,7 +18,12 @@ public class CommandHandler {
     private EmbeddingPlugin embeddingPlugin;
 
     public Map<String, Object> handleCommand(String command, Map<String, String> parameters) {
-        logger.info("Handling command: {} with parameters: {}", command, parameters);
+        // 参数中可能包含用户文本，只记录命令名和文本的长度与哈希
+        if (logger.isDebugEnabled()) {
+            String text = parameters.get("text");
+            logger.debug("Handling command: {}, textLength: {}, textHash: {}", command,
+                    text == null ? 0 : text.length(), text == null ? "" : Long.toHexString(RequestLogger.hash(text)));
+        }
         
         Map<String, Object> result = new HashMap<>();
         
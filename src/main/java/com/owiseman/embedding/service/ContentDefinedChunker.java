@@ -0,0 +1,117 @@
+package com.owiseman.embedding.service;
+
+import java.util.SplittableRandom;
+
+/**
+ * 基于内容的文本分块
+ * 用Gear滚动哈希在文本上滑动，哈希高位满足掩码时切分，块边界只取决于附近约64个字符的内容：
+ * 文档中间插入或删除一段文字后，除编辑位置附近的一两个块外，其余块的边界和内容都不变，可以复用已有的块向量。
+ * 命中哈希条件后在随后一小段内顺延到空白或句末标点处切分，尽量不把词和句子切开；
+ * 块长度限制在[minChars, maxChars]之间，maxChars应保证一个块不超过模型的最大序列长度
+ */
+final class ContentDefinedChunker {
+
+    private static final long[] GEAR = new long[256];
+    private static final int BREAK_LOOKAHEAD = 32; // 命中切分条件后向后寻找自然断点的最大字符数
+
+    static {
+        // 固定种子：同一段文本在任何进程中都得到相同的边界
+        SplittableRandom random = new SplittableRandom(0x5eed_cdc0_2024L);
+        for (int i = 0; i < GEAR.length; i++) {
+            GEAR[i] = random.nextLong();
+        }
+    }
+
+    private final int minChars;
+    private final int maxChars;
+    private final long mask;
+
+    /**
+     * @param minChars 块的最小字符数
+     * @param avgChars 期望的平均字符数，需大于minChars
+     * @param maxChars 块的最大字符数
+     */
+    ContentDefinedChunker(int minChars, int avgChars, int maxChars) {
+        if (minChars <= 0 || avgChars <= minChars || maxChars < avgChars) {
+            throw new IllegalArgumentException("分块长度需满足0 < min < avg <= max: "
+                    + minChars + ", " + avgChars + ", " + maxChars);
+        }
+        this.minChars = minChars;
+        this.maxChars = maxChars;
+        // 超过最小长度后每个位置以1/2^bits的概率切分，期望块长约为min + 2^bits
+        int bits = Math.max(1, 31 - Integer.numberOfLeadingZeros(avgChars - minChars));
+        this.mask = -1L << (Long.SIZE - bits);
+    }
+
+    /**
+     * 切分文本
+     * @return 各块的结束位置（不含），最后一个等于text.length()；空文本返回空数组
+     */
+    int[] split(CharSequence text) {
+        int length = text.length();
+        int[] ends = new int[Math.max(1, length / minChars + 1)];
+        int count = 0;
+        int start = 0;
+        while (start < length) {
+            int end = nextBoundary(text, start, length);
+            if (count == ends.length) {
+                int[] grown = new int[ends.length * 2];
+                System.arraycopy(ends, 0, grown, 0, count);
+                ends = grown;
+            }
+            ends[count++] = end;
+            start = end;
+        }
+        int[] result = new int[count];
+        System.arraycopy(ends, 0, result, 0, count);
+        return result;
+    }
+
+    private int nextBoundary(CharSequence text, int start, int length) {
+        if (length - start <= minChars) {
+            return length;
+        }
+        int limit = Math.min(length, start + maxChars);
+        long hash = 0;
+        // 最小长度之前的字符只参与哈希，保证边界判断使用完整的窗口
+        for (int i = start; i < limit; i++) {
+            char c = text.charAt(i);
+            hash = (hash << 1) + GEAR[(c ^ (c >>> 8)) & 0xff];
+            if (i + 1 - start >= minChars && (hash & mask) == 0) {
+                return naturalBreak(text, i + 1, limit);
+            }
+        }
+        return limit;
+    }
+
+    /**
+     * 从position起在BREAK_LOOKAHEAD个字符内寻找空白或句末标点之后的位置，找不到时就在position处切分
+     */
+    private static int naturalBreak(CharSequence text, int position, int limit) {
+        int end = Math.min(limit, position + BREAK_LOOKAHEAD);
+        for (int i = position - 1; i < end; i++) {
+            if (isBreak(text.charAt(i))) {
+                return i + 1;
+            }
+        }
+        return position;
+    }
+
+    private static boolean isBreak(char c) {
+        switch (c) {
+            case '.':
+            case '!':
+            case '?':
+            case ';':
+            case '。':
+            case '！':
+            case '？':
+            case '；':
+            case '，':
+            case '、':
+                return true;
+            default:
+                return Character.isWhitespace(c);
+        }
+    }
+}
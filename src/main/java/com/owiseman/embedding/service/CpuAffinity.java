@@ -0,0 +1,188 @@
+package com.owiseman.embedding.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * CPU亲和性工具（仅Linux）
+ * 按NUMA节点把CPU划分给各推理工作者，并通过taskset把当前线程绑定到指定CPU集合。
+ * 原生推理库在线程首次推理时创建的OpenMP线程会继承该线程的亲和性，因此工作者线程需在首次推理前绑定
+ */
+public final class CpuAffinity {
+
+    private static final Logger logger = LoggerFactory.getLogger(CpuAffinity.class);
+    private static final Path NODE_DIRECTORY = Paths.get("/sys/devices/system/node");
+
+    private CpuAffinity() {
+    }
+
+    /**
+     * 为每个工作者规划CPU集合
+     * 工作者依次分配到各NUMA节点，每个节点内的CPU在分到该节点的工作者之间连续切分，避免跨节点访存
+     * @param workers 工作者数量
+     * @return 每个工作者的CPU列表，格式同taskset -c（如"0-15"）
+     */
+    public static List<String> planCpuSets(int workers) {
+        List<List<Integer>> nodes = readNumaNodes();
+        List<List<Integer>> assigned = new ArrayList<>();
+        for (int i = 0; i < workers; i++) {
+            assigned.add(new ArrayList<>());
+        }
+
+        // 工作者i分配到节点i % nodes，同一节点的工作者平分该节点的CPU
+        for (int node = 0; node < nodes.size(); node++) {
+            List<Integer> workersOnNode = new ArrayList<>();
+            for (int i = node % nodes.size(); i < workers; i += nodes.size()) {
+                workersOnNode.add(i);
+            }
+            if (workersOnNode.isEmpty()) {
+                continue;
+            }
+            List<Integer> cpus = nodes.get(node);
+            for (int slot = 0; slot < workersOnNode.size(); slot++) {
+                int from = cpus.size() * slot / workersOnNode.size();
+                int to = Math.max(from + 1, cpus.size() * (slot + 1) / workersOnNode.size());
+                assigned.get(workersOnNode.get(slot)).addAll(cpus.subList(from, Math.min(to, cpus.size())));
+            }
+        }
+
+        List<String> cpuSets = new ArrayList<>(workers);
+        for (List<Integer> cpus : assigned) {
+            cpuSets.add(format(cpus));
+        }
+        return cpuSets;
+    }
+
+    /**
+     * 将当前线程绑定到指定CPU集合
+     * @param cpuList CPU列表，格式同taskset -c
+     * @return 是否绑定成功；非Linux或taskset不可用时返回false
+     */
+    public static boolean pinCurrentThread(String cpuList) {
+        Path self = Paths.get("/proc/thread-self");
+        if (!Files.exists(self)) {
+            logger.warn("当前系统不支持线程绑核，跳过");
+            return false;
+        }
+        try {
+            // /proc/thread-self指向/proc/<pid>/task/<tid>
+            String tid = Files.readSymbolicLink(self).getFileName().toString();
+            Process process = new ProcessBuilder("taskset", "-p", "-c", cpuList, tid)
+                    .redirectErrorStream(true)
+                    .start();
+            String output = new String(process.getInputStream().readAllBytes(), StandardCharsets.UTF_8).trim();
+            if (!process.waitFor(5, TimeUnit.SECONDS) || process.exitValue() != 0) {
+                logger.warn("线程{}绑定CPU {}失败: {}", tid, cpuList, output);
+                return false;
+            }
+            logger.info("线程{}已绑定到CPU {}", tid, cpuList);
+            return true;
+        } catch (IOException e) {
+            logger.warn("无法执行taskset，跳过绑核: {}", e.getMessage());
+            return false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    /**
+     * 统计CPU列表中的CPU个数
+     */
+    public static int countCpus(String cpuList) {
+        return parse(cpuList).size();
+    }
+
+    /**
+     * 读取各NUMA节点的CPU列表，无法读取时把所有CPU视为一个节点
+     */
+    private static List<List<Integer>> readNumaNodes() {
+        List<List<Integer>> nodes = new ArrayList<>();
+        if (Files.isDirectory(NODE_DIRECTORY)) {
+            List<Path> nodeDirectories = new ArrayList<>();
+            try (DirectoryStream<Path> stream = Files.newDirectoryStream(NODE_DIRECTORY, "node[0-9]*")) {
+                stream.forEach(nodeDirectories::add);
+            } catch (IOException e) {
+                logger.debug("读取NUMA节点失败: {}", e.getMessage());
+            }
+            nodeDirectories.sort((a, b) -> Integer.compare(nodeIndex(a), nodeIndex(b)));
+            for (Path nodeDirectory : nodeDirectories) {
+                try {
+                    List<Integer> cpus = parse(Files.readString(nodeDirectory.resolve("cpulist")).trim());
+                    if (!cpus.isEmpty()) {
+                        nodes.add(cpus);
+                    }
+                } catch (IOException e) {
+                    logger.debug("读取{}的CPU列表失败: {}", nodeDirectory, e.getMessage());
+                }
+            }
+        }
+        if (nodes.isEmpty()) {
+            List<Integer> cpus = new ArrayList<>();
+            for (int i = 0; i < Runtime.getRuntime().availableProcessors(); i++) {
+                cpus.add(i);
+            }
+            nodes.add(cpus);
+        }
+        return nodes;
+    }
+
+    private static int nodeIndex(Path nodeDirectory) {
+        return Integer.parseInt(nodeDirectory.getFileName().toString().substring("node".length()));
+    }
+
+    private static List<Integer> parse(String cpuList) {
+        List<Integer> cpus = new ArrayList<>();
+        if (cpuList == null || cpuList.isBlank()) {
+            return cpus;
+        }
+        for (String part : cpuList.split(",")) {
+            String range = part.trim();
+            if (range.isEmpty()) {
+                continue;
+            }
+            int dash = range.indexOf('-');
+            if (dash < 0) {
+                cpus.add(Integer.parseInt(range));
+            } else {
+                int from = Integer.parseInt(range.substring(0, dash).trim());
+                int to = Integer.parseInt(range.substring(dash + 1).trim());
+                for (int cpu = from; cpu <= to; cpu++) {
+                    cpus.add(cpu);
+                }
+            }
+        }
+        return cpus;
+    }
+
+    private static String format(List<Integer> cpus) {
+        StringBuilder builder = new StringBuilder();
+        int i = 0;
+        while (i < cpus.size()) {
+            int start = cpus.get(i);
+            int end = start;
+            while (i + 1 < cpus.size() && cpus.get(i + 1) == end + 1) {
+                end = cpus.get(++i);
+            }
+            if (builder.length() > 0) {
+                builder.append(',');
+            }
+            builder.append(start);
+            if (end > start) {
+                builder.append('-').append(end);
+            }
+            i++;
+        }
+        return builder.toString();
+    }
+}
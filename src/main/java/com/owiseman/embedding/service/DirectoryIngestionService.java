@@ -0,0 +1,579 @@
+package com.owiseman.embedding.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.owiseman.embedding.config.PluginProperties;
+import com.owiseman.embedding.pipeline.BulkJobProgress;
+import com.owiseman.embedding.pipeline.JobCheckpoint;
+import com.owiseman.embedding.util.JsonStrings;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32C;
+
+/**
+ * 目录监听导入
+ * 监听plugin.ingestDir中新增或变化的文本/JSONL/CSV文件，文件静默plugin.ingestSettleMs后作为后台批量任务提交，
+ * 向量写入同名的.fvecs文件。每个文件的大小、修改时间、开头内容的校验和以及已写出的行数记录在清单
+ * （.embedding-manifest.json）中：重启后未变化的文件不会重复处理，只在末尾追加了记录的文件从已写出的行继续，
+ * 其余变化的文件整体重新处理，处理失败的文件按plugin.ingestRetryBackoffMs指数退避后重试；被取消的文件在再次变化前不会重新处理。
+ * 导入任务以低优先级排队、同时处理的文件数受plugin.ingestMaxInFlight限制，并且只在推理调度队列为空、
+ * 没有在线文本正在推理时执行下一批；已开始的一批不会被打断，在线请求最多等待这一批完成。只监听目录本身，不包含子目录
+ */
+@Service
+public class DirectoryIngestionService {
+
+    private static final Logger logger = LoggerFactory.getLogger(DirectoryIngestionService.class);
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+    private static final String MANIFEST_NAME = ".embedding-manifest.json";
+    private static final String OUTPUT_SUFFIX = ".fvecs";
+    private static final int HEAD_BYTES = 64 * 1024; // 判断文件是否只在末尾追加时比对的开头字节数
+    private static final int MAX_BACKOFF_SHIFT = 6; // 重试间隔最多翻倍的次数
+
+    static final String STATE_PROCESSING = "processing";
+    static final String STATE_COMPLETED = "completed";
+    static final String STATE_FAILED = "failed";
+    static final String STATE_CANCELLED = "cancelled";
+
+    private final BulkEmbeddingService bulkService;
+    private final PluginProperties properties;
+
+    // 以文件名为键；只在监听线程中修改，状态查询时加锁读取
+    private final Map<String, FileRecord> records = new TreeMap<>();
+    // 收到变化事件、等待静默的文件及最后一次事件的时间（纳秒）
+    private final Map<Path, Long> changed = new LinkedHashMap<>();
+    private final Set<String> extensions = new HashSet<>();
+
+    private final AtomicLong submitted = new AtomicLong();
+    private final AtomicLong appended = new AtomicLong();
+    private final AtomicLong unchanged = new AtomicLong();
+    private final AtomicLong overflows = new AtomicLong();
+
+    private Path watchDir;
+    private Path outputDir;
+    private Path manifestPath;
+    private WatchService watchService;
+    private Thread watcher;
+    private int inFlight;
+
+    @Autowired
+    public DirectoryIngestionService(BulkEmbeddingService bulkService, PluginProperties properties) {
+        this.bulkService = bulkService;
+        this.properties = properties;
+    }
+
+    /**
+     * 清单中一个文件的记录
+     */
+    static final class FileRecord {
+        String input;
+        String output;
+        long size;
+        long lastModified;
+        int headBytes;
+        long headHash;
+        String state;
+        String jobId;
+        long rows;
+        int dimension;
+        String error;
+        long processedAt;
+        int failures; // 同一版本文件连续失败的次数
+    }
+
+    @PostConstruct
+    public void start() throws IOException {
+        String dir = properties.getIngestDir();
+        if (dir == null || dir.isBlank()) {
+            return;
+        }
+        watchDir = Paths.get(dir).toAbsolutePath().normalize();
+        Files.createDirectories(watchDir);
+        String output = properties.getIngestOutputDir();
+        outputDir = output == null || output.isBlank() ? watchDir : Paths.get(output).toAbsolutePath().normalize();
+        Files.createDirectories(outputDir);
+        manifestPath = outputDir.resolve(MANIFEST_NAME);
+        for (String extension : properties.getIngestExtensions().split(",")) {
+            if (!extension.isBlank()) {
+                extensions.add(extension.trim().toLowerCase(Locale.ROOT).replaceFirst("^\\.", ""));
+            }
+        }
+
+        loadManifest();
+        watchService = FileSystems.getDefault().newWatchService();
+        watchDir.register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY,
+                StandardWatchEventKinds.OVERFLOW);
+        rescan();
+
+        watcher = new Thread(this::watchLoop, "ingest-watcher");
+        watcher.setDaemon(true);
+        watcher.start();
+        logger.info("目录监听导入已启动，监听目录: {}, 输出目录: {}, 已记录{}个文件", watchDir, outputDir, records.size());
+    }
+
+    /**
+     * 读取清单；上次停止时仍在处理的文件，对应的批量任务还在时继续跟踪，否则重新处理
+     */
+    private void loadManifest() {
+        if (!Files.isRegularFile(manifestPath)) {
+            return;
+        }
+        try {
+            for (FileRecord record : readManifest(manifestPath)) {
+                if (STATE_PROCESSING.equals(record.state)) {
+                    if (record.jobId != null && bulkService.getJob(record.jobId) != null) {
+                        inFlight++;
+                    } else {
+                        record.state = STATE_FAILED;
+                        record.error = "导入任务已丢失";
+                        record.lastModified = -1; // 强制重新处理
+                    }
+                }
+                records.put(Paths.get(record.input).getFileName().toString(), record);
+            }
+        } catch (Exception e) {
+            // 清单损坏时全部重新处理，只影响效率不影响正确性
+            logger.warn("读取导入清单{}失败，将重新处理全部文件: {}", manifestPath, e.getMessage());
+            records.clear();
+        }
+    }
+
+    /**
+     * 解析清单文件中的全部记录
+     */
+    static List<FileRecord> readManifest(Path manifest) throws IOException {
+        List<FileRecord> result = new ArrayList<>();
+        JsonNode files = OBJECT_MAPPER.readTree(manifest.toFile()).path("files");
+        for (JsonNode node : files) {
+            FileRecord record = new FileRecord();
+            record.input = node.path("input").asText();
+            record.output = node.path("output").asText();
+            record.size = node.path("size").asLong();
+            record.lastModified = node.path("lastModified").asLong();
+            record.headBytes = node.path("headBytes").asInt();
+            record.headHash = node.path("headHash").asLong();
+            record.state = node.path("state").asText(STATE_FAILED);
+            record.jobId = node.hasNonNull("jobId") ? node.get("jobId").asText() : null;
+            record.rows = node.path("rows").asLong();
+            record.dimension = node.path("dimension").asInt();
+            record.error = node.hasNonNull("error") ? node.get("error").asText() : null;
+            record.processedAt = node.path("processedAt").asLong();
+            record.failures = node.path("failures").asInt();
+            result.add(record);
+        }
+        return result;
+    }
+
+    private void watchLoop() {
+        long settleMs = Math.max(0, properties.getIngestSettleMs());
+        long pollMs = Math.max(100, settleMs / 2);
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                WatchKey key = watchService.poll(pollMs, TimeUnit.MILLISECONDS);
+                if (key != null) {
+                    for (WatchEvent<?> event : key.pollEvents()) {
+                        if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                            // 事件丢失，全量比对清单
+                            overflows.incrementAndGet();
+                            rescan();
+                        } else {
+                            Path file = watchDir.resolve((Path) event.context());
+                            if (accepts(file)) {
+                                changed.put(file, System.nanoTime());
+                            }
+                        }
+                    }
+                    if (!key.reset()) {
+                        logger.warn("监听目录{}已不可用，目录监听导入停止", watchDir);
+                        return;
+                    }
+                }
+                collectFinished();
+                dispatch(settleMs);
+            } catch (InterruptedException | ClosedWatchServiceException e) {
+                return;
+            } catch (Exception e) {
+                logger.error("目录监听导入出错: {}", e.getMessage(), e);
+            }
+        }
+    }
+
+    /**
+     * 把目录中所有符合条件的文件加入待检查列表，未变化的文件在提交前按清单跳过
+     */
+    private void rescan() throws IOException {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(watchDir)) {
+            for (Path file : files) {
+                if (accepts(file)) {
+                    changed.putIfAbsent(file, 0L);
+                }
+            }
+        }
+    }
+
+    private boolean accepts(Path file) {
+        String name = file.getFileName().toString();
+        if (name.startsWith(".")) {
+            return false;
+        }
+        int dot = name.lastIndexOf('.');
+        return dot > 0 && extensions.contains(name.substring(dot + 1).toLowerCase(Locale.ROOT));
+    }
+
+    /**
+     * 提交静默时间已到的文件，同时处理的文件数不超过plugin.ingestMaxInFlight
+     */
+    private void dispatch(long settleMs) throws IOException {
+        long now = System.nanoTime();
+        long settleNanos = TimeUnit.MILLISECONDS.toNanos(settleMs);
+        int maxInFlight = Math.max(1, properties.getIngestMaxInFlight());
+        boolean dirty = false;
+        List<Path> retries = new ArrayList<>();
+        Iterator<Map.Entry<Path, Long>> iterator = changed.entrySet().iterator();
+        while (iterator.hasNext() && inFlight < maxInFlight) {
+            Map.Entry<Path, Long> entry = iterator.next();
+            Path file = entry.getKey();
+            if (entry.getValue() != 0 && now - entry.getValue() < settleNanos) {
+                continue;
+            }
+            if (!Files.isRegularFile(file)) {
+                iterator.remove();
+                continue;
+            }
+            long lastModified = Files.getLastModifiedTime(file).toMillis();
+            if (System.currentTimeMillis() - lastModified < settleMs) {
+                // 仍在写入（例如重启后的首次扫描），等下一轮
+                continue;
+            }
+            FileRecord record;
+            synchronized (records) {
+                record = records.get(file.getFileName().toString());
+            }
+            if (record != null && STATE_PROCESSING.equals(record.state)) {
+                // 处理结束后再比对，变化了会重新加入
+                iterator.remove();
+                continue;
+            }
+            if (record != null && isRetryPending(file, record, lastModified)) {
+                // 未变化的失败文件留在待检查列表中，退避时间到了再提交
+                continue;
+            }
+            iterator.remove();
+            FileRecord submitted = submit(file, record, lastModified);
+            if (submitted != null) {
+                dirty = true;
+                if (STATE_FAILED.equals(submitted.state)) {
+                    retries.add(file);
+                }
+            }
+        }
+        for (Path file : retries) {
+            changed.put(file, System.nanoTime());
+        }
+        if (dirty) {
+            saveManifest();
+        }
+    }
+
+    /**
+     * 失败且之后文件没有变化的记录，距上次结束还不到退避时间
+     * 退避时间从plugin.ingestRetryBackoffMs开始，每连续失败一次翻倍
+     */
+    private boolean isRetryPending(Path file, FileRecord record, long lastModified) throws IOException {
+        if (!STATE_FAILED.equals(record.state)) {
+            return false;
+        }
+        if (record.lastModified != lastModified || record.size != Files.size(file)) {
+            return false;
+        }
+        long backoffMs = Math.max(0, properties.getIngestRetryBackoffMs())
+                << Math.min(MAX_BACKOFF_SHIFT, Math.max(0, record.failures - 1));
+        return System.currentTimeMillis() - record.processedAt < backoffMs;
+    }
+
+    /**
+     * 按清单决定跳过、追加还是整体重新处理；上次处理成功或被用户取消、且之后没有变化的文件跳过，失败的文件重试
+     * @return 新的清单记录，跳过时为null
+     */
+    private FileRecord submit(Path file, FileRecord previous, long lastModified) throws IOException {
+        long size = Files.size(file);
+        boolean sameVersion = previous != null && previous.size == size && previous.lastModified == lastModified;
+        if (size == 0 || sameVersion && (STATE_COMPLETED.equals(previous.state)
+                || STATE_CANCELLED.equals(previous.state))) {
+            unchanged.incrementAndGet();
+            return null;
+        }
+
+        Path output = outputDir.resolve(file.getFileName() + OUTPUT_SUFFIX);
+        long resumeRows = 0;
+        int dimension = 0;
+        if (isAppend(file, previous, size, output)) {
+            resumeRows = previous.rows;
+            dimension = previous.dimension;
+        }
+
+        FileRecord record = new FileRecord();
+        record.input = file.toString();
+        record.output = output.toString();
+        record.size = size;
+        record.lastModified = lastModified;
+        record.headBytes = (int) Math.min(size, HEAD_BYTES);
+        record.headHash = headHash(file, record.headBytes);
+        record.rows = resumeRows;
+        record.dimension = dimension;
+        record.failures = sameVersion ? previous.failures : 0;
+        try {
+            record.jobId = bulkService.submit(record.input, record.output, null, properties.getIngestField(),
+                    properties.getIngestBatchSize(), properties.getIngestPriority(), true, resumeRows, dimension);
+            record.state = STATE_PROCESSING;
+            inFlight++;
+            submitted.incrementAndGet();
+            if (resumeRows > 0) {
+                appended.incrementAndGet();
+            }
+            logger.info("导入文件{}，任务{}，{}", file.getFileName(), record.jobId,
+                    resumeRows > 0 ? "从第" + resumeRows + "行继续" : "全部处理");
+        } catch (IllegalArgumentException e) {
+            record.state = STATE_FAILED;
+            record.error = e.getMessage();
+            record.processedAt = System.currentTimeMillis();
+            record.failures++;
+            logger.warn("导入文件{}失败: {}", file.getFileName(), e.getMessage());
+        }
+        synchronized (records) {
+            records.put(file.getFileName().toString(), record);
+        }
+        return record;
+    }
+
+    /**
+     * 上次完整处理后文件只在末尾追加了内容：文件变大、原来的开头内容不变、原内容以换行结束，且输出文件仍在
+     */
+    static boolean isAppend(Path file, FileRecord previous, long size, Path output) throws IOException {
+        if (previous == null || !STATE_COMPLETED.equals(previous.state) || previous.rows <= 0
+                || previous.dimension <= 0 || size <= previous.size || !Files.isRegularFile(output)
+                || !output.toString().equals(previous.output)) {
+            return false;
+        }
+        if (headHash(file, previous.headBytes) != previous.headHash) {
+            return false;
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer last = ByteBuffer.allocate(1);
+            return channel.read(last, previous.size - 1) == 1 && last.get(0) == '\n';
+        }
+    }
+
+    /**
+     * 文件开头length个字节的CRC32C
+     */
+    static long headHash(Path file, int length) throws IOException {
+        CRC32C crc = new CRC32C();
+        byte[] buffer = new byte[8192];
+        int remaining = length;
+        try (InputStream in = Files.newInputStream(file)) {
+            while (remaining > 0) {
+                int read = in.read(buffer, 0, Math.min(buffer.length, remaining));
+                if (read < 0) {
+                    break;
+                }
+                crc.update(buffer, 0, read);
+                remaining -= read;
+            }
+        }
+        return crc.getValue();
+    }
+
+    /**
+     * 更新已结束的导入任务；处理期间文件又有变化的、以及失败待重试的重新加入待检查列表
+     */
+    private void collectFinished() throws IOException {
+        boolean dirty = false;
+        synchronized (records) {
+            for (FileRecord record : records.values()) {
+                if (!STATE_PROCESSING.equals(record.state)) {
+                    continue;
+                }
+                BulkJobProgress progress = bulkService.getJob(record.jobId);
+                if (progress != null && !progress.isFinished()) {
+                    continue;
+                }
+                JobCheckpoint checkpoint = bulkService.getCheckpoint(record.jobId);
+                if (progress == null) {
+                    record.state = STATE_FAILED;
+                    record.error = "导入任务已丢失";
+                } else if (progress.getState() == BulkJobProgress.State.COMPLETED) {
+                    record.state = STATE_COMPLETED;
+                    record.error = null;
+                    record.failures = 0;
+                } else {
+                    record.state = progress.getState() == BulkJobProgress.State.CANCELLED
+                            ? STATE_CANCELLED : STATE_FAILED;
+                    record.error = progress.getError();
+                }
+                if (checkpoint != null) {
+                    record.rows = checkpoint.getCommittedRows();
+                    record.dimension = checkpoint.getDimension();
+                }
+                if (STATE_FAILED.equals(record.state)) {
+                    record.failures++;
+                }
+                record.processedAt = System.currentTimeMillis();
+                inFlight--;
+                dirty = true;
+
+                Path file = Paths.get(record.input);
+                if (Files.isRegularFile(file) && (STATE_FAILED.equals(record.state)
+                        || Files.size(file) != record.size
+                        || Files.getLastModifiedTime(file).toMillis() != record.lastModified)) {
+                    changed.put(file, System.nanoTime());
+                }
+            }
+        }
+        if (dirty) {
+            saveManifest();
+        }
+    }
+
+    /**
+     * 写入清单，先写临时文件再原子替换
+     */
+    private void saveManifest() throws IOException {
+        synchronized (records) {
+            writeManifest(manifestPath, records.values());
+        }
+    }
+
+    /**
+     * 把记录写入清单文件，先写临时文件再原子替换。错误信息常含多行异常文本，所有字符串都按JSON规则转义
+     */
+    static void writeManifest(Path manifest, Collection<FileRecord> files) throws IOException {
+        StringBuilder json = new StringBuilder(256 + files.size() * 256);
+        json.append("{\n  \"files\": [");
+        boolean first = true;
+        for (FileRecord record : files) {
+            json.append(first ? "\n" : ",\n");
+            first = false;
+            json.append("    {");
+            json.append("\"input\": \"").append(JsonStrings.escape(record.input)).append("\", ");
+            json.append("\"output\": \"").append(JsonStrings.escape(record.output)).append("\", ");
+            json.append("\"size\": ").append(record.size).append(", ");
+            json.append("\"lastModified\": ").append(record.lastModified).append(", ");
+            json.append("\"headBytes\": ").append(record.headBytes).append(", ");
+            json.append("\"headHash\": ").append(record.headHash).append(", ");
+            json.append("\"state\": \"").append(record.state).append("\", ");
+            if (record.jobId != null) {
+                json.append("\"jobId\": \"").append(JsonStrings.escape(record.jobId)).append("\", ");
+            }
+            json.append("\"rows\": ").append(record.rows).append(", ");
+            json.append("\"dimension\": ").append(record.dimension).append(", ");
+            if (record.error != null) {
+                json.append("\"error\": \"").append(JsonStrings.escape(record.error)).append("\", ");
+            }
+            json.append("\"processedAt\": ").append(record.processedAt).append(", ");
+            json.append("\"failures\": ").append(record.failures);
+            json.append("}");
+        }
+        json.append("\n  ]\n}\n");
+
+        Path temp = manifest.resolveSibling(manifest.getFileName() + ".tmp");
+        try (Writer writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+            writer.write(json.toString());
+        }
+        Files.move(temp, manifest, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * 以JSON形式输出导入状态和各状态的文件数
+     */
+    public String toJson() {
+        if (watcher == null) {
+            return "{\"enabled\": false}";
+        }
+        int[] counts = new int[4];
+        synchronized (records) {
+            for (FileRecord record : records.values()) {
+                switch (record.state) {
+                    case STATE_PROCESSING:
+                        counts[0]++;
+                        break;
+                    case STATE_COMPLETED:
+                        counts[1]++;
+                        break;
+                    case STATE_FAILED:
+                        counts[2]++;
+                        break;
+                    default:
+                        counts[3]++;
+                }
+            }
+        }
+        StringBuilder json = new StringBuilder(256);
+        json.append("{");
+        json.append("\"enabled\": true, ");
+        json.append("\"dir\": \"").append(JsonStrings.escape(watchDir.toString())).append("\", ");
+        json.append("\"outputDir\": \"").append(JsonStrings.escape(outputDir.toString())).append("\", ");
+        json.append("\"processing\": ").append(counts[0]).append(", ");
+        json.append("\"completed\": ").append(counts[1]).append(", ");
+        json.append("\"failed\": ").append(counts[2]).append(", ");
+        json.append("\"cancelled\": ").append(counts[3]).append(", ");
+        json.append("\"submitted\": ").append(submitted.get()).append(", ");
+        json.append("\"appended\": ").append(appended.get()).append(", ");
+        json.append("\"unchanged\": ").append(unchanged.get()).append(", ");
+        json.append("\"overflows\": ").append(overflows.get());
+        json.append("}");
+        return json.toString();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (watcher == null) {
+            return;
+        }
+        watcher.interrupt();
+        try {
+            watchService.close();
+        } catch (IOException e) {
+            logger.warn("关闭目录监听失败: {}", e.getMessage());
+        }
+        try {
+            watcher.join(5000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
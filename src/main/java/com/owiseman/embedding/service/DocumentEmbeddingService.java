@@ -0,0 +1,391 @@
+package com.owiseman.embedding.service;
+
+import com.owiseman.embedding.config.PluginProperties;
+import com.owiseman.embedding.util.JsonStrings;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 文档级增量向量化
+ * 按文档ID缓存每个块的内容哈希和块向量。文档更新时按内容定义的边界重新分块，只对哈希变化的块做推理，
+ * 文档向量由缓存的块向量按块长度加权平均后归一化得到，重新向量化的开销与编辑量成正比，而不是与文档长度成正比。
+ * 缓存按块数上限以LRU淘汰整篇文档，被淘汰的文档下次更新时全部重新推理。
+ * 同一文档的更新和删除按文档ID分段加锁串行执行，保证缓存中保留的是最后提交的版本
+ */
+@Service
+public class DocumentEmbeddingService {
+
+    private static final Logger logger = LoggerFactory.getLogger(DocumentEmbeddingService.class);
+    private static final int LOCK_STRIPES = 64; // 文档锁分段数
+
+    private final EmbeddingModelService embeddingService;
+    private final PluginProperties properties;
+    private final ContentDefinedChunker chunker;
+
+    // 访问顺序的LinkedHashMap，最久未访问的文档在最前
+    private final LinkedHashMap<String, Document> documents = new LinkedHashMap<>(64, 0.75f, true);
+    private long cachedChunks;
+
+    // 按文档ID哈希分段的锁，不同文档大多落在不同分段上，可以并行更新
+    private final Object[] locks = new Object[LOCK_STRIPES];
+
+    private final AtomicLong updates = new AtomicLong();
+    private final AtomicLong chunksReused = new AtomicLong();
+    private final AtomicLong chunksEmbedded = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    @Autowired
+    public DocumentEmbeddingService(EmbeddingModelService embeddingService, PluginProperties properties) {
+        this.embeddingService = embeddingService;
+        this.properties = properties;
+        this.chunker = new ContentDefinedChunker(properties.getDocumentChunkMinChars(),
+                properties.getDocumentChunkAvgChars(), properties.getDocumentChunkMaxChars());
+        for (int i = 0; i < locks.length; i++) {
+            locks[i] = new Object();
+        }
+    }
+
+    /**
+     * 缓存的一篇文档：各块的哈希、长度和向量（空白块没有向量），以及池化后的文档向量
+     */
+    private static final class Document {
+        private final long[] hashes;
+        private final int[] lengths;
+        private final float[][] vectors;
+        private final float[] pooled;
+
+        private Document(long[] hashes, int[] lengths, float[][] vectors, float[] pooled) {
+            this.hashes = hashes;
+            this.lengths = lengths;
+            this.vectors = vectors;
+            this.pooled = pooled;
+        }
+    }
+
+    /**
+     * 一次文档向量化的结果
+     */
+    public static class Result {
+        private final String id;
+        private final float[] embedding;
+        private final int[] chunkEnds;
+        private final int reused;
+        private final int embedded;
+        private final long elapsedNanos;
+
+        Result(String id, float[] embedding, int[] chunkEnds, int reused, int embedded, long elapsedNanos) {
+            this.id = id;
+            this.embedding = embedding;
+            this.chunkEnds = chunkEnds;
+            this.reused = reused;
+            this.embedded = embedded;
+            this.elapsedNanos = elapsedNanos;
+        }
+
+        public String getId() {
+            return id;
+        }
+
+        public float[] getEmbedding() {
+            return embedding;
+        }
+
+        /**
+         * @return 各块在原文中的结束位置（不含）
+         */
+        public int[] getChunkEnds() {
+            return chunkEnds;
+        }
+
+        /**
+         * @return 复用缓存向量的块数
+         */
+        public int getReused() {
+            return reused;
+        }
+
+        /**
+         * @return 本次推理的块数（同一文档中内容相同的块只推理一次）
+         */
+        public int getEmbedded() {
+            return embedded;
+        }
+
+        public long getElapsedNanos() {
+            return elapsedNanos;
+        }
+
+        /**
+         * @param includeChunks 是否输出各块的结束位置
+         */
+        public String toJson(boolean includeChunks) {
+            StringBuilder json = new StringBuilder(embedding.length * 12 + 128);
+            json.append("{");
+            json.append("\"id\": \"").append(JsonStrings.escape(id)).append("\", ");
+            json.append("\"chunks\": ").append(chunkEnds.length).append(", ");
+            json.append("\"reused\": ").append(reused).append(", ");
+            json.append("\"embedded\": ").append(embedded).append(", ");
+            json.append("\"elapsedMs\": ").append(elapsedNanos / 1_000_000).append(", ");
+            if (includeChunks) {
+                json.append("\"chunkEnds\": [");
+                for (int i = 0; i < chunkEnds.length; i++) {
+                    if (i > 0) {
+                        json.append(", ");
+                    }
+                    json.append(chunkEnds[i]);
+                }
+                json.append("], ");
+            }
+            json.append("\"dimension\": ").append(embedding.length).append(", ");
+            json.append("\"embedding\": [");
+            for (int i = 0; i < embedding.length; i++) {
+                if (i > 0) {
+                    json.append(", ");
+                }
+                json.append(embedding[i]);
+            }
+            json.append("]");
+            json.append("}");
+            return json.toString();
+        }
+    }
+
+    /**
+     * 新建或更新文档并返回文档向量
+     * 同一文档的并发更新按到达顺序串行执行，后一次更新复用前一次缓存的块向量
+     * @param id 文档ID
+     * @param text 文档全文
+     */
+    public Result embed(String id, String text) throws Exception {
+        if (id == null || id.isBlank()) {
+            throw new IllegalArgumentException("文档ID不能为空");
+        }
+        if (text == null || text.trim().isEmpty()) {
+            throw new IllegalArgumentException("文档内容不能为空");
+        }
+        int maxChars = properties.getDocumentMaxChars();
+        if (maxChars > 0 && text.length() > maxChars) {
+            throw new IllegalArgumentException("文档长度" + text.length() + "超过上限" + maxChars);
+        }
+
+        // 读取上一版本到写回缓存之间不能插入同一文档的其他更新或删除，否则较早提交的旧文本可能覆盖新版本
+        synchronized (lockOf(id)) {
+            return embedLocked(id, text);
+        }
+    }
+
+    private Result embedLocked(String id, String text) throws Exception {
+        long start = System.nanoTime();
+        int[] ends = chunker.split(text);
+        int count = ends.length;
+        long[] hashes = new long[count];
+        int[] lengths = new int[count];
+        float[][] vectors = new float[count][];
+
+        // 上一版本中的块向量按哈希索引；长度一并比较，进一步降低哈希碰撞的影响
+        Map<Long, float[]> known = new HashMap<>();
+        Document previous;
+        synchronized (documents) {
+            previous = documents.get(id);
+        }
+        if (previous != null) {
+            for (int i = 0; i < previous.hashes.length; i++) {
+                if (previous.vectors[i] != null) {
+                    known.put(chunkKey(previous.hashes[i], previous.lengths[i]), previous.vectors[i]);
+                }
+            }
+        }
+
+        List<String> missingTexts = new ArrayList<>();
+        Map<Long, Integer> missingRows = new HashMap<>();
+        int[] rowOf = new int[count];
+        int reused = 0;
+        int from = 0;
+        for (int i = 0; i < count; i++) {
+            CharSequence chunk = text.subSequence(from, ends[i]);
+            hashes[i] = RequestLogger.hash(chunk);
+            lengths[i] = chunk.length();
+            from = ends[i];
+            rowOf[i] = -1;
+            if (chunk.toString().isBlank()) {
+                continue;
+            }
+            long key = chunkKey(hashes[i], lengths[i]);
+            float[] cached = known.get(key);
+            if (cached != null) {
+                vectors[i] = cached;
+                reused++;
+                continue;
+            }
+            Integer row = missingRows.putIfAbsent(key, missingTexts.size());
+            if (row == null) {
+                rowOf[i] = missingTexts.size();
+                missingTexts.add(chunk.toString());
+            } else {
+                rowOf[i] = row;
+            }
+        }
+
+        float[][] computed = embedChunks(missingTexts);
+        for (int i = 0; i < count; i++) {
+            if (rowOf[i] >= 0) {
+                vectors[i] = computed[rowOf[i]];
+            }
+        }
+
+        float[] pooled = pool(vectors, lengths);
+        store(id, new Document(hashes, lengths, vectors, pooled));
+
+        updates.incrementAndGet();
+        chunksReused.addAndGet(reused);
+        chunksEmbedded.addAndGet(missingTexts.size());
+        long elapsed = System.nanoTime() - start;
+        logger.debug("文档{}向量化完成，{}块，复用{}块，推理{}块，耗时{}ms",
+                id, count, reused, missingTexts.size(), elapsed / 1_000_000);
+        return new Result(id, pooled.clone(), ends, reused, missingTexts.size(), elapsed);
+    }
+
+    private Object lockOf(String id) {
+        return locks[(id.hashCode() & 0x7fffffff) % locks.length];
+    }
+
+    private static long chunkKey(long hash, int length) {
+        return hash ^ ((long) length * 0x9E3779B97F4A7C15L);
+    }
+
+    /**
+     * 按批量流水线的批次大小对变化的块做推理
+     */
+    private float[][] embedChunks(List<String> texts) throws Exception {
+        float[][] result = new float[texts.size()][];
+        int batchSize = Math.max(1, properties.getBulkBatchSize());
+        for (int from = 0; from < texts.size(); from += batchSize) {
+            int to = Math.min(texts.size(), from + batchSize);
+            try (EmbeddingBatch batch = embeddingService.getEmbeddingBatch(texts.subList(from, to))) {
+                for (int i = 0; i < batch.size(); i++) {
+                    result[from + i] = batch.toArray(i);
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 按块长度加权平均已归一化的块向量，再做L2归一化
+     */
+    private static float[] pool(float[][] vectors, int[] lengths) {
+        float[] pooled = null;
+        for (int i = 0; i < vectors.length; i++) {
+            float[] vector = vectors[i];
+            if (vector == null) {
+                continue;
+            }
+            if (pooled == null) {
+                pooled = new float[vector.length];
+            }
+            float weight = lengths[i];
+            for (int j = 0; j < vector.length; j++) {
+                pooled[j] += weight * vector[j];
+            }
+        }
+        if (pooled == null) {
+            throw new IllegalArgumentException("文档内容不能为空");
+        }
+        double squareSum = 0;
+        for (float value : pooled) {
+            squareSum += value * value;
+        }
+        if (squareSum > 0) {
+            float norm = (float) Math.sqrt(squareSum);
+            for (int j = 0; j < pooled.length; j++) {
+                pooled[j] /= norm;
+            }
+        }
+        return pooled;
+    }
+
+    private void store(String id, Document document) {
+        int maxChunks = properties.getDocumentCacheMaxChunks();
+        synchronized (documents) {
+            Document replaced = documents.put(id, document);
+            cachedChunks += document.hashes.length - (replaced == null ? 0 : replaced.hashes.length);
+            Iterator<Map.Entry<String, Document>> eldest = documents.entrySet().iterator();
+            // 至少保留刚写入的文档
+            while (cachedChunks > maxChunks && documents.size() > 1 && eldest.hasNext()) {
+                Map.Entry<String, Document> entry = eldest.next();
+                if (entry.getKey().equals(id)) {
+                    continue;
+                }
+                cachedChunks -= entry.getValue().hashes.length;
+                eldest.remove();
+                evictions.incrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * 获取缓存的文档向量
+     * @return 文档向量的拷贝，文档不存在或已被淘汰时为null
+     */
+    public float[] get(String id) {
+        synchronized (documents) {
+            Document document = documents.get(id);
+            return document == null ? null : document.pooled.clone();
+        }
+    }
+
+    /**
+     * 删除文档的缓存
+     * @return 文档是否存在
+     */
+    public boolean remove(String id) {
+        // 等待同一文档正在进行的更新写回后再删除，避免删除后又被写回
+        synchronized (lockOf(id)) {
+            synchronized (documents) {
+                Document removed = documents.remove(id);
+                if (removed != null) {
+                    cachedChunks -= removed.hashes.length;
+                }
+                return removed != null;
+            }
+        }
+    }
+
+    /**
+     * 以JSON形式输出缓存规模和复用统计，reuseRatio为复用的块占全部非空块的比例
+     */
+    public String toJson() {
+        int documentCount;
+        long chunks;
+        synchronized (documents) {
+            documentCount = documents.size();
+            chunks = cachedChunks;
+        }
+        long reused = chunksReused.get();
+        long embedded = chunksEmbedded.get();
+        StringBuilder json = new StringBuilder(192);
+        json.append("{");
+        json.append("\"documents\": ").append(documentCount).append(", ");
+        json.append("\"cachedChunks\": ").append(chunks).append(", ");
+        json.append("\"maxChunks\": ").append(properties.getDocumentCacheMaxChunks()).append(", ");
+        json.append("\"updates\": ").append(updates.get()).append(", ");
+        json.append("\"chunksReused\": ").append(reused).append(", ");
+        json.append("\"chunksEmbedded\": ").append(embedded).append(", ");
+        double ratio = reused + embedded == 0 ? 0 : (double) reused / (reused + embedded);
+        json.append("\"reuseRatio\": ").append(String.format(Locale.ROOT, "%.3f", ratio)).append(", ");
+        json.append("\"evictions\": ").append(evictions.get());
+        json.append("}");
+        return json.toString();
+    }
+}
@@ -0,0 +1,217 @@
+package com.owiseman.embedding.service;
+
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+
+/**
+ * 批量嵌入结果
+ * 所有向量按行连续存放在同一个缓冲区中，调用方通过视图访问单个向量，
+ * 使用完毕后必须调用close()将缓冲区归还给{@link VectorBufferPool}。
+ * 去重后的批次通过行映射让多个下标共享同一行向量
+ */
+public class EmbeddingBatch implements AutoCloseable {
+
+    private final VectorBufferPool pool;
+    private ByteBuffer buffer;
+    private final FloatBuffer vectors;
+    private final int size;
+    private final int dimension;
+    private final int physicalRows;
+    private final int[] rowMap; // 下标到缓冲区行号的映射，null表示一一对应
+    private long batchId;
+    private long tokenizeNanos;
+    private long forwardNanos;
+    private int[] tokenCounts; // 缓冲区每行的token数，null表示未记录
+
+    EmbeddingBatch(VectorBufferPool pool, ByteBuffer buffer, int size, int dimension) {
+        this(pool, buffer, size, dimension, null);
+    }
+
+    private EmbeddingBatch(VectorBufferPool pool, ByteBuffer buffer, int physicalRows, int dimension, int[] rowMap) {
+        this.pool = pool;
+        this.buffer = buffer;
+        this.vectors = buffer.asFloatBuffer();
+        this.size = rowMap == null ? physicalRows : rowMap.length;
+        this.physicalRows = physicalRows;
+        this.dimension = dimension;
+        this.rowMap = rowMap;
+    }
+
+    /**
+     * 按行映射展开为新的批次，第i个结果对应当前批次的第rowMap[i]行，不拷贝向量。
+     * 缓冲区的所有权转移给新批次，当前批次随之失效
+     */
+    EmbeddingBatch fanOut(int[] rowMap) {
+        if (buffer == null) {
+            throw new IllegalStateException("批量结果已释放");
+        }
+        EmbeddingBatch expanded = new EmbeddingBatch(pool, buffer, physicalRows, dimension, rowMap);
+        expanded.setTiming(batchId, tokenizeNanos, forwardNanos, tokenCounts);
+        buffer = null;
+        return expanded;
+    }
+
+    /**
+     * 记录本批次的编号和推理阶段耗时
+     */
+    void setTiming(long batchId, long tokenizeNanos, long forwardNanos, int[] tokenCounts) {
+        this.batchId = batchId;
+        this.tokenizeNanos = tokenizeNanos;
+        this.forwardNanos = forwardNanos;
+        this.tokenCounts = tokenCounts != null && tokenCounts.length == physicalRows ? tokenCounts : null;
+    }
+
+    public long getBatchId() {
+        return batchId;
+    }
+
+    public long getTokenizeNanos() {
+        return tokenizeNanos;
+    }
+
+    public long getForwardNanos() {
+        return forwardNanos;
+    }
+
+    /**
+     * 第index个文本的token数，未记录时返回0
+     */
+    public int getTokenCount(int index) {
+        if (tokenCounts == null || index < 0 || index >= size) {
+            return 0;
+        }
+        return tokenCounts[rowMap == null ? index : rowMap[index]];
+    }
+
+    /**
+     * 整批实际进入模型的token总数（去重后）
+     */
+    public int getTotalTokens() {
+        int total = 0;
+        if (tokenCounts != null) {
+            for (int count : tokenCounts) {
+                total += count;
+            }
+        }
+        return total;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int getDimension() {
+        return dimension;
+    }
+
+    /**
+     * 获取第index个向量的只读视图，不发生拷贝
+     */
+    public FloatBuffer vector(int index) {
+        checkIndex(index);
+        return vectors.slice(offset(index), dimension).asReadOnlyBuffer();
+    }
+
+    /**
+     * 将第index个向量拷贝为float数组
+     */
+    public float[] toArray(int index) {
+        checkIndex(index);
+        float[] result = new float[dimension];
+        vectors.get(offset(index), result);
+        return result;
+    }
+
+    /**
+     * 将从from开始的count个向量按行拷贝到一个连续的float数组中，便于做矩阵运算
+     */
+    public float[] toMatrix(int from, int count) {
+        if (count < 0 || from < 0 || from + count > size) {
+            throw new IndexOutOfBoundsException("向量范围越界: " + from + "+" + count);
+        }
+        if (buffer == null) {
+            throw new IllegalStateException("批量结果已释放");
+        }
+        float[] matrix = new float[count * dimension];
+        for (int i = 0; i < count; i++) {
+            vectors.get(offset(from + i), matrix, i * dimension, dimension);
+        }
+        return matrix;
+    }
+
+    /**
+     * 原地对每一行进行L2归一化
+     */
+    public void normalize() {
+        for (int row = 0; row < physicalRows; row++) {
+            int offset = row * dimension;
+            float squareSum = 0.0f;
+            for (int i = 0; i < dimension; i++) {
+                float value = vectors.get(offset + i);
+                squareSum += value * value;
+            }
+            if (squareSum > 0) {
+                float norm = (float) Math.sqrt(squareSum);
+                for (int i = 0; i < dimension; i++) {
+                    vectors.put(offset + i, vectors.get(offset + i) / norm);
+                }
+            }
+        }
+    }
+
+    /**
+     * 将第index个向量以JSON数组形式追加到builder中
+     */
+    public void appendJson(StringBuilder builder, int index) {
+        checkIndex(index);
+        int offset = offset(index);
+        builder.append('[');
+        for (int i = 0; i < dimension; i++) {
+            if (i > 0) {
+                builder.append(", ");
+            }
+            builder.append(vectors.get(offset + i));
+        }
+        builder.append(']');
+    }
+
+    /**
+     * 将整批结果序列化为JSON字符串
+     * @return 形如{"embeddings": [[...], ...], "dimensions": n, "count": m}的JSON
+     */
+    public String toJson() {
+        StringBuilder builder = new StringBuilder(size * dimension * 12 + 64);
+        builder.append("{\"embeddings\": [");
+        for (int i = 0; i < size; i++) {
+            if (i > 0) {
+                builder.append(", ");
+            }
+            appendJson(builder, i);
+        }
+        builder.append("], \"dimensions\": ").append(dimension);
+        builder.append(", \"count\": ").append(size);
+        builder.append("}");
+        return builder.toString();
+    }
+
+    @Override
+    public void close() {
+        if (buffer != null) {
+            pool.release(buffer);
+            buffer = null;
+        }
+    }
+
+    private int offset(int index) {
+        return (rowMap == null ? index : rowMap[index]) * dimension;
+    }
+
+    private void checkIndex(int index) {
+        if (buffer == null) {
+            throw new IllegalStateException("批量结果已释放");
+        }
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("向量下标越界: " + index);
+        }
+    }
+}
@@ -1,31 +1,38 @@
 package com.owiseman.embedding.service;
 
 import ai.djl.MalformedModelException;
-import ai.djl.huggingface.tokenizers.HuggingFaceTokenizer;
 import ai.djl.inference.Predictor;
 import ai.djl.modality.nlp.DefaultVocabulary;
-import ai.djl.modality.nlp.bert.BertFullTokenizer;
 import ai.djl.ndarray.NDArray;
 import ai.djl.ndarray.NDList;
-import ai.djl.repository.zoo.Criteria;
 import ai.djl.repository.zoo.ModelNotFoundException;
-import ai.djl.repository.zoo.ModelZoo;
 import ai.djl.repository.zoo.ZooModel;
-import ai.djl.training.util.ProgressBar;
 import ai.djl.translate.TranslateException;
+import com.owiseman.embedding.config.PluginProperties;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import javax.annotation.PostConstruct;
 import javax.annotation.PreDestroy;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * 嵌入模型服务
@@ -40,11 +47,41 @@ public class EmbeddingModelService {
     @Value("${plugin.modelPath:models/saved_model}")
     private String modelPath;
 
+    @Autowired
+    private PluginProperties properties;
+
+    @Autowired
+    private VectorBufferPool bufferPool;
+
+    @Autowired
+    private NativeMemoryTracker memoryTracker;
+
+    @Autowired
+    private RequestCoalescer coalescer;
+
+    @Autowired
+    private ModelCatalog modelCatalog;
+
     private ZooModel<String, float[]> model;
-    private Predictor<String, float[]> predictor;
-    private BertFullTokenizer tokenizer;
+    private PredictorPool<String, float[]> predictorPool;
+    private PredictorPool<List<String>, EmbeddingBatch> batchPredictorPool;
+    private final List<ZooModel<String, float[]>> workerModels = new ArrayList<>(); // 工作者1..N-1的模型实例
+    private final List<PredictorPool<List<String>, EmbeddingBatch>> workerBatchPools = new ArrayList<>();
+    private final List<AtomicInteger> workerActive = new ArrayList<>(); // 各工作者模型上正在推理的文本数，含调度器之外的路径
+    private final AtomicInteger backgroundActive = new AtomicInteger(); // 其中后台批量任务的文本数
+    private ModelBackend backend;
+    private ModelPrecision precision;
+    private ModelCatalog.Entry catalogEntry; // 按plugin.modelName从本地模型目录选择的模型，未配置时为null
+    private String engineName;
+    private TextTokenizer textTokenizer;
+    private boolean torchScriptMask; // TorchScript模型是否接收attention_mask，不接收时批量请求按长度分组
+    private TextNormalizer textNormalizer;
+    private final AtomicLong dedupeInputs = new AtomicLong();
+    private final AtomicLong dedupeUnique = new AtomicLong();
+    private final AtomicLong batchIds = new AtomicLong();
 
     private static final int MAX_TEXT_LENGTH = 512; // 最大文本长度，超过此长度将进行分段处理
+    private static final int ESTIMATED_HIDDEN_SIZE = 768; // 预估本地内存时使用的隐藏层维度
 
     /**
      * 初始化模型
@@ -55,32 +92,68 @@ public class EmbeddingModelService {
         try {
             logger.info("开始加载LaBSE模型...");
             
-            Path modelDirectory = Paths.get(modelPath);
-            logger.info("模型绝对路径: {}", modelDirectory);
-            // 设置模型加载标准
-            Criteria<String, float[]> criteria = Criteria.builder()
-                    .setTypes(String.class, float[].class)
-                    .optModelPath(modelDirectory)
-                    .optModelName(MODEL_NAME)
-                    .optEngine("PyTorch")
-                    .optProgress(new ProgressBar())
-                    .optTranslator(new TextEmbeddingTranslator())
-                    .build();
+            textNormalizer = new TextNormalizer(properties.isNormalizeNfkc(),
+                    properties.isStripControlChars(), properties.getMaxInputTokens());
 
-            // 加载模型
-            model = ModelZoo.loadModel(criteria);
-            predictor = model.newPredictor();
+            // 线程配置必须在引擎加载之前生效
+            EngineThreading.applyBeforeEngineLoad(properties);
+            ModelCatalog.applyOfflineMode(properties);
 
-            // 初始化分词器
-            try {
-                // 尝试从模型目录中加载词汇表
-                HuggingFaceTokenizer tokenizer = HuggingFaceTokenizer.newInstance(Paths.get("models/LaBSE/tokenizer.json"));
+            // 配置了模型名时从本地模型目录选择，否则使用plugin.modelPath
+            String modelName = properties.getModelName();
+            catalogEntry = modelName == null || modelName.isBlank() ? null : modelCatalog.select(modelName);
+            Path configuredPath = catalogEntry != null ? catalogEntry.getPath() : Paths.get(modelPath);
 
+            // INT8精度时加载同目录下的动态量化模型
+            precision = ModelPrecision.fromConfig(properties.getPrecision());
+            Path modelDirectory = precision.resolveModelPath(configuredPath, properties.getInt8ModelPath());
+            logger.info("模型绝对路径: {}, 精度: {}", modelDirectory, precision);
 
-            } catch (Exception e) {
-                logger.warn("无法加载词汇表文件，将使用默认分词器: {}", e.getMessage());
+            // 根据配置或模型目录布局选择推理后端，自动识别时优先使用清单中的引擎
+            String engine = properties.getEngine();
+            if (catalogEntry != null && modelDirectory.equals(configuredPath) && catalogEntry.getEngine() != null
+                    && (engine == null || engine.isBlank() || "auto".equalsIgnoreCase(engine))) {
+                engine = catalogEntry.getEngine();
+            }
+            backend = ModelBackend.resolve(engine, modelDirectory);
+            if (precision == ModelPrecision.INT8 && backend == ModelBackend.TF_SAVED_MODEL) {
+                throw new IllegalArgumentException("INT8精度仅支持TorchScript量化模型或ONNX QDQ模型");
+            }
+
+            // 初始化分词器，转换器在加载模型时就需要
+            textTokenizer = loadTokenizer();
+
+            // 加载模型
+            model = ModelLoader.load(modelDirectory, backend, MODEL_NAME, properties, textTokenizer);
+            engineName = model.getNDManager().getEngine().getEngineName();
+            torchScriptMask = ModelLoader.acceptsAttentionMask(model, backend, textTokenizer, properties);
+
+            int workers = Math.max(1, properties.getPredictorWorkers());
+            if (properties.isAutoTuneThreads()) {
+                workers = autoTuneThreads(workers);
+            }
+            predictorPool = new PredictorPool<>(workers, () -> model.newPredictor(
+                    new TextEmbeddingTranslator(backend, textTokenizer, model.getName(), torchScriptMask)));
+            batchPredictorPool = new PredictorPool<>(workers, this::newBatchPredictor);
+            workerBatchPools.add(batchPredictorPool);
+            workerActive.add(new AtomicInteger());
+
+            // 多工作者模式：每个工作者持有独立的模型实例和预测器池，互不共享
+            int inferenceWorkers = Math.max(1, properties.getInferenceWorkers());
+            for (int i = 1; i < inferenceWorkers; i++) {
+                ZooModel<String, float[]> replica =
+                        ModelLoader.load(modelDirectory, backend, MODEL_NAME, properties, textTokenizer);
+                workerModels.add(replica);
+                workerBatchPools.add(new PredictorPool<>(workers, () -> newBatchPredictor(replica)));
+                workerActive.add(new AtomicInteger());
+            }
+            if (inferenceWorkers > 1) {
+                logger.info("已为{}个推理工作者各加载一份模型，每个工作者{}个预测器", inferenceWorkers, workers);
             }
 
+            // 校验和需要读取整个模型文件，在后台计算，不阻塞启动
+            modelCatalog.markLoaded(modelDirectory);
+
             logger.info("LaBSE模型加载完成");
         } catch (ModelNotFoundException | MalformedModelException | IOException e) {
             logger.error("加载模型失败: {}", e.getMessage(), e);
@@ -88,12 +161,96 @@ public class EmbeddingModelService {
         }
     }
 
+    private Predictor<List<String>, EmbeddingBatch> newBatchPredictor() {
+        return newBatchPredictor(model);
+    }
+
+    private Predictor<List<String>, EmbeddingBatch> newBatchPredictor(ZooModel<String, float[]> target) {
+        return target.newPredictor(
+                new BatchEmbeddingTranslator(bufferPool, backend, textTokenizer, target.getName(), torchScriptMask),
+                target.getNDManager().getDevice());
+    }
+
+    /**
+     * 加载HuggingFace分词器，文件不存在或加载失败时退化为按字符编码
+     * 从本地模型目录选择模型时优先使用清单中的分词器和最大序列长度
+     */
+    private TextTokenizer loadTokenizer() {
+        String tokenizerPath = catalogEntry != null && catalogEntry.getTokenizer() != null
+                ? catalogEntry.getTokenizer().toString() : properties.getTokenizerPath();
+        int maxLength = catalogEntry != null && catalogEntry.getMaxSequenceLength() > 0
+                ? catalogEntry.getMaxSequenceLength() : MAX_TEXT_LENGTH;
+        if (tokenizerPath == null || tokenizerPath.isBlank() || !Files.isRegularFile(Paths.get(tokenizerPath))) {
+            logger.warn("未找到分词器文件{}，将按字符编码输入", tokenizerPath);
+            return TextTokenizer.charCodes();
+        }
+        try {
+            TextTokenizer loaded = TextTokenizer.load(Paths.get(tokenizerPath), maxLength,
+                    properties.getTokenizerCacheSize());
+            logger.info("已加载分词器: {}, 缓存容量: {}", tokenizerPath, properties.getTokenizerCacheSize());
+            return loaded;
+        } catch (Exception e) {
+            logger.warn("无法加载分词器文件，将按字符编码输入: {}", e.getMessage());
+            return TextTokenizer.charCodes();
+        }
+    }
+
+    public String getTokenizerJson() {
+        return textTokenizer != null ? textTokenizer.toJson() : "{}";
+    }
+
+    /**
+     * 在预热批次上自动选择预测器数量和intra-op线程数
+     * @param fallbackWorkers 调优失败时使用的预测器数量
+     * @return 选定的预测器数量
+     */
+    private int autoTuneThreads(int fallbackWorkers) {
+        int cores = Runtime.getRuntime().availableProcessors();
+        try {
+            ThreadingAutoTuner.Result result =
+                    new ThreadingAutoTuner(engineName, cores, this::newBatchPredictor).tune();
+            return result.getWorkers();
+        } catch (Exception e) {
+            logger.warn("线程自动调优失败，使用配置值: {}", e.getMessage());
+            return fallbackWorkers;
+        }
+    }
+
+    /**
+     * 获取当前推理线程配置
+     * @return JSON格式的线程配置
+     */
+    public String getThreadingJson() {
+        StringBuilder json = new StringBuilder();
+        json.append("{");
+        json.append("\"engine\": \"").append(engineName).append("\", ");
+        json.append("\"precision\": \"").append(precision).append("\", ");
+        json.append("\"paddedBatches\": ").append(backend != ModelBackend.TORCHSCRIPT || torchScriptMask).append(", ");
+        json.append("\"inferenceWorkers\": ").append(getInferenceWorkers()).append(", ");
+        json.append("\"predictorWorkers\": ").append(predictorPool != null ? predictorPool.size() : 0).append(", ");
+        json.append("\"idlePredictors\": ").append(predictorPool != null ? predictorPool.available() : 0).append(", ");
+        json.append("\"intraOpThreads\": ").append(EngineThreading.getIntraOpThreads(engineName)).append(", ");
+        json.append("\"interOpThreads\": ").append(EngineThreading.getInterOpThreads(engineName));
+        json.append("}");
+        return json.toString();
+    }
+
     /**
      * 获取文本的嵌入向量
      * @param text 输入文本
      * @return 嵌入向量数组
      */
     public float[] getEmbedding(String text) throws Exception {
+        return getEmbedding(text, null);
+    }
+
+    /**
+     * 获取文本的嵌入向量，并记录各阶段耗时
+     * @param text 输入文本
+     * @param timing 请求计时，可为null；复用其他请求推理结果时只有端到端耗时
+     * @return 嵌入向量数组
+     */
+    public float[] getEmbedding(String text, RequestTiming timing) throws Exception {
         if (text == null || text.trim().isEmpty()) {
             throw new IllegalArgumentException("输入文本不能为空");
         }
@@ -101,24 +258,328 @@ public class EmbeddingModelService {
         // 检查文本长度，如果过长则分段处理
         if (text.length() > MAX_TEXT_LENGTH) {
             logger.warn("输入文本过长 ({}字符)，已截断至约{}个token", text.length(), MAX_TEXT_LENGTH);
-            text = preprocessText(text);
         }
-        
+        String normalized = preprocessText(text);
+
+        // 同一文本的并发请求共享一次推理
+        String flightKey = coalesceKey(RequestCoalescer.PATH_DIRECT);
+        CompletableFuture<float[]> future = coalescer.execute(flightKey, normalized, 0, deadline -> {
+            try {
+                return CompletableFuture.completedFuture(computeEmbedding(normalized, timing));
+            } catch (Exception e) {
+                return CompletableFuture.failedFuture(e);
+            }
+        });
         try {
+            return future.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof Exception) {
+                throw (Exception) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * 对已规范化的文本执行一次推理
+     */
+    private float[] computeEmbedding(String text, RequestTiming timing) throws Exception {
+        StageClock clock = StageClock.current();
+        clock.reset();
+        // 单条预测器使用工作者0的模型实例，计入它的负载
+        AtomicInteger active = workerActive.get(0);
+        active.incrementAndGet();
+        try (NativeMemoryTracker.Reservation ignored =
+                     memoryTracker.reserve(MODEL_NAME, estimateNativeBytes(1, text.length()))) {
             // 直接使用predictor进行预测
-            float[] result = predictor.predict(text);
+            float[] result = predictorPool.predict(text);
+            long batchId = batchIds.incrementAndGet();
+            if (timing != null) {
+                // 分词开始前的时间花在等待空闲predictor上
+                long queueNanos = clock.tokenizeStart == 0 ? 0
+                        : Math.max(0, clock.tokenizeStart - timing.getStartNanos());
+                int tokens = clock.tokenCounts == null || clock.tokenCounts.length == 0 ? 0 : clock.tokenCounts[0];
+                timing.recordInference(queueNanos, clock.tokenizeNanos(), clock.forwardNanos(), tokens, batchId);
+            }
             
             // 对结果进行归一化
             normalizeVector(result);
             
-            logger.info("成功生成嵌入向量，维度: {}", result.length);
+            logger.debug("成功生成嵌入向量，维度: {}", result.length);
             return result;
         } catch (Exception e) {
             logger.error("生成嵌入向量失败: {}", e.getMessage(), e);
             throw e;
+        } finally {
+            active.decrementAndGet();
         }
     }
     
+    /**
+     * 批量获取文本的嵌入向量
+     * 文本先经过预处理再去重，只有不重复的文本进入模型，结果按原始位置展开；
+     * 整批文本一次前向计算（不接收掩码的TorchScript模型按token数分组计算），结果在池化缓冲区中原地归一化；
+     * 在正在推理文本数最少的工作者上执行
+     * @param texts 输入文本列表
+     * @return 批量结果，调用方使用完毕后必须关闭以归还缓冲区
+     */
+    public EmbeddingBatch getEmbeddingBatch(List<String> texts) throws Exception {
+        return getEmbeddingBatch(texts, leastActiveWorker());
+    }
+
+    /**
+     * 工作者模型上正在推理的文本数，包括调度器批次和REST、批量、相似度、聚类、文档等直接调用
+     * @param worker 推理工作者序号，从0开始
+     */
+    public int getActiveTexts(int worker) {
+        return worker < workerActive.size() ? workerActive.get(worker).get() : 0;
+    }
+
+    /**
+     * 所有工作者上正在推理或等待预测器的在线文本数，即除后台批量任务之外的全部推理路径
+     * 后台任务先计入自身再计入工作者、先移出工作者再移出自身，因此读数只会短暂偏低，不会偏高
+     */
+    public int getOnlineActiveTexts() {
+        int total = 0;
+        for (AtomicInteger active : workerActive) {
+            total += active.get();
+        }
+        return Math.max(0, total - backgroundActive.get());
+    }
+
+    private int leastActiveWorker() {
+        int best = 0;
+        for (int i = 1; i < workerActive.size(); i++) {
+            if (workerActive.get(i).get() < workerActive.get(best).get()) {
+                best = i;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * 后台批量任务（如目录监听导入）的批量推理，不计入在线文本数
+     * @param texts 已经过preprocessText的文本列表
+     * @return 批量结果，调用方使用完毕后必须关闭以归还缓冲区
+     */
+    public EmbeddingBatch getBackgroundEmbeddingBatch(List<String> texts) throws Exception {
+        int count = texts == null ? 0 : texts.size();
+        backgroundActive.addAndGet(count);
+        try {
+            return getPreprocessedEmbeddingBatch(texts);
+        } finally {
+            backgroundActive.addAndGet(-count);
+        }
+    }
+
+    /**
+     * 批量获取已预处理文本的嵌入向量，不再重复预处理；在正在推理文本数最少的工作者上执行
+     * @param texts 已经过preprocessText的文本列表
+     * @return 批量结果，调用方使用完毕后必须关闭以归还缓冲区
+     */
+    public EmbeddingBatch getPreprocessedEmbeddingBatch(List<String> texts) throws Exception {
+        return getPreprocessedEmbeddingBatch(texts, leastActiveWorker());
+    }
+
+    /**
+     * 在指定推理工作者的模型实例上批量获取已预处理文本的嵌入向量
+     * @param texts 已经过preprocessText的文本列表
+     * @param worker 推理工作者序号，从0开始
+     * @return 批量结果，调用方使用完毕后必须关闭以归还缓冲区
+     */
+    public EmbeddingBatch getPreprocessedEmbeddingBatch(List<String> texts, int worker) throws Exception {
+        return embedBatch(texts, worker, true);
+    }
+
+    /**
+     * 在指定推理工作者的模型实例上批量获取嵌入向量
+     * @param texts 输入文本列表
+     * @param worker 推理工作者序号，从0开始
+     * @return 批量结果，调用方使用完毕后必须关闭以归还缓冲区
+     */
+    public EmbeddingBatch getEmbeddingBatch(List<String> texts, int worker) throws Exception {
+        return embedBatch(texts, worker, false);
+    }
+
+    /**
+     * 批量推理；无论是否去重，每条文本都与单条接口一样经过预处理，保证同一文本在两条路径上得到相同的向量
+     * @param preprocessed 文本是否已经过preprocessText
+     */
+    private EmbeddingBatch embedBatch(List<String> texts, int worker, boolean preprocessed) throws Exception {
+        if (texts == null || texts.isEmpty()) {
+            throw new IllegalArgumentException("输入文本列表不能为空");
+        }
+
+        boolean dedupe = properties.isDedupeBatches();
+        List<String> inputs = new ArrayList<>(texts.size());
+        Map<String, Integer> uniqueRows = dedupe ? new HashMap<>(texts.size() * 2) : null;
+        int[] rowMap = dedupe ? new int[texts.size()] : null;
+        int maxLength = 1;
+        for (int i = 0; i < texts.size(); i++) {
+            String text = texts.get(i);
+            if (text == null || text.trim().isEmpty()) {
+                throw new IllegalArgumentException("输入文本不能为空");
+            }
+            String input = preprocessed ? text : preprocessText(text);
+            if (!dedupe) {
+                maxLength = Math.max(maxLength, input.length());
+                inputs.add(input);
+                continue;
+            }
+            Integer row = uniqueRows.putIfAbsent(input, inputs.size());
+            if (row == null) {
+                rowMap[i] = inputs.size();
+                maxLength = Math.max(maxLength, input.length());
+                inputs.add(input);
+            } else {
+                rowMap[i] = row;
+            }
+        }
+        dedupeInputs.addAndGet(texts.size());
+        dedupeUnique.addAndGet(inputs.size());
+
+        EmbeddingBatch batch;
+        AtomicInteger active = workerActive.get(worker);
+        active.addAndGet(texts.size());
+        try (NativeMemoryTracker.Reservation ignored =
+                     memoryTracker.reserve(MODEL_NAME, estimateNativeBytes(inputs.size(), maxLength))) {
+            PredictorPool<List<String>, EmbeddingBatch> pool = workerBatchPools.get(worker);
+            // 不接收掩码的TorchScript模型按长度分组，避免补齐影响结果
+            batch = backend == ModelBackend.TORCHSCRIPT && !torchScriptMask
+                    ? predictByLength(pool, inputs) : predictPadded(pool, inputs);
+        } finally {
+            active.addAndGet(-texts.size());
+        }
+        batch.normalize();
+        if (dedupe && inputs.size() < texts.size()) {
+            batch = batch.fanOut(rowMap);
+        }
+
+        logger.debug("成功生成批量嵌入向量，数量: {}, 去重后: {}, 维度: {}",
+                texts.size(), inputs.size(), batch.getDimension());
+        return batch;
+    }
+
+    /**
+     * 整批补齐后一次前向计算
+     */
+    private EmbeddingBatch predictPadded(PredictorPool<List<String>, EmbeddingBatch> pool, List<String> inputs)
+            throws Exception {
+        StageClock clock = StageClock.current();
+        clock.reset();
+        EmbeddingBatch batch = pool.predict(inputs);
+        batch.setTiming(batchIds.incrementAndGet(), clock.tokenizeNanos(), clock.forwardNanos(), clock.tokenCounts);
+        return batch;
+    }
+
+    /**
+     * 按token数分组，每组单独前向计算后按原顺序合并到一个缓冲区
+     * TorchScript模型只接收索引张量，补齐的0会参与注意力计算，混合长度的批次结果会随批内其他文本变化；
+     * 同组文本长度相同无需补齐，结果与单条推理一致
+     */
+    private EmbeddingBatch predictByLength(PredictorPool<List<String>, EmbeddingBatch> pool, List<String> inputs)
+            throws Exception {
+        int[] lengths = textTokenizer.lengths(inputs);
+        Map<Integer, List<Integer>> buckets = new TreeMap<>();
+        for (int row = 0; row < lengths.length; row++) {
+            buckets.computeIfAbsent(lengths[row], key -> new ArrayList<>()).add(row);
+        }
+        if (buckets.size() == 1) {
+            return predictPadded(pool, inputs);
+        }
+
+        StageClock clock = StageClock.current();
+        ByteBuffer buffer = null;
+        FloatBuffer target = null;
+        int dimension = 0;
+        long tokenizeNanos = 0;
+        long forwardNanos = 0;
+        try {
+            for (List<Integer> rows : buckets.values()) {
+                List<String> bucketInputs = new ArrayList<>(rows.size());
+                for (int row : rows) {
+                    bucketInputs.add(inputs.get(row));
+                }
+                clock.reset();
+                try (EmbeddingBatch part = pool.predict(bucketInputs)) {
+                    if (buffer == null) {
+                        dimension = part.getDimension();
+                        buffer = bufferPool.acquire(inputs.size() * dimension * Float.BYTES);
+                        target = buffer.asFloatBuffer();
+                    }
+                    for (int i = 0; i < rows.size(); i++) {
+                        target.position(rows.get(i) * dimension);
+                        target.put(part.vector(i));
+                    }
+                }
+                tokenizeNanos += clock.tokenizeNanos();
+                forwardNanos += clock.forwardNanos();
+            }
+        } catch (Exception e) {
+            bufferPool.release(buffer);
+            throw e;
+        }
+
+        EmbeddingBatch batch = new EmbeddingBatch(bufferPool, buffer, inputs.size(), dimension);
+        batch.setTiming(batchIds.incrementAndGet(), tokenizeNanos, forwardNanos, lengths);
+        return batch;
+    }
+
+    /**
+     * 以JSON形式输出批量请求的去重统计，ratio为被去掉的重复文本占比
+     */
+    public String getDedupeJson() {
+        long inputCount = dedupeInputs.get();
+        long uniqueCount = dedupeUnique.get();
+        double ratio = inputCount == 0 ? 0 : (double) (inputCount - uniqueCount) / inputCount;
+        StringBuilder json = new StringBuilder();
+        json.append("{");
+        json.append("\"enabled\": ").append(properties.isDedupeBatches()).append(", ");
+        json.append("\"inputs\": ").append(inputCount).append(", ");
+        json.append("\"unique\": ").append(uniqueCount).append(", ");
+        json.append("\"ratio\": ").append(Math.round(ratio * 10000) / 10000.0);
+        json.append("}");
+        return json.toString();
+    }
+
+    /**
+     * 预估一个批次的本地内存占用：输入索引张量加上逐token的隐藏层输出
+     */
+    private static long estimateNativeBytes(int batchSize, int sequenceLength) {
+        return (long) batchSize * sequenceLength * (Long.BYTES + ESTIMATED_HIDDEN_SIZE * Float.BYTES);
+    }
+
+    /**
+     * 推理工作者数量，每个工作者持有独立的模型实例
+     */
+    public int getInferenceWorkers() {
+        return workerBatchPools.isEmpty() ? Math.max(1, properties.getInferenceWorkers()) : workerBatchPools.size();
+    }
+
+    public int getPredictorWorkers() {
+        return predictorPool != null ? predictorPool.size() : Math.max(1, properties.getPredictorWorkers());
+    }
+
+    public String getEngineName() {
+        return engineName;
+    }
+
+    /**
+     * 模型名，从本地模型目录选择时为清单中的名称
+     */
+    public String getModelName() {
+        return catalogEntry != null ? catalogEntry.getName() : MODEL_NAME;
+    }
+
+    /**
+     * 请求合并的键：模型名加推理路径
+     * 单条转换器和调度器的批量转换器组织输入的方式不同，两条路径的结果不互相复用
+     * @param path {@link RequestCoalescer#PATH_DIRECT}或{@link RequestCoalescer#PATH_SCHEDULED}
+     */
+    public String coalesceKey(String path) {
+        return getModelName() + '/' + path;
+    }
+
     /**
      * 处理长文本的嵌入向量生成
      * 将长文本分段处理，然后合并结果
@@ -140,11 +601,11 @@ public class EmbeddingModelService {
         List<float[]> embeddings = new ArrayList<>();
         for (int i = 0; i < segments.size(); i++) {
             String segment = segments.get(i);
-            logger.info("处理第{}段文本，长度: {}", i + 1, segment.length());
+            logger.debug("处理第{}段文本，长度: {}", i + 1, segment.length());
             
             try {
                 // 直接使用predictor进行预测
-                float[] embedding = predictor.predict(segment);
+                float[] embedding = predictorPool.predict(segment);
                 
                 // 对结果进行归一化
                 normalizeVector(embedding);
@@ -185,18 +646,9 @@ public class EmbeddingModelService {
      * @param text 原始文本
      * @return 预处理后的文本
      */
-    private String preprocessText(String text) {
-        // 简单的预处理：去除多余空格，限制长度等
-        text = text.trim().replaceAll("\\s+", " ");
-
-        // LaBSE模型通常有输入长度限制，这里可以根据需要截断
-        int maxLength = 512; // BERT类模型通常最大支持512个token
-        if (tokenizer != null && text.length() > maxLength * 2) { // 粗略估计
-            text = text.substring(0, maxLength * 2);
-            logger.warn("输入文本过长，已截断至约{}个token", maxLength);
-        }
-
-        return text;
+    public String preprocessText(String text) {
+        // 单次遍历去除多余空白和控制字符，并按估算的token数截断（LaBSE最多512个token）
+        return textNormalizer.normalize(text);
     }
 
     /**
@@ -224,11 +676,20 @@ public class EmbeddingModelService {
     @PreDestroy
     public void close() {
         logger.info("关闭嵌入模型资源...");
-        if (predictor != null) {
-            predictor.close();
+        if (predictorPool != null) {
+            predictorPool.close();
+        }
+        for (PredictorPool<List<String>, EmbeddingBatch> pool : workerBatchPools) {
+            pool.close();
+        }
+        for (ZooModel<String, float[]> replica : workerModels) {
+            replica.close();
         }
         if (model != null) {
             model.close();
         }
+        if (textTokenizer != null) {
+            textTokenizer.close();
+        }
     }
 }
\ No newline at end of file
@@ -0,0 +1,86 @@
+package com.owiseman.embedding.service;
+
+import ai.djl.pytorch.jni.JniUtils;
+import com.owiseman.embedding.config.PluginProperties;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * 推理引擎线程配置
+ * 在引擎加载之前设置PyTorch的intra-op/inter-op线程数，并检查OMP/MKL环境变量，
+ * 避免引擎默认按核数开线程与请求并发叠加导致的CPU超额订阅
+ */
+public final class EngineThreading {
+
+    private static final Logger logger = LoggerFactory.getLogger(EngineThreading.class);
+    private static final String PT_NUM_THREADS = "ai.djl.pytorch.num_threads";
+    private static final String PT_NUM_INTEROP_THREADS = "ai.djl.pytorch.num_interop_threads";
+
+    private EngineThreading() {
+    }
+
+    /**
+     * 应用线程配置，必须在第一次加载引擎之前调用
+     * @param properties 插件配置
+     */
+    public static void applyBeforeEngineLoad(PluginProperties properties) {
+        int intraOp = resolveIntraOpThreads(properties);
+        if (intraOp > 0) {
+            System.setProperty(PT_NUM_THREADS, String.valueOf(intraOp));
+        }
+        if (properties.getInterOpThreads() > 0) {
+            System.setProperty(PT_NUM_INTEROP_THREADS, String.valueOf(properties.getInterOpThreads()));
+        }
+
+        // OMP/MKL只在本地库加载时读取环境变量，JVM内无法修改，只能提示在启动脚本中导出
+        checkEnvironment("OMP_NUM_THREADS", properties.getOmpThreads());
+        checkEnvironment("MKL_NUM_THREADS", properties.getMklThreads());
+
+        logger.info("推理线程配置: intra-op={}, inter-op={}, 预测器数量={}",
+                intraOp > 0 ? intraOp : "默认",
+                properties.getInterOpThreads() > 0 ? properties.getInterOpThreads() : "默认",
+                properties.getPredictorWorkers());
+    }
+
+    /**
+     * 运行时调整PyTorch的intra-op线程数，仅在PyTorch引擎下生效
+     */
+    public static void setIntraOpThreads(String engineName, int threads) {
+        if ("PyTorch".equals(engineName) && threads > 0) {
+            JniUtils.setNumThreads(threads);
+        }
+    }
+
+    /**
+     * 获取当前生效的intra-op线程数，非PyTorch引擎返回-1
+     */
+    public static int getIntraOpThreads(String engineName) {
+        return "PyTorch".equals(engineName) ? JniUtils.getNumThreads() : -1;
+    }
+
+    /**
+     * 获取当前生效的inter-op线程数，非PyTorch引擎返回-1
+     */
+    public static int getInterOpThreads(String engineName) {
+        return "PyTorch".equals(engineName) ? JniUtils.getNumInteropThreads() : -1;
+    }
+
+    private static int resolveIntraOpThreads(PluginProperties properties) {
+        if (properties.getIntraOpThreads() > 0) {
+            return properties.getIntraOpThreads();
+        }
+        // 未单独配置时，intra-op线程数跟随OMP线程数
+        return properties.getOmpThreads();
+    }
+
+    private static void checkEnvironment(String name, int expected) {
+        if (expected <= 0) {
+            return;
+        }
+        String actual = System.getenv(name);
+        if (!String.valueOf(expected).equals(actual)) {
+            logger.warn("环境变量{}={}与配置值{}不一致，请在启动JVM之前导出 {}={}",
+                    name, actual, expected, name, expected);
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package com.owiseman.embedding.service;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * 带抖动的指数退避
+ * 第n次失败后的等待时间在[base/2, base]之间随机取值，base = min(max, initial * 2^n)，
+ * 避免多个副本在主服务器恢复时同时重连
+ */
+public class ExponentialBackoff {
+
+    private final long initialMs;
+    private final long maxMs;
+    private int attempts;
+
+    public ExponentialBackoff(long initialMs, long maxMs) {
+        this.initialMs = Math.max(1, initialMs);
+        this.maxMs = Math.max(this.initialMs, maxMs);
+    }
+
+    /**
+     * 记录一次失败并返回下次重试前的等待时间（毫秒）
+     */
+    public synchronized long nextDelayMs() {
+        long base = initialMs << Math.min(attempts, 30);
+        if (base <= 0 || base > maxMs) {
+            base = maxMs;
+        }
+        attempts++;
+        long half = base / 2;
+        return half + ThreadLocalRandom.current().nextLong(base - half + 1);
+    }
+
+    public synchronized int getAttempts() {
+        return attempts;
+    }
+
+    public synchronized void reset() {
+        attempts = 0;
+    }
+}
@@ -0,0 +1,164 @@
+package com.owiseman.embedding.service;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+/**
+ * 推理路径上的JFR自定义事件
+ * 事件默认启用，但只有在JFR录制进行中才会提交；未录制时shouldCommit()为false，
+ * 不在方法外逃逸的事件对象由JIT标量替换，几乎没有开销。
+ * 每个事件都带有模型ID、批次大小和token数（排队被拒时尚未分词，token数为0）
+ */
+final class InferenceEvents {
+
+    static final String CATEGORY = "Embedding Plugin";
+
+    private static final EventType FORWARD_TYPE = EventType.getEventType(Forward.class);
+
+    private InferenceEvents() {
+    }
+
+    @Name("com.owiseman.embedding.BatchFormed")
+    @Label("Batch Formed")
+    @Category({CATEGORY, "Inference"})
+    @Description("推理调度器凑成的一个批次，持续时间为该批次的执行时间")
+    static class BatchFormed extends Event {
+        @Label("Model ID")
+        String modelId;
+
+        @Label("Batch Size")
+        int batchSize;
+
+        @Label("Token Count")
+        int tokenCount;
+
+        @Label("Worker")
+        int worker;
+
+        @Label("Oldest Queue Wait")
+        @Timespan(Timespan.NANOSECONDS)
+        long queueWait;
+    }
+
+    @Name("com.owiseman.embedding.Tokenize")
+    @Label("Tokenize")
+    @Category({CATEGORY, "Inference"})
+    @Description("一个批次的分词")
+    static class Tokenize extends Event {
+        @Label("Model ID")
+        String modelId;
+
+        @Label("Batch Size")
+        int batchSize;
+
+        @Label("Token Count")
+        int tokenCount;
+    }
+
+    @Name("com.owiseman.embedding.Forward")
+    @Label("Forward")
+    @Category({CATEGORY, "Inference"})
+    @Description("一个批次从输入张量就绪到模型输出返回的前向计算")
+    static class Forward extends Event {
+        @Label("Model ID")
+        String modelId;
+
+        @Label("Batch Size")
+        int batchSize;
+
+        @Label("Token Count")
+        int tokenCount;
+    }
+
+    @Name("com.owiseman.embedding.TokenizerCache")
+    @Label("Tokenizer Cache")
+    @Category({CATEGORY, "Cache"})
+    @Description("一个批次在分词缓存上的命中和未命中数")
+    static class TokenizerCache extends Event {
+        @Label("Model ID")
+        String modelId;
+
+        @Label("Batch Size")
+        int batchSize;
+
+        @Label("Token Count")
+        int tokenCount;
+
+        @Label("Hits")
+        int hits;
+
+        @Label("Misses")
+        int misses;
+    }
+
+    @Name("com.owiseman.embedding.QueueRejected")
+    @Label("Queue Rejected")
+    @Category({CATEGORY, "Scheduler"})
+    @Description("推理队列已满或调度器已停止，请求被拒绝")
+    static class QueueRejected extends Event {
+        @Label("Model ID")
+        String modelId;
+
+        @Label("Batch Size")
+        int batchSize;
+
+        @Label("Token Count")
+        int tokenCount;
+
+        @Label("Text Length")
+        int textLength;
+
+        @Label("Queue Depth")
+        int queueDepth;
+    }
+
+    /**
+     * 在分词完成后调用：提交分词和缓存事件，并在前向事件启用时开始计时
+     * @return 已开始的前向事件，未启用时为null
+     */
+    static Forward afterTokenize(Tokenize tokenize, String modelId, TextTokenizer.Batch tokens) {
+        tokenize.end();
+        int batchSize = tokens.getLengths().length;
+        if (tokenize.shouldCommit()) {
+            tokenize.modelId = modelId;
+            tokenize.batchSize = batchSize;
+            tokenize.tokenCount = tokens.getTokenCount();
+            tokenize.commit();
+        }
+        TokenizerCache cache = new TokenizerCache();
+        if (cache.shouldCommit()) {
+            cache.modelId = modelId;
+            cache.batchSize = batchSize;
+            cache.tokenCount = tokens.getTokenCount();
+            cache.hits = tokens.getCacheHits();
+            cache.misses = batchSize - tokens.getCacheHits();
+            cache.commit();
+        }
+        if (!FORWARD_TYPE.isEnabled()) {
+            return null;
+        }
+        Forward forward = new Forward();
+        forward.modelId = modelId;
+        forward.batchSize = batchSize;
+        forward.tokenCount = tokens.getTokenCount();
+        forward.begin();
+        return forward;
+    }
+
+    /**
+     * 在模型输出返回后调用，提交前向事件
+     */
+    static void afterForward(Forward forward) {
+        if (forward != null) {
+            forward.end();
+            if (forward.shouldCommit()) {
+                forward.commit();
+            }
+        }
+    }
+}
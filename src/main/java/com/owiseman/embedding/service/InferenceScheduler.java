@@ -0,0 +1,423 @@
+package com.owiseman.embedding.service;
+
+import com.owiseman.embedding.config.PluginProperties;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 推理调度器
+ * 请求进入有界队列后立即返回Future，由调度线程按批次大小和等待窗口合并成批执行，
+ * 调用方的线程（如gRPC传输线程）不再被前向计算占用。
+ * 每个请求可携带截止时间，排队超时或已被调用方取消的请求在出队时直接丢弃，不再进入模型。
+ * 多工作者模式下每个推理工作者有自己的队列、模型实例和调度线程，新请求进入积压最少的工作者；
+ * 开启绑核时工作者的调度线程在首次推理前绑定到各自的CPU集合
+ */
+@Service
+public class InferenceScheduler {
+
+    private static final Logger logger = LoggerFactory.getLogger(InferenceScheduler.class);
+
+    private final EmbeddingModelService embeddingService;
+    private final PluginProperties properties;
+    private final RequestCoalescer coalescer;
+
+    private final List<Worker> workers = new ArrayList<>();
+    private volatile boolean running;
+
+    private final AtomicLong submitted = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong expired = new AtomicLong();
+    private final AtomicLong cancelled = new AtomicLong();
+    private final AtomicLong batches = new AtomicLong();
+    private final AtomicLong batchedTexts = new AtomicLong();
+    // 入队到完成的端到端延迟
+    private final LatencyWindow latency = new LatencyWindow(2048);
+    // 开启自适应批处理时按到达率和实测执行时间调整批次上限和等待窗口，否则为null
+    private AdaptiveBatchController adaptive;
+
+    @Autowired
+    public InferenceScheduler(EmbeddingModelService embeddingService, PluginProperties properties,
+                              RequestCoalescer coalescer) {
+        this.embeddingService = embeddingService;
+        this.properties = properties;
+        this.coalescer = coalescer;
+    }
+
+    @PostConstruct
+    public void start() {
+        running = true;
+
+        int workerCount = embeddingService.getInferenceWorkers();
+        List<String> cpuSets = resolveCpuSets(workerCount);
+        int queueCapacity = Math.max(1, properties.getSchedulerQueueCapacity() / workerCount);
+
+        // 每个工作者的调度线程数与其预测器数量一致，每个线程同一时刻占用一个预测器
+        int dispatchers = embeddingService.getPredictorWorkers();
+        for (int i = 0; i < workerCount; i++) {
+            Worker worker = new Worker(i, cpuSets == null ? null : cpuSets.get(i), queueCapacity, dispatchers);
+            workers.add(worker);
+            for (int d = 0; d < dispatchers; d++) {
+                String name = workerCount > 1 ? "inference-worker-" + i + "-" + d : "inference-dispatcher-" + d;
+                Thread dispatcher = new Thread(() -> dispatchLoop(worker), name);
+                dispatcher.setDaemon(true);
+                worker.threads.add(dispatcher);
+            }
+        }
+        if (properties.isAdaptiveBatching()) {
+            adaptive = new AdaptiveBatchController(properties.getMaxBatchSize(), properties.getMaxBatchWaitMs(),
+                    properties.getLatencySloP99Ms(), properties.getAdaptiveIntervalMs(), workerCount * dispatchers,
+                    latency, this::getQueueDepth);
+            logger.info("已开启自适应批处理，p99目标: {}ms", properties.getLatencySloP99Ms());
+        }
+        for (Worker worker : workers) {
+            worker.threads.forEach(Thread::start);
+        }
+        logger.info("推理调度器已启动，工作者: {}, 每个工作者调度线程: {}, 队列容量: {}, 最大批次: {}, 最长等待: {}ms",
+                workerCount, dispatchers, properties.getSchedulerQueueCapacity(),
+                properties.getMaxBatchSize(), properties.getMaxBatchWaitMs());
+    }
+
+    /**
+     * 确定各工作者的CPU集合：优先使用plugin.workerCpuSets，否则在开启绑核时按NUMA节点自动划分
+     * @return 不绑核时返回null
+     */
+    private List<String> resolveCpuSets(int workerCount) {
+        String configured = properties.getWorkerCpuSets();
+        if (configured != null && !configured.isBlank()) {
+            List<String> cpuSets = Arrays.asList(configured.split(";"));
+            if (cpuSets.size() != workerCount) {
+                throw new IllegalArgumentException("plugin.workerCpuSets的分组数(" + cpuSets.size()
+                        + ")与推理工作者数(" + workerCount + ")不一致");
+            }
+            return cpuSets;
+        }
+        return properties.isPinWorkers() ? CpuAffinity.planCpuSets(workerCount) : null;
+    }
+
+    /**
+     * 提交一条文本的向量化请求
+     * 与进行中的相同文本请求合并为一次推理
+     * @param text 输入文本
+     * @param deadlineNanos 以System.nanoTime()计的截止时间，0表示不限
+     * @return 完成时返回归一化后的向量；调用方取消该Future即可放弃排队中的请求
+     * @throws RejectedExecutionException 队列已满
+     */
+    public CompletableFuture<float[]> submit(String text, long deadlineNanos) {
+        return submit(text, deadlineNanos, null);
+    }
+
+    /**
+     * 提交一条文本的向量化请求，并在所在批次完成时填写请求计时
+     * @param timing 请求计时，可为null；被合并到其他请求上时不填写批次信息
+     */
+    public CompletableFuture<float[]> submit(String text, long deadlineNanos, RequestTiming timing) {
+        if (text == null || text.trim().isEmpty()) {
+            return CompletableFuture.failedFuture(new IllegalArgumentException("输入文本不能为空"));
+        }
+        String normalized = embeddingService.preprocessText(text);
+        return coalescer.execute(embeddingService.coalesceKey(RequestCoalescer.PATH_SCHEDULED), normalized,
+                deadlineNanos, queueDeadline -> enqueue(normalized, queueDeadline, timing));
+    }
+
+    private CompletableFuture<float[]> enqueue(String text, long deadlineNanos, RequestTiming timing) {
+        Task task = new Task(text, deadlineNanos, timing);
+        if (!running || !leastLoaded().queue.offer(task)) {
+            rejected.incrementAndGet();
+            InferenceEvents.QueueRejected event = new InferenceEvents.QueueRejected();
+            if (event.shouldCommit()) {
+                event.modelId = embeddingService.getModelName();
+                event.batchSize = 1;
+                event.textLength = text.length();
+                event.queueDepth = getQueueDepth();
+                event.commit();
+            }
+            throw new RejectedExecutionException("推理队列已满，请稍后重试");
+        }
+        submitted.incrementAndGet();
+        if (adaptive != null) {
+            adaptive.onArrival();
+        }
+        return task.future;
+    }
+
+    /**
+     * 选出积压（排队加正在执行）最少的工作者
+     * 正在执行的文本数取自EmbeddingModelService，包括REST、批量任务等绕过调度器的直接调用
+     */
+    private Worker leastLoaded() {
+        Worker best = workers.get(0);
+        int bestLoad = load(best);
+        for (int i = 1; i < workers.size(); i++) {
+            int load = load(workers.get(i));
+            if (load < bestLoad) {
+                best = workers.get(i);
+                bestLoad = load;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * 当前生效的批次上限，开启自适应批处理时为控制器的最新决策
+     */
+    public int getMaxBatchSize() {
+        return adaptive != null ? adaptive.getBatchLimit() : properties.getMaxBatchSize();
+    }
+
+    public int getQueueDepth() {
+        int depth = 0;
+        for (Worker worker : workers) {
+            depth += worker.queue.size();
+        }
+        return depth;
+    }
+
+    public int getQueueCapacity() {
+        int capacity = 0;
+        for (Worker worker : workers) {
+            capacity += worker.queue.size() + worker.queue.remainingCapacity();
+        }
+        return capacity;
+    }
+
+    /**
+     * 最近请求从入队到完成的延迟分位数（毫秒）
+     */
+    public double getLatencyMillis(double percentile) {
+        return latency.percentileMillis(percentile);
+    }
+
+    /**
+     * 以JSON形式输出调度统计
+     */
+    public String toJson() {
+        long batchCount = batches.get();
+        StringBuilder json = new StringBuilder();
+        json.append("{");
+        json.append("\"queueDepth\": ").append(getQueueDepth()).append(", ");
+        json.append("\"submitted\": ").append(submitted.get()).append(", ");
+        json.append("\"rejected\": ").append(rejected.get()).append(", ");
+        json.append("\"expired\": ").append(expired.get()).append(", ");
+        json.append("\"cancelled\": ").append(cancelled.get()).append(", ");
+        json.append("\"batches\": ").append(batchCount).append(", ");
+        json.append("\"avgBatchSize\": ").append(batchCount == 0 ? 0 : batchedTexts.get() / batchCount).append(", ");
+        json.append("\"p50Ms\": ").append(String.format(Locale.ROOT, "%.2f", latency.percentileMillis(50))).append(", ");
+        json.append("\"p99Ms\": ").append(String.format(Locale.ROOT, "%.2f", latency.percentileMillis(99))).append(", ");
+        json.append("\"adaptive\": ").append(adaptive != null ? adaptive.toJson() : "null").append(", ");
+        json.append("\"workers\": [");
+        for (int i = 0; i < workers.size(); i++) {
+            if (i > 0) {
+                json.append(", ");
+            }
+            workers.get(i).appendJson(json, embeddingService.getActiveTexts(i));
+        }
+        json.append("]");
+        json.append("}");
+        return json.toString();
+    }
+
+    private void dispatchLoop(Worker worker) {
+        worker.prepareThread(embeddingService.getEngineName());
+
+        List<Task> batch = new ArrayList<>(properties.getMaxBatchSize());
+        while (running) {
+            try {
+                Task first = worker.queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                collectBatch(worker, first, batch);
+                if (!batch.isEmpty()) {
+                    runBatch(worker, batch);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                logger.error("调度批次时发生错误: {}", e.getMessage(), e);
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    /**
+     * 以第一个请求为起点，在等待窗口内尽量凑满一个批次
+     */
+    private void collectBatch(Worker worker, Task first, List<Task> batch) throws InterruptedException {
+        addIfLive(first, batch);
+        int maxBatchSize = getMaxBatchSize();
+        long windowEnd = System.nanoTime() + (adaptive != null ? adaptive.getWaitNanos()
+                : TimeUnit.MILLISECONDS.toNanos(properties.getMaxBatchWaitMs()));
+        while (batch.size() < maxBatchSize) {
+            long remaining = windowEnd - System.nanoTime();
+            Task next = remaining > 0 ? worker.queue.poll(remaining, TimeUnit.NANOSECONDS) : worker.queue.poll();
+            if (next == null) {
+                break;
+            }
+            addIfLive(next, batch);
+        }
+    }
+
+    private int load(Worker worker) {
+        return worker.queue.size() + embeddingService.getActiveTexts(worker.index);
+    }
+
+    private void addIfLive(Task task, List<Task> batch) {
+        if (task.future.isDone()) {
+            // 调用方已取消（如客户端断开）
+            cancelled.incrementAndGet();
+            return;
+        }
+        if (task.deadlineNanos != 0 && System.nanoTime() - task.deadlineNanos >= 0) {
+            expired.incrementAndGet();
+            task.future.completeExceptionally(new TimeoutException("请求在队列中等待超过截止时间"));
+            return;
+        }
+        batch.add(task);
+    }
+
+    private void runBatch(Worker worker, List<Task> batch) {
+        List<String> texts = new ArrayList<>(batch.size());
+        for (Task task : batch) {
+            texts.add(task.text);
+        }
+
+        batches.incrementAndGet();
+        batchedTexts.addAndGet(batch.size());
+        InferenceEvents.BatchFormed event = new InferenceEvents.BatchFormed();
+        event.begin();
+        long start = System.nanoTime();
+        try (EmbeddingBatch result = embeddingService.getPreprocessedEmbeddingBatch(texts, worker.index)) {
+            long now = System.nanoTime();
+            event.end();
+            if (event.shouldCommit()) {
+                event.modelId = embeddingService.getModelName();
+                event.batchSize = batch.size();
+                event.tokenCount = result.getTotalTokens();
+                event.worker = worker.index;
+                event.queueWait = start - batch.get(0).enqueuedNanos;
+                event.commit();
+            }
+            for (int i = 0; i < batch.size(); i++) {
+                Task task = batch.get(i);
+                if (task.timing != null) {
+                    task.timing.recordBatch(start, result, i);
+                }
+                task.future.complete(result.toArray(i));
+                latency.record(now - task.enqueuedNanos);
+            }
+        } catch (Exception e) {
+            for (Task task : batch) {
+                task.future.completeExceptionally(e);
+            }
+        } finally {
+            long elapsed = System.nanoTime() - start;
+            worker.record(batch.size(), elapsed);
+            if (adaptive != null) {
+                adaptive.onBatch(batch.size(), elapsed);
+            }
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        running = false;
+        for (Worker worker : workers) {
+            for (Thread dispatcher : worker.threads) {
+                dispatcher.interrupt();
+            }
+            Task task;
+            while ((task = worker.queue.poll()) != null) {
+                task.future.completeExceptionally(new RejectedExecutionException("推理调度器已关闭"));
+            }
+        }
+    }
+
+    /**
+     * 推理工作者：独立的队列和调度线程，在EmbeddingModelService中对应独立的模型实例
+     */
+    private static class Worker {
+        final int index;
+        final String cpuSet;
+        final int dispatchers;
+        final BlockingQueue<Task> queue;
+        final List<Thread> threads = new ArrayList<>();
+        final AtomicLong batches = new AtomicLong();
+        final AtomicLong texts = new AtomicLong();
+        final AtomicLong busyNanos = new AtomicLong();
+        final long startNanos = System.nanoTime();
+        volatile boolean pinned;
+
+        Worker(int index, String cpuSet, int queueCapacity, int dispatchers) {
+            this.index = index;
+            this.cpuSet = cpuSet;
+            this.dispatchers = dispatchers;
+            this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        }
+
+        /**
+         * 在调度线程首次推理前绑核并设置intra-op线程数，原生线程池随后继承这些设置
+         */
+        void prepareThread(String engineName) {
+            if (cpuSet == null) {
+                return;
+            }
+            pinned = CpuAffinity.pinCurrentThread(cpuSet);
+            EngineThreading.setIntraOpThreads(engineName, Math.max(1, CpuAffinity.countCpus(cpuSet) / dispatchers));
+        }
+
+        void record(int size, long elapsedNanos) {
+            batches.incrementAndGet();
+            texts.addAndGet(size);
+            busyNanos.addAndGet(elapsedNanos);
+        }
+
+        void appendJson(StringBuilder json, int active) {
+            long elapsed = Math.max(1, System.nanoTime() - startNanos);
+            json.append("{");
+            json.append("\"id\": ").append(index).append(", ");
+            json.append("\"cpus\": \"").append(cpuSet == null ? "" : cpuSet).append("\", ");
+            json.append("\"pinned\": ").append(pinned).append(", ");
+            json.append("\"queueDepth\": ").append(queue.size()).append(", ");
+            json.append("\"active\": ").append(active).append(", ");
+            json.append("\"batches\": ").append(batches.get()).append(", ");
+            json.append("\"texts\": ").append(texts.get()).append(", ");
+            json.append("\"throughput\": ").append(String.format(Locale.ROOT, "%.1f",
+                    texts.get() * 1e9 / elapsed)).append(", ");
+            json.append("\"utilization\": ").append(String.format(Locale.ROOT, "%.3f",
+                    Math.min(1.0, (double) busyNanos.get() / (elapsed * dispatchers))));
+            json.append("}");
+        }
+    }
+
+    private static class Task {
+        final String text;
+        final long deadlineNanos;
+        final long enqueuedNanos = System.nanoTime();
+        final RequestTiming timing;
+        final CompletableFuture<float[]> future = new CompletableFuture<>();
+
+        Task(String text, long deadlineNanos, RequestTiming timing) {
+            this.text = text;
+            this.deadlineNanos = deadlineNanos;
+            this.timing = timing;
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package com.owiseman.embedding.service;
+
+import java.util.Arrays;
+
+/**
+ * 最近请求延迟的滑动窗口
+ * 环形数组保存最近N个样本，按需复制排序求分位数；只在状态查询和心跳时计算，记录路径上只有一次数组写入
+ */
+public class LatencyWindow {
+
+    private final long[] samples;
+    private long count;
+
+    public LatencyWindow(int size) {
+        this.samples = new long[Math.max(1, size)];
+    }
+
+    public synchronized void record(long nanos) {
+        samples[(int) (count % samples.length)] = nanos;
+        count++;
+    }
+
+    /**
+     * 计算窗口内的延迟分位数
+     * @param percentile 0到100之间的分位
+     * @return 毫秒；窗口为空时返回0
+     */
+    public double percentileMillis(double percentile) {
+        long[] copy;
+        synchronized (this) {
+            copy = Arrays.copyOf(samples, (int) Math.min(count, samples.length));
+        }
+        if (copy.length == 0) {
+            return 0;
+        }
+        Arrays.sort(copy);
+        int index = (int) Math.ceil(percentile / 100.0 * copy.length) - 1;
+        return copy[Math.max(0, Math.min(copy.length - 1, index))] / 1e6;
+    }
+
+    public synchronized long getCount() {
+        return count;
+    }
+}
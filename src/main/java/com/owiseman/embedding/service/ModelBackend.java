@@ -0,0 +1,111 @@
+package com.owiseman.embedding.service;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Locale;
+import java.util.stream.Stream;
+
+/**
+ * 推理后端
+ * 根据配置或模型目录的布局选择DJL引擎，批处理和转换器对所有后端保持一致
+ */
+public enum ModelBackend {
+
+    /** TorchScript模型（*.pt），单个索引张量输入 */
+    TORCHSCRIPT("PyTorch", ".pt", false),
+
+    /** TensorFlow SavedModel目录（saved_model.pb），按名称传入BERT输入 */
+    TF_SAVED_MODEL("TensorFlow", "saved_model.pb", true),
+
+    /** ONNX Runtime CPU（*.onnx），按名称传入BERT输入 */
+    ONNX("OnnxRuntime", ".onnx", true);
+
+    private final String engineName;
+    private final String marker;
+    private final boolean namedInputs;
+
+    ModelBackend(String engineName, String marker, boolean namedInputs) {
+        this.engineName = engineName;
+        this.marker = marker;
+        this.namedInputs = namedInputs;
+    }
+
+    public String getEngineName() {
+        return engineName;
+    }
+
+    /**
+     * 是否需要input_ids/attention_mask/token_type_ids三个具名输入
+     */
+    public boolean usesNamedInputs() {
+        return namedInputs;
+    }
+
+    /**
+     * 根据配置选择后端
+     * @param engine 配置的引擎名，auto或空表示按模型路径自动识别
+     * @param modelPath 模型文件或目录
+     */
+    public static ModelBackend resolve(String engine, Path modelPath) throws IOException {
+        if (engine == null || engine.isBlank() || "auto".equalsIgnoreCase(engine)) {
+            return detect(modelPath);
+        }
+        for (ModelBackend backend : values()) {
+            if (backend.engineName.equalsIgnoreCase(engine) || backend.name().equalsIgnoreCase(engine)) {
+                return backend;
+            }
+        }
+        throw new IllegalArgumentException("不支持的推理引擎: " + engine);
+    }
+
+    /**
+     * 根据模型文件扩展名或目录内容识别后端
+     */
+    public static ModelBackend detect(Path modelPath) throws IOException {
+        if (Files.isRegularFile(modelPath)) {
+            String fileName = modelPath.getFileName().toString().toLowerCase(Locale.ROOT);
+            if (fileName.equals(TF_SAVED_MODEL.marker)) {
+                return TF_SAVED_MODEL;
+            }
+            if (fileName.endsWith(ONNX.marker)) {
+                return ONNX;
+            }
+            return TORCHSCRIPT;
+        }
+
+        if (Files.isDirectory(modelPath)) {
+            if (Files.exists(modelPath.resolve(TF_SAVED_MODEL.marker))) {
+                return TF_SAVED_MODEL;
+            }
+            try (Stream<Path> files = Files.list(modelPath)) {
+                // 目录中同时存在多种格式时优先ONNX，通常它在我们的CPU上最快
+                boolean hasTorchScript = false;
+                for (Path file : (Iterable<Path>) files::iterator) {
+                    String fileName = file.getFileName().toString().toLowerCase(Locale.ROOT);
+                    if (fileName.endsWith(ONNX.marker)) {
+                        return ONNX;
+                    }
+                    hasTorchScript |= fileName.endsWith(TORCHSCRIPT.marker);
+                }
+                if (hasTorchScript) {
+                    return TORCHSCRIPT;
+                }
+            }
+        }
+
+        throw new IOException("无法识别模型格式: " + modelPath);
+    }
+
+    /**
+     * DJL按模型名在目录中查找文件，单文件模型使用去掉扩展名的文件名
+     */
+    public static String modelNameFor(Path modelPath, String defaultName) {
+        if (Files.isRegularFile(modelPath)) {
+            String fileName = modelPath.getFileName().toString();
+            int dot = fileName.lastIndexOf('.');
+            return dot > 0 ? fileName.substring(0, dot) : fileName;
+        }
+        return defaultName;
+    }
+}
@@ -0,0 +1,573 @@
+package com.owiseman.embedding.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.owiseman.embedding.config.PluginProperties;
+import com.owiseman.embedding.util.JsonStrings;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+/**
+ * 本地模型目录
+ * 从模型目录下的清单文件（默认models/catalog.json）读取各模型的路径、引擎、维度、最大序列长度、校验和与大小，
+ * 没有清单时按文件布局在模型目录中查找。启动时并行检查各模型是否存在、大小是否与清单一致，
+ * SHA-256校验和需要读取整个模型文件，改为按需在后台线程中计算。整个过程只访问本地文件，不访问网络
+ */
+@Component
+public class ModelCatalog {
+
+    private static final Logger logger = LoggerFactory.getLogger(ModelCatalog.class);
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+    private static final String DJL_OFFLINE = "ai.djl.offline";
+    private static final int DISCOVERY_DEPTH = 3;
+
+    public static final String STATUS_OK = "ok";
+    public static final String STATUS_MISSING = "missing";
+    public static final String STATUS_SIZE_MISMATCH = "sizeMismatch";
+    public static final String STATUS_UNRECOGNIZED = "unrecognized";
+
+    public static final String CHECKSUM_NONE = "none";
+    public static final String CHECKSUM_UNVERIFIED = "unverified";
+    public static final String CHECKSUM_VERIFYING = "verifying";
+    public static final String CHECKSUM_OK = "ok";
+    public static final String CHECKSUM_MISMATCH = "mismatch";
+    public static final String CHECKSUM_FAILED = "failed";
+
+    private final PluginProperties properties;
+    private volatile List<Entry> entries = List.of();
+    private volatile Path manifestPath;
+    private volatile boolean fromManifest;
+    private ExecutorService checksumExecutor;
+
+    @Autowired
+    public ModelCatalog(PluginProperties properties) {
+        this.properties = properties;
+    }
+
+    /**
+     * 目录中的一个模型
+     */
+    public static class Entry {
+        private final String name;
+        private final Path path;
+        private final String engine;
+        private final int dimension;
+        private final int maxSequenceLength;
+        private final Path tokenizer;
+        private final String sha256;
+        private final long size;
+
+        // 扫描结果
+        private volatile String status = STATUS_OK;
+        private volatile String detectedEngine;
+        private volatile long actualSize = -1;
+        private volatile boolean loaded;
+
+        // 校验结果，按需计算
+        private volatile String checksumStatus;
+        private volatile String actualSha256;
+        private CompletableFuture<String> checksum;
+
+        Entry(String name, Path path, String engine, int dimension, int maxSequenceLength, Path tokenizer,
+              String sha256, long size) {
+            this.name = name;
+            this.path = path;
+            this.engine = engine;
+            this.dimension = dimension;
+            this.maxSequenceLength = maxSequenceLength;
+            this.tokenizer = tokenizer;
+            this.sha256 = sha256 == null || sha256.isBlank() ? null : sha256.toLowerCase(Locale.ROOT);
+            this.size = size;
+            this.checksumStatus = this.sha256 == null ? CHECKSUM_NONE : CHECKSUM_UNVERIFIED;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public Path getPath() {
+            return path;
+        }
+
+        /**
+         * 清单中的引擎名，未填写时为扫描时按文件布局识别的引擎
+         */
+        public String getEngine() {
+            return engine != null ? engine : detectedEngine;
+        }
+
+        /**
+         * @return 向量维度，未知时为0
+         */
+        public int getDimension() {
+            return dimension;
+        }
+
+        /**
+         * @return 含特殊token的最大序列长度，未知时为0
+         */
+        public int getMaxSequenceLength() {
+            return maxSequenceLength;
+        }
+
+        /**
+         * @return 分词器文件，未知时为null
+         */
+        public Path getTokenizer() {
+            return tokenizer;
+        }
+
+        public String getSha256() {
+            return sha256;
+        }
+
+        public long getSize() {
+            return size;
+        }
+
+        public String getStatus() {
+            return status;
+        }
+
+        public long getActualSize() {
+            return actualSize;
+        }
+
+        public String getChecksumStatus() {
+            return checksumStatus;
+        }
+
+        public String getActualSha256() {
+            return actualSha256;
+        }
+
+        public boolean isLoaded() {
+            return loaded;
+        }
+    }
+
+    @PostConstruct
+    public void start() {
+        checksumExecutor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "model-checksum");
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MIN_PRIORITY);
+            return thread;
+        });
+        try {
+            scan();
+        } catch (Exception e) {
+            // 目录只用于选择和展示，读取失败时仍可按plugin.modelPath加载模型
+            logger.warn("扫描本地模型目录失败: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 重新扫描模型目录
+     * 读取清单（不存在时按文件布局查找），然后并行检查每个模型；不计算校验和
+     */
+    public void scan() throws IOException, InterruptedException {
+        Path manifest = Paths.get(properties.getModelCatalogPath());
+        List<Entry> found;
+        if (Files.isRegularFile(manifest)) {
+            found = readManifest(manifest);
+            fromManifest = true;
+        } else {
+            Path directory = manifest.toAbsolutePath().getParent();
+            found = directory != null && Files.isDirectory(directory) ? discover(directory) : new ArrayList<>();
+            fromManifest = false;
+            logger.info("未找到模型清单{}，按文件布局找到{}个模型", manifest, found.size());
+        }
+        manifestPath = manifest;
+
+        long start = System.nanoTime();
+        check(found, Math.max(1, properties.getModelCatalogScanThreads()));
+        entries = Collections.unmodifiableList(found);
+
+        long problems = found.stream().filter(entry -> !STATUS_OK.equals(entry.status)).count();
+        logger.info("本地模型目录扫描完成，{}个模型，{}个异常，耗时{}ms",
+                found.size(), problems, (System.nanoTime() - start) / 1_000_000);
+        for (Entry entry : found) {
+            if (!STATUS_OK.equals(entry.status)) {
+                logger.warn("模型{}状态异常: {}，路径: {}", entry.name, entry.status, entry.path);
+            }
+        }
+    }
+
+    /**
+     * 读取清单文件，路径相对于清单所在目录
+     */
+    static List<Entry> readManifest(Path manifest) throws IOException {
+        JsonNode root = OBJECT_MAPPER.readTree(manifest.toFile());
+        JsonNode models = root.path("models");
+        if (!models.isArray()) {
+            throw new IOException("模型清单缺少models数组: " + manifest);
+        }
+        Path base = manifest.toAbsolutePath().getParent();
+        List<Entry> result = new ArrayList<>(models.size());
+        for (JsonNode node : models) {
+            String name = node.path("name").asText("");
+            String path = node.path("path").asText("");
+            if (name.isEmpty() || path.isEmpty()) {
+                throw new IOException("模型清单中的条目缺少name或path: " + node);
+            }
+            String tokenizer = node.path("tokenizer").asText("");
+            result.add(new Entry(name, base.resolve(path).normalize(),
+                    node.hasNonNull("engine") ? node.get("engine").asText() : null,
+                    node.path("dimension").asInt(0),
+                    node.path("maxSequenceLength").asInt(0),
+                    tokenizer.isEmpty() ? null : base.resolve(tokenizer).normalize(),
+                    node.path("sha256").asText(null),
+                    node.path("size").asLong(-1)));
+        }
+        return result;
+    }
+
+    /**
+     * 没有清单时在模型目录中查找*.pt、*.onnx和SavedModel目录，同目录下的tokenizer.json作为分词器
+     */
+    static List<Entry> discover(Path directory) throws IOException {
+        List<Entry> result = new ArrayList<>();
+        try (Stream<Path> files = Files.walk(directory, DISCOVERY_DEPTH)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                String fileName = file.getFileName().toString();
+                String lower = fileName.toLowerCase(Locale.ROOT);
+                Path modelPath;
+                String name;
+                if (lower.equals("saved_model.pb")) {
+                    modelPath = file.getParent();
+                    name = modelPath.getFileName().toString();
+                } else if (lower.endsWith(".pt") || lower.endsWith(".onnx")) {
+                    modelPath = file;
+                    name = fileName.substring(0, fileName.lastIndexOf('.'));
+                } else {
+                    continue;
+                }
+                Path tokenizer = modelPath.resolveSibling("tokenizer.json");
+                if (Files.isDirectory(modelPath)) {
+                    tokenizer = Files.isRegularFile(modelPath.resolve("tokenizer.json"))
+                            ? modelPath.resolve("tokenizer.json") : tokenizer;
+                }
+                result.add(new Entry(name, modelPath.toAbsolutePath().normalize(), null, 0, 0,
+                        Files.isRegularFile(tokenizer) ? tokenizer.toAbsolutePath().normalize() : null, null, -1));
+            }
+        }
+        result.sort((a, b) -> a.path.compareTo(b.path));
+        return result;
+    }
+
+    /**
+     * 并行检查各模型：是否存在、实际大小、引擎；大模型目录在网络存储上逐个stat也可能较慢
+     */
+    private static void check(List<Entry> found, int threads) throws InterruptedException {
+        if (found.isEmpty()) {
+            return;
+        }
+        AtomicInteger threadCount = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(threads, found.size()), runnable -> {
+            Thread thread = new Thread(runnable, "model-catalog-scan-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            List<Callable<Void>> tasks = new ArrayList<>(found.size());
+            for (Entry entry : found) {
+                tasks.add(() -> {
+                    checkEntry(entry);
+                    return null;
+                });
+            }
+            for (Future<Void> future : executor.invokeAll(tasks)) {
+                try {
+                    future.get();
+                } catch (ExecutionException e) {
+                    logger.warn("检查模型失败: {}", e.getCause().getMessage());
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static void checkEntry(Entry entry) throws IOException {
+        if (!Files.exists(entry.path)) {
+            entry.status = STATUS_MISSING;
+            return;
+        }
+        entry.actualSize = sizeOf(entry.path);
+        try {
+            entry.detectedEngine = ModelBackend.detect(entry.path).getEngineName();
+        } catch (IOException e) {
+            if (entry.engine == null) {
+                entry.status = STATUS_UNRECOGNIZED;
+                return;
+            }
+        }
+        if (entry.size >= 0 && entry.size != entry.actualSize) {
+            entry.status = STATUS_SIZE_MISMATCH;
+        }
+    }
+
+    private static long sizeOf(Path path) throws IOException {
+        if (Files.isRegularFile(path)) {
+            return Files.size(path);
+        }
+        long total = 0;
+        try (Stream<Path> files = Files.walk(path)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                if (Files.isRegularFile(file)) {
+                    total += Files.size(file);
+                }
+            }
+        }
+        return total;
+    }
+
+    public List<Entry> getEntries() {
+        return entries;
+    }
+
+    /**
+     * 按名称查找模型
+     * @return 模型，不存在时为null
+     */
+    public Entry find(String name) {
+        for (Entry entry : entries) {
+            if (entry.name.equals(name)) {
+                return entry;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 按名称选择要加载的模型
+     * @throws IllegalArgumentException 目录中没有该模型或模型文件不可用
+     */
+    public Entry select(String name) {
+        Entry entry = find(name);
+        if (entry == null) {
+            throw new IllegalArgumentException("本地模型目录" + manifestPath + "中没有模型: " + name);
+        }
+        if (STATUS_MISSING.equals(entry.status) || STATUS_UNRECOGNIZED.equals(entry.status)) {
+            throw new IllegalArgumentException("模型" + name + "不可用: " + entry.status + "，路径: " + entry.path);
+        }
+        if (STATUS_SIZE_MISMATCH.equals(entry.status)) {
+            logger.warn("模型{}的大小与清单不一致（清单{}字节，实际{}字节），可能未完整复制",
+                    name, entry.size, entry.actualSize);
+        }
+        return entry;
+    }
+
+    /**
+     * 标记实际加载的模型，并按配置在后台校验其SHA-256
+     * @param path 实际加载的模型路径，不在目录中时忽略
+     */
+    public void markLoaded(Path path) {
+        Path normalized = path.toAbsolutePath().normalize();
+        for (Entry entry : entries) {
+            if (entry.path.equals(normalized)) {
+                entry.loaded = true;
+                if (properties.isVerifyModelChecksum() && entry.sha256 != null) {
+                    verify(entry);
+                }
+            }
+        }
+    }
+
+    /**
+     * 计算模型的SHA-256并与清单比对，同一模型只计算一次
+     * @return 校验状态
+     */
+    public CompletableFuture<String> verify(Entry entry) {
+        synchronized (entry) {
+            if (entry.checksum == null) {
+                entry.checksumStatus = CHECKSUM_VERIFYING;
+                entry.checksum = CompletableFuture.supplyAsync(() -> computeChecksum(entry), checksumExecutor);
+            }
+            return entry.checksum;
+        }
+    }
+
+    private static String computeChecksum(Entry entry) {
+        long start = System.nanoTime();
+        try {
+            entry.actualSha256 = sha256(entry.path);
+        } catch (IOException e) {
+            logger.warn("计算模型{}的校验和失败: {}", entry.name, e.getMessage());
+            entry.checksumStatus = CHECKSUM_FAILED;
+            return entry.checksumStatus;
+        }
+        if (entry.sha256 == null) {
+            entry.checksumStatus = CHECKSUM_NONE;
+        } else if (entry.sha256.equals(entry.actualSha256)) {
+            entry.checksumStatus = CHECKSUM_OK;
+        } else {
+            entry.checksumStatus = CHECKSUM_MISMATCH;
+            logger.error("模型{}的SHA-256与清单不一致，文件可能已损坏: 期望{}，实际{}",
+                    entry.name, entry.sha256, entry.actualSha256);
+        }
+        logger.info("模型{}校验完成: {}，耗时{}ms", entry.name, entry.checksumStatus,
+                (System.nanoTime() - start) / 1_000_000);
+        return entry.checksumStatus;
+    }
+
+    /**
+     * 计算文件的SHA-256；目录按相对路径排序，依次计入每个文件的相对路径和内容
+     */
+    public static String sha256(Path path) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        ByteBuffer buffer = ByteBuffer.allocateDirect(1 << 20);
+        if (Files.isRegularFile(path)) {
+            update(digest, path, buffer);
+        } else {
+            List<Path> files;
+            try (Stream<Path> walk = Files.walk(path)) {
+                files = walk.filter(Files::isRegularFile).sorted().toList();
+            }
+            for (Path file : files) {
+                digest.update(path.relativize(file).toString().replace('\\', '/').getBytes(StandardCharsets.UTF_8));
+                update(digest, file, buffer);
+            }
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    private static void update(MessageDigest digest, Path file, ByteBuffer buffer) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            buffer.clear();
+            while (channel.read(buffer) >= 0) {
+                buffer.flip();
+                digest.update(buffer);
+                buffer.clear();
+            }
+        }
+    }
+
+    /**
+     * 开启DJL离线模式，必须在第一次加载引擎之前调用
+     * 离线模式下DJL不会下载模型、本地库或访问模型仓库，缺少文件时直接失败
+     */
+    public static void applyOfflineMode(PluginProperties properties) {
+        if (properties.isOffline() && System.getProperty(DJL_OFFLINE) == null) {
+            System.setProperty(DJL_OFFLINE, "true");
+            logger.info("已开启DJL离线模式，启动过程不访问网络");
+        }
+    }
+
+    /**
+     * 以JSON形式输出目录内容和扫描、校验结果
+     */
+    public String toJson() {
+        List<Entry> current = entries;
+        StringBuilder json = new StringBuilder(128 + current.size() * 256);
+        json.append("{");
+        json.append("\"manifest\": \"").append(JsonStrings.escape(String.valueOf(manifestPath))).append("\", ");
+        json.append("\"fromManifest\": ").append(fromManifest).append(", ");
+        json.append("\"models\": [");
+        for (int i = 0; i < current.size(); i++) {
+            if (i > 0) {
+                json.append(", ");
+            }
+            appendEntry(json, current.get(i));
+        }
+        json.append("]");
+        json.append("}");
+        return json.toString();
+    }
+
+    private static void appendEntry(StringBuilder json, Entry entry) {
+        json.append("{");
+        json.append("\"name\": \"").append(JsonStrings.escape(entry.name)).append("\", ");
+        json.append("\"path\": \"").append(JsonStrings.escape(entry.path.toString())).append("\", ");
+        json.append("\"engine\": ").append(quote(entry.getEngine())).append(", ");
+        json.append("\"dimension\": ").append(entry.dimension).append(", ");
+        json.append("\"maxSequenceLength\": ").append(entry.maxSequenceLength).append(", ");
+        json.append("\"tokenizer\": ").append(quote(entry.tokenizer == null ? null : entry.tokenizer.toString()))
+                .append(", ");
+        json.append("\"size\": ").append(entry.size).append(", ");
+        json.append("\"actualSize\": ").append(entry.actualSize).append(", ");
+        json.append("\"status\": \"").append(entry.status).append("\", ");
+        json.append("\"sha256\": ").append(quote(entry.sha256)).append(", ");
+        json.append("\"checksum\": \"").append(entry.checksumStatus).append("\", ");
+        json.append("\"loaded\": ").append(entry.loaded);
+        json.append("}");
+    }
+
+    /**
+     * 按当前扫描结果生成清单，路径写为相对于清单目录的形式；已计算过的校验和一并写入
+     * @param base 清单所在目录
+     */
+    public String toManifestJson(Path base) {
+        Path absoluteBase = base.toAbsolutePath().normalize();
+        StringBuilder json = new StringBuilder(64 + entries.size() * 256);
+        json.append("{\n  \"models\": [");
+        List<Entry> current = entries;
+        for (int i = 0; i < current.size(); i++) {
+            Entry entry = current.get(i);
+            json.append(i > 0 ? ",\n" : "\n").append("    {");
+            json.append("\"name\": \"").append(JsonStrings.escape(entry.name)).append("\", ");
+            json.append("\"path\": \"").append(JsonStrings.escape(relative(absoluteBase, entry.path))).append("\", ");
+            json.append("\"engine\": ").append(quote(entry.getEngine())).append(", ");
+            json.append("\"dimension\": ").append(entry.dimension).append(", ");
+            json.append("\"maxSequenceLength\": ").append(entry.maxSequenceLength).append(", ");
+            json.append("\"tokenizer\": ")
+                    .append(quote(entry.tokenizer == null ? null : relative(absoluteBase, entry.tokenizer)))
+                    .append(", ");
+            json.append("\"sha256\": ").append(quote(entry.actualSha256 != null ? entry.actualSha256 : entry.sha256))
+                    .append(", ");
+            json.append("\"size\": ").append(entry.actualSize >= 0 ? entry.actualSize : entry.size);
+            json.append("}");
+        }
+        json.append("\n  ]\n}\n");
+        return json.toString();
+    }
+
+    private static String relative(Path base, Path path) {
+        return base.relativize(path).toString().replace('\\', '/');
+    }
+
+    private static String quote(String value) {
+        return value == null ? "null" : "\"" + JsonStrings.escape(value) + "\"";
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (checksumExecutor != null) {
+            checksumExecutor.shutdownNow();
+        }
+    }
+}
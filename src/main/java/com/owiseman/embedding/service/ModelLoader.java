@@ -0,0 +1,105 @@
+package com.owiseman.embedding.service;
+
+import ai.djl.MalformedModelException;
+import ai.djl.inference.Predictor;
+import ai.djl.repository.zoo.Criteria;
+import ai.djl.repository.zoo.ModelNotFoundException;
+import ai.djl.repository.zoo.ModelZoo;
+import ai.djl.repository.zoo.ZooModel;
+import ai.djl.training.util.ProgressBar;
+import com.owiseman.embedding.config.PluginProperties;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * 模型加载器
+ * 按推理后端组装DJL加载标准，服务和基准测试共用同一套加载逻辑
+ */
+public final class ModelLoader {
+
+    private static final Logger logger = LoggerFactory.getLogger(ModelLoader.class);
+
+    private ModelLoader() {
+    }
+
+    /**
+     * 加载嵌入模型
+     * @param modelPath 模型文件或目录
+     * @param backend 推理后端
+     * @param defaultName 目录形式的模型使用的模型名
+     * @param properties 插件配置，用于传递引擎线程参数
+     * @return 已加载的模型
+     */
+    public static ZooModel<String, float[]> load(Path modelPath, ModelBackend backend, String defaultName,
+                                                 PluginProperties properties)
+            throws ModelNotFoundException, MalformedModelException, IOException {
+        return load(modelPath, backend, defaultName, properties, TextTokenizer.charCodes());
+    }
+
+    /**
+     * 使用指定分词器加载嵌入模型
+     * @param tokenizer 单条文本转换器使用的分词器
+     */
+    public static ZooModel<String, float[]> load(Path modelPath, ModelBackend backend, String defaultName,
+                                                 PluginProperties properties, TextTokenizer tokenizer)
+            throws ModelNotFoundException, MalformedModelException, IOException {
+        // SavedModel需要传入目录
+        if (backend == ModelBackend.TF_SAVED_MODEL && Files.isRegularFile(modelPath)) {
+            modelPath = modelPath.getParent();
+        }
+
+        String modelName = ModelBackend.modelNameFor(modelPath, defaultName);
+        Criteria.Builder<String, float[]> builder = Criteria.builder()
+                .setTypes(String.class, float[].class)
+                .optModelPath(modelPath)
+                .optModelName(modelName)
+                .optEngine(backend.getEngineName())
+                .optProgress(new ProgressBar())
+                .optTranslator(new TextEmbeddingTranslator(backend, tokenizer, modelName,
+                        "true".equalsIgnoreCase(properties.getTorchScriptAttentionMask())));
+
+        // ONNX Runtime的线程数通过会话选项设置
+        if (backend == ModelBackend.ONNX) {
+            if (properties.getIntraOpThreads() > 0) {
+                builder.optOption("intraOpNumThreads", String.valueOf(properties.getIntraOpThreads()));
+            }
+            if (properties.getInterOpThreads() > 0) {
+                builder.optOption("interOpNumThreads", String.valueOf(properties.getInterOpThreads()));
+            }
+        }
+
+        logger.info("使用{}引擎加载模型: {}", backend.getEngineName(), modelPath);
+        return ModelZoo.loadModel(builder.build());
+    }
+
+    /**
+     * 判断TorchScript模型的forward是否接收attention_mask
+     * 配置为auto时用两条长度不同的文本带掩码试探一次前向计算，失败则按只接收索引张量处理；
+     * 其他后端按名称传入掩码，不受该配置影响
+     * @return 批量推理时是否随补齐后的索引传入掩码
+     */
+    public static boolean acceptsAttentionMask(ZooModel<String, float[]> model, ModelBackend backend,
+                                               TextTokenizer tokenizer, PluginProperties properties) {
+        String setting = properties.getTorchScriptAttentionMask();
+        if (backend != ModelBackend.TORCHSCRIPT || !"auto".equalsIgnoreCase(setting)) {
+            return "true".equalsIgnoreCase(setting);
+        }
+        try (Predictor<List<String>, EmbeddingBatch> predictor = model.newPredictor(
+                new BatchEmbeddingTranslator(new VectorBufferPool(properties), backend, tokenizer,
+                        model.getName(), true),
+                model.getNDManager().getDevice())) {
+            predictor.predict(List.of("a", "a b c d")).close();
+            logger.info("TorchScript模型接收attention_mask，批量请求整批补齐推理");
+            return true;
+        } catch (Exception e) {
+            logger.warn("TorchScript模型不接收attention_mask，批量请求将按token数分组推理，长度各异的批次接近逐条推理；"
+                    + "建议以forward(input_ids, attention_mask)重新导出: {}", e.getMessage());
+            return false;
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package com.owiseman.embedding.service;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * 模型精度
+ * INT8对应离线动态量化后的模型：TorchScript量化模型或ONNX QDQ模型，与FP32模型放在同一目录下
+ */
+public enum ModelPrecision {
+
+    FP32,
+    INT8;
+
+    private static final String[] INT8_MARKERS = {".int8", "_int8", "-int8", "_quantized", "-quantized"};
+
+    public static ModelPrecision fromConfig(String value) {
+        if (value == null || value.isBlank()) {
+            return FP32;
+        }
+        try {
+            return valueOf(value.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("不支持的模型精度: " + value + "，可选值: fp32, int8");
+        }
+    }
+
+    /**
+     * 解析实际要加载的模型路径
+     * @param modelPath FP32模型文件或目录
+     * @param int8ModelPath 显式配置的INT8模型路径，为空时在FP32模型旁查找
+     * @return 当前精度对应的模型路径
+     */
+    public Path resolveModelPath(Path modelPath, String int8ModelPath) throws IOException {
+        if (this == FP32) {
+            return modelPath;
+        }
+        if (int8ModelPath != null && !int8ModelPath.isBlank()) {
+            return Path.of(int8ModelPath);
+        }
+
+        Path directory = Files.isDirectory(modelPath) ? modelPath : modelPath.getParent();
+        if (directory != null && Files.isDirectory(directory)) {
+            List<Path> candidates;
+            try (Stream<Path> files = Files.list(directory)) {
+                // 按文件名排序，目录遍历顺序不固定时也总是选中同一个文件
+                candidates = files.filter(ModelPrecision::isInt8Model)
+                        .sorted(Comparator.comparing(file -> file.getFileName().toString()))
+                        .collect(Collectors.toList());
+            }
+            // 优先选择与FP32模型同名的量化模型，如LaBSE.pt对应LaBSE.int8.pt
+            if (!Files.isDirectory(modelPath)) {
+                String stem = stemOf(modelPath);
+                for (Path candidate : candidates) {
+                    for (String marker : INT8_MARKERS) {
+                        if (stemOf(candidate).equalsIgnoreCase(stem + marker)) {
+                            return candidate;
+                        }
+                    }
+                }
+            }
+            if (!candidates.isEmpty()) {
+                return candidates.get(0);
+            }
+        }
+        throw new IOException("未找到INT8量化模型，请在" + directory + "中放置*.int8.pt或*_quantized.onnx，"
+                + "或配置plugin.int8ModelPath");
+    }
+
+    private static String stemOf(Path file) {
+        String fileName = file.getFileName().toString();
+        int dot = fileName.lastIndexOf('.');
+        return dot > 0 ? fileName.substring(0, dot) : fileName;
+    }
+
+    private static boolean isInt8Model(Path file) {
+        String fileName = file.getFileName().toString().toLowerCase(Locale.ROOT);
+        if (!fileName.endsWith(".pt") && !fileName.endsWith(".onnx")) {
+            return false;
+        }
+        for (String marker : INT8_MARKERS) {
+            if (fileName.contains(marker)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,13 @@
+package com.owiseman.embedding.service;
+
+/**
+ * 本地内存达到配置上限时抛出，调用方应将其视为可重试的背压信号
+ */
+public class NativeMemoryLimitException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    public NativeMemoryLimitException(String message) {
+        super(message);
+    }
+}
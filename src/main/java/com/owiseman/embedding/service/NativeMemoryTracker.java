@@ -0,0 +1,259 @@
+package com.owiseman.embedding.service;
+
+import ai.djl.ndarray.NDArray;
+import ai.djl.ndarray.NDManager;
+import com.owiseman.embedding.config.PluginProperties;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 本地内存跟踪器
+ * 按模型统计推理过程中存活的NDArray数量和字节数，并在超过配置上限时对新批次施加背压，
+ * 让请求排队或被拒绝，而不是让进程因RSS持续增长被OOM-kill
+ */
+@Component
+public class NativeMemoryTracker {
+
+    private static final Logger logger = LoggerFactory.getLogger(NativeMemoryTracker.class);
+    private static final Path PROC_STATUS = Paths.get("/proc/self/status");
+
+    // 当前线程正在进行的批次，转换器通过它上报实际分配的张量
+    private static final ThreadLocal<Reservation> CURRENT = new ThreadLocal<>();
+
+    private final long capBytes;
+    private final long waitMillis;
+
+    private final ConcurrentHashMap<String, ModelStats> stats = new ConcurrentHashMap<>();
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition released = lock.newCondition();
+    private long reservedBytes;
+
+    @Autowired
+    public NativeMemoryTracker(PluginProperties properties) {
+        this.capBytes = properties.getNativeMemoryCapMb() * 1024L * 1024L;
+        this.waitMillis = properties.getNativeMemoryWaitMs();
+        if (capBytes > 0) {
+            logger.info("本地内存上限: {}MB, 最长等待: {}ms", properties.getNativeMemoryCapMb(), waitMillis);
+        }
+    }
+
+    /**
+     * 为一个批次预留本地内存，超过上限时最多等待配置的时间
+     * @param modelId 模型标识
+     * @param estimatedBytes 预估的本地内存占用
+     * @return 预留凭证，批次结束后必须关闭
+     * @throws NativeMemoryLimitException 等待超时仍无法预留时抛出
+     */
+    public Reservation reserve(String modelId, long estimatedBytes) throws InterruptedException {
+        if (capBytes > 0) {
+            long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(waitMillis);
+            lock.lock();
+            try {
+                // 单个批次超过上限时只要没有其他批次在跑就放行，避免永久饿死
+                while (reservedBytes > 0 && reservedBytes + estimatedBytes > capBytes) {
+                    long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0) {
+                        statsFor(modelId).rejected.incrementAndGet();
+                        throw new NativeMemoryLimitException(String.format(
+                                "本地内存已达上限 (%d/%d字节)，请稍后重试", reservedBytes, capBytes));
+                    }
+                    released.awaitNanos(remaining);
+                }
+                reservedBytes += estimatedBytes;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        Reservation reservation = new Reservation(statsFor(modelId), estimatedBytes);
+        CURRENT.set(reservation);
+        return reservation;
+    }
+
+    /**
+     * 由转换器在关闭批次子管理器之前调用，上报该子管理器实际持有的张量
+     * @param batchManager 本批次输出所挂载的子管理器
+     * @return 上报的张量快照，子管理器关闭后交给{@link #checkReleased(List)}核对
+     */
+    public static List<NDArray> record(NDManager batchManager) {
+        Reservation reservation = CURRENT.get();
+        if (reservation == null || batchManager == null) {
+            return Collections.emptyList();
+        }
+        List<NDArray> arrays = new ArrayList<>(batchManager.getManagedArrays());
+        long bytes = 0;
+        for (NDArray array : arrays) {
+            bytes += array.getShape().size() * array.getDataType().getNumOfBytes();
+        }
+        reservation.add(arrays.size(), bytes);
+        return arrays;
+    }
+
+    /**
+     * 由转换器在关闭批次子管理器之后调用，统计关闭后仍未释放的张量
+     * 泄漏计数只增不减，浸泡测试以它是否增长判断是否存在本地内存泄漏
+     * @param arrays {@link #record(NDManager)}返回的张量快照
+     */
+    public static void checkReleased(List<NDArray> arrays) {
+        Reservation reservation = CURRENT.get();
+        if (reservation == null || arrays.isEmpty()) {
+            return;
+        }
+        long leaked = 0;
+        for (NDArray array : arrays) {
+            if (!array.isReleased()) {
+                leaked++;
+            }
+        }
+        if (leaked > 0) {
+            reservation.modelStats.leakedArrays.addAndGet(leaked);
+            logger.warn("批次子管理器关闭后仍有{}个张量未释放", leaked);
+        }
+    }
+
+    public long getLiveArrays(String modelId) {
+        ModelStats modelStats = stats.get(modelId);
+        return modelStats == null ? 0 : modelStats.liveArrays.get();
+    }
+
+    public long getLeakedArrays(String modelId) {
+        ModelStats modelStats = stats.get(modelId);
+        return modelStats == null ? 0 : modelStats.leakedArrays.get();
+    }
+
+    public long getLiveBytes(String modelId) {
+        ModelStats modelStats = stats.get(modelId);
+        return modelStats == null ? 0 : modelStats.liveBytes.get();
+    }
+
+    public long getCapBytes() {
+        return capBytes;
+    }
+
+    /**
+     * 读取进程常驻内存（仅Linux），无法读取时返回-1
+     */
+    public static long readResidentBytes() {
+        try {
+            for (String line : Files.readAllLines(PROC_STATUS)) {
+                if (line.startsWith("VmRSS:")) {
+                    String value = line.substring(6).trim();
+                    return Long.parseLong(value.substring(0, value.indexOf(' '))) * 1024L;
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            logger.debug("无法读取进程常驻内存: {}", e.getMessage());
+        }
+        return -1;
+    }
+
+    /**
+     * 以JSON形式输出各模型的本地内存统计
+     */
+    public String toJson() {
+        StringBuilder json = new StringBuilder();
+        json.append("{\"capBytes\": ").append(capBytes);
+        json.append(", \"residentBytes\": ").append(readResidentBytes());
+        json.append(", \"models\": {");
+        boolean first = true;
+        for (Map.Entry<String, ModelStats> entry : stats.entrySet()) {
+            ModelStats modelStats = entry.getValue();
+            if (!first) {
+                json.append(", ");
+            }
+            first = false;
+            json.append("\"").append(entry.getKey()).append("\": {");
+            json.append("\"liveArrays\": ").append(modelStats.liveArrays.get()).append(", ");
+            json.append("\"liveBytes\": ").append(modelStats.liveBytes.get()).append(", ");
+            json.append("\"leakedArrays\": ").append(modelStats.leakedArrays.get()).append(", ");
+            json.append("\"peakBytes\": ").append(modelStats.peakBytes.get()).append(", ");
+            json.append("\"batches\": ").append(modelStats.batches.get()).append(", ");
+            json.append("\"rejected\": ").append(modelStats.rejected.get());
+            json.append("}");
+        }
+        json.append("}}");
+        return json.toString();
+    }
+
+    private ModelStats statsFor(String modelId) {
+        return stats.computeIfAbsent(modelId, key -> new ModelStats());
+    }
+
+    private void unreserve(long estimatedBytes) {
+        if (capBytes <= 0) {
+            return;
+        }
+        lock.lock();
+        try {
+            reservedBytes -= estimatedBytes;
+            released.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static class ModelStats {
+        final AtomicLong liveArrays = new AtomicLong();
+        final AtomicLong liveBytes = new AtomicLong();
+        final AtomicLong peakBytes = new AtomicLong();
+        final AtomicLong leakedArrays = new AtomicLong();
+        final AtomicLong batches = new AtomicLong();
+        final AtomicLong rejected = new AtomicLong();
+    }
+
+    /**
+     * 单个批次的本地内存预留凭证
+     */
+    public class Reservation implements AutoCloseable {
+
+        private final ModelStats modelStats;
+        private final long estimatedBytes;
+        private long arrays;
+        private long bytes;
+        private boolean closed;
+
+        private Reservation(ModelStats modelStats, long estimatedBytes) {
+            this.modelStats = modelStats;
+            this.estimatedBytes = estimatedBytes;
+            modelStats.batches.incrementAndGet();
+        }
+
+        private void add(long arrayCount, long byteCount) {
+            arrays += arrayCount;
+            bytes += byteCount;
+            modelStats.liveArrays.addAndGet(arrayCount);
+            long live = modelStats.liveBytes.addAndGet(byteCount);
+            modelStats.peakBytes.accumulateAndGet(live, Math::max);
+        }
+
+        @Override
+        public void close() {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            modelStats.liveArrays.addAndGet(-arrays);
+            modelStats.liveBytes.addAndGet(-bytes);
+            if (CURRENT.get() == this) {
+                CURRENT.remove();
+            }
+            unreserve(estimatedBytes);
+        }
+    }
+}
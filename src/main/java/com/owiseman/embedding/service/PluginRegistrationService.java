@@ -3,221 +3,387 @@ package com.owiseman.embedding.service;
 import com.owiseman.dataapi.proto.*;
 import com.owiseman.embedding.config.PluginProperties;
 import com.owiseman.embedding.plugin.EmbeddingPlugin;
+import io.grpc.ConnectivityState;
 import io.grpc.ManagedChannel;
 import io.grpc.ManagedChannelBuilder;
+import io.grpc.Status;
+import io.grpc.stub.StreamObserver;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.scheduling.annotation.EnableScheduling;
-import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
 import javax.annotation.PostConstruct;
 import javax.annotation.PreDestroy;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.Locale;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 
 /**
  * 插件注册服务
- * 负责将插件注册到主服务器，并定期发送心跳
+ * 负责将插件注册到主服务器，并定期发送心跳。
+ * 每个副本以稳定的实例ID（默认为注册地址:端口，重启后不变）注册，心跳的statusInfo携带容量信息（工作者数、最大批次、队列深度、p99延迟），
+ * 主服务器据此在多个副本之间按负载分发请求。
+ * 与主服务器之间使用一条常驻的带keepalive的通道和异步存根，所有调用都带截止时间，不阻塞任何线程；
+ * 注册失败按带抖动的指数退避重试，连接状态由通道状态监听获得，断线重连交给通道自身完成
  */
 @Service
-@EnableScheduling
 public class PluginRegistrationService {
 
     private static final Logger logger = LoggerFactory.getLogger(PluginRegistrationService.class);
     private static final int SHUTDOWN_TIMEOUT = 5; // 秒
-    private static final int MAX_RETRIES = 3; // 最大重试次数
+    private static final int MAX_MESSAGE_SIZE = 10 * 1024 * 1024; // 10MB
 
     private final PluginProperties properties;
     private final EmbeddingPlugin embeddingPlugin;
-    
-    private ManagedChannel channel;
+    private final EmbeddingModelService embeddingService;
+    private final InferenceScheduler scheduler;
+    private final String advertisedHost;
+    private final String instanceId;
+    private final ExponentialBackoff backoff;
 
-    private PluginServiceGrpc.PluginServiceBlockingStub blockingStub;
-    private String pluginId;
-    private boolean registered = false;
-    private long lastSuccessfulHeartbeat = 0;
+    private ManagedChannel channel;
+    private PluginServiceGrpc.PluginServiceStub asyncStub;
+    // 注册、心跳和重试都在这一个线程上串行执行，gRPC回调只负责把结果投递过来
+    private ScheduledExecutorService executor;
+
+    private volatile String pluginId;
+    private volatile boolean stopped;
+    private volatile long lastSuccessfulHeartbeat = 0;
+    private boolean registering;
+    private boolean heartbeatInFlight;
+    private int heartbeatFailures;
+    private volatile int skippedHeartbeats; // 因上一次心跳未返回而跳过的周期数
+    private ScheduledFuture<?> pendingRegistration;
 
     @Autowired
-    public PluginRegistrationService(PluginProperties properties, EmbeddingPlugin embeddingPlugin) {
+    public PluginRegistrationService(PluginProperties properties, EmbeddingPlugin embeddingPlugin,
+                                     EmbeddingModelService embeddingService, InferenceScheduler scheduler) {
         this.properties = properties;
         this.embeddingPlugin = embeddingPlugin;
+        this.embeddingService = embeddingService;
+        this.scheduler = scheduler;
+        this.advertisedHost = resolveAdvertisedHost();
+        this.instanceId = resolveInstanceId(advertisedHost);
+        this.backoff = new ExponentialBackoff(properties.getRegistryBackoffInitialMs(),
+                properties.getRegistryBackoffMaxMs());
+        logger.info("插件实例ID: {}", instanceId);
     }
 
-     @Scheduled(fixedRate = 60000) // 从30秒改为60秒发送一次心跳
-    public void sendHeartbeat() {
-        // 检查是否已初始化
-        if (blockingStub == null) {
-            logger.warn("blockingStub为空，尝试重新初始化gRPC通道");
-            initGrpcChannel();
-
-            // 如果初始化后仍为空，则返回
-            if (blockingStub == null) {
-                logger.error("无法初始化gRPC通道，跳过心跳发送");
-                return;
-            }
-        }
+    @PostConstruct
+    public void start() {
+        logger.info("初始化gRPC通道到 {}:{}", properties.getServerHost(), properties.getServerPort());
+        start(ManagedChannelBuilder.forAddress(properties.getServerHost(), properties.getServerPort())
+                .usePlaintext()
+                // 空闲时也保持连接，主服务器重启后由通道自动重连
+                .keepAliveTime(properties.getRegistryKeepAliveSeconds(), TimeUnit.SECONDS)
+                .keepAliveTimeout(10, TimeUnit.SECONDS)
+                .maxInboundMessageSize(MAX_MESSAGE_SIZE)
+                .build());
+    }
 
-        // 检查是否已注册
-        if (pluginId == null || pluginId.isEmpty()) {
-            logger.warn("插件ID为空，尝试注册插件");
-            registerPlugin();
+    /**
+     * 在给定通道上开始注册和心跳，测试中传入进程内通道
+     */
+    void start(ManagedChannel channel) {
+        this.channel = channel;
+        asyncStub = PluginServiceGrpc.newStub(channel)
+                .withMaxInboundMessageSize(MAX_MESSAGE_SIZE);
+
+        executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "plugin-registration");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        watchConnectivity(channel.getState(true));
+        executor.execute(this::register);
+        long interval = Math.max(1000, properties.getHeartbeatIntervalMs());
+        executor.scheduleWithFixedDelay(this::heartbeat, interval, interval, TimeUnit.MILLISECONDS);
+    }
 
-            // 如果注册后仍为空，则返回
-            if (pluginId == null || pluginId.isEmpty()) {
-                logger.error("插件注册失败，无法获取插件ID，跳过心跳发送");
-                return;
-            }
+    /**
+     * 确定实例ID：优先使用plugin.instanceId，否则为注册地址和插件端口（host:port）。
+     * 同一副本重启后ID不变，主服务器据此识别重复注册；同一台机器上的多个副本端口不同，也不会重复
+     */
+    private String resolveInstanceId(String host) {
+        String configured = properties.getInstanceId();
+        if (configured != null && !configured.isBlank()) {
+            return configured.trim();
         }
+        return host + ":" + properties.getPluginPort();
+    }
 
-        // 发送心跳
+    /**
+     * 确定注册地址：优先使用plugin.advertisedHost，否则使用本机IP
+     */
+    private String resolveAdvertisedHost() {
+        String configured = properties.getAdvertisedHost();
+        if (configured != null && !configured.isBlank()) {
+            return configured.trim();
+        }
         try {
-            logger.debug("发送心跳到服务器，插件ID: {}", pluginId);
+            return InetAddress.getLocalHost().getHostAddress();
+        } catch (UnknownHostException e) {
+            logger.warn("无法获取本机地址，使用localhost注册: {}", e.getMessage());
+            return "localhost";
+        }
+    }
 
-            HeartbeatRequest request = HeartbeatRequest.newBuilder()
-                    .setPluginId(pluginId)
-                    .setStatusInfo(embeddingPlugin.isRunning() ? "RUNNING" : "STOPPED")
-                    .build();
+    /**
+     * 心跳携带的状态和容量信息（JSON）
+     */
+    public String buildStatusInfo() {
+        StringBuilder json = new StringBuilder();
+        json.append("{");
+        json.append("\"state\": \"").append(embeddingPlugin.isRunning() ? "RUNNING" : "STOPPED").append("\", ");
+        json.append("\"instanceId\": \"").append(instanceId).append("\", ");
+        json.append("\"model\": \"").append(embeddingService.getModelName()).append("\", ");
+        json.append("\"inferenceWorkers\": ").append(embeddingService.getInferenceWorkers()).append(", ");
+        json.append("\"predictorWorkers\": ").append(embeddingService.getPredictorWorkers()).append(", ");
+        json.append("\"maxBatchSize\": ").append(scheduler.getMaxBatchSize()).append(", ");
+        json.append("\"queueDepth\": ").append(scheduler.getQueueDepth()).append(", ");
+        json.append("\"queueCapacity\": ").append(scheduler.getQueueCapacity()).append(", ");
+        json.append("\"p99Ms\": ").append(String.format(Locale.ROOT, "%.2f", scheduler.getLatencyMillis(99)));
+        json.append("}");
+        return json.toString();
+    }
 
-            HeartbeatResponse response = blockingStub.heartbeat(request);
+    public String getInstanceId() {
+        return instanceId;
+    }
 
-            if (response.getReceived()) {
-                logger.debug("心跳发送成功，服务器时间: {}", response.getServerTime());
-            } else {
-                logger.warn("心跳发送失败，服务器未确认接收");
-            }
-        } catch (Exception e) {
-            logger.error("发送心跳时发生错误: {}", e.getMessage());
+    public String getPluginId() {
+        return pluginId;
+    }
 
-            // 如果是连接问题，尝试重新初始化
-            if (e.getMessage().contains("UNAVAILABLE") ||
-                e.getMessage().contains("Connection") ||
-                e.getMessage().contains("transport")) {
+    public long getLastSuccessfulHeartbeat() {
+        return lastSuccessfulHeartbeat;
+    }
 
-                logger.info("检测到连接问题，尝试重新初始化gRPC通道");
-                initGrpcChannel();
+    /**
+     * 因上一次心跳未返回而跳过的心跳周期数
+     */
+    int getSkippedHeartbeats() {
+        return skippedHeartbeats;
+    }
+
+    /**
+     * 监听通道状态变化
+     * 通道就绪而尚未注册时立即注册（不必等退避到期）；通道空闲时主动重连，保持常驻连接
+     */
+    private void watchConnectivity(ConnectivityState current) {
+        channel.notifyWhenStateChanged(current, () -> {
+            if (!stopped) {
+                executor.execute(() -> onConnectivityChanged(current));
             }
-        }
+        });
     }
 
-    // 修改初始化方法，进一步调整keepalive设置
-    private void initGrpcChannel() {
-        try {
-            logger.info("初始化gRPC通道到 {}:{}", properties.getServerHost(), properties.getServerPort());
-
-            // 关闭旧通道
-            if (channel != null && !channel.isShutdown()) {
-                logger.info("关闭旧的gRPC通道");
-                try {
-                    channel.shutdownNow().awaitTermination(2, TimeUnit.SECONDS);
-                } catch (InterruptedException e) {
-                    logger.warn("关闭旧通道时中断", e);
+    private void onConnectivityChanged(ConnectivityState previous) {
+        ConnectivityState state = channel.getState(false);
+        logger.info("gRPC通道状态: {} -> {}", previous, state);
+        switch (state) {
+            case READY:
+                if (pluginId == null && !registering) {
+                    if (pendingRegistration != null) {
+                        pendingRegistration.cancel(false);
+                        pendingRegistration = null;
+                    }
+                    register();
                 }
-            }
+                break;
+            case IDLE:
+                channel.getState(true);
+                break;
+            case SHUTDOWN:
+                return;
+            default:
+                break;
+        }
+        watchConnectivity(state);
+    }
 
-            // 创建新通道，进一步调整keepalive设置
-            channel = ManagedChannelBuilder.forAddress(properties.getServerHost(), properties.getServerPort())
-                    .usePlaintext()
-                    // 完全禁用客户端keepalive，避免发送ping
-//                    .disableKeepAlive()// 禁用keepalive
-                    .maxInboundMessageSize(10 * 1024 * 1024)  // 10MB
-                    .build();
+    /**
+     * 手动触发注册（异步执行）
+     */
+    public void registerPlugin() {
+        executor.execute(this::register);
+    }
 
-            blockingStub = PluginServiceGrpc.newBlockingStub(channel)
-                    .withMaxInboundMessageSize(10 * 1024 * 1024);  // 10MB
+    private void register() {
+        if (stopped || pluginId != null || registering) {
+            return;
+        }
+        registering = true;
+        pendingRegistration = null;
+
+        String pluginName = properties.getName();
+        String hostAddress = advertisedHost;
+        logger.info("开始注册插件: {}, 实例: {}", pluginName, instanceId);
+
+        // 不按名称复用已有的插件ID：同名的多个副本各自注册，由主服务器分配各自的插件ID。
+        // 每次重试发送相同的地址、端口和实例ID，主服务器按它们去重，超时后重试不会多出一个插件ID
+        PluginRegistration registration = PluginRegistration.newBuilder()
+                .setName(pluginName)
+                .setVersion(properties.getVersion())
+                .setType("embedding")
+                .setDescription(properties.getDescription() + " [instance=" + instanceId + "]")
+                .setHost(hostAddress)
+                .setPort(properties.getPluginPort()) // 确保使用正确的gRPC端口
+                .build();
 
-            logger.info("gRPC通道初始化成功");
+        call((StreamObserver<RegistrationResponse> observer) -> stub().registerPlugin(registration, observer))
+                .whenCompleteAsync((response, error) -> onRegistered(response, error, hostAddress), executor);
+    }
 
-            // 立即尝试注册，确保连接有效
-            if (pluginId == null || pluginId.isEmpty()) {
-                registerPlugin();
-            }
-        } catch (Exception e) {
-            logger.error("初始化gRPC通道时发生错误: {}", e.getMessage());
-            channel = null;
-            blockingStub = null;
+    private void onRegistered(RegistrationResponse response, Throwable error, String hostAddress) {
+        registering = false;
+        if (stopped) {
+            return;
         }
+        if (error == null && response.getSuccess()) {
+            pluginId = response.getPluginId();
+            backoff.reset();
+            logger.info("插件注册成功，ID: {}, 实例: {}, 地址: {}:{}",
+                    pluginId, instanceId, hostAddress, properties.getPluginPort());
+            // 注册后立即上报一次容量
+            heartbeat();
+            return;
+        }
+
+        long delay = backoff.nextDelayMs();
+        if (error != null && isAmbiguous(Status.fromThrowable(error).getCode())) {
+            // 请求可能已被主服务器处理，只是响应没有按时返回；重试使用同一实例ID，由主服务器识别为重复注册
+            logger.warn("注册插件结果未知({})，{}ms后以同一实例ID {} 第{}次重试", Status.fromThrowable(error).getCode(),
+                    delay, instanceId, backoff.getAttempts());
+        } else if (error != null) {
+            logger.warn("注册插件失败({})，{}ms后第{}次重试: {}", Status.fromThrowable(error).getCode(),
+                    delay, backoff.getAttempts(), Status.fromThrowable(error).getDescription());
+        } else {
+            logger.error("插件注册被拒绝，{}ms后第{}次重试: {}", delay, backoff.getAttempts(), response.getMessage());
+        }
+        pendingRegistration = executor.schedule(this::register, delay, TimeUnit.MILLISECONDS);
     }
 
-    // 修改注册方法，增加错误处理和重试逻辑
-    // 修改注册方法
-    public void registerPlugin() {
-        if (blockingStub == null) {
-            logger.warn("blockingStub为空，尝试重新初始化gRPC通道");
-            initGrpcChannel();
+    /**
+     * 请求可能已到达主服务器的失败：截止时间已过、调用被取消或服务端未知错误
+     */
+    private static boolean isAmbiguous(Status.Code code) {
+        return code == Status.Code.DEADLINE_EXCEEDED || code == Status.Code.CANCELLED || code == Status.Code.UNKNOWN;
+    }
 
-            if (blockingStub == null) {
-                logger.error("无法初始化gRPC通道，跳过插件注册");
-                return;
+    private void heartbeat() {
+        if (stopped) {
+            return;
+        }
+        if (heartbeatInFlight) {
+            // 上一次心跳尚未返回（主服务器缓慢），不再叠加新的调用
+            skippedHeartbeats++;
+            return;
+        }
+        String id = pluginId;
+        if (id == null) {
+            if (!registering && pendingRegistration == null) {
+                register();
             }
+            return;
         }
 
         try {
-            String pluginName = properties.getName();
-            logger.info("开始注册插件: {}", pluginName);
-
-            // 先尝试通过名称查找插件
-            GetPluginByNameRequest findRequest = GetPluginByNameRequest.newBuilder()
-                    .setName(pluginName)
+            String statusInfo = buildStatusInfo();
+            logger.debug("发送心跳到服务器，插件ID: {}, 状态: {}", id, statusInfo);
+            HeartbeatRequest request = HeartbeatRequest.newBuilder()
+                    .setPluginId(id)
+                    .setStatusInfo(statusInfo)
                     .build();
 
-            try {
-                GetPluginByNameResponse findResponse = blockingStub.getPluginByName(findRequest);
-                if (findResponse.hasPlugin()) {
-                    pluginId = findResponse.getPlugin().getPluginId();
-                    logger.info("找到现有插件: {}, ID: {}", pluginName, pluginId);
-                    return;
-                }
-            } catch (Exception e) {
-                logger.warn("查找插件时出错: {}", e.getMessage());
-            }
+            heartbeatInFlight = true;
+            call((StreamObserver<HeartbeatResponse> observer) -> stub().heartbeat(request, observer))
+                    .whenCompleteAsync(this::onHeartbeat, executor);
+        } catch (RuntimeException e) {
+            // 周期任务抛出异常会被取消，这里吞掉异常保证后续心跳继续
+            heartbeatInFlight = false;
+            logger.error("发送心跳时发生错误: {}", e.getMessage(), e);
+        }
+    }
 
-            // 如果找不到，则注册新插件
-            // 确保提供正确的主机和端口
-            String hostAddress = properties.getServerHost();
-            if ("0.0.0.0".equals(hostAddress)) {
-                hostAddress = "localhost"; // 如果绑定到所有接口，使用localhost作为注册地址
+    private void onHeartbeat(HeartbeatResponse response, Throwable error) {
+        heartbeatInFlight = false;
+        if (stopped) {
+            return;
+        }
+        if (error == null) {
+            if (response.getReceived()) {
+                lastSuccessfulHeartbeat = System.currentTimeMillis();
+                heartbeatFailures = 0;
+                logger.debug("心跳发送成功，服务器时间: {}", response.getServerTime());
+            } else {
+                logger.warn("心跳发送失败，服务器未确认接收");
             }
+            return;
+        }
 
-            PluginRegistration registration = PluginRegistration.newBuilder()
-                    .setName(pluginName)
-                    .setVersion(properties.getVersion())
-                    .setType("MQTT")
-                    .setDescription("MQTT消息代理插件")
-                    .setHost(hostAddress)
-                    .setPort(properties.getPluginPort()) // 确保使用正确的gRPC端口
-                    .build();
+        heartbeatFailures++;
+        Status status = Status.fromThrowable(error);
+        if (status.getCode() == Status.Code.NOT_FOUND) {
+            // 主服务器已不认识该插件ID（如主服务器重启后丢失注册信息），重新注册
+            logger.warn("主服务器未找到插件ID {}，重新注册", pluginId);
+            pluginId = null;
+            register();
+        } else {
+            // 连接问题由通道自行重连，这里只记录
+            logger.warn("发送心跳失败({}，连续{}次，通道状态{}): {}", status.getCode(), heartbeatFailures,
+                    channel.getState(false), status.getDescription());
+        }
+    }
 
-            RegistrationResponse response = blockingStub.registerPlugin(registration);
+    private PluginServiceGrpc.PluginServiceStub stub() {
+        return asyncStub.withDeadlineAfter(properties.getRegistryCallTimeoutMs(), TimeUnit.MILLISECONDS);
+    }
 
-            if (response.getSuccess()) {
-                pluginId = response.getPluginId();
-                logger.info("插件注册成功，ID: {}", pluginId);
-            } else {
-                logger.error("插件注册失败: {}", response.getMessage());
+    /**
+     * 把一元异步调用包装为CompletableFuture
+     */
+    private static <T> CompletableFuture<T> call(Consumer<StreamObserver<T>> invocation) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        invocation.accept(new StreamObserver<T>() {
+            @Override
+            public void onNext(T value) {
+                future.complete(value);
             }
-        } catch (Exception e) {
-            logger.error("注册插件时发生错误: {}", e.getMessage());
-        }
+
+            @Override
+            public void onError(Throwable t) {
+                future.completeExceptionally(t);
+            }
+
+            @Override
+            public void onCompleted() {
+                if (!future.isDone()) {
+                    future.completeExceptionally(Status.INTERNAL.withDescription("服务器未返回响应").asException());
+                }
+            }
+        });
+        return future;
     }
 
-    public StatusResponse getStatus() {
-        if (pluginId == null) {
-            logger.warn("Cannot get status, plugin not registered");
-            return null;
+    public CompletableFuture<StatusResponse> getStatus() {
+        String id = pluginId;
+        if (id == null) {
+            return CompletableFuture.failedFuture(new IllegalStateException("插件尚未注册"));
         }
-
         StatusRequest request = StatusRequest.newBuilder()
-                .setPluginId(pluginId)
+                .setPluginId(id)
                 .build();
-
-        try {
-            return blockingStub.getStatus(request);
-        } catch (Exception e) {
-            logger.error("Error getting status", e);
-            return null;
-        }
+        return call((StreamObserver<StatusResponse> observer) -> stub().getStatus(request, observer));
     }
 
     // 在类定义中添加CommandHandler依赖
@@ -257,92 +423,43 @@ public class PluginRegistrationService {
         }
     }
 
-    public void stopPlugin() {
-        if (pluginId == null) {
-            logger.warn("Cannot stop plugin, plugin not registered");
-            return;
+    public CompletableFuture<StopResponse> stopPlugin() {
+        String id = pluginId;
+        if (id == null) {
+            return CompletableFuture.failedFuture(new IllegalStateException("插件尚未注册"));
         }
-
         StopRequest request = StopRequest.newBuilder()
-                .setPluginId(pluginId)
+                .setPluginId(id)
                 .build();
-
-        try {
-            StopResponse response = blockingStub.stopPlugin(request);
-            logger.info("Stop plugin response: {}", response.getMessage());
-        } catch (Exception e) {
-            logger.error("Error stopping plugin", e);
-        }
+        return call((StreamObserver<StopResponse> observer) -> stub().stopPlugin(request, observer));
     }
 
     @PreDestroy
     public void shutdown() {
         logger.info("Shutting down gRPC channel");
+        stopped = true;
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+        if (channel == null) {
+            return;
+        }
+        try {
+            if (pluginId != null) {
+                StopResponse response = stopPlugin().get(SHUTDOWN_TIMEOUT, TimeUnit.SECONDS);
+                logger.info("Stop plugin response: {}", response.getMessage());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            logger.warn("注销插件失败: {}", e.getMessage());
+        }
         try {
-            stopPlugin();
-            channel.shutdown().awaitTermination(5, TimeUnit.SECONDS);
+            // 注销已完成，仍在进行的注册或心跳调用直接取消
+            channel.shutdownNow().awaitTermination(SHUTDOWN_TIMEOUT, TimeUnit.SECONDS);
         } catch (InterruptedException e) {
             logger.error("Error shutting down gRPC channel", e);
+            Thread.currentThread().interrupt();
         }
     }
-
-    // 添加一个发送消息的方法
-    // 修改发送消息的方法，增强错误处理
-    public boolean sendMessage(String topic, String message) {
-    // 重试计数器
-    int retryCount = 0;
-    final int MAX_RETRIES = 3;
-
-    while (retryCount < MAX_RETRIES) {
-    // 检查通道和插件ID
-    if (blockingStub == null || pluginId == null || pluginId.isEmpty()) {
-    logger.warn("通道或插件ID无效，尝试重新初始化 (重试 {}/{})", retryCount + 1, MAX_RETRIES);
-
-    // 重新初始化
-    initGrpcChannel();
-
-    // 如果仍然无效，增加重试计数
-    if (blockingStub == null || pluginId == null || pluginId.isEmpty()) {
-    retryCount++;
-    try {
-    // 等待一段时间再重试
-    Thread.sleep(1000 * retryCount);
-    } catch (InterruptedException e) {
-    Thread.currentThread().interrupt();
-    }
-    continue;
-    }
-    }
-
-    try {
-    logger.info("发送消息到主题: {} (重试 {}/{})", topic, retryCount, MAX_RETRIES);
-
-//    // 直接使用MqttService发布消息，绕过gRPC调用
-//    boolean success = mqttService.publish(topic, message);
-
-//    if (success) {
-//    logger.info("消息发送成功到主题: {}", topic);
-//    return true;
-//    } else {
-//    logger.error("消息发送失败到主题: {}", topic);
-//    retryCount++;
-//    }
-    } catch (Exception e) {
-    logger.error("发送消息时发生错误 (重试 {}/{}): {}", retryCount, MAX_RETRIES, e.getMessage());
-
-    // 增加重试计数
-    retryCount++;
-
-    try {
-    // 等待一段时间再重试
-    Thread.sleep(2000 * retryCount);
-    } catch (InterruptedException ie) {
-    Thread.currentThread().interrupt();
-    }
-    }
-    }
-
-    logger.error("发送消息失败，已达到最大重试次数: {}", MAX_RETRIES);
-    return false;
-    }
-}
\ No newline at end of file
+}
@@ -0,0 +1,62 @@
+package com.owiseman.embedding.service;
+
+import ai.djl.inference.Predictor;
+import ai.djl.translate.TranslateException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.function.Supplier;
+
+/**
+ * 预测器池
+ * Predictor本身不是线程安全的，池中每个预测器同一时刻只被一个请求线程使用，
+ * 池的大小即同时进行前向计算的工作线程数
+ */
+public class PredictorPool<I, O> implements AutoCloseable {
+
+    private final List<Predictor<I, O>> predictors;
+    private final BlockingQueue<Predictor<I, O>> idle;
+
+    public PredictorPool(int size, Supplier<Predictor<I, O>> factory) {
+        if (size < 1) {
+            throw new IllegalArgumentException("预测器数量必须大于0: " + size);
+        }
+        this.predictors = new ArrayList<>(size);
+        this.idle = new ArrayBlockingQueue<>(size);
+        for (int i = 0; i < size; i++) {
+            Predictor<I, O> predictor = factory.get();
+            predictors.add(predictor);
+            idle.add(predictor);
+        }
+    }
+
+    /**
+     * 借用一个空闲预测器执行推理，全部忙碌时阻塞等待
+     */
+    public O predict(I input) throws TranslateException, InterruptedException {
+        Predictor<I, O> predictor = idle.take();
+        try {
+            return predictor.predict(input);
+        } finally {
+            idle.add(predictor);
+        }
+    }
+
+    public int size() {
+        return predictors.size();
+    }
+
+    public int available() {
+        return idle.size();
+    }
+
+    @Override
+    public void close() {
+        for (Predictor<I, O> predictor : predictors) {
+            predictor.close();
+        }
+        idle.clear();
+    }
+}
@@ -0,0 +1,132 @@
+package com.owiseman.embedding.service;
+
+import com.owiseman.embedding.config.PluginProperties;
+import com.owiseman.embedding.util.JsonStrings;
+import jdk.jfr.Configuration;
+import jdk.jfr.Recording;
+import jdk.jfr.RecordingState;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.text.ParseException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * 按需JFR录制
+ * 通过插件命令在运行中的实例上开始和停止一次Flight Recorder录制，停止（或到达指定时长）时写入本地目录，
+ * 无需带不同的启动参数重启进程。录制包含JDK内置事件和{@link InferenceEvents}中的推理事件。
+ * 同一时间只允许一个录制
+ */
+@Service
+public class ProfilingService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ProfilingService.class);
+
+    private static final DateTimeFormatter FILE_TIME = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss");
+
+    private final PluginProperties properties;
+    private Recording recording;
+    private Path destination;
+
+    @Autowired
+    public ProfilingService(PluginProperties properties) {
+        this.properties = properties;
+    }
+
+    /**
+     * 开始录制
+     * @param settings JFR预置配置名：default（开销约1%）或profile（开销约2%，含更细的采样）
+     * @param durationSeconds 大于0时到时自动停止并写出文件
+     * @return 录制状态JSON
+     */
+    public synchronized String start(String settings, long durationSeconds) throws IOException, ParseException {
+        if (recording != null && recording.getState() == RecordingState.RUNNING) {
+            throw new IllegalStateException("已有正在进行的JFR录制: " + destination);
+        }
+        Configuration configuration = Configuration.getConfiguration(settings);
+        Path directory = Paths.get(properties.getProfileDir());
+        Files.createDirectories(directory);
+        Path file = directory.resolve("embedding-" + LocalDateTime.now().format(FILE_TIME) + ".jfr").toAbsolutePath();
+
+        Recording started = new Recording(configuration);
+        started.setName("embedding-plugin-profile");
+        started.setToDisk(true);
+        started.setMaxSize(properties.getProfileMaxSizeMb() * 1024L * 1024L);
+        started.setDestination(file);
+        if (durationSeconds > 0) {
+            started.setDuration(Duration.ofSeconds(durationSeconds));
+        }
+        started.start();
+
+        closeRecording();
+        recording = started;
+        destination = file;
+        logger.info("JFR录制已开始，配置: {}, 时长: {}秒, 输出: {}", settings, durationSeconds, file);
+        return toJson();
+    }
+
+    /**
+     * 停止录制并写出文件；已按时长自动停止的录制只返回文件信息
+     * @return 录制状态JSON，含文件路径和大小
+     */
+    public synchronized String stop() throws IOException {
+        if (recording == null) {
+            throw new IllegalStateException("没有正在进行的JFR录制");
+        }
+        if (recording.getState() == RecordingState.RUNNING) {
+            recording.stop();
+            logger.info("JFR录制已停止，输出: {}", destination);
+        }
+        String json = toJson();
+        closeRecording();
+        return json;
+    }
+
+    public synchronized String status() throws IOException {
+        return toJson();
+    }
+
+    private String toJson() throws IOException {
+        StringBuilder json = new StringBuilder();
+        json.append("{");
+        if (recording == null) {
+            json.append("\"state\": \"NONE\"");
+        } else {
+            json.append("\"state\": \"").append(recording.getState()).append("\", ");
+            json.append("\"file\": \"").append(JsonStrings.escape(destination.toString())).append("\", ");
+            json.append("\"startTime\": \"").append(recording.getStartTime()).append("\", ");
+            json.append("\"sizeBytes\": ").append(Files.exists(destination) ? Files.size(destination) : 0);
+        }
+        json.append("}");
+        return json.toString();
+    }
+
+    private void closeRecording() {
+        if (recording != null) {
+            recording.close();
+            recording = null;
+        }
+    }
+
+    @PreDestroy
+    public synchronized void shutdown() {
+        if (recording != null && recording.getState() == RecordingState.RUNNING) {
+            try {
+                recording.stop();
+                logger.info("关闭时已写出JFR录制: {}", destination);
+            } catch (RuntimeException e) {
+                logger.warn("关闭时写出JFR录制失败: {}", e.getMessage());
+            }
+        }
+        closeRecording();
+    }
+}
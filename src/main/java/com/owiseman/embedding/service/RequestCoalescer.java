@@ -0,0 +1,150 @@
+package com.owiseman.embedding.service;
+
+import com.owiseman.embedding.config.PluginProperties;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongFunction;
+
+/**
+ * 相同请求合并（single-flight）
+ * 同一模型、同一推理路径、同一规范化文本的并发请求共享一次推理：第一个请求发起计算，后到的请求挂在同一个Future上。
+ * 每个调用方拿到独立的Future和独立的结果数组，并各自按自己的截止时间超时；所有调用方都取消或超时后才取消底层推理
+ */
+@Component
+public class RequestCoalescer {
+
+    public static final String PATH_DIRECT = "direct"; // 单条转换器，调用线程上同步推理
+    public static final String PATH_SCHEDULED = "scheduled"; // 调度器合批，批量转换器推理
+
+    private final PluginProperties properties;
+    private final Map<String, Flight> inFlight = new ConcurrentHashMap<>();
+    private final AtomicLong leaders = new AtomicLong();
+    private final AtomicLong coalesced = new AtomicLong();
+
+    @Autowired
+    public RequestCoalescer(PluginProperties properties) {
+        this.properties = properties;
+    }
+
+    /**
+     * 获取或发起一次推理
+     * @param flightKey 由{@link EmbeddingModelService#coalesceKey(String)}生成的模型和推理路径
+     * @param normalizedText 规范化后的文本
+     * @param deadlineNanos 调用方的截止时间（System.nanoTime()），0表示不限
+     * @param starter 没有进行中的相同请求时调用，参数为底层推理应遵守的截止时间，发起实际推理；
+     *                抛出的异常直接传给调用方
+     * @return 调用方独享的Future，超过调用方自己的截止时间时以TimeoutException结束
+     */
+    public CompletableFuture<float[]> execute(String flightKey, String normalizedText, long deadlineNanos,
+                                              LongFunction<CompletableFuture<float[]>> starter) {
+        if (!properties.isCoalesceRequests()) {
+            return starter.apply(deadlineNanos);
+        }
+
+        String key = flightKey + '\u0000' + normalizedText;
+        Flight flight = new Flight();
+        Flight existing = inFlight.putIfAbsent(key, flight);
+        if (existing != null && existing.join()) {
+            coalesced.incrementAndGet();
+            return existing.follow(deadlineNanos);
+        }
+        if (existing != null) {
+            // 已有的请求正在被全部取消，另起一次推理
+            inFlight.remove(key, existing);
+            return execute(flightKey, normalizedText, deadlineNanos, starter);
+        }
+
+        leaders.incrementAndGet();
+        CompletableFuture<float[]> shared;
+        try {
+            // 底层推理不设截止时间，由每个调用方各自超时，全部放弃后再取消
+            shared = starter.apply(0);
+        } catch (RuntimeException e) {
+            inFlight.remove(key, flight);
+            flight.start(CompletableFuture.failedFuture(e));
+            throw e;
+        }
+        shared.whenComplete((result, error) -> inFlight.remove(key, flight));
+        flight.start(shared);
+        return flight.follow(deadlineNanos);
+    }
+
+    /**
+     * 以JSON形式输出合并统计
+     */
+    public String toJson() {
+        long leaderCount = leaders.get();
+        long coalescedCount = coalesced.get();
+        long total = leaderCount + coalescedCount;
+        StringBuilder json = new StringBuilder();
+        json.append("{");
+        json.append("\"enabled\": ").append(properties.isCoalesceRequests()).append(", ");
+        json.append("\"inFlight\": ").append(inFlight.size()).append(", ");
+        json.append("\"inferences\": ").append(leaderCount).append(", ");
+        json.append("\"coalesced\": ").append(coalescedCount).append(", ");
+        json.append("\"ratio\": ").append(total == 0 ? 0 : Math.round(coalescedCount * 10000.0 / total) / 10000.0);
+        json.append("}");
+        return json.toString();
+    }
+
+    private static class Flight {
+        // 底层推理的Future，由发起者设置；跟随者在它设置之前到达时先等待在started上
+        private final CompletableFuture<CompletableFuture<float[]>> started = new CompletableFuture<>();
+        private final AtomicInteger waiters = new AtomicInteger(1);
+
+        void start(CompletableFuture<float[]> shared) {
+            started.complete(shared);
+        }
+
+        /**
+         * 加入等待，所有调用方都已取消时返回false
+         */
+        boolean join() {
+            int current;
+            do {
+                current = waiters.get();
+                if (current == 0) {
+                    return false;
+                }
+            } while (!waiters.compareAndSet(current, current + 1));
+            return true;
+        }
+
+        CompletableFuture<float[]> follow(long deadlineNanos) {
+            CompletableFuture<float[]> result = new CompletableFuture<>();
+            started.thenCompose(shared -> shared).whenComplete((embedding, error) -> {
+                if (error != null) {
+                    result.completeExceptionally(error instanceof CompletionException && error.getCause() != null
+                            ? error.getCause() : error);
+                } else {
+                    result.complete(embedding.clone());
+                }
+            });
+            if (deadlineNanos != 0) {
+                result.orTimeout(Math.max(0, deadlineNanos - System.nanoTime()), TimeUnit.NANOSECONDS);
+            }
+            result.whenComplete((embedding, error) -> {
+                // 调用方取消或自己的截止时间先到时放弃等待；底层推理本身失败不算放弃
+                boolean abandoned = result.isCancelled() || error instanceof TimeoutException && !sharedDone();
+                if (abandoned && waiters.decrementAndGet() == 0) {
+                    started.thenAccept(shared -> shared.cancel(true));
+                }
+            });
+            return result;
+        }
+
+        private boolean sharedDone() {
+            CompletableFuture<float[]> shared = started.getNow(null);
+            return shared != null && shared.isDone();
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package com.owiseman.embedding.service;
+
+import com.owiseman.embedding.config.PluginProperties;
+import com.owiseman.embedding.util.JsonStrings;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.Locale;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * 结构化请求日志
+ * 每个请求结束时最多写一行JSON：请求类型、成功与否、文本长度和64位FNV-1a哈希（不记录原文）、
+ * token数、批次号和各阶段耗时。成功请求按采样率记录，未采中的请求不做任何格式化；
+ * 失败请求总是以WARN级别记录，异步输出时不会被丢弃
+ */
+@Component
+public class RequestLogger {
+
+    public static final String LOGGER_NAME = "embedding.requests";
+
+    private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private final Logger requestLog;
+    private final double sampleRate;
+
+    @Autowired
+    public RequestLogger(PluginProperties properties) {
+        this(LoggerFactory.getLogger(LOGGER_NAME), properties.getRequestLogSampleRate());
+    }
+
+    public RequestLogger(Logger requestLog, double sampleRate) {
+        this.requestLog = requestLog;
+        this.sampleRate = Math.max(0, Math.min(1, sampleRate));
+    }
+
+    /**
+     * 记录一个已结束的请求
+     * @param kind 请求类型，如命令名或接口名
+     * @param text 单条请求的原文，用于计算哈希；批量请求传null
+     * @param timing 已调用finish()的请求计时
+     * @param success 请求是否成功
+     */
+    public void log(String kind, CharSequence text, RequestTiming timing, boolean success) {
+        if (success) {
+            if (!sampled() || !requestLog.isInfoEnabled()) {
+                return;
+            }
+            requestLog.info(toJson(kind, text, timing, true));
+        } else {
+            requestLog.warn(toJson(kind, text, timing, false));
+        }
+    }
+
+    private boolean sampled() {
+        return sampleRate >= 1 || (sampleRate > 0 && ThreadLocalRandom.current().nextDouble() < sampleRate);
+    }
+
+    static String toJson(String kind, CharSequence text, RequestTiming timing, boolean success) {
+        StringBuilder json = new StringBuilder(256);
+        json.append("{");
+        json.append("\"kind\": \"").append(JsonStrings.escape(kind)).append("\", ");
+        json.append("\"success\": ").append(success).append(", ");
+        json.append("\"textLength\": ").append(timing.getTextLength()).append(", ");
+        if (text != null) {
+            json.append("\"textHash\": \"").append(Long.toHexString(hash(text))).append("\", ");
+        }
+        json.append("\"tokens\": ").append(timing.getTokenCount()).append(", ");
+        json.append("\"batchId\": ").append(timing.getBatchId()).append(", ");
+        json.append("\"batchSize\": ").append(timing.getBatchSize()).append(", ");
+        json.append("\"queueMs\": ").append(millis(timing.getQueueNanos())).append(", ");
+        json.append("\"tokenizeMs\": ").append(millis(timing.getTokenizeNanos())).append(", ");
+        json.append("\"forwardMs\": ").append(millis(timing.getForwardNanos())).append(", ");
+        json.append("\"serializeMs\": ").append(millis(timing.getSerializeNanos())).append(", ");
+        json.append("\"totalMs\": ").append(millis(timing.getTotalNanos()));
+        json.append("}");
+        return json.toString();
+    }
+
+    /**
+     * 文本的64位FNV-1a哈希，按UTF-16字符计算，同一文本在不同进程中结果相同
+     */
+    public static long hash(CharSequence text) {
+        long hash = FNV_OFFSET_BASIS;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            hash = (hash ^ (c & 0xff)) * FNV_PRIME;
+            hash = (hash ^ (c >>> 8)) * FNV_PRIME;
+        }
+        return hash;
+    }
+
+    private static String millis(long nanos) {
+        return String.format(Locale.ROOT, "%.3f", nanos / 1_000_000.0);
+    }
+}
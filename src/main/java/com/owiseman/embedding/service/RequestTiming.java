@@ -0,0 +1,161 @@
+package com.owiseman.embedding.service;
+
+import java.util.Locale;
+
+/**
+ * 单个请求的分阶段计时
+ * 只保存System.nanoTime()打点得到的基本类型字段，各阶段在请求经过时就地填写：
+ * queue为排队等待成批的时间，tokenize和forward取自所在批次，serialize为结果序列化，total为端到端耗时。
+ * 经合并复用他人推理结果的请求只有total，没有批次信息
+ */
+public class RequestTiming {
+
+    private final long startNanos;
+    private long queueNanos;
+    private long tokenizeNanos;
+    private long forwardNanos;
+    private long serializeStartNanos;
+    private long serializeNanos;
+    private long totalNanos;
+    private int textLength;
+    private int tokenCount;
+    private long batchId;
+    private int batchSize;
+
+    public RequestTiming() {
+        this(0);
+    }
+
+    public RequestTiming(int textLength) {
+        this.startNanos = System.nanoTime();
+        this.textLength = textLength;
+    }
+
+    /**
+     * 记录请求在批次中的推理信息
+     * @param batchStartNanos 批次开始执行的时刻，与请求开始时刻之差即排队时间
+     * @param batch 请求所在批次
+     * @param index 请求在批次中的下标
+     */
+    public void recordBatch(long batchStartNanos, EmbeddingBatch batch, int index) {
+        queueNanos = Math.max(0, batchStartNanos - startNanos);
+        tokenizeNanos = batch.getTokenizeNanos();
+        forwardNanos = batch.getForwardNanos();
+        tokenCount = batch.getTokenCount(index);
+        batchId = batch.getBatchId();
+        batchSize = batch.size();
+    }
+
+    /**
+     * 记录整批请求的推理信息，token数为整批之和
+     */
+    public void recordBatch(EmbeddingBatch batch) {
+        tokenizeNanos = batch.getTokenizeNanos();
+        forwardNanos = batch.getForwardNanos();
+        tokenCount = batch.getTotalTokens();
+        batchId = batch.getBatchId();
+        batchSize = batch.size();
+    }
+
+    /**
+     * 记录单条推理（不经过批处理调度）的阶段耗时
+     */
+    void recordInference(long queueNanos, long tokenizeNanos, long forwardNanos, int tokenCount, long batchId) {
+        this.queueNanos = queueNanos;
+        this.tokenizeNanos = tokenizeNanos;
+        this.forwardNanos = forwardNanos;
+        this.tokenCount = tokenCount;
+        this.batchId = batchId;
+        this.batchSize = 1;
+    }
+
+    /**
+     * 请求开始被执行时调用，此前的时间计为排队时间
+     */
+    public void markDequeued() {
+        queueNanos = System.nanoTime() - startNanos;
+    }
+
+    public void markSerializeStart() {
+        serializeStartNanos = System.nanoTime();
+    }
+
+    /**
+     * 结束计时，若调用过markSerializeStart则同时得到序列化耗时
+     */
+    public void finish() {
+        long now = System.nanoTime();
+        if (serializeStartNanos != 0) {
+            serializeNanos = now - serializeStartNanos;
+        }
+        totalNanos = now - startNanos;
+    }
+
+    public void setTextLength(int textLength) {
+        this.textLength = textLength;
+    }
+
+    public long getStartNanos() {
+        return startNanos;
+    }
+
+    public long getQueueNanos() {
+        return queueNanos;
+    }
+
+    public long getTokenizeNanos() {
+        return tokenizeNanos;
+    }
+
+    public long getForwardNanos() {
+        return forwardNanos;
+    }
+
+    public long getSerializeNanos() {
+        return serializeNanos;
+    }
+
+    /**
+     * 端到端耗时，尚未调用finish()时返回到目前为止的耗时
+     */
+    public long getTotalNanos() {
+        return totalNanos != 0 ? totalNanos : System.nanoTime() - startNanos;
+    }
+
+    public int getTextLength() {
+        return textLength;
+    }
+
+    public int getTokenCount() {
+        return tokenCount;
+    }
+
+    public long getBatchId() {
+        return batchId;
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    /**
+     * 按W3C Server-Timing格式输出各阶段耗时（毫秒）
+     * @return 形如queue;dur=0.120, tokenize;dur=0.350, forward;dur=8.200, serialize;dur=0.090, total;dur=8.900
+     */
+    public String toServerTiming() {
+        StringBuilder header = new StringBuilder(96);
+        appendMetric(header, "queue", queueNanos);
+        appendMetric(header, "tokenize", tokenizeNanos);
+        appendMetric(header, "forward", forwardNanos);
+        appendMetric(header, "serialize", serializeNanos);
+        appendMetric(header, "total", getTotalNanos());
+        return header.toString();
+    }
+
+    private static void appendMetric(StringBuilder header, String name, long nanos) {
+        if (header.length() > 0) {
+            header.append(", ");
+        }
+        header.append(name).append(";dur=").append(String.format(Locale.ROOT, "%.3f", nanos / 1_000_000.0));
+    }
+}
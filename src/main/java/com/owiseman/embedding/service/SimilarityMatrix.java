@@ -0,0 +1,180 @@
+package com.owiseman.embedding.service;
+
+/**
+ * 向量相似度矩阵计算
+ * 向量已L2归一化时点积即余弦相似度。scores = Q · Cᵀ按块计算：每次取一块候选向量（可留在L1/L2缓存中），
+ * 让所有查询向量依次与它做点积，避免候选矩阵在每个查询上都从内存重新读一遍；
+ * 查询再按QUERY_BLOCK行一组，每读一个候选分量同时累加到一组查询上，候选向量的读取量减为1/QUERY_BLOCK。
+ * 点积使用4路独立累加，打破浮点加法的依赖链，便于JIT生成流水化的标量/向量指令
+ */
+public final class SimilarityMatrix {
+
+    // 每块候选向量的行数，768维float时约48KB
+    private static final int CANDIDATE_BLOCK = 16;
+    // 每组同时与一个候选向量做点积的查询行数，与dot4的实现对应
+    private static final int QUERY_BLOCK = 4;
+
+    private SimilarityMatrix() {
+    }
+
+    /**
+     * 计算查询向量与候选向量两两之间的点积
+     * @param queries 按行连续存放的查询向量，queryCount × dimension
+     * @param candidates 按行连续存放的候选向量，candidateCount × dimension
+     * @return 按行存放的分数矩阵，queryCount × candidateCount
+     */
+    public static float[] multiply(float[] queries, int queryCount, float[] candidates, int candidateCount,
+                                   int dimension) {
+        float[] scores = new float[queryCount * candidateCount];
+        for (int c0 = 0; c0 < candidateCount; c0 += CANDIDATE_BLOCK) {
+            int c1 = Math.min(candidateCount, c0 + CANDIDATE_BLOCK);
+            int q0 = 0;
+            for (; q0 + QUERY_BLOCK <= queryCount; q0 += QUERY_BLOCK) {
+                for (int c = c0; c < c1; c++) {
+                    dot4(queries, q0, candidates, c, dimension, scores, candidateCount);
+                }
+            }
+            // 不足一组的剩余查询逐行计算
+            for (int q = q0; q < queryCount; q++) {
+                int queryOffset = q * dimension;
+                int scoreOffset = q * candidateCount;
+                for (int c = c0; c < c1; c++) {
+                    scores[scoreOffset + c] = dot(queries, queryOffset, candidates, c * dimension, dimension);
+                }
+            }
+        }
+        return scores;
+    }
+
+    static float dot(float[] a, int aOffset, float[] b, int bOffset, int length) {
+        float s0 = 0, s1 = 0, s2 = 0, s3 = 0;
+        int i = 0;
+        for (; i + 3 < length; i += 4) {
+            s0 += a[aOffset + i] * b[bOffset + i];
+            s1 += a[aOffset + i + 1] * b[bOffset + i + 1];
+            s2 += a[aOffset + i + 2] * b[bOffset + i + 2];
+            s3 += a[aOffset + i + 3] * b[bOffset + i + 3];
+        }
+        for (; i < length; i++) {
+            s0 += a[aOffset + i] * b[bOffset + i];
+        }
+        return (s0 + s1) + (s2 + s3);
+    }
+
+    /**
+     * 查询q0..q0+3与候选candidate的点积，候选的每个分量只读一次
+     * 每行的累加顺序与dot相同，查询落在整组还是剩余部分得到的分数一致
+     */
+    private static void dot4(float[] queries, int q0, float[] candidates, int candidate, int dimension,
+                             float[] scores, int candidateCount) {
+        int r0 = q0 * dimension;
+        int r1 = r0 + dimension;
+        int r2 = r1 + dimension;
+        int r3 = r2 + dimension;
+        int cOffset = candidate * dimension;
+        float a0 = 0, a1 = 0, a2 = 0, a3 = 0;
+        float b0 = 0, b1 = 0, b2 = 0, b3 = 0;
+        float c0 = 0, c1 = 0, c2 = 0, c3 = 0;
+        float d0 = 0, d1 = 0, d2 = 0, d3 = 0;
+        int i = 0;
+        for (; i + 3 < dimension; i += 4) {
+            float x0 = candidates[cOffset + i];
+            float x1 = candidates[cOffset + i + 1];
+            float x2 = candidates[cOffset + i + 2];
+            float x3 = candidates[cOffset + i + 3];
+            a0 += queries[r0 + i] * x0;
+            a1 += queries[r0 + i + 1] * x1;
+            a2 += queries[r0 + i + 2] * x2;
+            a3 += queries[r0 + i + 3] * x3;
+            b0 += queries[r1 + i] * x0;
+            b1 += queries[r1 + i + 1] * x1;
+            b2 += queries[r1 + i + 2] * x2;
+            b3 += queries[r1 + i + 3] * x3;
+            c0 += queries[r2 + i] * x0;
+            c1 += queries[r2 + i + 1] * x1;
+            c2 += queries[r2 + i + 2] * x2;
+            c3 += queries[r2 + i + 3] * x3;
+            d0 += queries[r3 + i] * x0;
+            d1 += queries[r3 + i + 1] * x1;
+            d2 += queries[r3 + i + 2] * x2;
+            d3 += queries[r3 + i + 3] * x3;
+        }
+        for (; i < dimension; i++) {
+            float x = candidates[cOffset + i];
+            a0 += queries[r0 + i] * x;
+            b0 += queries[r1 + i] * x;
+            c0 += queries[r2 + i] * x;
+            d0 += queries[r3 + i] * x;
+        }
+        int row = q0 * candidateCount + candidate;
+        scores[row] = (a0 + a1) + (a2 + a3);
+        scores[row + candidateCount] = (b0 + b1) + (b2 + b3);
+        scores[row + 2 * candidateCount] = (c0 + c1) + (c2 + c3);
+        scores[row + 3 * candidateCount] = (d0 + d1) + (d2 + d3);
+    }
+
+    /**
+     * 选出一行分数中最高的k个
+     * 用大小为k的小顶堆做部分选择，O(n log k)，不对整行排序
+     * @return 按分数从高到低排列的列下标
+     */
+    public static int[] topK(float[] scores, int rowOffset, int length, int k) {
+        k = Math.min(k, length);
+        int[] heap = new int[k];
+        int heapSize = 0;
+        for (int i = 0; i < length; i++) {
+            float score = scores[rowOffset + i];
+            if (heapSize < k) {
+                heap[heapSize] = i;
+                siftUp(scores, rowOffset, heap, heapSize++);
+            } else if (score > scores[rowOffset + heap[0]]) {
+                heap[0] = i;
+                siftDown(scores, rowOffset, heap, heapSize);
+            }
+        }
+        // 依次弹出堆顶（当前最小）填到结果末尾
+        int[] result = new int[heapSize];
+        for (int i = heapSize - 1; i >= 0; i--) {
+            result[i] = heap[0];
+            heap[0] = heap[--heapSize];
+            siftDown(scores, rowOffset, heap, heapSize);
+        }
+        return result;
+    }
+
+    private static void siftUp(float[] scores, int rowOffset, int[] heap, int index) {
+        while (index > 0) {
+            int parent = (index - 1) >>> 1;
+            if (scores[rowOffset + heap[parent]] <= scores[rowOffset + heap[index]]) {
+                return;
+            }
+            swap(heap, parent, index);
+            index = parent;
+        }
+    }
+
+    private static void siftDown(float[] scores, int rowOffset, int[] heap, int size) {
+        int index = 0;
+        while (true) {
+            int left = 2 * index + 1;
+            if (left >= size) {
+                return;
+            }
+            int smallest = left;
+            if (left + 1 < size && scores[rowOffset + heap[left + 1]] < scores[rowOffset + heap[left]]) {
+                smallest = left + 1;
+            }
+            if (scores[rowOffset + heap[index]] <= scores[rowOffset + heap[smallest]]) {
+                return;
+            }
+            swap(heap, index, smallest);
+            index = smallest;
+        }
+    }
+
+    private static void swap(int[] heap, int i, int j) {
+        int tmp = heap[i];
+        heap[i] = heap[j];
+        heap[j] = tmp;
+    }
+}
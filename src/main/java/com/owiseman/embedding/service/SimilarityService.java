@@ -0,0 +1,121 @@
+package com.owiseman.embedding.service;
+
+import com.owiseman.embedding.config.PluginProperties;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 服务端相似度计算
+ * 查询和候选文本合并为一个批次向量化（相同文本只推理一次），在服务端算出相似度矩阵，
+ * 只返回分数或每个查询的top-k候选，客户端无需取回全部向量
+ */
+@Service
+public class SimilarityService {
+
+    private static final Logger logger = LoggerFactory.getLogger(SimilarityService.class);
+
+    private final EmbeddingModelService embeddingService;
+    private final PluginProperties properties;
+
+    @Autowired
+    public SimilarityService(EmbeddingModelService embeddingService, PluginProperties properties) {
+        this.embeddingService = embeddingService;
+        this.properties = properties;
+    }
+
+    /**
+     * 计算查询与候选之间的余弦相似度
+     * @param queries 查询文本
+     * @param candidates 候选文本
+     * @param topK 大于0时每个查询只返回分数最高的topK个候选，否则返回完整的分数矩阵
+     * @return JSON结果
+     */
+    public String similarity(List<String> queries, List<String> candidates, int topK) throws Exception {
+        if (queries == null || queries.isEmpty()) {
+            throw new IllegalArgumentException("查询文本不能为空");
+        }
+        if (candidates == null || candidates.isEmpty()) {
+            throw new IllegalArgumentException("候选文本不能为空");
+        }
+        int maxTexts = properties.getSimilarityMaxTexts();
+        if (maxTexts > 0 && queries.size() + candidates.size() > maxTexts) {
+            throw new IllegalArgumentException("查询和候选文本总数超过上限: " + maxTexts);
+        }
+
+        List<String> texts = new ArrayList<>(queries.size() + candidates.size());
+        texts.addAll(queries);
+        texts.addAll(candidates);
+
+        float[] queryMatrix;
+        float[] candidateMatrix;
+        int dimension;
+        try (EmbeddingBatch batch = embeddingService.getEmbeddingBatch(texts)) {
+            dimension = batch.getDimension();
+            queryMatrix = batch.toMatrix(0, queries.size());
+            candidateMatrix = batch.toMatrix(queries.size(), candidates.size());
+        }
+
+        long start = System.nanoTime();
+        float[] scores = SimilarityMatrix.multiply(queryMatrix, queries.size(),
+                candidateMatrix, candidates.size(), dimension);
+        logger.debug("相似度矩阵计算完成，{}x{}，耗时: {}μs",
+                queries.size(), candidates.size(), (System.nanoTime() - start) / 1000);
+
+        return topK > 0
+                ? toTopKJson(scores, queries.size(), candidates.size(), topK)
+                : toMatrixJson(scores, queries.size(), candidates.size());
+    }
+
+    private static String toMatrixJson(float[] scores, int queryCount, int candidateCount) {
+        StringBuilder json = new StringBuilder(queryCount * candidateCount * 12 + 64);
+        json.append("{\"scores\": [");
+        for (int q = 0; q < queryCount; q++) {
+            if (q > 0) {
+                json.append(", ");
+            }
+            json.append('[');
+            for (int c = 0; c < candidateCount; c++) {
+                if (c > 0) {
+                    json.append(", ");
+                }
+                json.append(scores[q * candidateCount + c]);
+            }
+            json.append(']');
+        }
+        json.append("], \"queries\": ").append(queryCount);
+        json.append(", \"candidates\": ").append(candidateCount);
+        json.append("}");
+        return json.toString();
+    }
+
+    private static String toTopKJson(float[] scores, int queryCount, int candidateCount, int topK) {
+        StringBuilder json = new StringBuilder(queryCount * Math.min(topK, candidateCount) * 40 + 64);
+        json.append("{\"results\": [");
+        for (int q = 0; q < queryCount; q++) {
+            if (q > 0) {
+                json.append(", ");
+            }
+            int rowOffset = q * candidateCount;
+            int[] top = SimilarityMatrix.topK(scores, rowOffset, candidateCount, topK);
+            json.append('[');
+            for (int i = 0; i < top.length; i++) {
+                if (i > 0) {
+                    json.append(", ");
+                }
+                json.append("{\"index\": ").append(top[i]);
+                json.append(", \"score\": ").append(scores[rowOffset + top[i]]).append('}');
+            }
+            json.append(']');
+        }
+        json.append("], \"queries\": ").append(queryCount);
+        json.append(", \"candidates\": ").append(candidateCount);
+        json.append(", \"topK\": ").append(topK);
+        json.append("}");
+        return json.toString();
+    }
+}
@@ -0,0 +1,110 @@
+package com.owiseman.embedding.service;
+
+import com.owiseman.embedding.config.PluginProperties;
+import com.owiseman.embedding.util.JsonStrings;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.Locale;
+
+/**
+ * 慢请求采样
+ * 端到端耗时超过阈值的请求连同文本长度、token数和批次号写入固定大小的环形缓冲区，
+ * 槽位在启动时预先分配，记录时只拷贝基本类型字段，新记录覆盖最旧的记录
+ */
+@Component
+public class SlowRequestLog {
+
+    private final long thresholdNanos;
+    private final Entry[] entries;
+    private long written;
+
+    @Autowired
+    public SlowRequestLog(PluginProperties properties) {
+        this.thresholdNanos = properties.getSlowRequestThresholdMs() * 1_000_000L;
+        this.entries = new Entry[Math.max(1, properties.getSlowRequestBufferSize())];
+        for (int i = 0; i < entries.length; i++) {
+            entries[i] = new Entry();
+        }
+    }
+
+    private static class Entry {
+        long timestampMillis;
+        String kind;
+        long queueNanos;
+        long tokenizeNanos;
+        long forwardNanos;
+        long serializeNanos;
+        long totalNanos;
+        int textLength;
+        int tokenCount;
+        long batchId;
+        int batchSize;
+    }
+
+    /**
+     * 请求结束时调用，未超过阈值的请求直接返回
+     * @param kind 请求类型，如命令名或接口名
+     */
+    public void record(String kind, RequestTiming timing) {
+        long totalNanos = timing.getTotalNanos();
+        if (thresholdNanos <= 0 || totalNanos < thresholdNanos) {
+            return;
+        }
+        synchronized (this) {
+            Entry entry = entries[(int) (written++ % entries.length)];
+            entry.timestampMillis = System.currentTimeMillis();
+            entry.kind = kind;
+            entry.queueNanos = timing.getQueueNanos();
+            entry.tokenizeNanos = timing.getTokenizeNanos();
+            entry.forwardNanos = timing.getForwardNanos();
+            entry.serializeNanos = timing.getSerializeNanos();
+            entry.totalNanos = totalNanos;
+            entry.textLength = timing.getTextLength();
+            entry.tokenCount = timing.getTokenCount();
+            entry.batchId = timing.getBatchId();
+            entry.batchSize = timing.getBatchSize();
+        }
+    }
+
+    public synchronized void clear() {
+        written = 0;
+    }
+
+    /**
+     * 以JSON形式导出缓冲区中的慢请求，按时间从旧到新排列
+     */
+    public synchronized String toJson() {
+        int count = (int) Math.min(written, entries.length);
+        StringBuilder json = new StringBuilder(count * 256 + 128);
+        json.append("{");
+        json.append("\"thresholdMs\": ").append(thresholdNanos / 1_000_000).append(", ");
+        json.append("\"total\": ").append(written).append(", ");
+        json.append("\"requests\": [");
+        for (int i = 0; i < count; i++) {
+            Entry entry = entries[(int) ((written - count + i) % entries.length)];
+            if (i > 0) {
+                json.append(", ");
+            }
+            json.append("{");
+            json.append("\"timestamp\": ").append(entry.timestampMillis).append(", ");
+            json.append("\"kind\": \"").append(JsonStrings.escape(entry.kind)).append("\", ");
+            json.append("\"queueMs\": ").append(millis(entry.queueNanos)).append(", ");
+            json.append("\"tokenizeMs\": ").append(millis(entry.tokenizeNanos)).append(", ");
+            json.append("\"forwardMs\": ").append(millis(entry.forwardNanos)).append(", ");
+            json.append("\"serializeMs\": ").append(millis(entry.serializeNanos)).append(", ");
+            json.append("\"totalMs\": ").append(millis(entry.totalNanos)).append(", ");
+            json.append("\"textLength\": ").append(entry.textLength).append(", ");
+            json.append("\"tokenCount\": ").append(entry.tokenCount).append(", ");
+            json.append("\"batchId\": ").append(entry.batchId).append(", ");
+            json.append("\"batchSize\": ").append(entry.batchSize);
+            json.append("}");
+        }
+        json.append("]}");
+        return json.toString();
+    }
+
+    private static String millis(long nanos) {
+        return String.format(Locale.ROOT, "%.3f", nanos / 1_000_000.0);
+    }
+}
@@ -0,0 +1,40 @@
+package com.owiseman.embedding.service;
+
+/**
+ * 推理阶段时钟
+ * 转换器在分词开始、分词结束和前向计算结束时打点。DJL的predict在调用线程上同步执行，
+ * 因此每个线程复用一个实例，predict返回后由调用方读取本次的阶段耗时，快路径上不产生分配
+ */
+final class StageClock {
+
+    private static final ThreadLocal<StageClock> CURRENT = ThreadLocal.withInitial(StageClock::new);
+
+    long tokenizeStart;
+    long tokenizeEnd;
+    long forwardEnd;
+    int[] tokenCounts; // 最近一次分词每行的token数，指向分词结果内的数组
+    InferenceEvents.Forward forwardEvent; // JFR录制中时进行中的前向事件
+
+    private StageClock() {
+    }
+
+    static StageClock current() {
+        return CURRENT.get();
+    }
+
+    void reset() {
+        tokenizeStart = 0;
+        tokenizeEnd = 0;
+        forwardEnd = 0;
+        tokenCounts = null;
+        forwardEvent = null;
+    }
+
+    long tokenizeNanos() {
+        return Math.max(0, tokenizeEnd - tokenizeStart);
+    }
+
+    long forwardNanos() {
+        return forwardEnd == 0 ? 0 : Math.max(0, forwardEnd - tokenizeEnd);
+    }
+}
@@ -1,52 +1,101 @@
 package com.owiseman.embedding.service;
 
-import ai.djl.modality.nlp.bert.BertTokenizer;
 import ai.djl.ndarray.NDArray;
 import ai.djl.ndarray.NDList;
 import ai.djl.ndarray.NDManager;
 import ai.djl.translate.Translator;
 import ai.djl.translate.TranslatorContext;
 
+import java.util.Collections;
+import java.util.List;
+
 /**
  * 文本嵌入转换器
  * 将输入文本转换为模型可处理的格式，并将模型输出转换为嵌入向量
  */
 public class TextEmbeddingTranslator implements Translator<String, float[]> {
 
-    private BertTokenizer tokenizer;
+    private final TextTokenizer tokenizer;
+    private final ModelBackend backend;
+    private final String modelId; // JFR事件中的模型ID
+    private final boolean torchScriptMask; // TorchScript模型是否同时接收attention_mask
+
+    public TextEmbeddingTranslator() {
+        this(ModelBackend.TORCHSCRIPT);
+    }
+
+    public TextEmbeddingTranslator(ModelBackend backend) {
+        this(backend, TextTokenizer.charCodes(), "", false);
+    }
+
+    public TextEmbeddingTranslator(ModelBackend backend, TextTokenizer tokenizer, String modelId,
+                                   boolean torchScriptMask) {
+        this.backend = backend;
+        this.tokenizer = tokenizer;
+        this.modelId = modelId;
+        this.torchScriptMask = torchScriptMask;
+    }
 
     @Override
     public NDList processInput(TranslatorContext ctx, String input) {
         // 创建NDManager来管理NDArray资源
         NDManager manager = ctx.getNDManager();
         
-        // 对输入文本进行预处理和编码
-        // 注意：这里简化了处理过程，实际应用中可能需要更复杂的分词和编码
-        long[] indices = new long[input.length()];
-        for (int i = 0; i < input.length(); i++) {
-            indices[i] = input.charAt(i);
+        // 分词（命中缓存时直接复用token id）
+        StageClock clock = StageClock.current();
+        InferenceEvents.Tokenize tokenizeEvent = new InferenceEvents.Tokenize();
+        tokenizeEvent.begin();
+        clock.tokenizeStart = System.nanoTime();
+        TextTokenizer.Batch tokens = tokenizer.encode(Collections.singletonList(input));
+        clock.tokenCounts = tokens.getLengths();
+        clock.tokenizeEnd = System.nanoTime();
+        clock.forwardEvent = InferenceEvents.afterTokenize(tokenizeEvent, modelId, tokens);
+
+        // TensorFlow/ONNX后端需要[1, seq]形状的具名输入
+        if (backend.usesNamedInputs()) {
+            return BatchEmbeddingTranslator.encode(manager, tokens, backend, false);
         }
-        
+
         // 创建输入张量
-        NDArray indicesArray = manager.create(indices);
-        
+        NDArray indicesArray = manager.create(tokens.getIds()[0]);
+
+        // 与批量路径保持一致：模型接收掩码时一并传入
+        if (torchScriptMask) {
+            return new NDList(indicesArray, manager.create(tokens.getAttentionMask()[0]));
+        }
+
         // 返回处理后的输入
         return new NDList(indicesArray);
     }
 
     @Override
     public float[] processOutput(TranslatorContext ctx, NDList list) {
-        // 获取模型输出的嵌入向量
-        NDArray embedding = list.get(0);
-        
-        // 如果输出是二维的，取第一个向量（CLS token的表示）
-        if (embedding.getShape().dimension() > 1) {
-            embedding = embedding.get(0);
+        StageClock clock = StageClock.current();
+        clock.forwardEnd = System.nanoTime();
+        InferenceEvents.afterForward(clock.forwardEvent);
+        clock.forwardEvent = null;
+        // 输出张量挂到单独的子管理器上，拷贝完成后立即显式释放
+        NDManager batchManager = ctx.getNDManager().newSubManager();
+        List<NDArray> held = Collections.emptyList();
+        try {
+            list.attach(batchManager);
+
+            // 获取模型输出的嵌入向量
+            NDArray embedding = list.get(0);
+
+            // 如果输出是多维的，逐层取第一个向量（CLS token的表示）
+            while (embedding.getShape().dimension() > 1) {
+                embedding = embedding.get(0);
+            }
+
+            // 上报本批次子管理器实际持有的本地张量
+            held = NativeMemoryTracker.record(batchManager);
+
+            // 将NDArray转换为float数组
+            return embedding.toFloatArray();
+        } finally {
+            batchManager.close();
+            NativeMemoryTracker.checkReleased(held);
         }
-        
-        // 将NDArray转换为float数组
-        float[] result = embedding.toFloatArray();
-        
-        return result;
     }
 }
\ No newline at end of file
@@ -0,0 +1,143 @@
+package com.owiseman.embedding.service;
+
+import java.text.Normalizer;
+
+/**
+ * 文本规范化
+ * 单次遍历完成首尾空白去除、连续空白合并和控制字符过滤，并按估算的token数截断。
+ * 结果写入线程复用的字符缓冲区，文本无需改动时直接返回原字符串，不产生中间对象
+ */
+public class TextNormalizer {
+
+    private static final int INITIAL_BUFFER_SIZE = 1024;
+    private static final int MAX_CACHED_BUFFER_SIZE = 1 << 16; // 超长文本的缓冲区不留在线程中
+    private static final ThreadLocal<char[]> BUFFER = ThreadLocal.withInitial(() -> new char[INITIAL_BUFFER_SIZE]);
+
+    private final boolean nfkc;
+    private final boolean stripControl;
+    private final int maxTokens;
+
+    /**
+     * @param nfkc 是否先做Unicode NFKC规范化（全角转半角、兼容字符统一等）
+     * @param stripControl 是否去除控制字符和零宽字符
+     * @param maxTokens token数上限，不大于0表示不截断
+     */
+    public TextNormalizer(boolean nfkc, boolean stripControl, int maxTokens) {
+        this.nfkc = nfkc;
+        this.stripControl = stripControl;
+        this.maxTokens = maxTokens;
+    }
+
+    /**
+     * 规范化文本
+     * @param text 原始文本
+     * @return 规范化后的文本，无需改动时返回原对象
+     */
+    public String normalize(String text) {
+        if (nfkc && !Normalizer.isNormalized(text, Normalizer.Form.NFKC)) {
+            text = Normalizer.normalize(text, Normalizer.Form.NFKC);
+        }
+
+        int length = text.length();
+        char[] buffer = BUFFER.get();
+        if (buffer.length < length) {
+            buffer = new char[Math.max(length, buffer.length * 2)];
+            if (buffer.length <= MAX_CACHED_BUFFER_SIZE) {
+                BUFFER.set(buffer);
+            }
+        }
+
+        int out = 0;
+        int tokens = 0;
+        boolean changed = false;
+        boolean pendingSpace = false;
+        boolean inWord = false;
+        for (int i = 0; i < length; i++) {
+            char c = text.charAt(i);
+            if (isSpace(c)) {
+                // 开头的空白直接丢弃，中间的连续空白合并为一个空格，结尾的空白不输出
+                changed |= c != ' ' || out == 0 || pendingSpace;
+                if (out > 0) {
+                    pendingSpace = true;
+                }
+                inWord = false;
+                continue;
+            }
+            if (stripControl && isControl(c)) {
+                changed = true;
+                continue;
+            }
+
+            boolean standalone = isStandaloneToken(c);
+            if (standalone || !inWord) {
+                if (maxTokens > 0 && tokens == maxTokens) {
+                    changed = true;
+                    break;
+                }
+                tokens++;
+            }
+            if (pendingSpace) {
+                buffer[out++] = ' ';
+                pendingSpace = false;
+            }
+            buffer[out++] = c;
+            inWord = !standalone;
+        }
+
+        // 结尾的空白被丢弃
+        changed |= pendingSpace;
+        return changed ? new String(buffer, 0, out) : text;
+    }
+
+    /**
+     * 估算文本的token数：空格分隔的词记一个，中日韩字符和标点各记一个
+     */
+    public static int estimateTokens(CharSequence text) {
+        int tokens = 0;
+        boolean inWord = false;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (isSpace(c)) {
+                inWord = false;
+                continue;
+            }
+            boolean standalone = isStandaloneToken(c);
+            if (standalone || !inWord) {
+                tokens++;
+            }
+            inWord = !standalone;
+        }
+        return tokens;
+    }
+
+    public int getMaxTokens() {
+        return maxTokens;
+    }
+
+    private static boolean isSpace(char c) {
+        return c == ' ' || c == '\u00A0' || c == '\u3000' || Character.isWhitespace(c);
+    }
+
+    private static boolean isControl(char c) {
+        return Character.getType(c) == Character.CONTROL
+                || c == '\u200B' || c == '\uFEFF' || c == '\u00AD';
+    }
+
+    /**
+     * WordPiece分词时自成一个token的字符：中日韩表意文字、假名、谚文和标点
+     */
+    private static boolean isStandaloneToken(char c) {
+        if ((c >= '\u4E00' && c <= '\u9FFF') || (c >= '\u3400' && c <= '\u4DBF')
+                || (c >= '\u3040' && c <= '\u30FF') || (c >= '\uAC00' && c <= '\uD7AF')
+                || (c >= '\uF900' && c <= '\uFAFF')) {
+            return true;
+        }
+        if (c < 128) {
+            return (c >= 33 && c <= 47) || (c >= 58 && c <= 64) || (c >= 91 && c <= 96) || (c >= 123 && c <= 126);
+        }
+        int type = Character.getType(c);
+        return type == Character.OTHER_PUNCTUATION || type == Character.START_PUNCTUATION
+                || type == Character.END_PUNCTUATION || type == Character.DASH_PUNCTUATION
+                || type == Character.INITIAL_QUOTE_PUNCTUATION || type == Character.FINAL_QUOTE_PUNCTUATION;
+    }
+}
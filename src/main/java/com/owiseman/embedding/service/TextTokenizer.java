@@ -0,0 +1,246 @@
+package com.owiseman.embedding.service;
+
+import ai.djl.huggingface.tokenizers.Encoding;
+import ai.djl.huggingface.tokenizers.HuggingFaceTokenizer;
+import org.apache.commons.collections4.map.LRUMap;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 文本分词器
+ * 封装HuggingFace分词器：一批文本中未命中缓存的部分一次batchEncode（由原生库并行分词），
+ * 结果按文本缓存在LRU中，重复输入无需再次分词。
+ * 未配置tokenizer.json时退化为按字符编码，与原先的转换器行为一致
+ */
+public class TextTokenizer implements AutoCloseable {
+
+    private final HuggingFaceTokenizer tokenizer;
+    private final LRUMap<String, Tokens> cache;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    private TextTokenizer(HuggingFaceTokenizer tokenizer, int cacheSize) {
+        this.tokenizer = tokenizer;
+        this.cache = cacheSize > 0 ? new LRUMap<>(cacheSize) : null;
+    }
+
+    /**
+     * 加载tokenizer.json
+     * @param tokenizerPath tokenizer.json路径
+     * @param maxLength 含特殊token的最大长度，超出部分截断
+     * @param cacheSize 缓存的文本数，0表示不缓存
+     */
+    public static TextTokenizer load(Path tokenizerPath, int maxLength, int cacheSize) throws IOException {
+        HuggingFaceTokenizer tokenizer = HuggingFaceTokenizer.builder()
+                .optTokenizerPath(tokenizerPath)
+                .optMaxLength(maxLength)
+                .optTruncation(true)
+                .optPadding(false)
+                .build();
+        return new TextTokenizer(tokenizer, cacheSize);
+    }
+
+    /**
+     * 按字符编码的分词器，用于没有tokenizer.json的模型
+     */
+    public static TextTokenizer charCodes() {
+        return new TextTokenizer(null, 0);
+    }
+
+    /**
+     * 对一批文本分词，结果按批内最长序列补齐
+     */
+    public Batch encode(List<String> texts) {
+        Tokens[] tokens = new Tokens[texts.size()];
+        int cacheHits = tokenize(texts, tokens, true);
+        Batch batch = new Batch(tokens);
+        batch.cacheHits = cacheHits;
+        return batch;
+    }
+
+    /**
+     * 每条文本补齐前的token数，用于按长度分组；
+     * 分词结果写入缓存，随后对同一批文本的encode直接命中，不计入命中统计
+     */
+    public int[] lengths(List<String> texts) {
+        Tokens[] tokens = new Tokens[texts.size()];
+        tokenize(texts, tokens, false);
+        int[] lengths = new int[tokens.length];
+        for (int i = 0; i < tokens.length; i++) {
+            lengths[i] = tokens[i].ids.length;
+        }
+        return lengths;
+    }
+
+    /**
+     * 分词到tokens中，未命中缓存的文本一次batchEncode
+     * @return 命中缓存的文本数
+     */
+    private int tokenize(List<String> texts, Tokens[] tokens, boolean recordStats) {
+        if (tokenizer == null) {
+            for (int i = 0; i < texts.size(); i++) {
+                tokens[i] = charCodes(texts.get(i));
+            }
+            return 0;
+        }
+
+        List<String> missing = new ArrayList<>();
+        List<Integer> missingRows = new ArrayList<>();
+        if (cache != null) {
+            synchronized (cache) {
+                for (int i = 0; i < texts.size(); i++) {
+                    tokens[i] = cache.get(texts.get(i));
+                }
+            }
+        }
+        for (int i = 0; i < texts.size(); i++) {
+            if (tokens[i] == null) {
+                missing.add(texts.get(i));
+                missingRows.add(i);
+            }
+        }
+        if (recordStats) {
+            hits.addAndGet(texts.size() - missing.size());
+            misses.addAndGet(missing.size());
+        }
+
+        if (!missing.isEmpty()) {
+            // 锁外分词，同一文本被并发请求时可能重复分词，但结果相同
+            Encoding[] encodings = tokenizer.batchEncode(missing);
+            for (int i = 0; i < encodings.length; i++) {
+                tokens[missingRows.get(i)] = new Tokens(encodings[i].getIds(), encodings[i].getTypeIds());
+            }
+            if (cache != null) {
+                synchronized (cache) {
+                    for (int i = 0; i < missing.size(); i++) {
+                        cache.put(missing.get(i), tokens[missingRows.get(i)]);
+                    }
+                }
+            }
+        }
+        return texts.size() - missing.size();
+    }
+
+    public boolean isCharCodes() {
+        return tokenizer == null;
+    }
+
+    /**
+     * 以JSON形式输出缓存统计
+     */
+    public String toJson() {
+        int cached;
+        if (cache == null) {
+            cached = 0;
+        } else {
+            synchronized (cache) {
+                cached = cache.size();
+            }
+        }
+        StringBuilder json = new StringBuilder();
+        json.append("{");
+        json.append("\"type\": \"").append(tokenizer == null ? "charCodes" : "huggingface").append("\", ");
+        json.append("\"cached\": ").append(cached).append(", ");
+        json.append("\"hits\": ").append(hits.get()).append(", ");
+        json.append("\"misses\": ").append(misses.get());
+        json.append("}");
+        return json.toString();
+    }
+
+    private static Tokens charCodes(String text) {
+        long[] ids = new long[text.length()];
+        for (int i = 0; i < text.length(); i++) {
+            ids[i] = text.charAt(i);
+        }
+        return new Tokens(ids, new long[ids.length]);
+    }
+
+    @Override
+    public void close() {
+        if (tokenizer != null) {
+            tokenizer.close();
+        }
+    }
+
+    /**
+     * 单条文本的分词结果，缓存中的实例在多个批次间共享，不可修改
+     */
+    private static class Tokens {
+        final long[] ids;
+        final long[] typeIds;
+
+        Tokens(long[] ids, long[] typeIds) {
+            this.ids = ids;
+            this.typeIds = typeIds;
+        }
+    }
+
+    /**
+     * 补齐后的一批分词结果
+     */
+    public static class Batch {
+        private final long[][] ids;
+        private final long[][] attentionMask;
+        private final long[][] typeIds;
+        private final int[] lengths; // 每行补齐前的token数
+        private final int tokenCount;
+        private int cacheHits;
+
+        Batch(Tokens[] tokens) {
+            int maxLength = 1;
+            for (Tokens token : tokens) {
+                maxLength = Math.max(maxLength, token.ids.length);
+            }
+            ids = new long[tokens.length][maxLength];
+            attentionMask = new long[tokens.length][maxLength];
+            typeIds = new long[tokens.length][maxLength];
+            lengths = new int[tokens.length];
+            int total = 0;
+            for (int row = 0; row < tokens.length; row++) {
+                int length = tokens[row].ids.length;
+                lengths[row] = length;
+                total += length;
+                System.arraycopy(tokens[row].ids, 0, ids[row], 0, length);
+                System.arraycopy(tokens[row].typeIds, 0, typeIds[row], 0, length);
+                for (int i = 0; i < length; i++) {
+                    attentionMask[row][i] = 1L;
+                }
+            }
+            tokenCount = total;
+        }
+
+        public long[][] getIds() {
+            return ids;
+        }
+
+        public long[][] getAttentionMask() {
+            return attentionMask;
+        }
+
+        public long[][] getTypeIds() {
+            return typeIds;
+        }
+
+        public int[] getLengths() {
+            return lengths;
+        }
+
+        /**
+         * 整批补齐前的token总数
+         */
+        public int getTokenCount() {
+            return tokenCount;
+        }
+
+        /**
+         * 命中分词缓存的行数
+         */
+        public int getCacheHits() {
+            return cacheHits;
+        }
+    }
+}
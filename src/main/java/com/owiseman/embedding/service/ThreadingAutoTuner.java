@@ -0,0 +1,140 @@
+package com.owiseman.embedding.service;
+
+import ai.djl.inference.Predictor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Supplier;
+
+/**
+ * 推理线程自动调优
+ * 启动时在预热批次上扫描若干（预测器数量, intra-op线程数）组合，
+ * 选出在当前主机核数下吞吐最高的一组
+ */
+public class ThreadingAutoTuner {
+
+    private static final Logger logger = LoggerFactory.getLogger(ThreadingAutoTuner.class);
+    private static final int WARMUP_BATCH_SIZE = 8;
+    private static final int ITERATIONS_PER_WORKER = 4;
+
+    private static final String[] WARMUP_TEXTS = {
+            "The quick brown fox jumps over the lazy dog.",
+            "敏捷的棕色狐狸跳过了懒狗。",
+            "Der schnelle braune Fuchs springt über den faulen Hund.",
+            "素早い茶色の狐がのろまな犬を飛び越える。",
+            "Le renard brun rapide saute par-dessus le chien paresseux.",
+            "빠른 갈색 여우가 게으른 개를 뛰어넘는다.",
+            "El rápido zorro marrón salta sobre el perro perezoso.",
+            "Быстрая бурая лиса перепрыгивает через ленивую собаку."
+    };
+
+    private final String engineName;
+    private final int cores;
+    private final Supplier<Predictor<List<String>, EmbeddingBatch>> predictorFactory;
+
+    public ThreadingAutoTuner(String engineName, int cores,
+                              Supplier<Predictor<List<String>, EmbeddingBatch>> predictorFactory) {
+        this.engineName = engineName;
+        this.cores = cores;
+        this.predictorFactory = predictorFactory;
+    }
+
+    /**
+     * 扫描候选组合并返回吞吐最高的一组
+     */
+    public Result tune() throws Exception {
+        List<String> batch = new ArrayList<>(WARMUP_BATCH_SIZE);
+        for (int i = 0; i < WARMUP_BATCH_SIZE; i++) {
+            batch.add(WARMUP_TEXTS[i % WARMUP_TEXTS.length]);
+        }
+
+        // 先跑一次让引擎完成图优化等一次性开销
+        try (Predictor<List<String>, EmbeddingBatch> predictor = predictorFactory.get()) {
+            predictor.predict(batch).close();
+        }
+
+        Result best = null;
+        for (int workers = 1; workers <= cores; workers *= 2) {
+            // 非PyTorch引擎无法在运行时调整intra-op线程数，只扫描预测器数量
+            int intraOp = "PyTorch".equals(engineName) ? Math.max(1, cores / workers) : -1;
+            double throughput = measure(workers, intraOp, batch);
+            logger.info("线程调优: 预测器={}, intra-op={}, 吞吐={}条/秒",
+                    workers, intraOp, String.format("%.1f", throughput));
+
+            if (best == null || throughput > best.throughput) {
+                best = new Result(workers, intraOp, throughput);
+            }
+        }
+
+        EngineThreading.setIntraOpThreads(engineName, best.intraOpThreads);
+        logger.info("线程调优完成，选择: 预测器={}, intra-op={}", best.workers, best.intraOpThreads);
+        return best;
+    }
+
+    private double measure(int workers, int intraOp, List<String> batch) throws Exception {
+        EngineThreading.setIntraOpThreads(engineName, intraOp);
+
+        List<Predictor<List<String>, EmbeddingBatch>> predictors = new ArrayList<>(workers);
+        ExecutorService executor = Executors.newFixedThreadPool(workers);
+        try {
+            for (int i = 0; i < workers; i++) {
+                predictors.add(predictorFactory.get());
+            }
+
+            long start = System.nanoTime();
+            List<Future<?>> futures = new ArrayList<>(workers);
+            for (Predictor<List<String>, EmbeddingBatch> predictor : predictors) {
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < ITERATIONS_PER_WORKER; i++) {
+                        predictor.predict(batch).close();
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+            long elapsed = System.nanoTime() - start;
+
+            long texts = (long) workers * ITERATIONS_PER_WORKER * batch.size();
+            return texts * 1_000_000_000.0 / elapsed;
+        } finally {
+            executor.shutdownNow();
+            for (Predictor<List<String>, EmbeddingBatch> predictor : predictors) {
+                predictor.close();
+            }
+        }
+    }
+
+    /**
+     * 调优结果
+     */
+    public static class Result {
+        private final int workers;
+        private final int intraOpThreads;
+        private final double throughput;
+
+        Result(int workers, int intraOpThreads, double throughput) {
+            this.workers = workers;
+            this.intraOpThreads = intraOpThreads;
+            this.throughput = throughput;
+        }
+
+        public int getWorkers() {
+            return workers;
+        }
+
+        public int getIntraOpThreads() {
+            return intraOpThreads;
+        }
+
+        public double getThroughput() {
+            return throughput;
+        }
+    }
+}
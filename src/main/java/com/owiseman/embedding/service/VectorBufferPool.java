@@ -0,0 +1,108 @@
+package com.owiseman.embedding.service;
+
+import com.owiseman.embedding.config.PluginProperties;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 向量结果缓冲池
+ * 批量推理的输出只拷贝一次到池化的堆外缓冲区中，归一化和序列化直接在其视图上进行，
+ * 响应写出后缓冲区归还池中复用，避免大批量下频繁创建float[]带来的年轻代压力
+ */
+@Component
+public class VectorBufferPool {
+
+    private static final Logger logger = LoggerFactory.getLogger(VectorBufferPool.class);
+    private static final int MIN_CAPACITY = 4096; // 最小缓冲区容量（字节）
+
+    private final boolean offHeap;
+    private final int maxPooledPerSize;
+
+    // 按容量分桶的空闲缓冲区，容量统一向上取整到2的幂
+    private final ConcurrentHashMap<Integer, ConcurrentLinkedQueue<ByteBuffer>> freeBuffers = new ConcurrentHashMap<>();
+    private final AtomicInteger pooledCount = new AtomicInteger();
+    private final AtomicLong allocatedBytes = new AtomicLong();
+    private final AtomicLong reuseCount = new AtomicLong();
+
+    @Autowired
+    public VectorBufferPool(PluginProperties properties) {
+        this.offHeap = properties.isOffHeapBuffers();
+        this.maxPooledPerSize = properties.getOffHeapPoolSize();
+        logger.info("向量结果缓冲池: {}, 每种容量最多缓存{}个", offHeap ? "堆外" : "堆内", maxPooledPerSize);
+    }
+
+    /**
+     * 获取一个至少能容纳指定字节数的缓冲区
+     * @param bytes 需要的字节数
+     * @return 位置为0、limit为bytes的缓冲区，使用本地字节序
+     */
+    public ByteBuffer acquire(int bytes) {
+        if (!offHeap) {
+            return ByteBuffer.allocate(bytes).order(ByteOrder.nativeOrder());
+        }
+
+        int capacity = capacityFor(bytes);
+        ConcurrentLinkedQueue<ByteBuffer> queue = freeBuffers.get(capacity);
+        ByteBuffer buffer = queue != null ? queue.poll() : null;
+        if (buffer != null) {
+            pooledCount.decrementAndGet();
+            reuseCount.incrementAndGet();
+        } else {
+            buffer = ByteBuffer.allocateDirect(capacity).order(ByteOrder.nativeOrder());
+            allocatedBytes.addAndGet(capacity);
+        }
+        buffer.clear().limit(bytes);
+        return buffer;
+    }
+
+    /**
+     * 归还缓冲区，超出池容量的缓冲区直接丢弃交由GC回收
+     * @param buffer 通过acquire获取的缓冲区
+     */
+    public void release(ByteBuffer buffer) {
+        if (buffer == null || !buffer.isDirect()) {
+            return;
+        }
+        ConcurrentLinkedQueue<ByteBuffer> queue =
+                freeBuffers.computeIfAbsent(buffer.capacity(), key -> new ConcurrentLinkedQueue<>());
+        if (queue.size() < maxPooledPerSize) {
+            queue.offer(buffer);
+            pooledCount.incrementAndGet();
+        } else {
+            allocatedBytes.addAndGet(-buffer.capacity());
+        }
+    }
+
+    public boolean isOffHeap() {
+        return offHeap;
+    }
+
+    public int getPooledCount() {
+        return pooledCount.get();
+    }
+
+    public long getAllocatedBytes() {
+        return allocatedBytes.get();
+    }
+
+    public long getReuseCount() {
+        return reuseCount.get();
+    }
+
+    private static int capacityFor(int bytes) {
+        if (bytes <= MIN_CAPACITY) {
+            return MIN_CAPACITY;
+        }
+        int highest = Integer.highestOneBit(bytes);
+        return highest == bytes ? bytes : highest << 1;
+    }
+}
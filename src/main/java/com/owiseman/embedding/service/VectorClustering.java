@@ -0,0 +1,481 @@
+package com.owiseman.embedding.service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.DoubleAdder;
+
+/**
+ * 向量聚类与近重复分组
+ * 数据为按行连续存放的float矩阵（n × d），耗时的步骤（最近中心分配、中心更新、成对比较）按行区间切分后
+ * 在给定的ForkJoin池上并行执行，各区间互不共享可写状态，因此可随核数线性扩展。
+ * 中心更新先按簇对点做计数排序，再按簇并行求均值，不需要每个任务一份k × d的部分和
+ */
+public final class VectorClustering {
+
+    // 最近中心分配时每块中心的个数，块内中心在一组点上复用
+    private static final int CENTROID_BLOCK = 16;
+
+    private VectorClustering() {
+    }
+
+    /**
+     * 聚类结果
+     */
+    public static class Result {
+        private final int[] assignments;
+        private final float[] centroids;
+        private final int k;
+        private final int iterations;
+        private final double inertia;
+
+        Result(int[] assignments, float[] centroids, int k, int iterations, double inertia) {
+            this.assignments = assignments;
+            this.centroids = centroids;
+            this.k = k;
+            this.iterations = iterations;
+            this.inertia = inertia;
+        }
+
+        public int[] getAssignments() {
+            return assignments;
+        }
+
+        /**
+         * 按行连续存放的中心，k × d
+         */
+        public float[] getCentroids() {
+            return centroids;
+        }
+
+        public int getK() {
+            return k;
+        }
+
+        public int getIterations() {
+            return iterations;
+        }
+
+        /**
+         * 各点到所属中心的平方距离之和
+         */
+        public double getInertia() {
+            return inertia;
+        }
+    }
+
+    /**
+     * k-means++初始化后做Lloyd迭代
+     * @param data 按行连续存放的向量
+     * @param maxIterations 最大迭代次数，分配不再变化时提前结束
+     */
+    public static Result kMeans(float[] data, int n, int d, int k, int maxIterations, long seed, ForkJoinPool pool) {
+        k = Math.min(k, n);
+        Random random = new Random(seed);
+        float[] centroids = seedPlusPlus(data, n, d, k, random, pool);
+        int[] assignments = new int[n];
+        Arrays.fill(assignments, -1);
+        float[] distances = new float[n];
+
+        int iteration = 0;
+        while (iteration < maxIterations) {
+            iteration++;
+            long changed = assign(data, n, d, centroids, k, assignments, distances, pool);
+            if (changed == 0 && iteration > 1) {
+                break;
+            }
+            updateCentroids(data, n, d, centroids, k, assignments, distances, pool);
+        }
+        return new Result(assignments, centroids, k, iteration, sum(distances, n));
+    }
+
+    /**
+     * Mini-batch k-means
+     * 每次迭代随机抽取batchSize个点，并行分配后按每个中心的累计计数以1/count的步长移动中心；
+     * 最后对全部数据做一次并行分配，适合行数远大于k的大数据集
+     */
+    public static Result miniBatchKMeans(float[] data, int n, int d, int k, int maxIterations, int batchSize,
+                                         long seed, ForkJoinPool pool) {
+        k = Math.min(k, n);
+        batchSize = Math.max(1, Math.min(batchSize, n));
+        Random random = new Random(seed);
+        float[] centroids = seedPlusPlus(data, n, d, k, random, pool);
+        long[] counts = new long[k];
+
+        float[] batch = new float[batchSize * d];
+        int[] batchAssignments = new int[batchSize];
+        float[] batchDistances = new float[batchSize];
+        for (int iteration = 0; iteration < maxIterations; iteration++) {
+            for (int i = 0; i < batchSize; i++) {
+                System.arraycopy(data, random.nextInt(n) * d, batch, i * d, d);
+            }
+            Arrays.fill(batchAssignments, -1);
+            assign(batch, batchSize, d, centroids, k, batchAssignments, batchDistances, pool);
+            for (int i = 0; i < batchSize; i++) {
+                int c = batchAssignments[i];
+                float eta = 1.0f / ++counts[c];
+                int centroidOffset = c * d;
+                int pointOffset = i * d;
+                for (int j = 0; j < d; j++) {
+                    centroids[centroidOffset + j] += eta * (batch[pointOffset + j] - centroids[centroidOffset + j]);
+                }
+            }
+        }
+
+        int[] assignments = new int[n];
+        Arrays.fill(assignments, -1);
+        float[] distances = new float[n];
+        assign(data, n, d, centroids, k, assignments, distances, pool);
+        return new Result(assignments, centroids, k, maxIterations, sum(distances, n));
+    }
+
+    /**
+     * 按余弦相似度阈值分组近重复向量（向量需已L2归一化）
+     * 只比较同一分区内的点对：传入聚类结果时按簇分区（近重复几乎总落在同一簇，比较量约为n²/k），否则全部两两比较。
+     * 各任务收集满足阈值的点对，最后用并查集合并为组；每比较完一行检查截止时间和线程中断，超时后各任务尽快退出
+     * @param partitions 每个点的分区号，null表示不分区
+     * @param deadlineNanos 以System.nanoTime()计的截止时间，0表示不限
+     * @return 至少包含两个点的组，每组按下标升序，组按首个下标升序
+     * @throws CancellationException 超过截止时间或线程被中断
+     */
+    public static List<int[]> nearDuplicateGroups(float[] data, int n, int d, float threshold, int[] partitions,
+                                                  long deadlineNanos, ForkJoinPool pool) {
+        int[] order = new int[n];
+        int[] starts;
+        if (partitions == null) {
+            for (int i = 0; i < n; i++) {
+                order[i] = i;
+            }
+            starts = new int[]{0, n};
+        } else {
+            starts = countingSort(partitions, n, maxValue(partitions, n) + 1, order);
+        }
+
+        // 每个分区再按行区间切成任务，点i只与分区内位于其后的点比较
+        List<int[]> ranges = new ArrayList<>();
+        int grain = Math.max(16, n / (pool.getParallelism() * 8));
+        for (int p = 0; p + 1 < starts.length; p++) {
+            for (int from = starts[p]; from < starts[p + 1]; from += grain) {
+                ranges.add(new int[]{from, Math.min(starts[p + 1], from + grain), starts[p + 1]});
+            }
+        }
+        int[][] pairs = new int[ranges.size()][];
+        pool.invoke(new RangeAction(0, ranges.size(), 1, (from, to) -> {
+            for (int r = from; r < to; r++) {
+                int[] range = ranges.get(r);
+                pairs[r] = similarPairs(data, d, order, range[0], range[1], range[2], threshold, deadlineNanos);
+            }
+        }));
+        for (int[] rangePairs : pairs) {
+            if (rangePairs == null) {
+                throw new CancellationException("近重复分组超过截止时间，已中止");
+            }
+        }
+
+        int[] parent = new int[n];
+        for (int i = 0; i < n; i++) {
+            parent[i] = i;
+        }
+        for (int[] rangePairs : pairs) {
+            for (int i = 1; i < rangePairs[0]; i += 2) {
+                union(parent, rangePairs[i], rangePairs[i + 1]);
+            }
+        }
+
+        int[] groupSizes = new int[n];
+        for (int i = 0; i < n; i++) {
+            groupSizes[find(parent, i)]++;
+        }
+        int[][] members = new int[n][];
+        int[] filled = new int[n];
+        List<int[]> groups = new ArrayList<>();
+        for (int i = 0; i < n; i++) {
+            int root = find(parent, i);
+            if (groupSizes[root] < 2) {
+                continue;
+            }
+            if (members[root] == null) {
+                members[root] = new int[groupSizes[root]];
+                groups.add(members[root]);
+            }
+            members[root][filled[root]++] = i;
+        }
+        return groups;
+    }
+
+    /**
+     * 收集order[from, to)中的点与其后同一分区内的点之间相似度不低于阈值的点对
+     * @return 第0个元素为已用长度，之后依次为点对；超过截止时间时返回null
+     */
+    private static int[] similarPairs(float[] data, int d, int[] order, int from, int to, int end, float threshold,
+                                      long deadlineNanos) {
+        int[] pairs = new int[17];
+        int size = 1;
+        for (int a = from; a < to; a++) {
+            if (expired(deadlineNanos)) {
+                return null;
+            }
+            int i = order[a];
+            for (int b = a + 1; b < end; b++) {
+                int j = order[b];
+                if (SimilarityMatrix.dot(data, i * d, data, j * d, d) >= threshold) {
+                    if (size + 2 > pairs.length) {
+                        pairs = Arrays.copyOf(pairs, pairs.length * 2);
+                    }
+                    pairs[size++] = i;
+                    pairs[size++] = j;
+                }
+            }
+        }
+        pairs[0] = size;
+        return pairs;
+    }
+
+    /**
+     * 是否已超过截止时间，线程被中断（如聚类池关闭）时同样视为超时
+     * @param deadlineNanos 以System.nanoTime()计的截止时间，0表示不限
+     */
+    static boolean expired(long deadlineNanos) {
+        return Thread.currentThread().isInterrupted()
+                || deadlineNanos != 0 && System.nanoTime() - deadlineNanos >= 0;
+    }
+
+    /**
+     * k-means++初始化：后续每个中心按到已选中心最近距离的平方加权抽样
+     */
+    private static float[] seedPlusPlus(float[] data, int n, int d, int k, Random random, ForkJoinPool pool) {
+        float[] centroids = new float[k * d];
+        float[] minDistances = new float[n];
+        Arrays.fill(minDistances, Float.MAX_VALUE);
+
+        int first = random.nextInt(n);
+        System.arraycopy(data, first * d, centroids, 0, d);
+        for (int c = 1; c < k; c++) {
+            int previous = c - 1;
+            DoubleAdder total = new DoubleAdder();
+            pool.invoke(new RangeAction(0, n, grain(n, pool), (from, to) -> {
+                double partial = 0;
+                for (int i = from; i < to; i++) {
+                    float distance = squaredDistance(data, i * d, centroids, previous * d, d);
+                    if (distance < minDistances[i]) {
+                        minDistances[i] = distance;
+                    }
+                    partial += minDistances[i];
+                }
+                total.add(partial);
+            }));
+
+            double target = random.nextDouble() * total.sum();
+            int chosen = n - 1;
+            double cumulative = 0;
+            for (int i = 0; i < n; i++) {
+                cumulative += minDistances[i];
+                if (cumulative >= target) {
+                    chosen = i;
+                    break;
+                }
+            }
+            System.arraycopy(data, chosen * d, centroids, c * d, d);
+        }
+        return centroids;
+    }
+
+    /**
+     * 并行把每个点分配到最近的中心
+     * 距离按||x||² + ||c||² - 2x·c计算，中心按块遍历以便在一组点上复用缓存中的中心
+     * @return 分配发生变化的点数
+     */
+    private static long assign(float[] data, int n, int d, float[] centroids, int k, int[] assignments,
+                               float[] distances, ForkJoinPool pool) {
+        float[] centroidNorms = new float[k];
+        for (int c = 0; c < k; c++) {
+            centroidNorms[c] = SimilarityMatrix.dot(centroids, c * d, centroids, c * d, d);
+        }
+
+        DoubleAdder changed = new DoubleAdder();
+        pool.invoke(new RangeAction(0, n, grain(n, pool), (from, to) -> {
+            int length = to - from;
+            float[] best = new float[length];
+            int[] bestCentroid = new int[length];
+            Arrays.fill(best, Float.MAX_VALUE);
+            for (int c0 = 0; c0 < k; c0 += CENTROID_BLOCK) {
+                int c1 = Math.min(k, c0 + CENTROID_BLOCK);
+                for (int i = from; i < to; i++) {
+                    int offset = i * d;
+                    for (int c = c0; c < c1; c++) {
+                        float score = centroidNorms[c] - 2 * SimilarityMatrix.dot(data, offset, centroids, c * d, d);
+                        if (score < best[i - from]) {
+                            best[i - from] = score;
+                            bestCentroid[i - from] = c;
+                        }
+                    }
+                }
+            }
+            int localChanged = 0;
+            for (int i = from; i < to; i++) {
+                float pointNorm = SimilarityMatrix.dot(data, i * d, data, i * d, d);
+                distances[i] = Math.max(0f, pointNorm + best[i - from]);
+                if (assignments[i] != bestCentroid[i - from]) {
+                    assignments[i] = bestCentroid[i - from];
+                    localChanged++;
+                }
+            }
+            changed.add(localChanged);
+        }));
+        return (long) changed.sum();
+    }
+
+    /**
+     * 重新计算中心：按簇计数排序后并行求每个簇的均值；空簇重新取离所属中心最远的点
+     */
+    private static void updateCentroids(float[] data, int n, int d, float[] centroids, int k, int[] assignments,
+                                        float[] distances, ForkJoinPool pool) {
+        int[] order = new int[n];
+        int[] starts = countingSort(assignments, n, k, order);
+
+        pool.invoke(new RangeAction(0, k, 1, (from, to) -> {
+            for (int c = from; c < to; c++) {
+                int count = starts[c + 1] - starts[c];
+                if (count == 0) {
+                    continue;
+                }
+                double[] sum = new double[d];
+                for (int m = starts[c]; m < starts[c + 1]; m++) {
+                    int offset = order[m] * d;
+                    for (int j = 0; j < d; j++) {
+                        sum[j] += data[offset + j];
+                    }
+                }
+                int centroidOffset = c * d;
+                for (int j = 0; j < d; j++) {
+                    centroids[centroidOffset + j] = (float) (sum[j] / count);
+                }
+            }
+        }));
+
+        for (int c = 0; c < k; c++) {
+            if (starts[c + 1] > starts[c]) {
+                continue;
+            }
+            int farthest = 0;
+            for (int i = 1; i < n; i++) {
+                if (distances[i] > distances[farthest]) {
+                    farthest = i;
+                }
+            }
+            System.arraycopy(data, farthest * d, centroids, c * d, d);
+            distances[farthest] = 0;
+        }
+    }
+
+    /**
+     * 按键做计数排序
+     * @param order 输出：按键排序后的下标
+     * @return 长度为buckets + 1的起始位置，键为b的下标位于order[starts[b], starts[b + 1])
+     */
+    private static int[] countingSort(int[] keys, int n, int buckets, int[] order) {
+        int[] starts = new int[buckets + 1];
+        for (int i = 0; i < n; i++) {
+            starts[keys[i] + 1]++;
+        }
+        for (int b = 0; b < buckets; b++) {
+            starts[b + 1] += starts[b];
+        }
+        int[] next = Arrays.copyOf(starts, buckets);
+        for (int i = 0; i < n; i++) {
+            order[next[keys[i]]++] = i;
+        }
+        return starts;
+    }
+
+    private static float squaredDistance(float[] a, int aOffset, float[] b, int bOffset, int d) {
+        float s0 = 0, s1 = 0;
+        int j = 0;
+        for (; j + 1 < d; j += 2) {
+            float x0 = a[aOffset + j] - b[bOffset + j];
+            float x1 = a[aOffset + j + 1] - b[bOffset + j + 1];
+            s0 += x0 * x0;
+            s1 += x1 * x1;
+        }
+        for (; j < d; j++) {
+            float x = a[aOffset + j] - b[bOffset + j];
+            s0 += x * x;
+        }
+        return s0 + s1;
+    }
+
+    private static double sum(float[] values, int n) {
+        double total = 0;
+        for (int i = 0; i < n; i++) {
+            total += values[i];
+        }
+        return total;
+    }
+
+    private static int maxValue(int[] values, int n) {
+        int max = 0;
+        for (int i = 0; i < n; i++) {
+            max = Math.max(max, values[i]);
+        }
+        return max;
+    }
+
+    private static int grain(int n, ForkJoinPool pool) {
+        // 每个工作线程约8个任务，兼顾负载均衡和任务开销
+        return Math.max(64, n / (pool.getParallelism() * 8));
+    }
+
+    private static int find(int[] parent, int i) {
+        while (parent[i] != i) {
+            parent[i] = parent[parent[i]];
+            i = parent[i];
+        }
+        return i;
+    }
+
+    private static void union(int[] parent, int a, int b) {
+        int rootA = find(parent, a);
+        int rootB = find(parent, b);
+        if (rootA != rootB) {
+            // 以较小下标为根，组内顺序稳定
+            parent[Math.max(rootA, rootB)] = Math.min(rootA, rootB);
+        }
+    }
+
+    @FunctionalInterface
+    private interface RangeBody {
+        void run(int from, int to);
+    }
+
+    /**
+     * 把[from, to)二分到不超过grain的区间后并行执行，只在ForkJoin池内使用，不会被序列化
+     */
+    @SuppressWarnings("serial")
+    private static class RangeAction extends RecursiveAction {
+        private final int from;
+        private final int to;
+        private final int grain;
+        private final RangeBody body;
+
+        RangeAction(int from, int to, int grain, RangeBody body) {
+            this.from = from;
+            this.to = to;
+            this.grain = grain;
+            this.body = body;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= grain) {
+                body.run(from, to);
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            invokeAll(new RangeAction(from, middle, grain, body), new RangeAction(middle, to, grain, body));
+        }
+    }
+}
@@ -0,0 +1,138 @@
+package com.owiseman.embedding.util;
+
+import ai.djl.inference.Predictor;
+import ai.djl.repository.zoo.ZooModel;
+import com.owiseman.embedding.config.PluginProperties;
+import com.owiseman.embedding.service.BatchEmbeddingTranslator;
+import com.owiseman.embedding.service.EmbeddingBatch;
+import com.owiseman.embedding.service.ModelBackend;
+import com.owiseman.embedding.service.ModelLoader;
+import com.owiseman.embedding.service.TextTokenizer;
+import com.owiseman.embedding.service.VectorBufferPool;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * 推理后端基准测试
+ * 用同一批文本、同一个转换器依次测试同一模型的TorchScript/SavedModel/ONNX导出，输出吞吐和延迟；
+ * TorchScript模型另外输出按token数分组推理的吞吐，用于确认整批补齐不比分组慢
+ *
+ * 用法: java -cp embedding-plugin.jar com.owiseman.embedding.util.EngineBenchmark
+ *          [--batch 16] [--iterations 50] models/LaBSE/LaBSE.pt models/LaBSE/saved_model models/LaBSE/model.onnx
+ */
+public class EngineBenchmark {
+
+    private static final String[] SAMPLE_TEXTS = {
+            "The quick brown fox jumps over the lazy dog.",
+            "敏捷的棕色狐狸跳过了懒狗。",
+            "Der schnelle braune Fuchs springt über den faulen Hund.",
+            "素早い茶色の狐がのろまな犬を飛び越える。",
+            "Le renard brun rapide saute par-dessus le chien paresseux.",
+            "El rápido zorro marrón salta sobre el perro perezoso."
+    };
+
+    public static void main(String[] args) throws Exception {
+        int batchSize = 16;
+        int iterations = 50;
+        List<Path> modelPaths = new ArrayList<>();
+
+        for (int i = 0; i < args.length; i++) {
+            if ("--batch".equals(args[i])) {
+                batchSize = Integer.parseInt(args[++i]);
+            } else if ("--iterations".equals(args[i])) {
+                iterations = Integer.parseInt(args[++i]);
+            } else {
+                modelPaths.add(Paths.get(args[i]));
+            }
+        }
+        if (modelPaths.isEmpty()) {
+            System.out.println("用法: EngineBenchmark [--batch n] [--iterations n] <模型路径>...");
+            return;
+        }
+
+        List<String> batch = new ArrayList<>(batchSize);
+        for (int i = 0; i < batchSize; i++) {
+            batch.add(SAMPLE_TEXTS[i % SAMPLE_TEXTS.length]);
+        }
+
+        PluginProperties properties = new PluginProperties();
+        VectorBufferPool bufferPool = new VectorBufferPool(properties);
+        TextTokenizer tokenizer = TextTokenizer.charCodes();
+
+        System.out.printf("%-14s %-12s %-40s %12s %10s %10s%n",
+                "引擎", "模式", "模型", "吞吐(条/秒)", "p50(ms)", "p99(ms)");
+        for (Path modelPath : modelPaths) {
+            ModelBackend backend = ModelBackend.detect(modelPath);
+            try (ZooModel<String, float[]> model = ModelLoader.load(modelPath, backend, "LaBSE", properties)) {
+                boolean mask = ModelLoader.acceptsAttentionMask(model, backend, tokenizer, properties);
+                try (Predictor<List<String>, EmbeddingBatch> predictor = model.newPredictor(
+                        new BatchEmbeddingTranslator(bufferPool, backend, tokenizer, model.getName(), mask),
+                        model.getNDManager().getDevice())) {
+                    String mode = backend != ModelBackend.TORCHSCRIPT || mask ? "整批补齐" : "整批补齐(无掩码)";
+                    measure(backend, mode, modelPath, batch, iterations, () -> predictor.predict(batch).close());
+
+                    // TorchScript模型与服务中按token数分组、每组单独推理的模式对比
+                    if (backend == ModelBackend.TORCHSCRIPT) {
+                        List<List<String>> buckets = bucketByLength(tokenizer, batch);
+                        measure(backend, "按长度分组", modelPath, batch, iterations, () -> {
+                            for (List<String> bucket : buckets) {
+                                predictor.predict(bucket).close();
+                            }
+                        });
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * 预热后计时执行，输出一行吞吐和延迟
+     */
+    private static void measure(ModelBackend backend, String mode, Path modelPath, List<String> batch,
+                                int iterations, BenchmarkStep step) throws Exception {
+        // 预热
+        for (int i = 0; i < 3; i++) {
+            step.run();
+        }
+
+        long[] latencies = new long[iterations];
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            long begin = System.nanoTime();
+            step.run();
+            latencies[i] = System.nanoTime() - begin;
+        }
+        long elapsed = System.nanoTime() - start;
+
+        Arrays.sort(latencies);
+        double throughput = (double) iterations * batch.size() * 1_000_000_000L / elapsed;
+        System.out.printf("%-14s %-12s %-40s %12.1f %10.2f %10.2f%n",
+                backend.getEngineName(), mode, modelPath,
+                throughput,
+                latencies[iterations / 2] / 1_000_000.0,
+                latencies[Math.min(iterations - 1, (int) (iterations * 0.99))] / 1_000_000.0);
+    }
+
+    /**
+     * 按token数把批次拆成若干组，组内长度相同无需补齐
+     */
+    private static List<List<String>> bucketByLength(TextTokenizer tokenizer, List<String> batch) {
+        int[] lengths = tokenizer.lengths(batch);
+        Map<Integer, List<String>> buckets = new TreeMap<>();
+        for (int row = 0; row < lengths.length; row++) {
+            buckets.computeIfAbsent(lengths[row], key -> new ArrayList<>()).add(batch.get(row));
+        }
+        return new ArrayList<>(buckets.values());
+    }
+
+    @FunctionalInterface
+    private interface BenchmarkStep {
+        void run() throws Exception;
+    }
+}
@@ -0,0 +1,59 @@
+package com.owiseman.embedding.util;
+
+/**
+ * 手工拼接JSON时使用的字符串转义
+ */
+public final class JsonStrings {
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private JsonStrings() {
+    }
+
+    /**
+     * 转义JSON字符串中的引号、反斜杠和控制字符，不含两侧的引号
+     * @param value 原始字符串，null按空字符串处理
+     */
+    public static String escape(String value) {
+        if (value == null) {
+            return "";
+        }
+        StringBuilder escaped = null;
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            String replacement;
+            switch (c) {
+                case '"':
+                    replacement = "\\\"";
+                    break;
+                case '\\':
+                    replacement = "\\\\";
+                    break;
+                case '\n':
+                    replacement = "\\n";
+                    break;
+                case '\r':
+                    replacement = "\\r";
+                    break;
+                case '\t':
+                    replacement = "\\t";
+                    break;
+                default:
+                    replacement = c < 0x20 ? "\\u00" + HEX[c >> 4] + HEX[c & 0xf] : null;
+            }
+            if (replacement == null) {
+                if (escaped != null) {
+                    escaped.append(c);
+                }
+                continue;
+            }
+            if (escaped == null) {
+                // 大多数字符串不需要转义，遇到第一个特殊字符时才复制
+                escaped = new StringBuilder(value.length() + 16);
+                escaped.append(value, 0, i);
+            }
+            escaped.append(replacement);
+        }
+        return escaped == null ? value : escaped.toString();
+    }
+}
@@ -1,100 +1,75 @@
 package com.owiseman.embedding.util;
 
-import java.net.URI;
-import java.text.DecimalFormat;
-import java.util.Collection;
-import java.util.Comparator;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
-import java.util.Set;
-import java.util.Map.Entry;
-
-import org.apache.commons.collections4.MapUtils;
+import com.owiseman.embedding.config.PluginProperties;
+import com.owiseman.embedding.service.ModelCatalog;
 
-import ai.djl.Application;
-import ai.djl.repository.Artifact;
-import ai.djl.repository.Artifact.Item;
-import ai.djl.repository.zoo.ModelZoo;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.text.DecimalFormat;
 
+/**
+ * 列出本地模型目录
+ * 读取模型清单（不存在时按文件布局查找），输出各模型的引擎、大小、维度、最大序列长度和检查结果，不访问网络。
+ * --checksum计算各模型的SHA-256并与清单比对；--write按扫描结果生成或更新清单（包含校验和）
+ *
+ * 用法: java -cp embedding-plugin.jar com.owiseman.embedding.util.ListModels
+ *          [--catalog models/catalog.json] [--threads 4] [--checksum] [--write]
+ */
 public class ListModels {
 
-
-//    public static void main(String[] args) throws Exception {
-////        SettingUpUtils.settingUp();
-//
-//
-//        ListArtifacts();
-//
-//
-//    }
-
-
-
-
-    static void ListArtifacts() throws Exception {
-        URI repositoryBaseUri = new URI("https://mlrepo.djl.ai/");
-        Map<Application, List<Artifact>> artifactMapping = ModelZoo.listModels();
-        Collection<ModelZoo> modelZoos = ModelZoo.listModelZoo();
-
-        Map<String, ModelZoo> groupModelZooMapping = new HashMap<>();
-        for (ModelZoo mz : modelZoos) {
-            groupModelZooMapping.put(mz.getGroupId(), mz);
+    public static void main(String[] args) throws Exception {
+        PluginProperties properties = new PluginProperties();
+        boolean checksum = false;
+        boolean write = false;
+
+        for (int i = 0; i < args.length; i++) {
+            if ("--catalog".equals(args[i])) {
+                properties.setModelCatalogPath(args[++i]);
+            } else if ("--threads".equals(args[i])) {
+                properties.setModelCatalogScanThreads(Integer.parseInt(args[++i]));
+            } else if ("--checksum".equals(args[i])) {
+                checksum = true;
+            } else if ("--write".equals(args[i])) {
+                write = true;
+            } else {
+                System.out.println("用法: ListModels [--catalog 清单路径] [--threads n] [--checksum] [--write]");
+                return;
+            }
         }
 
-
-        Set<Entry<Application,List<Artifact>>> entrySet = artifactMapping.entrySet();
-
-        for (Entry<Application, List<Artifact>> entry : entrySet) {
-            Application app = entry.getKey();
-
-            System.out.println("应用类型： " + app);
-
-            List<Artifact> artifacts = entry.getValue();
-            sortArtifacts(artifacts);
-
-
-            for (Artifact af : artifacts) {
-
-                ModelZoo modelZoo = groupModelZooMapping.get(af.getMetadata().getGroupId());
-
-                System.out.println("\t"
-                        // + "appPath" + app.getPath() + ", "
-                        + "groupId: " + modelZoo.getGroupId() + ", "
-                        + "artifactId: " + af.getMetadata().getArtifactId() + ", "
-                        + "version: " + af.getMetadata().getMetadataVersion() + ", "
-                        );
-                System.out.println("\t下载地址：");
-
-                Map<String,Item> files = af.getFiles();
-                Set<Entry<String, Item>> fileEntries = files.entrySet();
-                for (Entry<String,Item> fe : fileEntries) {
-                    Item fi = fe.getValue();
-
-                    URI downloadUri = getDownloadUri(repositoryBaseUri, fi);
-                    System.out.println(""
-                            + "    fileSize: " + toHumanReadableBinaryPrefixes(fi.getSize())
-                            + "    " + downloadUri
-                            + "    artifactEngine: " + af.getArguments().get("engine")
-                            + "    translatorFactory: " + af.getArguments().get("translatorFactory")
-                            + "    modelZooSupportEngines: " + modelZoo.getSupportedEngines()
-                            + "");
-
+        ModelCatalog catalog = new ModelCatalog(properties);
+        catalog.start();
+        try {
+            if (checksum || write) {
+                for (ModelCatalog.Entry entry : catalog.getEntries()) {
+                    if (ModelCatalog.STATUS_OK.equals(entry.getStatus())
+                            || ModelCatalog.STATUS_SIZE_MISMATCH.equals(entry.getStatus())) {
+                        catalog.verify(entry).join();
+                    }
                 }
-
-
-
-                System.out.println();
-                System.out.println();
-
-
             }
 
+            System.out.printf("%-20s %-12s %12s %6s %8s %-14s %-10s %s%n",
+                    "模型", "引擎", "大小", "维度", "最大长度", "状态", "校验", "路径");
+            for (ModelCatalog.Entry entry : catalog.getEntries()) {
+                System.out.printf("%-20s %-12s %12s %6d %8d %-14s %-10s %s%n",
+                        entry.getName(), entry.getEngine(),
+                        entry.getActualSize() >= 0 ? toHumanReadableBinaryPrefixes(entry.getActualSize()) : "-",
+                        entry.getDimension(), entry.getMaxSequenceLength(), entry.getStatus(),
+                        entry.getChecksumStatus(), entry.getPath());
+            }
 
+            if (write) {
+                Path manifest = Paths.get(properties.getModelCatalogPath());
+                Path base = manifest.toAbsolutePath().getParent();
+                Files.writeString(manifest, catalog.toManifestJson(base), StandardCharsets.UTF_8);
+                System.out.println("已写入模型清单: " + manifest.toAbsolutePath());
+            }
+        } finally {
+            catalog.shutdown();
         }
-
-
-
     }
 
     private static DecimalFormat DEC_FORMAT = new DecimalFormat("#.##");
@@ -120,67 +95,4 @@ public class ListModels {
         if (size >= KiB) return formatSize(size, KiB, "KiB");
         return formatSize(size, BYTE, "Bytes");
     }
-
-    public static List<Artifact> sortArtifacts(List<Artifact> artifacts) {
-        artifacts.sort(new Comparator<Artifact>() {
-
-            @Override
-            public int compare(Artifact o1, Artifact o2) {
-
-                Long o1FilesSize = 0L;
-                Long o2FilesSize = 0L;
-
-                if (o1 != null && !MapUtils.isEmpty(o1.getFiles())) {
-
-                    Collection<Item> o1Files = o1.getFiles().values();
-                    for (Item o1File : o1Files) {
-                        o1FilesSize += o1File.getSize();
-                    }
-
-                }
-
-                if (o1 != null && !MapUtils.isEmpty(o2.getFiles())) {
-
-
-                    Collection<Item> o2Files = o2.getFiles().values();
-                    for (Item o2File : o2Files) {
-                        o2FilesSize += o2File.getSize();
-                    }
-                }
-
-
-
-                long result = o2FilesSize - o1FilesSize;
-                if (result > 0) {
-                    return 1;
-                }
-                if (result < 0) {
-                    return -1;
-                }
-
-                return 0;
-            }
-        });
-
-        return artifacts;
-    }
-
-
-
-    /**
-     * {@link ai.djl.repository.AbstractRepository#download(Path, URI, Item, Progress)}
-     * @return
-     */
-    public static URI getDownloadUri(URI repositoryBaseUri, Artifact.Item item) {
-
-        URI baseUri = item.getArtifact().getMetadata().getRepositoryUri();
-        URI fileUri = URI.create(item.getUri());
-        if (!fileUri.isAbsolute()) {
-            fileUri = repositoryBaseUri.resolve(baseUri).resolve(fileUri);
-        }
-
-        return fileUri;
-    }
-
-
 }
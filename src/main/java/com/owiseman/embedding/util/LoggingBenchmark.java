@@ -0,0 +1,149 @@
+package com.owiseman.embedding.util;
+
+import ch.qos.logback.classic.AsyncAppender;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.encoder.PatternLayoutEncoder;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.classic.util.LogbackMDCAdapter;
+import ch.qos.logback.core.Appender;
+import ch.qos.logback.core.FileAppender;
+import com.owiseman.embedding.service.RequestLogger;
+import com.owiseman.embedding.service.RequestTiming;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 请求日志基准测试
+ * 多线程模拟请求，对比原先的同步逐请求INFO日志（4行，含完整参数）与异步输出加采样的结构化请求日志，
+ * 输出每种配置下每秒能完成的请求数。日志写入临时文件，结束后删除
+ *
+ * 用法: java -cp embedding-plugin.jar com.owiseman.embedding.util.LoggingBenchmark
+ *          [--threads 8] [--seconds 5] [--sample-rate 0.01] [--text-length 500]
+ */
+public class LoggingBenchmark {
+
+    private static final String PATTERN = "%d{yyyy-MM-dd HH:mm:ss.SSS} [%thread] %-5level %logger{36} - %msg%n";
+
+    public static void main(String[] args) throws Exception {
+        int threads = Runtime.getRuntime().availableProcessors();
+        int seconds = 5;
+        double sampleRate = 0.01;
+        int textLength = 500;
+        for (int i = 0; i < args.length; i++) {
+            if ("--threads".equals(args[i])) {
+                threads = Integer.parseInt(args[++i]);
+            } else if ("--seconds".equals(args[i])) {
+                seconds = Integer.parseInt(args[++i]);
+            } else if ("--sample-rate".equals(args[i])) {
+                sampleRate = Double.parseDouble(args[++i]);
+            } else if ("--text-length".equals(args[i])) {
+                textLength = Integer.parseInt(args[++i]);
+            }
+        }
+
+        String text = "敏捷的棕色狐狸跳过了懒狗 the quick brown fox ".repeat(textLength / 30 + 1).substring(0, textLength);
+        Path directory = Files.createTempDirectory("logging-benchmark");
+        try {
+            run("sync-full", threads, seconds, directory, false, logger -> {
+                Map<String, String> params = new HashMap<>();
+                params.put("text", text);
+                return () -> legacyRequest(logger, params);
+            });
+            double rate = sampleRate;
+            run("async-sampled", threads, seconds, directory, true, logger -> {
+                RequestLogger requestLogger = new RequestLogger(logger, rate);
+                return () -> {
+                    RequestTiming timing = new RequestTiming(text.length());
+                    timing.finish();
+                    requestLogger.log("getEmbedding", text, timing, true);
+                };
+            });
+        } finally {
+            try (var files = Files.list(directory)) {
+                for (Path file : (Iterable<Path>) files::iterator) {
+                    Files.deleteIfExists(file);
+                }
+            }
+            Files.deleteIfExists(directory);
+        }
+    }
+
+    // 被替换前每个getEmbedding请求输出的日志
+    private static void legacyRequest(Logger logger, Map<String, String> params) {
+        logger.info("收到命令执行请求: {}", "getEmbedding");
+        logger.info("执行命令: {}, 参数: {}", "getEmbedding", params);
+        logger.info("成功生成嵌入向量，维度: {}", 768);
+        logger.info("命令执行完成: {}, 成功: {}", "getEmbedding", true);
+    }
+
+    private interface RequestFactory {
+        Runnable create(Logger logger);
+    }
+
+    private static void run(String name, int threads, int seconds, Path directory, boolean async,
+                            RequestFactory factory) throws Exception {
+        // 独立的日志上下文，不影响应用自身的日志配置
+        LoggerContext context = new LoggerContext();
+        context.setMDCAdapter(new LogbackMDCAdapter());
+        context.start();
+
+        PatternLayoutEncoder encoder = new PatternLayoutEncoder();
+        encoder.setContext(context);
+        encoder.setPattern(PATTERN);
+        encoder.start();
+
+        FileAppender<ILoggingEvent> file = new FileAppender<>();
+        file.setContext(context);
+        file.setFile(directory.resolve(name + ".log").toString());
+        file.setEncoder(encoder);
+        file.start();
+
+        Appender<ILoggingEvent> appender = file;
+        if (async) {
+            // 与logback.xml中的异步配置一致
+            AsyncAppender asyncAppender = new AsyncAppender();
+            asyncAppender.setContext(context);
+            asyncAppender.setQueueSize(8192);
+            asyncAppender.setDiscardingThreshold(1024);
+            asyncAppender.setIncludeCallerData(false);
+            asyncAppender.addAppender(file);
+            asyncAppender.start();
+            appender = asyncAppender;
+        }
+        Logger logger = context.getLogger("benchmark");
+        logger.setAdditive(false);
+        logger.addAppender(appender);
+
+        Runnable request = factory.create(logger);
+        for (int i = 0; i < 20_000; i++) {
+            request.run();
+        }
+
+        LongAdder completed = new LongAdder();
+        long stopAt = System.nanoTime() + seconds * 1_000_000_000L;
+        CountDownLatch done = new CountDownLatch(threads);
+        for (int t = 0; t < threads; t++) {
+            Thread worker = new Thread(() -> {
+                while (System.nanoTime() < stopAt) {
+                    request.run();
+                    completed.increment();
+                }
+                done.countDown();
+            }, name + "-" + t);
+            worker.start();
+        }
+        done.await();
+        context.stop();
+
+        System.out.println(String.format(Locale.ROOT, "%-14s %12.0f 请求/秒  (%d线程, 日志文件%dKB)",
+                name, completed.sum() / (double) seconds, threads,
+                Files.size(directory.resolve(name + ".log")) / 1024));
+    }
+}
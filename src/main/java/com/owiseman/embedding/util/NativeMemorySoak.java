@@ -0,0 +1,94 @@
+package com.owiseman.embedding.util;
+
+import ai.djl.inference.Predictor;
+import ai.djl.repository.zoo.ZooModel;
+import com.owiseman.embedding.config.PluginProperties;
+import com.owiseman.embedding.service.ModelBackend;
+import com.owiseman.embedding.service.ModelLoader;
+import com.owiseman.embedding.service.NativeMemoryTracker;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * 本地内存浸泡测试
+ * 对同一模型连续执行大量推理，检查批次子管理器关闭后是否有张量未释放、进程常驻内存是否保持平稳，
+ * 仅用于开发环境，不随插件命令暴露
+ *
+ * 用法: java -cp embedding-plugin.jar com.owiseman.embedding.util.NativeMemorySoak
+ *          [--requests 100000] [--tolerance 5] [--text 文本] models/LaBSE/LaBSE.pt
+ */
+public class NativeMemorySoak {
+
+    private static final int SAMPLES = 20; // 采样次数
+
+    public static void main(String[] args) throws Exception {
+        long requests = 100_000;
+        double tolerancePercent = 5.0;
+        String text = "The quick brown fox jumps over the lazy dog. 敏捷的棕色狐狸跳过了懒狗。";
+        Path modelPath = null;
+
+        for (int i = 0; i < args.length; i++) {
+            if ("--requests".equals(args[i])) {
+                requests = Long.parseLong(args[++i]);
+            } else if ("--tolerance".equals(args[i])) {
+                tolerancePercent = Double.parseDouble(args[++i]);
+            } else if ("--text".equals(args[i])) {
+                text = args[++i];
+            } else {
+                modelPath = Paths.get(args[i]);
+            }
+        }
+        if (modelPath == null) {
+            System.out.println("用法: NativeMemorySoak [--requests n] [--tolerance 百分比] [--text 文本] <模型路径>");
+            return;
+        }
+
+        PluginProperties properties = new PluginProperties();
+        NativeMemoryTracker tracker = new NativeMemoryTracker(properties);
+        ModelBackend backend = ModelBackend.detect(modelPath);
+        String modelId = modelPath.toString();
+        long warmup = Math.max(100, requests / 100);
+        long sampleInterval = Math.max(1, requests / SAMPLES);
+
+        try (ZooModel<String, float[]> model = ModelLoader.load(modelPath, backend, "LaBSE", properties);
+             Predictor<String, float[]> predictor = model.newPredictor()) {
+
+            long baselineRss = -1;
+            long baselineLeaked = 0;
+            long maxRss = -1;
+            long start = System.nanoTime();
+
+            for (long i = 1; i <= requests; i++) {
+                try (NativeMemoryTracker.Reservation ignored = tracker.reserve(modelId, 0)) {
+                    predictor.predict(text);
+                }
+
+                if (i == warmup) {
+                    baselineRss = NativeMemoryTracker.readResidentBytes();
+                    baselineLeaked = tracker.getLeakedArrays(modelId);
+                    System.out.printf("预热完成，基线常驻内存: %d字节%n", baselineRss);
+                } else if (i > warmup && i % sampleInterval == 0) {
+                    long rss = NativeMemoryTracker.readResidentBytes();
+                    maxRss = Math.max(maxRss, rss);
+                    System.out.printf("进度: %d/%d, 常驻内存: %d字节, 未释放张量: %d%n",
+                            i, requests, rss, tracker.getLeakedArrays(modelId));
+                }
+            }
+
+            long finalRss = NativeMemoryTracker.readResidentBytes();
+            maxRss = Math.max(maxRss, finalRss);
+            long leaked = tracker.getLeakedArrays(modelId) - baselineLeaked;
+            double growthPercent = baselineRss > 0 ? (finalRss - baselineRss) * 100.0 / baselineRss : 0.0;
+            boolean flat = leaked == 0 && growthPercent <= tolerancePercent;
+
+            System.out.printf("请求数: %d, 耗时: %dms, 基线/最终/峰值常驻内存: %d/%d/%d字节, 增长: %.2f%%, 预热后未释放张量: %d%n",
+                    requests, (System.nanoTime() - start) / 1_000_000,
+                    baselineRss, finalRss, maxRss, growthPercent, leaked);
+            System.out.println(flat ? "浸泡测试通过" : "浸泡测试未通过");
+            if (!flat) {
+                System.exit(1);
+            }
+        }
+    }
+}
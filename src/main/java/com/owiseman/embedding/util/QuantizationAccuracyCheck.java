@@ -0,0 +1,142 @@
+package com.owiseman.embedding.util;
+
+import ai.djl.inference.Predictor;
+import ai.djl.repository.zoo.ZooModel;
+import com.owiseman.embedding.config.PluginProperties;
+import com.owiseman.embedding.service.BatchEmbeddingTranslator;
+import com.owiseman.embedding.service.EmbeddingBatch;
+import com.owiseman.embedding.service.ModelBackend;
+import com.owiseman.embedding.service.ModelLoader;
+import com.owiseman.embedding.service.VectorBufferPool;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * INT8量化精度离线检查
+ * 在样本集上分别用FP32和INT8模型生成向量，比较逐条余弦相似度，并给出两者的耗时对比，
+ * 最小值或均值低于阈值时以非零状态码退出，可直接用于发布流水线
+ *
+ * 用法: java -cp embedding-plugin.jar com.owiseman.embedding.util.QuantizationAccuracyCheck
+ *          [--batch 32] [--min 0.98] [--mean 0.995] <fp32模型> <int8模型> <样本文件(每行一条)>
+ */
+public class QuantizationAccuracyCheck {
+
+    public static void main(String[] args) throws Exception {
+        int batchSize = 32;
+        double minThreshold = 0.98;
+        double meanThreshold = 0.995;
+        List<String> positional = new ArrayList<>();
+
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--batch":
+                    batchSize = Integer.parseInt(args[++i]);
+                    break;
+                case "--min":
+                    minThreshold = Double.parseDouble(args[++i]);
+                    break;
+                case "--mean":
+                    meanThreshold = Double.parseDouble(args[++i]);
+                    break;
+                default:
+                    positional.add(args[i]);
+            }
+        }
+        if (positional.size() != 3) {
+            System.out.println("用法: QuantizationAccuracyCheck [--batch n] [--min x] [--mean x] <fp32模型> <int8模型> <样本文件>");
+            System.exit(2);
+        }
+
+        List<String> samples = new ArrayList<>();
+        for (String line : Files.readAllLines(Paths.get(positional.get(2)), StandardCharsets.UTF_8)) {
+            if (!line.isBlank()) {
+                samples.add(line.trim());
+            }
+        }
+        if (samples.isEmpty()) {
+            System.out.println("样本文件中没有非空文本: " + positional.get(2));
+            System.exit(2);
+        }
+
+        PluginProperties properties = new PluginProperties();
+        VectorBufferPool bufferPool = new VectorBufferPool(properties);
+
+        long[] fp32Nanos = new long[1];
+        long[] int8Nanos = new long[1];
+        List<float[]> fp32 = embedAll(Paths.get(positional.get(0)), samples, batchSize, properties, bufferPool, fp32Nanos);
+        List<float[]> int8 = embedAll(Paths.get(positional.get(1)), samples, batchSize, properties, bufferPool, int8Nanos);
+
+        double[] similarities = new double[samples.size()];
+        double sum = 0;
+        for (int i = 0; i < samples.size(); i++) {
+            similarities[i] = cosine(fp32.get(i), int8.get(i));
+            sum += similarities[i];
+        }
+        double mean = sum / similarities.length;
+        double[] sorted = similarities.clone();
+        Arrays.sort(sorted);
+        double min = sorted[0];
+        double p1 = sorted[(int) (sorted.length * 0.01)];
+
+        System.out.printf("样本数: %d%n", samples.size());
+        System.out.printf("余弦相似度 均值: %.5f, 最小: %.5f, P1: %.5f%n", mean, min, p1);
+        System.out.printf("FP32耗时: %.1fms, INT8耗时: %.1fms, 加速比: %.2fx%n",
+                fp32Nanos[0] / 1_000_000.0, int8Nanos[0] / 1_000_000.0, (double) fp32Nanos[0] / int8Nanos[0]);
+
+        // 列出相似度最低的样本便于排查
+        Integer[] order = new Integer[similarities.length];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> Double.compare(similarities[a], similarities[b]));
+        for (int i = 0; i < Math.min(5, order.length); i++) {
+            String text = samples.get(order[i]);
+            System.out.printf("  %.5f  %s%n", similarities[order[i]], text.length() > 60 ? text.substring(0, 60) + "..." : text);
+        }
+
+        boolean passed = min >= minThreshold && mean >= meanThreshold;
+        System.out.println(passed ? "检查通过" : String.format("检查未通过（要求最小值>=%.3f且均值>=%.3f）", minThreshold, meanThreshold));
+        System.exit(passed ? 0 : 1);
+    }
+
+    private static List<float[]> embedAll(Path modelPath, List<String> samples, int batchSize,
+                                          PluginProperties properties, VectorBufferPool bufferPool,
+                                          long[] elapsedNanos) throws Exception {
+        ModelBackend backend = ModelBackend.detect(modelPath);
+        List<float[]> vectors = new ArrayList<>(samples.size());
+        try (ZooModel<String, float[]> model = ModelLoader.load(modelPath, backend, "LaBSE", properties);
+             Predictor<List<String>, EmbeddingBatch> predictor = model.newPredictor(
+                     new BatchEmbeddingTranslator(bufferPool, backend), model.getNDManager().getDevice())) {
+            long start = System.nanoTime();
+            for (int from = 0; from < samples.size(); from += batchSize) {
+                List<String> batchTexts = samples.subList(from, Math.min(from + batchSize, samples.size()));
+                try (EmbeddingBatch batch = predictor.predict(batchTexts)) {
+                    batch.normalize();
+                    for (int i = 0; i < batch.size(); i++) {
+                        vectors.add(batch.toArray(i));
+                    }
+                }
+            }
+            elapsedNanos[0] = System.nanoTime() - start;
+        }
+        return vectors;
+    }
+
+    private static double cosine(float[] a, float[] b) {
+        double dot = 0;
+        double leftNorm = 0;
+        double rightNorm = 0;
+        for (int i = 0; i < a.length; i++) {
+            dot += a[i] * b[i];
+            leftNorm += a[i] * a[i];
+            rightNorm += b[i] * b[i];
+        }
+        return leftNorm == 0 || rightNorm == 0 ? 0 : dot / Math.sqrt(leftNorm * rightNorm);
+    }
+}
@@ -0,0 +1,181 @@
+package com.owiseman.embedding.grpc;
+
+import com.owiseman.dataapi.plugins.sdk.CommandResult;
+import com.owiseman.dataapi.proto.CommandRequest;
+import com.owiseman.embedding.config.PluginProperties;
+import com.owiseman.embedding.plugin.EmbeddingPlugin;
+import com.owiseman.embedding.service.RequestTiming;
+import io.grpc.CallOptions;
+import io.grpc.ManagedChannel;
+import io.grpc.Server;
+import io.grpc.inprocess.InProcessChannelBuilder;
+import io.grpc.inprocess.InProcessServerBuilder;
+import io.grpc.stub.ClientCallStreamObserver;
+import io.grpc.stub.ClientCalls;
+import io.grpc.stub.ClientResponseObserver;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@Timeout(30)
+class CommandStreamServiceTest {
+
+    /**
+     * 命令交给测试控制何时完成
+     */
+    private static class ControlledPlugin extends EmbeddingPlugin {
+        final BlockingQueue<CompletableFuture<CommandResult>> commands = new LinkedBlockingQueue<>();
+
+        ControlledPlugin(PluginProperties properties) {
+            super(null, null, null, null, null, null, null, null, null, null, null, null, null, properties);
+        }
+
+        @Override
+        public CompletableFuture<CommandResult> executeCommandAsync(String command, Map<String, String> params,
+                                                                    long deadlineNanos, RequestTiming timing) {
+            CompletableFuture<CommandResult> future = new CompletableFuture<>();
+            commands.add(future);
+            return future;
+        }
+    }
+
+    /**
+     * 客户端一侧：手动请求入站帧，收到的帧按顺序记录
+     */
+    private static class Client implements ClientResponseObserver<CommandRequest, CommandRequest> {
+        final BlockingQueue<CommandRequest> frames = new LinkedBlockingQueue<>();
+        final CountDownLatch completed = new CountDownLatch(1);
+        private final int initialRequest;
+        ClientCallStreamObserver<CommandRequest> requests;
+
+        Client(int initialRequest) {
+            this.initialRequest = initialRequest;
+        }
+
+        @Override
+        public void beforeStart(ClientCallStreamObserver<CommandRequest> requestStream) {
+            requests = requestStream;
+            requestStream.disableAutoRequestWithInitial(initialRequest);
+        }
+
+        @Override
+        public void onNext(CommandRequest frame) {
+            frames.add(frame);
+        }
+
+        @Override
+        public void onError(Throwable t) {
+            completed.countDown();
+        }
+
+        @Override
+        public void onCompleted() {
+            completed.countDown();
+        }
+
+        void send(String id) {
+            requests.onNext(CommandRequest.newBuilder().setCommand("getEmbedding")
+                    .putParameters(CommandStreamService.FIELD_ID, id)
+                    .putParameters("text", "text " + id)
+                    .build());
+        }
+
+        CommandRequest next() throws InterruptedException {
+            CommandRequest frame = frames.poll(10, TimeUnit.SECONDS);
+            assertNotNull(frame, "等待命令流帧超时");
+            return frame;
+        }
+    }
+
+    private final String serverName = InProcessServerBuilder.generateName();
+    private ControlledPlugin plugin;
+    private CommandStreamService service;
+    private Server server;
+    private ManagedChannel channel;
+
+    @BeforeEach
+    void startServer() throws Exception {
+        PluginProperties properties = new PluginProperties();
+        properties.setServerTiming(false);
+        plugin = new ControlledPlugin(properties);
+        service = new CommandStreamService(plugin, null, properties);
+        server = InProcessServerBuilder.forName(serverName).directExecutor().addService(service).build().start();
+        channel = InProcessChannelBuilder.forName(serverName).directExecutor().build();
+    }
+
+    @AfterEach
+    void stopServer() {
+        service.shutdown();
+        channel.shutdownNow();
+        server.shutdownNow();
+        plugin.shutdown();
+    }
+
+    @Test
+    void resultIsDeliveredWhenHalfCloseRacesCompletion() throws Exception {
+        for (int round = 0; round < 50; round++) {
+            Client client = connect(Integer.MAX_VALUE);
+            assertEquals(CommandStreamService.FRAME_CREDIT, client.next().getCommand());
+            client.send("last");
+            CompletableFuture<CommandResult> command = plugin.commands.poll(10, TimeUnit.SECONDS);
+            assertNotNull(command);
+
+            // 命令完成与主应用半关闭同时发生，结果帧必须在流结束前发出
+            Thread completer = new Thread(() -> command.complete(CommandResult.success("[1.0]")));
+            completer.start();
+            client.requests.onCompleted();
+            completer.join();
+
+            assertTrue(client.completed.await(10, TimeUnit.SECONDS));
+            CommandRequest result = client.next();
+            assertEquals(CommandStreamService.FRAME_RESULT, result.getCommand());
+            assertEquals("last", result.getParametersOrThrow(CommandStreamService.FIELD_ID));
+        }
+    }
+
+    @Test
+    void resultsWaitForSlowReaderAndArriveInCompletionOrder() throws Exception {
+        Client client = connect(1);
+        assertEquals(CommandStreamService.FRAME_CREDIT, client.next().getCommand());
+        List<CompletableFuture<CommandResult>> commands = new ArrayList<>();
+        for (String id : new String[]{"a", "b", "c"}) {
+            client.send(id);
+            commands.add(plugin.commands.poll(10, TimeUnit.SECONDS));
+        }
+
+        // 主应用尚未请求更多帧，结果留在插件的出站队列中
+        commands.get(1).complete(CommandResult.success("b"));
+        commands.get(0).complete(CommandResult.success("a"));
+        commands.get(2).complete(CommandResult.success("c"));
+        client.requests.onCompleted();
+        assertTrue(client.frames.isEmpty());
+        assertEquals(1, client.completed.getCount());
+
+        client.requests.request(3);
+        assertEquals("b", client.next().getParametersOrThrow(CommandStreamService.FIELD_ID));
+        assertEquals("a", client.next().getParametersOrThrow(CommandStreamService.FIELD_ID));
+        assertEquals("c", client.next().getParametersOrThrow(CommandStreamService.FIELD_ID));
+        assertTrue(client.completed.await(10, TimeUnit.SECONDS));
+    }
+
+    private Client connect(int initialRequest) {
+        Client client = new Client(initialRequest);
+        ClientCalls.asyncBidiStreamingCall(channel.newCall(CommandStreamService.CONNECT_METHOD, CallOptions.DEFAULT),
+                client);
+        return client;
+    }
+}
@@ -0,0 +1,118 @@
+package com.owiseman.embedding.pipeline;
+
+import com.owiseman.embedding.service.EmbeddingBatch;
+import com.owiseman.embedding.service.FakeEmbeddingModelService;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class BulkEmbeddingPipelineTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    @Timeout(value = 30, unit = TimeUnit.SECONDS)
+    void completesWithSingleSlotQueues() throws Exception {
+        Path input = dir.resolve("input.txt");
+        List<String> lines = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            lines.add(i % 17 == 0 ? "" : "text " + i);
+        }
+        Files.write(input, lines, StandardCharsets.UTF_8);
+        Path output = dir.resolve("output.fvecs");
+
+        JobCheckpoint checkpoint = new JobCheckpoint("job", input.toString(), output.toString(),
+                null, null, 3, 0, 1);
+        BulkJobProgress progress = new BulkJobProgress("job", input.toString(), output.toString(), 0);
+        List<Long> commits = new ArrayList<>();
+        BulkEmbeddingPipeline pipeline = new BulkEmbeddingPipeline(new FakeEmbeddingModelService(), checkpoint,
+                progress, 1, 0, committed -> commits.add(committed.getCommittedRows()));
+
+        pipeline.run();
+
+        assertEquals(BulkJobProgress.State.COMPLETED, progress.getState());
+        assertEquals(200, checkpoint.getCommittedRows());
+        assertEquals(200L, commits.get(commits.size() - 1));
+
+        VectorFileReader.Matrix matrix = VectorFileReader.read(output, 1000);
+        assertEquals(200, matrix.getRows());
+        assertEquals(FakeEmbeddingModelService.DIMENSION, matrix.getDimension());
+        float[] data = matrix.getData();
+        int dimension = matrix.getDimension();
+        float[] first = new float[dimension];
+        System.arraycopy(data, dimension, first, 0, dimension);
+        assertArrayEquals(FakeEmbeddingModelService.vectorOf("text 1"), first, 1e-6f);
+        float[] empty = new float[dimension];
+        System.arraycopy(data, 17 * dimension, empty, 0, dimension);
+        assertArrayEquals(new float[dimension], empty);
+    }
+
+    @Test
+    @Timeout(value = 30, unit = TimeUnit.SECONDS)
+    void writesReadableNpy() throws Exception {
+        Path input = dir.resolve("input.jsonl");
+        List<String> lines = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            lines.add("{\"text\": \"row " + i + "\"}");
+        }
+        Files.write(input, lines, StandardCharsets.UTF_8);
+        Path output = dir.resolve("output.npy");
+
+        JobCheckpoint checkpoint = new JobCheckpoint("npy", input.toString(), output.toString(),
+                null, "text", 8, 0, 1);
+        BulkJobProgress progress = new BulkJobProgress("npy", input.toString(), output.toString(), 0);
+        new BulkEmbeddingPipeline(new FakeEmbeddingModelService(), checkpoint, progress, 1, 0, committed -> {
+        }).run();
+
+        VectorFileReader.Matrix matrix = VectorFileReader.read(output, 1000);
+        assertEquals(50, matrix.getRows());
+        float[] last = new float[matrix.getDimension()];
+        System.arraycopy(matrix.getData(), 49 * matrix.getDimension(), last, 0, last.length);
+        assertArrayEquals(FakeEmbeddingModelService.vectorOf("row 49"), last, 1e-6f);
+    }
+
+    @Test
+    @Timeout(value = 30, unit = TimeUnit.SECONDS)
+    void backgroundJobInfersThroughBackgroundPathAfterThrottle() throws Exception {
+        Path input = dir.resolve("input.txt");
+        List<String> lines = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            lines.add("text " + i);
+        }
+        Files.write(input, lines, StandardCharsets.UTF_8);
+        Path output = dir.resolve("output.fvecs");
+
+        AtomicInteger backgroundBatches = new AtomicInteger();
+        FakeEmbeddingModelService embeddingService = new FakeEmbeddingModelService() {
+            @Override
+            public EmbeddingBatch getBackgroundEmbeddingBatch(List<String> texts) throws Exception {
+                backgroundBatches.incrementAndGet();
+                return super.getBackgroundEmbeddingBatch(texts);
+            }
+        };
+        JobCheckpoint checkpoint = new JobCheckpoint("ingest", input.toString(), output.toString(),
+                null, null, 4, 0, 1);
+        checkpoint.setBackground(true);
+        BulkJobProgress progress = new BulkJobProgress("ingest", input.toString(), output.toString(), 0);
+        AtomicInteger throttled = new AtomicInteger();
+        new BulkEmbeddingPipeline(embeddingService, checkpoint, progress, 1, 0, committed -> {
+        }, throttled::incrementAndGet).run();
+
+        assertEquals(BulkJobProgress.State.COMPLETED, progress.getState());
+        assertEquals(5, throttled.get());
+        assertEquals(5, backgroundBatches.get());
+        assertEquals(5, embeddingService.getBatchCount());
+    }
+}
@@ -0,0 +1,40 @@
+package com.owiseman.embedding.plugin;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class EmbeddingPluginTest {
+
+    @TempDir
+    Path root;
+
+    @Test
+    void commandFilesResolveInsideBaseDirectory() throws Exception {
+        Path base = Files.createDirectories(root.resolve("data"));
+
+        assertEquals(base.resolve("in/texts.jsonl"),
+                EmbeddingPlugin.resolveCommandFile(base, "input", "in/texts.jsonl"));
+        assertEquals(base.resolve("out.fvecs"),
+                EmbeddingPlugin.resolveCommandFile(base, "output", base.resolve("out.fvecs").toString()));
+    }
+
+    @Test
+    void commandFilesOutsideBaseDirectoryAreRejected() throws Exception {
+        Path base = Files.createDirectories(root.resolve("data"));
+        Path outside = Files.createDirectories(root.resolve("secret"));
+        Files.createSymbolicLink(base.resolve("link"), outside);
+
+        assertThrows(IllegalArgumentException.class,
+                () -> EmbeddingPlugin.resolveCommandFile(base, "input", "../secret/key"));
+        assertThrows(IllegalArgumentException.class,
+                () -> EmbeddingPlugin.resolveCommandFile(base, "input", "/etc/passwd"));
+        assertThrows(IllegalArgumentException.class,
+                () -> EmbeddingPlugin.resolveCommandFile(base, "output", "link/out.fvecs"));
+    }
+}
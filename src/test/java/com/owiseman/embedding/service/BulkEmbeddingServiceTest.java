@@ -0,0 +1,46 @@
+package com.owiseman.embedding.service;
+
+import com.owiseman.embedding.config.PluginProperties;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+@Timeout(30)
+class BulkEmbeddingServiceTest {
+
+    @Test
+    void backgroundBatchesWaitWhileOnlineTextsAreInFlight() throws Exception {
+        AtomicInteger online = new AtomicInteger(1);
+        FakeEmbeddingModelService embeddingService = new FakeEmbeddingModelService() {
+            @Override
+            public int getOnlineActiveTexts() {
+                return online.get();
+            }
+        };
+        PluginProperties properties = new PluginProperties();
+        properties.setBackgroundBackoffMs(5);
+        InferenceScheduler scheduler = new InferenceScheduler(embeddingService, properties,
+                new RequestCoalescer(properties));
+        BulkEmbeddingService service = new BulkEmbeddingService(embeddingService, scheduler, properties);
+
+        CompletableFuture<Void> throttle = CompletableFuture.runAsync(() -> {
+            try {
+                service.awaitOnlineIdle();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+
+        // REST等在线路径仍有文本在推理时后台批次不能开始
+        Thread.sleep(100);
+        assertFalse(throttle.isDone());
+
+        online.set(0);
+        throttle.get(5, TimeUnit.SECONDS);
+    }
+}
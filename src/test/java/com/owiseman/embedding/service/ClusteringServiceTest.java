@@ -0,0 +1,52 @@
+package com.owiseman.embedding.service;
+
+import com.owiseman.embedding.config.PluginProperties;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ClusteringServiceTest {
+
+    @Test
+    void pairwiseOnlyRequestIsCappedByPairwiseMaxRows() {
+        PluginProperties properties = new PluginProperties();
+        properties.setClusteringPairwiseMaxRows(2);
+        ClusteringService service = new ClusteringService(new FakeEmbeddingModelService(), properties);
+        service.start();
+        try {
+            ClusteringService.Request request = new ClusteringService.Request();
+            request.setTexts(List.of("a", "b", "c"));
+            request.setDuplicateThreshold(0.9f);
+
+            IllegalArgumentException error =
+                    assertThrows(IllegalArgumentException.class, () -> service.cluster(request));
+            assertTrue(error.getMessage().contains("2"));
+        } finally {
+            service.shutdown();
+        }
+    }
+
+    @Test
+    void expiredDeadlineAbortsPairwiseScan() {
+        ForkJoinPool pool = new ForkJoinPool(2);
+        try {
+            float[] data = {1, 0, 1, 0, 0, 1};
+
+            List<int[]> groups = VectorClustering.nearDuplicateGroups(data, 3, 2, 0.99f, null, 0, pool);
+            assertEquals(1, groups.size());
+            assertArrayEquals(new int[]{0, 1}, groups.get(0));
+
+            assertThrows(CancellationException.class, () ->
+                    VectorClustering.nearDuplicateGroups(data, 3, 2, 0.99f, null, System.nanoTime() - 1, pool));
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+}
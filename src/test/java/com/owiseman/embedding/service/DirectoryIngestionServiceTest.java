@@ -0,0 +1,41 @@
+package com.owiseman.embedding.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class DirectoryIngestionServiceTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void manifestRoundTripsMultiLineErrors() throws Exception {
+        DirectoryIngestionService.FileRecord record = new DirectoryIngestionService.FileRecord();
+        record.input = directory.resolve("in \"quoted\".jsonl").toString();
+        record.output = directory.resolve("in \"quoted\".jsonl.fvecs").toString();
+        record.size = 42;
+        record.lastModified = 1_700_000_000_000L;
+        record.state = DirectoryIngestionService.STATE_FAILED;
+        record.jobId = "job-1";
+        record.error = "Unexpected character ('x' (code 120))\n at [Source: (String)\"{x}\"; line: 1, column: 3]\ttab";
+        record.failures = 2;
+        Path manifest = directory.resolve(".embedding-manifest.json");
+
+        DirectoryIngestionService.writeManifest(manifest, List.of(record));
+        List<DirectoryIngestionService.FileRecord> loaded = DirectoryIngestionService.readManifest(manifest);
+
+        assertEquals(1, loaded.size());
+        DirectoryIngestionService.FileRecord reloaded = loaded.get(0);
+        assertEquals(record.input, reloaded.input);
+        assertEquals(record.output, reloaded.output);
+        assertEquals(record.error, reloaded.error);
+        assertEquals(record.state, reloaded.state);
+        assertEquals(record.lastModified, reloaded.lastModified);
+        assertEquals(2, reloaded.failures);
+    }
+}
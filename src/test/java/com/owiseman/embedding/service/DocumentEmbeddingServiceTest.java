@@ -0,0 +1,74 @@
+package com.owiseman.embedding.service;
+
+import com.owiseman.embedding.config.PluginProperties;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DocumentEmbeddingServiceTest {
+
+    /**
+     * 对含"slow"的文本推理时阻塞，直到测试放行
+     */
+    private static class BlockingEmbeddingModelService extends FakeEmbeddingModelService {
+        private final CountDownLatch entered = new CountDownLatch(1);
+        private final CountDownLatch release = new CountDownLatch(1);
+
+        @Override
+        public EmbeddingBatch getEmbeddingBatch(List<String> texts) {
+            if (texts.stream().anyMatch(text -> text.contains("slow"))) {
+                entered.countDown();
+                try {
+                    release.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            return super.getEmbeddingBatch(texts);
+        }
+    }
+
+    @Test
+    void slowEarlierUpdateDoesNotOverwriteLaterUpdate() throws Exception {
+        BlockingEmbeddingModelService embeddingService = new BlockingEmbeddingModelService();
+        DocumentEmbeddingService service = new DocumentEmbeddingService(embeddingService, new PluginProperties());
+
+        CompletableFuture<DocumentEmbeddingService.Result> first =
+                CompletableFuture.supplyAsync(() -> embed(service, "doc", "slow first version"));
+        assertTrue(embeddingService.entered.await(5, TimeUnit.SECONDS));
+        CompletableFuture<DocumentEmbeddingService.Result> second =
+                CompletableFuture.supplyAsync(() -> embed(service, "doc", "second version"));
+
+        embeddingService.release.countDown();
+        first.get(5, TimeUnit.SECONDS);
+        DocumentEmbeddingService.Result latest = second.get(5, TimeUnit.SECONDS);
+
+        assertArrayEquals(latest.getEmbedding(), service.get("doc"));
+    }
+
+    @Test
+    void documentIdIsEscapedInJson() throws Exception {
+        DocumentEmbeddingService service =
+                new DocumentEmbeddingService(new FakeEmbeddingModelService(), new PluginProperties());
+
+        String json = service.embed("a\"b\n", "some text").toJson(false);
+
+        assertTrue(json.contains("\"id\": \"a\\\"b\\n\""));
+        assertFalse(json.contains("\n"));
+    }
+
+    private static DocumentEmbeddingService.Result embed(DocumentEmbeddingService service, String id, String text) {
+        try {
+            return service.embed(id, text);
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package com.owiseman.embedding.service;
+
+import com.owiseman.embedding.config.PluginProperties;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 测试用的向量化服务，不加载模型
+ * 每条文本的向量由文本长度和哈希确定，同一文本在任何批次中得到相同的向量
+ */
+public class FakeEmbeddingModelService extends EmbeddingModelService {
+
+    public static final int DIMENSION = 4;
+
+    private final VectorBufferPool bufferPool = new VectorBufferPool(new PluginProperties());
+    private final AtomicInteger batches = new AtomicInteger();
+
+    @Override
+    public EmbeddingBatch getEmbeddingBatch(List<String> texts) {
+        batches.incrementAndGet();
+        ByteBuffer buffer = bufferPool.acquire(texts.size() * DIMENSION * Float.BYTES);
+        for (String text : texts) {
+            float[] vector = vectorOf(text);
+            for (float value : vector) {
+                buffer.putFloat(value);
+            }
+        }
+        buffer.flip();
+        return new EmbeddingBatch(bufferPool, buffer, texts.size(), DIMENSION);
+    }
+
+    @Override
+    public EmbeddingBatch getPreprocessedEmbeddingBatch(List<String> texts) {
+        return getEmbeddingBatch(texts);
+    }
+
+    @Override
+    public String preprocessText(String text) {
+        return text.trim();
+    }
+
+    @Override
+    public String getModelName() {
+        return "fake";
+    }
+
+    @Override
+    public int getInferenceWorkers() {
+        return 1;
+    }
+
+    @Override
+    public int getPredictorWorkers() {
+        return 1;
+    }
+
+    /**
+     * 调用getEmbeddingBatch的次数
+     */
+    public int getBatchCount() {
+        return batches.get();
+    }
+
+    public static float[] vectorOf(String text) {
+        int hash = text.hashCode();
+        return new float[]{text.length(), hash & 0xff, (hash >>> 8) & 0xff, 1};
+    }
+}
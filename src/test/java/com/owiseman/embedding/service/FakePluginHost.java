@@ -0,0 +1,161 @@
+package com.owiseman.embedding.service;
+
+import com.owiseman.dataapi.proto.HeartbeatRequest;
+import com.owiseman.dataapi.proto.HeartbeatResponse;
+import com.owiseman.dataapi.proto.PluginRegistration;
+import com.owiseman.dataapi.proto.PluginServiceGrpc;
+import com.owiseman.dataapi.proto.RegistrationResponse;
+import com.owiseman.dataapi.proto.StopRequest;
+import com.owiseman.dataapi.proto.StopResponse;
+import io.grpc.Status;
+import io.grpc.stub.ServerCallStreamObserver;
+import io.grpc.stub.StreamObserver;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 测试用的主服务器，运行在进程内gRPC服务上
+ * 按注册地址和端口去重：同一实例重复注册时返回已分配的插件ID；未知插件ID的心跳返回NOT_FOUND。
+ * 可以让注册延迟响应（先登记、后返回），或让注册、心跳一直不返回，用于测试截止时间、取消和背压
+ */
+public class FakePluginHost extends PluginServiceGrpc.PluginServiceImplBase {
+
+    private final Map<String, String> idsByAddress = new ConcurrentHashMap<>();
+    private final Map<String, String> addressesById = new ConcurrentHashMap<>();
+    private final AtomicInteger nextId = new AtomicInteger();
+    private final AtomicInteger registrations = new AtomicInteger();
+    private final List<String> heartbeats = new CopyOnWriteArrayList<>();
+    private final AtomicInteger heartbeatCalls = new AtomicInteger();
+    private final AtomicInteger cancelledCalls = new AtomicInteger();
+    private final ScheduledExecutorService delayer = Executors.newSingleThreadScheduledExecutor();
+
+    private volatile int delayedRegistrations; // 前几次注册延迟响应
+    private volatile long registrationDelayMs;
+    private volatile boolean holdRegistrations; // 注册一直不响应
+    private volatile boolean holdHeartbeats; // 心跳一直不响应
+
+    @Override
+    public void registerPlugin(PluginRegistration request, StreamObserver<RegistrationResponse> responseObserver) {
+        int attempt = registrations.incrementAndGet();
+        watchCancellation(responseObserver);
+        if (holdRegistrations) {
+            return;
+        }
+        String address = request.getHost() + ":" + request.getPort();
+        String pluginId = idsByAddress.computeIfAbsent(address, key -> "plugin-" + nextId.incrementAndGet());
+        addressesById.put(pluginId, address);
+        RegistrationResponse response = RegistrationResponse.newBuilder()
+                .setSuccess(true)
+                .setPluginId(pluginId)
+                .build();
+        if (attempt <= delayedRegistrations) {
+            delayer.schedule(() -> respond(responseObserver, response), registrationDelayMs, TimeUnit.MILLISECONDS);
+        } else {
+            respond(responseObserver, response);
+        }
+    }
+
+    @Override
+    public void heartbeat(HeartbeatRequest request, StreamObserver<HeartbeatResponse> responseObserver) {
+        heartbeatCalls.incrementAndGet();
+        watchCancellation(responseObserver);
+        if (holdHeartbeats) {
+            return;
+        }
+        if (!addressesById.containsKey(request.getPluginId())) {
+            responseObserver.onError(Status.NOT_FOUND.withDescription("未知插件: " + request.getPluginId())
+                    .asRuntimeException());
+            return;
+        }
+        heartbeats.add(request.getStatusInfo());
+        responseObserver.onNext(HeartbeatResponse.newBuilder()
+                .setReceived(true)
+                .setServerTime(System.currentTimeMillis())
+                .build());
+        responseObserver.onCompleted();
+    }
+
+    @Override
+    public void stopPlugin(StopRequest request, StreamObserver<StopResponse> responseObserver) {
+        String address = addressesById.remove(request.getPluginId());
+        if (address != null) {
+            idsByAddress.remove(address);
+        }
+        responseObserver.onNext(StopResponse.newBuilder().setSuccess(address != null).build());
+        responseObserver.onCompleted();
+    }
+
+    private void watchCancellation(StreamObserver<?> responseObserver) {
+        ((ServerCallStreamObserver<?>) responseObserver).setOnCancelHandler(cancelledCalls::incrementAndGet);
+    }
+
+    private static <T> void respond(StreamObserver<T> responseObserver, T response) {
+        try {
+            responseObserver.onNext(response);
+            responseObserver.onCompleted();
+        } catch (RuntimeException e) {
+            // 客户端已超时或取消
+        }
+    }
+
+    /**
+     * 前count次注册先登记，再延迟delayMs响应
+     */
+    public void delayRegistrations(int count, long delayMs) {
+        this.registrationDelayMs = delayMs;
+        this.delayedRegistrations = count;
+    }
+
+    public void setHoldRegistrations(boolean holdRegistrations) {
+        this.holdRegistrations = holdRegistrations;
+    }
+
+    public void setHoldHeartbeats(boolean holdHeartbeats) {
+        this.holdHeartbeats = holdHeartbeats;
+    }
+
+    public int getHeartbeatCalls() {
+        return heartbeatCalls.get();
+    }
+
+    /**
+     * 客户端取消或超时的调用数
+     */
+    public int getCancelledCalls() {
+        return cancelledCalls.get();
+    }
+
+    public void shutdown() {
+        delayer.shutdownNow();
+    }
+
+    /**
+     * 模拟主服务器重启：丢失全部注册信息，之后分配的插件ID与之前不同
+     */
+    public void restart() {
+        idsByAddress.clear();
+        addressesById.clear();
+    }
+
+    public int getRegistrations() {
+        return registrations.get();
+    }
+
+    /**
+     * 当前登记的插件实例数
+     */
+    public int getRegisteredPlugins() {
+        return addressesById.size();
+    }
+
+    public List<String> getHeartbeats() {
+        return heartbeats;
+    }
+}
@@ -0,0 +1,43 @@
+package com.owiseman.embedding.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class ModelPrecisionTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void prefersQuantizedModelNamedAfterFp32Model() throws IOException {
+        Path fp32 = Files.createFile(directory.resolve("LaBSE.pt"));
+        Files.createFile(directory.resolve("Another.int8.pt"));
+        Files.createFile(directory.resolve("LaBSE_quantized.onnx"));
+        Path expected = Files.createFile(directory.resolve("LaBSE.int8.pt"));
+
+        assertEquals(expected, ModelPrecision.INT8.resolveModelPath(fp32, null));
+    }
+
+    @Test
+    void fallsBackToFirstQuantizedModelByName() throws IOException {
+        Path fp32 = Files.createFile(directory.resolve("LaBSE.pt"));
+        Files.createFile(directory.resolve("b-int8.pt"));
+        Path expected = Files.createFile(directory.resolve("a_quantized.onnx"));
+
+        assertEquals(expected, ModelPrecision.INT8.resolveModelPath(fp32, null));
+    }
+
+    @Test
+    void failsWhenNoQuantizedModelExists() throws IOException {
+        Path fp32 = Files.createFile(directory.resolve("LaBSE.pt"));
+
+        assertThrows(IOException.class, () -> ModelPrecision.INT8.resolveModelPath(fp32, null));
+    }
+}
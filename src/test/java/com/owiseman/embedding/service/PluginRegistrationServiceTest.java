@@ -0,0 +1,156 @@
+package com.owiseman.embedding.service;
+
+import com.owiseman.embedding.config.PluginProperties;
+import com.owiseman.embedding.plugin.EmbeddingPlugin;
+import io.grpc.ManagedChannel;
+import io.grpc.Server;
+import io.grpc.inprocess.InProcessChannelBuilder;
+import io.grpc.inprocess.InProcessServerBuilder;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@Timeout(30)
+class PluginRegistrationServiceTest {
+
+    private final FakePluginHost host = new FakePluginHost();
+    private final String serverName = InProcessServerBuilder.generateName();
+    private final List<Runnable> shutdowns = new ArrayList<>(); // 测试中创建的服务、调度器和插件
+    private Server server;
+    private PluginRegistrationService service;
+
+    @BeforeEach
+    void startHost() throws Exception {
+        server = InProcessServerBuilder.forName(serverName).directExecutor().addService(host).build().start();
+        service = newService(properties());
+    }
+
+    @AfterEach
+    void stopHost() {
+        shutdowns.forEach(Runnable::run);
+        server.shutdownNow();
+        host.shutdown();
+    }
+
+    @Test
+    void instanceIdIsDerivedFromAdvertisedAddress() {
+        assertEquals("10.0.0.12:8087", service.getInstanceId());
+        // 重启后（新的服务实例）ID不变
+        assertEquals("10.0.0.12:8087", newService(properties()).getInstanceId());
+    }
+
+    @Test
+    void configuredInstanceIdOverridesAddress() {
+        PluginProperties properties = properties();
+        properties.setInstanceId("replica-a");
+        assertEquals("replica-a", newService(properties).getInstanceId());
+    }
+
+    @Test
+    void registersSendsHeartbeatsAndReRegistersAfterHostRestart() throws Exception {
+        service.start(channel());
+
+        waitFor(() -> service.getPluginId() != null && !host.getHeartbeats().isEmpty());
+        String firstId = service.getPluginId();
+        assertTrue(host.getHeartbeats().get(0).contains("\"instanceId\": \"10.0.0.12:8087\""));
+
+        // 主服务器重启后心跳返回NOT_FOUND，插件以同一实例ID重新注册并获得新的插件ID
+        host.restart();
+        waitFor(() -> service.getPluginId() != null && !firstId.equals(service.getPluginId()));
+        int heartbeats = host.getHeartbeats().size();
+        waitFor(() -> host.getHeartbeats().size() > heartbeats);
+
+        assertNotEquals(firstId, service.getPluginId());
+        assertEquals(2, host.getRegistrations());
+        assertEquals(1, host.getRegisteredPlugins());
+        assertEquals("10.0.0.12:8087", service.getInstanceId());
+    }
+
+    @Test
+    void registrationThatExceedsItsDeadlineIsRetriedWithoutAnOrphanId() throws Exception {
+        // 主服务器已登记但响应晚于截止时间，客户端按超时处理后重试
+        host.delayRegistrations(1, 1500);
+        service.start(channel());
+
+        waitFor(() -> service.getPluginId() != null);
+        assertEquals(2, host.getRegistrations());
+        assertEquals(1, host.getRegisteredPlugins());
+        assertEquals("plugin-1", service.getPluginId());
+    }
+
+    @Test
+    void slowHeartbeatsDoNotPileUp() throws Exception {
+        PluginProperties properties = properties();
+        properties.setRegistryCallTimeoutMs(10_000);
+        service = newService(properties);
+        host.setHoldHeartbeats(true);
+        service.start(channel());
+
+        waitFor(() -> host.getHeartbeatCalls() == 1);
+        // 又经过两个心跳周期，上一次心跳未返回前不再发送新的心跳
+        waitFor(() -> service.getSkippedHeartbeats() >= 2);
+        assertEquals(1, host.getHeartbeatCalls());
+    }
+
+    @Test
+    void shutdownCancelsOutstandingRegistrationAndStopsRetrying() throws Exception {
+        PluginProperties properties = properties();
+        properties.setRegistryCallTimeoutMs(10_000);
+        service = newService(properties);
+        host.setHoldRegistrations(true);
+        service.start(channel());
+
+        waitFor(() -> host.getRegistrations() == 1);
+        service.shutdown();
+        waitFor(() -> host.getCancelledCalls() == 1);
+        // shutdown返回时通道已终止，之后不会再有注册调用到达主服务器
+        assertEquals(1, host.getRegistrations());
+    }
+
+    private ManagedChannel channel() {
+        return InProcessChannelBuilder.forName(serverName).directExecutor().build();
+    }
+
+    private PluginRegistrationService newService(PluginProperties properties) {
+        FakeEmbeddingModelService embeddingService = new FakeEmbeddingModelService();
+        InferenceScheduler scheduler = new InferenceScheduler(embeddingService, properties,
+                new RequestCoalescer(properties));
+        EmbeddingPlugin plugin = new EmbeddingPlugin(embeddingService, null, scheduler, null, null, null, null,
+                null, null, null, null, null, null, properties);
+        PluginRegistrationService registration =
+                new PluginRegistrationService(properties, plugin, embeddingService, scheduler);
+        shutdowns.add(registration::shutdown);
+        shutdowns.add(scheduler::shutdown);
+        shutdowns.add(plugin::shutdown);
+        return registration;
+    }
+
+    private static PluginProperties properties() {
+        PluginProperties properties = new PluginProperties();
+        properties.setAdvertisedHost("10.0.0.12");
+        properties.setPluginPort(8087);
+        properties.setHeartbeatIntervalMs(1000);
+        properties.setRegistryCallTimeoutMs(500);
+        properties.setRegistryBackoffInitialMs(50);
+        properties.setRegistryBackoffMaxMs(200);
+        return properties;
+    }
+
+    static void waitFor(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.nanoTime() < deadline, "等待条件超时");
+            Thread.sleep(20);
+        }
+    }
+}
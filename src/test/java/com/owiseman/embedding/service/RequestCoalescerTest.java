@@ -0,0 +1,72 @@
+package com.owiseman.embedding.service;
+
+import com.owiseman.embedding.config.PluginProperties;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RequestCoalescerTest {
+
+    private final RequestCoalescer coalescer = new RequestCoalescer(new PluginProperties());
+
+    @Test
+    void followerTimesOutOnItsOwnDeadlineWithoutFailingTheLeader() throws Exception {
+        CompletableFuture<float[]> shared = new CompletableFuture<>();
+        long[] queueDeadline = new long[1];
+        long leaderDeadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+        CompletableFuture<float[]> leader = coalescer.execute("m/scheduled", "text", leaderDeadline, deadline -> {
+            queueDeadline[0] = deadline;
+            return shared;
+        });
+        CompletableFuture<float[]> follower = coalescer.execute("m/scheduled", "text",
+                System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(20), deadline -> {
+                    throw new AssertionError("跟随者不应发起推理");
+                });
+
+        ExecutionException error = assertThrows(ExecutionException.class, () -> follower.get(5, TimeUnit.SECONDS));
+        assertInstanceOf(TimeoutException.class, error.getCause());
+        assertEquals(0, queueDeadline[0]);
+        assertFalse(shared.isCancelled());
+
+        shared.complete(new float[]{1, 2});
+        assertArrayEquals(new float[]{1, 2}, leader.get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void sharedInferenceIsCancelledWhenEveryCallerTimesOut() throws Exception {
+        CompletableFuture<float[]> shared = new CompletableFuture<>();
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(20);
+        CompletableFuture<float[]> leader = coalescer.execute("m/scheduled", "text", deadline, d -> shared);
+        CompletableFuture<float[]> follower = coalescer.execute("m/scheduled", "text", deadline, d -> shared);
+
+        assertThrows(ExecutionException.class, () -> leader.get(5, TimeUnit.SECONDS));
+        assertThrows(ExecutionException.class, () -> follower.get(5, TimeUnit.SECONDS));
+        assertTrue(shared.isCancelled());
+    }
+
+    @Test
+    void differentPathsDoNotShareAFlight() {
+        AtomicInteger started = new AtomicInteger();
+        CompletableFuture<float[]> shared = new CompletableFuture<>();
+        coalescer.execute("m/direct", "text", 0, d -> {
+            started.incrementAndGet();
+            return shared;
+        });
+        coalescer.execute("m/scheduled", "text", 0, d -> {
+            started.incrementAndGet();
+            return shared;
+        });
+        assertEquals(2, started.get());
+    }
+}
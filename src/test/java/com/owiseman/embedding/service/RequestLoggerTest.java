@@ -0,0 +1,22 @@
+package com.owiseman.embedding.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class RequestLoggerTest {
+
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    @Test
+    void kindIsEscapedInRequestLogLine() throws Exception {
+        String kind = "embed\"\n\\x";
+        RequestTiming timing = new RequestTiming();
+        timing.finish();
+
+        JsonNode line = mapper.readTree(RequestLogger.toJson(kind, "text", timing, true));
+        assertEquals(kind, line.get("kind").asText());
+    }
+}
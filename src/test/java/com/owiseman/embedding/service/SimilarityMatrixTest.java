@@ -0,0 +1,38 @@
+package com.owiseman.embedding.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class SimilarityMatrixTest {
+
+    @Test
+    void blockedQueriesMatchRowByRowDotProducts() {
+        // 7条查询：一组4条走分组计算，剩余3条逐行计算；维度不是4的倍数，覆盖尾部分量
+        int queryCount = 7;
+        int candidateCount = 21;
+        int dimension = 10;
+        Random random = new Random(7);
+        float[] queries = randomMatrix(random, queryCount * dimension);
+        float[] candidates = randomMatrix(random, candidateCount * dimension);
+
+        float[] scores = SimilarityMatrix.multiply(queries, queryCount, candidates, candidateCount, dimension);
+
+        for (int q = 0; q < queryCount; q++) {
+            for (int c = 0; c < candidateCount; c++) {
+                assertEquals(SimilarityMatrix.dot(queries, q * dimension, candidates, c * dimension, dimension),
+                        scores[q * candidateCount + c], 0f, "query " + q + ", candidate " + c);
+            }
+        }
+    }
+
+    private static float[] randomMatrix(Random random, int size) {
+        float[] values = new float[size];
+        for (int i = 0; i < size; i++) {
+            values[i] = random.nextFloat() * 2 - 1;
+        }
+        return values;
+    }
+}
@@ -0,0 +1,26 @@
+package com.owiseman.embedding.util;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class JsonStringsTest {
+
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    @Test
+    void escapedMessageRoundTrips() throws Exception {
+        String message = "文件 \"a\\b.txt\" 不存在\n\t\u0001";
+        String json = "{\"error\": \"" + JsonStrings.escape(message) + "\"}";
+        assertEquals(message, mapper.readTree(json).get("error").asText());
+    }
+
+    @Test
+    void plainStringIsReturnedAsIs() {
+        String plain = "没有需要转义的字符";
+        assertSame(plain, JsonStrings.escape(plain));
+        assertEquals("", JsonStrings.escape(null));
+    }
+}